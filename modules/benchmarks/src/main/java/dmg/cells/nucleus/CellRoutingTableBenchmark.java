@@ -0,0 +1,116 @@
+package dmg.cells.nucleus;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the throughput of routing lookups by many concurrent threads, as in a core domain
+ * routing messages of many cells. Optionally, routes are added and deleted concurrently to
+ * simulate topology changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(64)
+public class CellRoutingTableBenchmark {
+
+    private static final int CELLS = 100;
+    private static final int DOMAINS = 50;
+    private static final Optional<String> ZONE = Optional.of("zone-0");
+
+    @Param({"false", "true"})
+    private boolean churn;
+
+    private CellRoutingTable table;
+    private CellAddressCore[] wellKnownCells;
+    private CellAddressCore[] remoteCells;
+    private CellAddressCore[] unknownCells;
+    private volatile boolean running;
+    private Thread churner;
+
+    @Setup
+    public void setUp() {
+        table = new CellRoutingTable();
+        wellKnownCells = new CellAddressCore[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+            wellKnownCells[i] = new CellAddressCore("cell-" + i);
+            for (int j = 0; j < 3; j++) {
+                table.add(new CellRoute("cell-" + i, new CellAddressCore("*", "domain-" + j),
+                      Optional.of("zone-" + j), CellRoute.QUEUE));
+            }
+        }
+        remoteCells = new CellAddressCore[DOMAINS];
+        for (int i = 0; i < DOMAINS; i++) {
+            remoteCells[i] = new CellAddressCore("cell", "domain-" + i);
+            table.add(new CellRoute("domain-" + i, new CellAddressCore("*", "domain-" + i),
+                  Optional.empty(), CellRoute.DOMAIN));
+        }
+        unknownCells = new CellAddressCore[CELLS];
+        for (int i = 0; i < CELLS; i++) {
+            unknownCells[i] = new CellAddressCore("cell-" + i, "unknown");
+        }
+        table.add(new CellRoute(null, new CellAddressCore("*", "core-0"), ZONE,
+              CellRoute.DEFAULT));
+        table.add(new CellRoute(null, new CellAddressCore("*", "core-1"), Optional.empty(),
+              CellRoute.DEFAULT));
+
+        if (churn) {
+            running = true;
+            churner = new Thread(() -> {
+                CellRoute route = new CellRoute("cell-0", new CellAddressCore("*", "domain-x"),
+                      Optional.empty(), CellRoute.QUEUE);
+                while (running) {
+                    table.add(route);
+                    table.delete(route);
+                }
+            }, "route-churn");
+            churner.start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        running = false;
+        if (churner != null) {
+            churner.join();
+        }
+    }
+
+    @Benchmark
+    public CellRoute findQueueRoute() {
+        return table.find(wellKnownCells[ThreadLocalRandom.current().nextInt(CELLS)], ZONE, true);
+    }
+
+    @Benchmark
+    public CellRoute findDomainRoute() {
+        return table.find(remoteCells[ThreadLocalRandom.current().nextInt(DOMAINS)], ZONE, true);
+    }
+
+    @Benchmark
+    public CellRoute findDefaultRoute() {
+        return table.find(unknownCells[ThreadLocalRandom.current().nextInt(CELLS)], ZONE, true);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+              .include(CellRoutingTableBenchmark.class.getSimpleName())
+              .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,350 @@
+package org.dcache.dcap.pool;
+
+import com.google.common.util.concurrent.SettableFuture;
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.DCapProtocolInfo;
+import diskCacheV111.vehicles.GenericStorageInfo;
+import diskCacheV111.vehicles.PoolDeliverFileMessage;
+import diskCacheV111.vehicles.PoolPassiveIoFileMessage;
+import dmg.cells.nucleus.CellEndpoint;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellMessageAnswerable;
+import dmg.cells.nucleus.CellPath;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.dcache.cells.CellStub;
+import org.dcache.pool.assumption.Assumptions;
+import org.dcache.pool.movers.DCapConstants;
+import org.dcache.pool.movers.DCapProtocol_3_nio;
+import org.dcache.pool.movers.NettyMover;
+import org.dcache.pool.repository.FileRepositoryChannel;
+import org.dcache.pool.repository.FileStore;
+import org.dcache.pool.repository.ReplicaDescriptor;
+import org.dcache.pool.repository.RepositoryChannel;
+import org.dcache.util.Checksum;
+import org.dcache.util.NettyPortRange;
+import org.dcache.vehicles.FileAttributes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the thread based DCAP mover with the Netty based one by reading a file over the
+ * loopback interface.  Each invocation is a complete DCAP transfer: the mover is started, sends
+ * its address to a fake door, the client connects, reads the whole file and closes the
+ * connection.  Run with several benchmark threads to see the effect of concurrent transfers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class DcapMoverBenchmark {
+
+    private static final CellPath DOOR = new CellPath("DCap-door");
+
+    static {
+        /* The classic mover cannot report an ephemeral port to the door, thus a
+         * port range must be configured, just like in a pool.
+         */
+        if (System.getProperty("org.dcache.net.tcp.portrange") == null) {
+            System.setProperty("org.dcache.net.tcp.portrange", "33115:33415");
+        }
+    }
+
+    @Param({"classic", "netty"})
+    private String mover;
+
+    @Param({"1048576", "67108864"})
+    private int fileSize;
+
+    private Path file;
+    private FakeDoor door;
+    private ExecutorService executor;
+    private DcapTransferService service;
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("dcap-benchmark", ".dat");
+        byte[] data = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(data);
+        Files.write(file, data);
+
+        door = new FakeDoor();
+        executor = Executors.newCachedThreadPool();
+
+        service = new DcapTransferService();
+        service.setDoorStub(new CellStub(door));
+        service.setPostTransferService((m, handler) -> handler.completed(null, null));
+        service.setConnectTimeout(60);
+        service.setConnectTimeoutUnit(TimeUnit.SECONDS);
+        service.setPortRange(new NettyPortRange(0, 0));
+        service.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        service.stop();
+        executor.shutdownNow();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public long read() throws Exception {
+        int sessionId = sessions.incrementAndGet();
+        DCapProtocolInfo info = new DCapProtocolInfo("DCap", 3, 0,
+              new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        info.setSessionId(sessionId);
+        info.door(DOOR);
+        FileAttributes attributes = FileAttributes.of()
+              .pnfsId(new PnfsId("000000000000000000000000000000000001"))
+              .size(fileSize)
+              .storageInfo(new GenericStorageInfo())
+              .build();
+
+        Future<?> transfer = "classic".equals(mover)
+              ? startClassic(info, attributes)
+              : startNetty(info, attributes);
+
+        PoolPassiveIoFileMessage<byte[]> address = door.await(sessionId);
+        long bytes = readFile(address, sessionId);
+        transfer.get();
+        return bytes;
+    }
+
+    private Future<?> startClassic(DCapProtocolInfo info, FileAttributes attributes) {
+        return executor.submit(() -> {
+            DCapProtocol_3_nio classic = new DCapProtocol_3_nio(door);
+            try (RepositoryChannel channel = new FileRepositoryChannel(file, FileStore.O_READ)) {
+                classic.runIO(attributes, channel, info, FileStore.O_READ);
+            }
+            return null;
+        });
+    }
+
+    private Future<?> startNetty(DCapProtocolInfo info, FileAttributes attributes)
+          throws Exception {
+        PoolDeliverFileMessage message = new PoolDeliverFileMessage("pool", info, attributes,
+              Assumptions.none());
+        NettyMover<DCapProtocolInfo> netty = (NettyMover<DCapProtocolInfo>) service.createMover(
+              new Replica(attributes), message, DOOR);
+        SettableFuture<Void> done = SettableFuture.create();
+        service.executeMover(netty, new CompletionHandler<Void, Void>() {
+            @Override
+            public void completed(Void result, Void attachment) {
+                service.closeMover(netty, new CompletionHandler<Void, Void>() {
+                    @Override
+                    public void completed(Void result, Void attachment) {
+                        done.set(null);
+                    }
+
+                    @Override
+                    public void failed(Throwable t, Void attachment) {
+                        done.setException(t);
+                    }
+                });
+            }
+
+            @Override
+            public void failed(Throwable t, Void attachment) {
+                done.setException(t);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Acts as the DCAP client: presents the challenge, reads the whole file with a single READ
+     * request and closes the file.
+     */
+    private long readFile(PoolPassiveIoFileMessage<byte[]> address, int sessionId)
+          throws IOException {
+        byte[] challenge = Base64.getEncoder().encode(address.challange());
+        try (SocketChannel channel = SocketChannel.open(address.socketAddresses()[0])) {
+            ByteBuffer request = ByteBuffer.allocate(8 + challenge.length + 16);
+            request.putInt(sessionId).putInt(challenge.length).put(challenge);
+            request.putInt(12).putInt(DCapConstants.IOCMD_READ).putLong(fileSize);
+            request.flip();
+            write(channel, request);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            skipReply(channel, buffer);                      // ACK
+            readInt(channel, buffer);                        // data header
+            readInt(channel, buffer);
+            long total = 0;
+            int size;
+            while ((size = readInt(channel, buffer)) >= 0) {
+                skip(channel, buffer, size);
+                total += size;
+            }
+            skipReply(channel, buffer);                      // FIN
+
+            request.clear();
+            request.putInt(4).putInt(DCapConstants.IOCMD_CLOSE).flip();
+            write(channel, request);
+            skipReply(channel, buffer);                      // ACK
+            return total;
+        }
+    }
+
+    private static void write(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int readInt(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear().limit(4);
+        fill(channel, buffer);
+        return buffer.getInt(0);
+    }
+
+    private static void skipReply(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        skip(channel, buffer, readInt(channel, buffer));
+    }
+
+    private static void skip(SocketChannel channel, ByteBuffer buffer, long count)
+          throws IOException {
+        while (count > 0) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), count));
+            fill(channel, buffer);
+            count -= buffer.limit();
+        }
+    }
+
+    private static void fill(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * Stands in for the door, collecting the addresses sent by movers.
+     */
+    private static class FakeDoor implements CellEndpoint {
+
+        private final Map<Integer, BlockingQueue<PoolPassiveIoFileMessage<byte[]>>> addresses =
+              new ConcurrentHashMap<>();
+
+        private BlockingQueue<PoolPassiveIoFileMessage<byte[]>> queue(int session) {
+            return addresses.computeIfAbsent(session, s -> new LinkedBlockingQueue<>());
+        }
+
+        PoolPassiveIoFileMessage<byte[]> await(int session) throws InterruptedException {
+            PoolPassiveIoFileMessage<byte[]> msg = queue(session).poll(60, TimeUnit.SECONDS);
+            addresses.remove(session);
+            if (msg == null) {
+                throw new IllegalStateException("Mover did not send its address");
+            }
+            return msg;
+        }
+
+        @Override
+        public void sendMessage(CellMessage envelope, SendFlag... flags) {
+            PoolPassiveIoFileMessage<byte[]> msg =
+                  (PoolPassiveIoFileMessage<byte[]>) envelope.getMessageObject();
+            queue((int) msg.getId()).add(msg);
+        }
+
+        @Override
+        public void sendMessage(CellMessage envelope, CellMessageAnswerable callback,
+              Executor executor, long timeout, SendFlag... flags) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Map<String, Object> getDomainContext() {
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * A replica backed by the benchmark's file.
+     */
+    private class Replica implements ReplicaDescriptor {
+
+        private final FileAttributes attributes;
+
+        Replica(FileAttributes attributes) {
+            this.attributes = attributes;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public URI getReplicaFile() {
+            return file.toUri();
+        }
+
+        @Override
+        public RepositoryChannel createChannel() throws IOException {
+            return new FileRepositoryChannel(file, FileStore.O_READ);
+        }
+
+        @Override
+        public FileAttributes getFileAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public Collection<Checksum> getChecksums() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public long getReplicaSize() {
+            return fileSize;
+        }
+
+        @Override
+        public long getReplicaCreationTime() {
+            return 0;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+              .include(DcapMoverBenchmark.class.getSimpleName())
+              .build();
+
+        new Runner(opt).run();
+    }
+}
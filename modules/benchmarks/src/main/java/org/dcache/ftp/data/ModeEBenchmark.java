@@ -0,0 +1,232 @@
+package org.dcache.ftp.data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.dcache.pool.movers.GFtpProtocol_2_nio;
+import org.dcache.pool.repository.FileRepositoryChannel;
+import org.dcache.pool.repository.FileStore;
+import org.dcache.pool.repository.RepositoryChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the multiplexer based mode E implementation with the one running on shared Netty
+ * event loops. Files are sent to and received from a client over the loopback interface using
+ * many parallel streams.  Run with several benchmark threads to see the effect of concurrent
+ * transfers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(org.openjdk.jmh.annotations.Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class ModeEBenchmark {
+
+    private static final int BLOCK_SIZE = GFtpProtocol_2_nio.MODE_E_DEFAULT_BLOCK_SIZE;
+
+    @Param({"multiplexer", "netty"})
+    private String engine;
+
+    @Param({"8", "16", "64"})
+    private int streams;
+
+    @Param({"67108864"})
+    private int fileSize;
+
+    private Path file;
+    private ExecutorService executor;
+    private DataChannelEventLoops eventLoops;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("mode-e-benchmark", ".dat");
+        byte[] data = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(data);
+        Files.write(file, data);
+
+        executor = Executors.newCachedThreadPool();
+        eventLoops = new DataChannelEventLoops(0, 16);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        eventLoops.shutdown();
+        executor.shutdownNow();
+        Files.delete(file);
+    }
+
+    private Mode createMode(Role role, RepositoryChannel channel)
+          throws IOException {
+        ConnectionMonitor monitor = new ConnectionMonitor() {
+            @Override
+            public void receivedBlock(long position, long size) {
+            }
+
+            @Override
+            public void sentBlock(long position, long size) {
+            }
+        };
+        return "netty".equals(engine)
+              ? new NettyModeE(role, channel, monitor, BLOCK_SIZE, eventLoops)
+              : new ModeE(role, channel, monitor, BLOCK_SIZE);
+    }
+
+    /**
+     * The pool sends a file to a client, connecting to the client with the configured number of
+     * streams.
+     */
+    @Benchmark
+    public long send() throws Exception {
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+              RepositoryChannel channel = new FileRepositoryChannel(file, FileStore.O_READ)) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), streams);
+
+            Mode mode = createMode(Role.Sender, channel);
+            mode.setActive((InetSocketAddress) server.getLocalAddress());
+            mode.setParallelism(streams);
+            Future<?> transfer = executor.submit(() -> {
+                mode.transfer();
+                return null;
+            });
+
+            List<Future<Long>> sinks = new ArrayList<>();
+            for (int i = 0; i < streams; i++) {
+                SocketChannel socket = server.accept();
+                sinks.add(executor.submit(() -> drain(socket)));
+            }
+            long total = 0;
+            for (Future<Long> sink : sinks) {
+                total += sink.get();
+            }
+            transfer.get();
+            return total;
+        }
+    }
+
+    /**
+     * The pool receives a file from a client, accepting the configured number of streams.
+     */
+    @Benchmark
+    public long receive() throws Exception {
+        Path target = Files.createTempFile("mode-e-benchmark", ".rcv");
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+              RepositoryChannel channel = new FileRepositoryChannel(target, FileStore.O_RW)) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), streams);
+
+            Mode mode = createMode(Role.Receiver, channel);
+            mode.setPassive(server);
+            Future<?> transfer = executor.submit(() -> {
+                mode.transfer();
+                return null;
+            });
+
+            List<Future<?>> sources = new ArrayList<>();
+            for (int i = 0; i < streams; i++) {
+                int stream = i;
+                sources.add(executor.submit(() -> {
+                    source(server.getLocalAddress(), stream);
+                    return null;
+                }));
+            }
+            for (Future<?> source : sources) {
+                source.get();
+            }
+            transfer.get();
+            return channel.size();
+        } finally {
+            Files.delete(target);
+        }
+    }
+
+    /**
+     * Reads a mode E stream until the sender closes it.
+     */
+    private static long drain(SocketChannel socket) throws IOException {
+        try (SocketChannel channel = socket) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            long total = 0;
+            int n;
+            while ((n = channel.read(buffer)) >= 0) {
+                total += n;
+                buffer.clear();
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Sends every streams'th block of the file as a mode E block, followed by an EOD. The first
+     * stream also sends the EOF.
+     */
+    private void source(SocketAddress address, int stream) throws IOException {
+        try (SocketChannel socket = SocketChannel.open(address)) {
+            ByteBuffer header = ByteBuffer.allocate(ModeE.HEADER_LENGTH);
+            ByteBuffer data = ByteBuffer.allocateDirect(BLOCK_SIZE);
+            for (long position = (long) stream * BLOCK_SIZE; position < fileSize;
+                  position += (long) streams * BLOCK_SIZE) {
+                int count = (int) Math.min(BLOCK_SIZE, fileSize - position);
+                header.clear();
+                header.put((byte) 0).putLong(count).putLong(position).flip();
+                write(socket, header);
+                data.clear().limit(count);
+                write(socket, data);
+            }
+
+            header.clear();
+            if (stream == 0) {
+                header.put((byte) (ModeE.EOF_DESCRIPTOR | ModeE.EOD_DESCRIPTOR))
+                      .putLong(0).putLong(streams);
+            } else {
+                header.put((byte) ModeE.EOD_DESCRIPTOR).putLong(0).putLong(0);
+            }
+            header.flip();
+            write(socket, header);
+
+            /* Wait for the pool to close the data channel.
+             */
+            if (socket.read(ByteBuffer.allocate(1)) >= 0) {
+                throw new EOFException("Unexpected data from pool");
+            }
+        }
+    }
+
+    private static void write(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+              .include(ModeEBenchmark.class.getSimpleName())
+              .build();
+
+        new Runner(opt).run();
+    }
+}
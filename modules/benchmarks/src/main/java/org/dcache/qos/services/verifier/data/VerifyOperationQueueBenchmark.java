@@ -0,0 +1,129 @@
+package org.dcache.qos.services.verifier.data;
+
+import diskCacheV111.util.PnfsId;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.dcache.qos.services.verifier.data.VerifyOperationQueueIndex.QueueType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Simulates a pool going down with five million replicas: an operation is queued for each
+ * replica, the first batch is started, and the queue then sweeps for terminated operations, as
+ * it does on each pass.  The share of terminated operations ranges from just the running ones
+ * to all of them, as when the pool comes back up and the operations are canceled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class VerifyOperationQueueBenchmark {
+
+    private static final int OPERATIONS = 5_000_000;
+    private static final int MAX_RUNNING = 200;
+
+    /**
+     * Percentage of the queued operations which have terminated when the queue sweeps; zero
+     * means only the running operations have.
+     */
+    @Param({"0", "10", "100"})
+    private int terminatedPercent;
+
+    private PnfsId[] pnfsIds;
+    private Set<PnfsId> terminated;
+    private SimulatedManager manager;
+    private VerifyOperationQueue queue;
+
+    @Setup(Level.Trial)
+    public void createOperations() {
+        pnfsIds = new PnfsId[OPERATIONS];
+        terminated = new HashSet<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            pnfsIds[i] = new PnfsId(String.format("0000%032X", i));
+            if (i < MAX_RUNNING || i % 100 < terminatedPercent) {
+                terminated.add(pnfsIds[i]);
+            }
+        }
+        manager = new SimulatedManager(terminated);
+    }
+
+    @Setup(Level.Iteration)
+    public void createQueue() {
+        QueueType type = new QueueType();
+        type.setName("pool-status");
+        queue = new VerifyOperationQueue(type, manager);
+    }
+
+    @Benchmark
+    public int poolDown() {
+        for (PnfsId pnfsId : pnfsIds) {
+            queue.addLast(pnfsId);
+        }
+        queue.processReady();
+        manager.postProcessed = 0;
+        queue.processTerminated();
+        if (manager.postProcessed != terminated.size()) {
+            throw new IllegalStateException("Expected " + terminated.size()
+                  + " terminated operations, found " + manager.postProcessed);
+        }
+        return manager.postProcessed;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+              .include(VerifyOperationQueueBenchmark.class.getSimpleName())
+              .jvmArgsAppend("-Xmx8g")
+              .build();
+
+        new Runner(opt).run();
+    }
+
+    /**
+     * Answers the queue's callbacks without running or post-processing any operation.
+     */
+    private static class SimulatedManager extends VerifyOperationManager {
+
+        private final Set<PnfsId> terminated;
+        private final VerifyOperation active = new VerifyOperation(null);
+        int postProcessed;
+
+        SimulatedManager(Set<PnfsId> terminated) {
+            this.terminated = terminated;
+        }
+
+        @Override
+        public VerifyOperation get(PnfsId pnfsId) {
+            return terminated.contains(pnfsId) ? null : active;
+        }
+
+        @Override
+        public int getMaxRunning() {
+            return MAX_RUNNING;
+        }
+
+        @Override
+        public void submitToRun(PnfsId pnfsId, ExecutorService executor) {
+        }
+
+        @Override
+        public void submitForPostProcessing(PnfsId pnfsId) {
+            ++postProcessed;
+        }
+    }
+}
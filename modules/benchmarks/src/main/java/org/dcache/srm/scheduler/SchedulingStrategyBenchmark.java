@@ -0,0 +1,176 @@
+package org.dcache.srm.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import org.dcache.srm.request.Job;
+import org.dcache.srm.scheduler.spi.JobDiscriminator;
+import org.dcache.srm.scheduler.spi.SchedulingStrategy;
+import org.dcache.srm.scheduler.strategy.FifoSchedulingStrategy;
+import org.dcache.srm.scheduler.strategy.ThroughputFairShareSchedulingStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Feeds one million synthetic jobs through a scheduling strategy.  Jobs are added by several
+ * producer threads, as SRM request threads do, while a single consumer removes them, as the
+ * scheduler's work supply thread does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SchedulingStrategyBenchmark {
+
+    private static final int JOBS = 1_000_000;
+
+    private static final JobDiscriminator SYNTHETIC_USER = new JobDiscriminator() {
+        @Nonnull
+        @Override
+        public String getDiscriminatingValue(Job job) {
+            return ((SyntheticJob) job).user;
+        }
+
+        @Nonnull
+        @Override
+        public String getKey() {
+            return "synthetic-user";
+        }
+    };
+
+    @Param({"fifo", "throughput-fair-share"})
+    private String strategyName;
+
+    @Param({"1", "8"})
+    private int producers;
+
+    /**
+     * Number of distinct discriminating values, e.g. users.
+     */
+    @Param({"1", "100"})
+    private int users;
+
+    private Job[] jobs;
+    private ExecutorService executor;
+    private SchedulingStrategy strategy;
+
+    @Setup(Level.Trial)
+    public void createJobs() {
+        jobs = new Job[JOBS];
+        for (int i = 0; i < JOBS; i++) {
+            jobs[i] = new SyntheticJob(i, "user" + (i % users));
+        }
+        executor = Executors.newFixedThreadPool(producers);
+    }
+
+    @Setup(Level.Iteration)
+    public void createStrategy() {
+        switch (strategyName) {
+            case "fifo":
+                strategy = new FifoSchedulingStrategy();
+                break;
+            case "throughput-fair-share":
+                strategy = new ThroughputFairShareSchedulingStrategy("synthetic-user") {
+                    @Override
+                    protected JobDiscriminator getDiscriminator(String key) {
+                        return SYNTHETIC_USER;
+                    }
+                };
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + strategyName);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long feedJobs() throws InterruptedException, ExecutionException {
+        List<Future<?>> futures = new ArrayList<>(producers);
+        int slice = JOBS / producers;
+        for (int p = 0; p < producers; p++) {
+            int from = p * slice;
+            int to = p == producers - 1 ? JOBS : from + slice;
+            futures.add(executor.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    strategy.add(jobs[i]);
+                }
+            }));
+        }
+
+        long sum = 0;
+        int removed = 0;
+        while (removed < JOBS) {
+            Long id = strategy.remove();
+            if (id != null) {
+                sum += id;
+                removed++;
+            } else if (futures.stream().allMatch(Future::isDone) && strategy.size() == 0) {
+                break;
+            }
+        }
+
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        if (removed != JOBS) {
+            throw new IllegalStateException("Lost " + (JOBS - removed) + " jobs.");
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+              .include(SchedulingStrategyBenchmark.class.getSimpleName())
+              .build();
+
+        new Runner(opt).run();
+    }
+
+    /**
+     * A job that is never run; it only has an ID and a user.
+     */
+    private static class SyntheticJob extends Job {
+
+        final String user;
+
+        SyntheticJob(long id, String user) {
+            super(id, null, System.currentTimeMillis(), Long.MAX_VALUE,
+                  org.dcache.srm.scheduler.State.QUEUED.getStateId(), "benchmark", 0, 0,
+                  System.currentTimeMillis(), new JobHistory[0], null);
+            this.user = user;
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public void toString(StringBuilder sb, boolean longformat) {
+            sb.append("SyntheticJob ").append(getId());
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import dmg.util.TimebasedCounter;
+import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -53,10 +54,12 @@ class CellGlue {
     private final CuratorFramework _curatorFramework;
     private final Optional<String> _zone;
     private final SerializationHandler.Serializer _serializer;
+    private final PassByReferenceCounters _passByReferenceCounters;
 
     CellGlue(String cellDomainName, @Nonnull CuratorFramework curatorFramework,
           Optional<String> zone, SerializationHandler.Serializer serializer) {
         _serializer = serializer;
+        _passByReferenceCounters = new PassByReferenceCounters(serializer);
         _zone = requireNonNull(zone);
         String cellDomainNameLocal = cellDomainName;
 
@@ -173,6 +176,10 @@ class CellGlue {
         return _serializer;
     }
 
+    void getPassByReferenceInfo(PrintWriter pw) {
+        _passByReferenceCounters.getInfo(pw);
+    }
+
     Object getCellContext(String str) {
         return _cellContext.get(str);
     }
@@ -445,7 +452,14 @@ class CellGlue {
     void sendMessage(CellMessage msg, boolean resolveLocally, boolean resolveRemotely)
           throws SerializationException {
         if (!msg.isStreamMode()) {
-            msg = msg.encodeWith(_serializer);
+            if (PassByReferenceRegistry.isPassByReference(msg.getMessageObject())) {
+                /* The payload is only serialized if the message leaves the domain. The
+                 * envelope is still copied, as routing modifies it.
+                 */
+                msg = msg.clone();
+            } else {
+                msg = msg.encodeWith(_serializer);
+            }
         }
         CellPath destination = msg.getDestinationPath();
         LOGGER.trace("sendMessage : {} send to {}", msg.getUOID(), destination);
@@ -571,7 +585,14 @@ class CellGlue {
             CellPath destinationPath = msg.getDestinationPath();
             if (address.equals(destinationPath.getCurrent())) {
                 try {
-                    destNucleus.addToEventQueue(new MessageEvent(msg.decode()));
+                    CellMessage delivered;
+                    if (msg.isStreamMode()) {
+                        delivered = msg.decode();
+                    } else {
+                        delivered = msg.clone();
+                        _passByReferenceCounters.delivered(delivered.getMessageObject());
+                    }
+                    destNucleus.addToEventQueue(new MessageEvent(delivered));
                 } catch (SerializationException e) {
                     LOGGER.error(
                           "Received malformed message from {} with UOID {} and session [{}]: {}",
@@ -582,8 +603,11 @@ class CellGlue {
                 LOGGER.error("Hop count exceeds 30: {}", msg);
                 sendException(msg, address.toString());
             } else {
-                msg.addSourceAddress(_domainAddress);
-                destNucleus.addToEventQueue(new RoutedMessageEvent(msg));
+                /* Routed messages may leave the domain, so pass by reference no longer applies.
+                 */
+                CellMessage routed = msg.isStreamMode() ? msg : msg.encodeWith(_serializer);
+                routed.addSourceAddress(_domainAddress);
+                destNucleus.addToEventQueue(new RoutedMessageEvent(routed));
             }
             return true;
         }
@@ -593,7 +617,8 @@ class CellGlue {
     private void sendException(CellMessage msg, String routeTarget)
           throws SerializationException {
         if (msg.getSourceAddress().getCellName().equals("*")) {
-            Serializable messageObject = msg.decode().getMessageObject();
+            Serializable messageObject =
+                  (msg.isStreamMode() ? msg.decode() : msg).getMessageObject();
             if (messageObject instanceof NoRouteToCellException) {
                 LOGGER.info(
                       "Unable to notify {} about delivery failure of message sent to {}: No route for {} in {}.",
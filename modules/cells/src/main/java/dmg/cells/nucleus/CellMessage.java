@@ -232,6 +232,19 @@ public final class CellMessage implements Cloneable, Serializable {
         }
     }
 
+    /**
+     * Returns a copy of this message addressed to {@code destination}. The copy has its own
+     * message id, but shares the encoded message stream (if any) with this message. This allows
+     * a message to be sent to several destinations while serializing it only once.
+     */
+    public CellMessage copyTo(CellPath destination) {
+        CellMessage copy = clone();
+        copy._destination = destination.clone();
+        copy._umid = new UOID();
+        copy._lastUmid = copy._umid;
+        return copy;
+    }
+
     public CellMessage encodeWith(Serializer serializer) {
         checkState(_mode == ORIGINAL_MODE);
         CellMessage encoded = clone();
@@ -19,6 +19,7 @@ import dmg.util.Pinboard;
 import dmg.util.logback.FilterThresholdSet;
 import dmg.util.logback.RootFilterThresholds;
 import java.io.FileNotFoundException;
+import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
@@ -1198,6 +1199,10 @@ public class CellNucleus implements ThreadFactory {
         return __cellGlue.getMessageSerializer();
     }
 
+    void getPassByReferenceInfo(PrintWriter pw) {
+        __cellGlue.getPassByReferenceInfo(pw);
+    }
+
     //
 
     private class CallbackTask implements Runnable {
@@ -1,5 +1,7 @@
 package dmg.cells.nucleus;
 
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
 
 import com.google.common.collect.ArrayListMultimap;
@@ -13,18 +15,24 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Consumer;
 import org.dcache.util.ColumnWriter;
 
+/**
+ * The routing table of a domain.
+ * <p>
+ * Routes are added and deleted under the monitor of the table. Lookups are served from an
+ * immutable {@link Snapshot} of the routing table, with routes precomputed per destination cell
+ * and domain. A modification merely discards the snapshot and the next lookup rebuilds it, so
+ * installing many routes, e.g. while a domain starts, does not rebuild the snapshot for every
+ * route. Only the first lookup after a modification takes the monitor of the table.
+ */
 public class CellRoutingTable implements Serializable {
 
     private static final long serialVersionUID = -1456280129622980563L;
@@ -32,154 +40,113 @@ public class CellRoutingTable implements Serializable {
     private final ListMultimap<String, CellRoute> _queue = ArrayListMultimap.create();
     private final SetMultimap<String, CellRoute> _domain = LinkedHashMultimap.create();
     private final SetMultimap<String, CellRoute> _exact = LinkedHashMultimap.create();
-    private final Map<String, CopyOnWriteArraySet<CellRoute>> _topic = new HashMap<>();
-    private final AtomicReference<CellRoute> _dumpster = new AtomicReference<>();
+    private final SetMultimap<String, CellRoute> _topic = LinkedHashMultimap.create();
     private final List<CellRoute> _default = new ArrayList<>();
+    private CellRoute _dumpster;
 
-    public void add(CellRoute route)
+    /**
+     * Lookup view of the table, or null if the table was modified since it was built.
+     */
+    private transient volatile Snapshot _snapshot;
+
+    public synchronized void add(CellRoute route)
           throws IllegalArgumentException {
         String dest;
         switch (route.getRouteType()) {
             case CellRoute.EXACT:
             case CellRoute.ALIAS:
                 dest = route.getCellName() + '@' + route.getDomainName();
-                synchronized (_exact) {
-                    if (!_exact.put(dest, route)) {
-                        throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                    }
+                if (!_exact.put(dest, route)) {
+                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
                 }
                 break;
             case CellRoute.QUEUE:
                 dest = route.getCellName();
-                synchronized (_queue) {
-                    if (_queue.containsEntry(dest, route)) {
-                        throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                    }
-                    _queue.put(dest, route);
+                if (_queue.containsEntry(dest, route)) {
+                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
                 }
+                _queue.put(dest, route);
                 break;
             case CellRoute.TOPIC:
                 dest = route.getCellName();
-                synchronized (_topic) {
-                    if (!_topic.computeIfAbsent(dest, key -> new CopyOnWriteArraySet())
-                          .add(route)) {
-                        throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                    }
+                if (!_topic.put(dest, route)) {
+                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
                 }
                 break;
             case CellRoute.DOMAIN:
                 dest = route.getDomainName();
-                synchronized (_domain) {
-                    if (!_domain.put(dest, route)) {
-                        throw new IllegalArgumentException("Duplicated route entry for : " + dest);
-                    }
+                if (!_domain.put(dest, route)) {
+                    throw new IllegalArgumentException("Duplicated route entry for : " + dest);
                 }
                 break;
             case CellRoute.DEFAULT:
-                synchronized (_default) {
-                    if (!_default.contains(route)) {
-                        _default.add(route);
-                    }
+                if (!_default.contains(route)) {
+                    _default.add(route);
                 }
                 break;
             case CellRoute.DUMPSTER:
-                if (!_dumpster.compareAndSet(null, route)) {
+                if (_dumpster != null) {
                     throw new IllegalArgumentException("Duplicated route entry for dumpster");
                 }
+                _dumpster = route;
                 break;
         }
+        _snapshot = null;
     }
 
-    public void delete(CellRoute route)
+    public synchronized void delete(CellRoute route)
           throws IllegalArgumentException {
         String dest;
         switch (route.getRouteType()) {
             case CellRoute.EXACT:
             case CellRoute.ALIAS:
                 dest = route.getCellName() + '@' + route.getDomainName();
-                synchronized (_exact) {
-                    if (!_exact.remove(dest, route)) {
-                        throw new IllegalArgumentException("Route entry not found for : " + dest);
-                    }
+                if (!_exact.remove(dest, route)) {
+                    throw new IllegalArgumentException("Route entry not found for : " + dest);
                 }
                 break;
             case CellRoute.QUEUE:
                 dest = route.getCellName();
-                synchronized (_queue) {
-                    if (!_queue.remove(dest, route)) {
-                        throw new IllegalArgumentException("Route entry not found for : " + dest);
-                    }
+                if (!_queue.remove(dest, route)) {
+                    throw new IllegalArgumentException("Route entry not found for : " + dest);
                 }
                 break;
             case CellRoute.TOPIC:
                 dest = route.getCellName();
-                synchronized (_topic) {
-                    Set<CellRoute> routes = _topic.get(dest);
-                    if (!routes.remove(route)) {
-                        throw new IllegalArgumentException("Route entry not found for : " + dest);
-                    }
-                    if (routes.isEmpty()) {
-                        _topic.remove(dest);
-                    }
+                if (!_topic.remove(dest, route)) {
+                    throw new IllegalArgumentException("Route entry not found for : " + dest);
                 }
                 break;
             case CellRoute.DOMAIN:
                 dest = route.getDomainName();
-                synchronized (_domain) {
-                    if (!_domain.remove(dest, route)) {
-                        throw new IllegalArgumentException("Route entry not found for : " + dest);
-                    }
+                if (!_domain.remove(dest, route)) {
+                    throw new IllegalArgumentException("Route entry not found for : " + dest);
                 }
                 break;
             case CellRoute.DEFAULT:
-                synchronized (_default) {
-                    if (!_default.remove(route)) {
-                        throw new IllegalArgumentException("Route entry not found for default");
-                    }
+                if (!_default.remove(route)) {
+                    throw new IllegalArgumentException("Route entry not found for default");
                 }
                 break;
             case CellRoute.DUMPSTER:
-                CellRoute currentDumpster = _dumpster.get();
-                if (!Objects.equals(currentDumpster, route) || !_dumpster.compareAndSet(
-                      currentDumpster, null)) {
+                if (!Objects.equals(_dumpster, route)) {
                     throw new IllegalArgumentException("Route entry not found dumpster");
                 }
+                _dumpster = null;
                 break;
         }
+        _snapshot = null;
     }
 
-    public Collection<CellRoute> delete(CellAddressCore target) {
+    public synchronized Collection<CellRoute> delete(CellAddressCore target) {
         Collection<CellRoute> deleted = new ArrayList<>();
-
-        synchronized (_exact) {
-            delete(_exact.values(), target, deleted);
-        }
-        synchronized (_queue) {
-            delete(_queue.values(), target, deleted);
-        }
-        synchronized (_domain) {
-            delete(_domain.values(), target, deleted);
-        }
-        synchronized (_topic) {
-            /* We cannot use the regular delete method because a CopyOnWriteArraySet iterator
-             * doesn't allow manipulating operations. We trade expensive deletion for not having
-             * to copy the set of topic routes in findTopicRoutes.
-             */
-            Iterator<CopyOnWriteArraySet<CellRoute>> iterator = _topic.values().iterator();
-            while (iterator.hasNext()) {
-                Set<CellRoute> routes = iterator.next();
-                List<CellRoute> toRemove =
-                      routes.stream().filter(route -> route.getTarget().equals(target))
-                            .collect(toList());
-                routes.removeAll(toRemove);
-                if (routes.isEmpty()) {
-                    iterator.remove();
-                }
-                deleted.addAll(toRemove);
-            }
-        }
-        synchronized (_default) {
-            delete(_default, target, deleted);
+        delete(_exact.values(), target, deleted);
+        delete(_queue.values(), target, deleted);
+        delete(_domain.values(), target, deleted);
+        delete(_topic.values(), target, deleted);
+        delete(_default, target, deleted);
+        if (!deleted.isEmpty()) {
+            _snapshot = null;
         }
         return deleted;
     }
@@ -197,71 +164,52 @@ public class CellRoutingTable implements Serializable {
     }
 
     public CellRoute find(CellAddressCore addr, Optional<String> zone, boolean allowRemote) {
+        Snapshot snapshot = snapshot();
         String cellName = addr.getCellName();
         String domainName = addr.getCellDomainName();
-        Optional<CellRoute> route;
-        synchronized (_exact) {
-            route = _exact.get(cellName + '@' + domainName).stream().findFirst();
-        }
-        if (route.isPresent()) {
-            return route.get();
+        CellRoute route = snapshot.exact.get(cellName + '@' + domainName);
+        if (route != null) {
+            return route;
         }
         if (domainName.equals("local")) {
             //
             // this is not really local but wellknown
             // we checked for local before we called this.
             //
-            synchronized (_queue) {
-                List<CellRoute> routes = _queue.get(cellName);
-                Random random = ThreadLocalRandom.current();
+            QueueRoutes routes = snapshot.queue.get(cellName);
+            if (routes != null) {
                 if (!allowRemote) {
-                    CellRoute[] localRoutes =
-                          routes.stream().filter(r -> !r.getTarget().isDomainAddress())
-                                .toArray(CellRoute[]::new);
-                    return (localRoutes.length > 0) ? localRoutes[random.nextInt(
-                          localRoutes.length)] : null;
-                } else if (!routes.isEmpty()) {
-
-                    if (zone.isPresent()) {
-                        CellRoute[] localRoutes = routes
-                              .stream()
-                              .filter(r -> r.getZone().equals(zone))
-                              .toArray(CellRoute[]::new);
-
-                        if (localRoutes.length > 0) {
-                            return localRoutes[random.nextInt(localRoutes.length)];
-                        }
+                    return routes.select(routes.local);
+                }
+                if (zone.isPresent()) {
+                    CellRoute[] zoneRoutes = routes.byZone.get(zone);
+                    if (zoneRoutes != null) {
+                        return routes.select(zoneRoutes);
                     }
-                    return routes.get(random.nextInt(routes.size()));
                 }
+                return routes.select(routes.all);
+            } else if (!allowRemote) {
+                return null;
             }
         } else {
-            synchronized (_domain) {
-                route = _domain.get(domainName).stream().findFirst();
-            }
-            if (route.isPresent()) {
-                return route.get();
+            route = snapshot.domain.get(domainName);
+            if (route != null) {
+                return route;
             }
         }
-        synchronized (_default) {
-
-            if (_default.isEmpty()) {
-                return null;
-            }
 
-            if (zone.isPresent()) {
-                Optional<CellRoute> defaultZonedRoute = _default
-                      .stream()
-                      .filter(r -> r.getZone().equals(zone))
-                      .findAny();
+        if (snapshot.defaults.length == 0) {
+            return null;
+        }
 
-                if (defaultZonedRoute.isPresent()) {
-                    return defaultZonedRoute.get();
-                }
+        if (zone.isPresent()) {
+            route = snapshot.defaultByZone.get(zone);
+            if (route != null) {
+                return route;
             }
-
-            return _default.get(IntMath.mod(addr.hashCode(), _default.size()));
         }
+
+        return snapshot.defaults[IntMath.mod(addr.hashCode(), snapshot.defaults.length)];
     }
 
     public Set<CellRoute> findTopicRoutes(CellAddressCore addr) {
@@ -270,11 +218,7 @@ public class CellRoutingTable implements Serializable {
         if (!domainName.equals("local")) {
             return Collections.emptySet();
         }
-        CopyOnWriteArraySet<CellRoute> routes;
-        synchronized (_topic) {
-            routes = _topic.get(cellName);
-        }
-        return (routes != null) ? routes : Collections.emptySet();
+        return snapshot().topic.getOrDefault(cellName, Collections.emptySet());
     }
 
     public String toString() {
@@ -284,62 +228,138 @@ public class CellRoutingTable implements Serializable {
               .header("GATEWAY").left("gateway").space()
               .header("TYPE").left("type");
 
-        Consumer<CellRoute> append =
-              route -> writer.row()
-                    .value("cell", route.getCellName())
-                    .value("domain", route.getDomainName())
-                    .value("gateway", route.getTarget())
-                    .value("type", route.getRouteTypeName());
-
-        synchronized (_topic) {
-            _topic.values().forEach(routes -> routes.forEach(append));
-        }
-        synchronized (_exact) {
-            _exact.values().forEach(append);
-        }
-        synchronized (_queue) {
-            _queue.values().forEach(append);
-        }
-        synchronized (_domain) {
-            _domain.values().forEach(append);
-        }
-        synchronized (_default) {
-            _default.forEach(append);
-        }
-        CellRoute dumpsterRoute = _dumpster.get();
-        if (dumpsterRoute != null) {
-            append.accept(dumpsterRoute);
+        for (CellRoute route : getRoutingList()) {
+            writer.row()
+                  .value("cell", route.getCellName())
+                  .value("domain", route.getDomainName())
+                  .value("gateway", route.getTarget())
+                  .value("type", route.getRouteTypeName());
         }
         return writer.toString();
     }
 
     public CellRoute[] getRoutingList() {
-        List<CellRoute> routes = new ArrayList<>();
-        synchronized (_topic) {
-            _topic.values().forEach(routes::addAll);
-        }
-        synchronized (_exact) {
-            routes.addAll(_exact.values());
-        }
-        synchronized (_queue) {
-            routes.addAll(_queue.values());
-        }
-        synchronized (_domain) {
-            routes.addAll(_domain.values());
+        return snapshot().routes.clone();
+    }
+
+    public boolean hasDefaultRoute() {
+        return snapshot().defaults.length > 0;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot snapshot = _snapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = _snapshot;
+                if (snapshot == null) {
+                    snapshot = new Snapshot(this);
+                    _snapshot = snapshot;
+                }
+            }
         }
-        synchronized (_default) {
-            routes.addAll(_default);
+        return snapshot;
+    }
+
+    /**
+     * Immutable view of the routing table optimized for lookups.
+     */
+    private static class Snapshot {
+
+        /**
+         * All routes in the order they are listed.
+         */
+        final CellRoute[] routes;
+
+        /**
+         * The first exact or alias route for each cell@domain address.
+         */
+        final Map<String, CellRoute> exact;
+
+        /**
+         * The queue routes for each well known cell.
+         */
+        final Map<String, QueueRoutes> queue;
+
+        /**
+         * The first domain route for each domain.
+         */
+        final Map<String, CellRoute> domain;
+
+        /**
+         * The topic routes for each topic.
+         */
+        final Map<String, Set<CellRoute>> topic;
+
+        /**
+         * The default routes, and the first default route of each zone.
+         */
+        final CellRoute[] defaults;
+        final Map<Optional<String>, CellRoute> defaultByZone;
+
+        /**
+         * Must be called with the monitor of the table held.
+         */
+        Snapshot(CellRoutingTable table) {
+            exact = first(table._exact);
+            domain = first(table._domain);
+
+            Map<String, QueueRoutes> queue = new HashMap<>();
+            table._queue.asMap().forEach((cell, routes) ->
+                  queue.put(cell, new QueueRoutes((List<CellRoute>) routes)));
+            this.queue = queue;
+
+            Map<String, Set<CellRoute>> topic = new HashMap<>();
+            table._topic.asMap().forEach((name, routes) ->
+                  topic.put(name, Collections.unmodifiableSet(new LinkedHashSet<>(routes))));
+            this.topic = topic;
+
+            defaults = table._default.toArray(CellRoute[]::new);
+            Map<Optional<String>, CellRoute> defaultByZone = new HashMap<>();
+            for (CellRoute route : defaults) {
+                defaultByZone.putIfAbsent(route.getZone(), route);
+            }
+            this.defaultByZone = defaultByZone;
+
+            List<CellRoute> routes = new ArrayList<>(table._topic.values());
+            routes.addAll(table._exact.values());
+            routes.addAll(table._queue.values());
+            routes.addAll(table._domain.values());
+            routes.addAll(table._default);
+            if (table._dumpster != null) {
+                routes.add(table._dumpster);
+            }
+            this.routes = routes.toArray(CellRoute[]::new);
         }
-        CellRoute dumpsterRoute = _dumpster.get();
-        if (dumpsterRoute != null) {
-            routes.add(dumpsterRoute);
+
+        private static Map<String, CellRoute> first(SetMultimap<String, CellRoute> routes) {
+            Map<String, CellRoute> first = new HashMap<>();
+            routes.asMap().forEach((key, values) -> first.put(key, values.iterator().next()));
+            return first;
         }
-        return routes.toArray(CellRoute[]::new);
     }
 
-    public boolean hasDefaultRoute() {
-        synchronized (_default) {
-            return !_default.isEmpty();
+    /**
+     * The queue routes of a well known cell. A random route is selected for every message to
+     * distribute the load; the per thread random generator keeps the selection free of shared
+     * state.
+     */
+    private static class QueueRoutes {
+
+        final CellRoute[] all;
+        final CellRoute[] local;
+        final Map<Optional<String>, CellRoute[]> byZone;
+
+        QueueRoutes(List<CellRoute> routes) {
+            all = routes.toArray(CellRoute[]::new);
+            local = routes.stream().filter(r -> !r.getTarget().isDomainAddress())
+                  .toArray(CellRoute[]::new);
+            byZone = routes.stream().collect(groupingBy(CellRoute::getZone,
+                  collectingAndThen(toList(), l -> l.toArray(CellRoute[]::new))));
+        }
+
+        CellRoute select(CellRoute[] routes) {
+            return routes.length > 0 ? routes[ThreadLocalRandom.current().nextInt(routes.length)]
+                  : null;
         }
     }
 }
@@ -0,0 +1,29 @@
+package dmg.cells.nucleus;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a message payload class whose instances may be delivered to cells in the same domain
+ * without being serialized.
+ * <p>
+ * The receiving cell gets a reference to the very object the sender passed to the cells
+ * framework. The annotation must therefore only be used for classes that are deeply immutable:
+ * neither the sender nor any receiver may modify the object, nor any object reachable from it,
+ * once it has been sent. Messages sent to other domains are serialized as usual.
+ * <p>
+ * The annotation is not inherited, as subclasses of an immutable class are not necessarily
+ * immutable.
+ *
+ * @see PassByReferenceRegistry
+ */
+@Documented
+@Retention(RUNTIME)
+@Target(TYPE)
+public @interface PassByReference {
+
+}
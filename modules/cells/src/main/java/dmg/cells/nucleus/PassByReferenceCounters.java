@@ -0,0 +1,92 @@
+package dmg.cells.nucleus;
+
+import java.io.PrintWriter;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per message type counters of messages delivered within the domain without being serialized.
+ * <p>
+ * The serialized size and the time needed to serialize and deserialize a message are measured
+ * on a sample of the messages and used to estimate the bytes and time saved by not serializing.
+ */
+class PassByReferenceCounters {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PassByReferenceCounters.class);
+
+    /**
+     * Every SAMPLE_INTERVAL'th message of a type is serialized to measure its cost. Must be a
+     * power of two.
+     */
+    private static final int SAMPLE_INTERVAL = 1024;
+
+    private final Map<Class<?>, Counter> counters = new ConcurrentHashMap<>();
+    private final SerializationHandler.Serializer serializer;
+
+    PassByReferenceCounters(SerializationHandler.Serializer serializer) {
+        this.serializer = serializer;
+    }
+
+    void delivered(Object message) {
+        if (message == null) {
+            return;
+        }
+        Counter counter = counters.computeIfAbsent(message.getClass(), c -> new Counter());
+        long count = counter.messages.incrementAndGet();
+        if ((count & (SAMPLE_INTERVAL - 1)) == 1) {
+            try {
+                long start = System.nanoTime();
+                byte[] encoded = SerializationHandler.encode(message, serializer);
+                SerializationHandler.decode(encoded);
+                counter.sample(encoded.length, System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to sample serialization of {}: {}",
+                      message.getClass().getName(), e.toString());
+            }
+        }
+    }
+
+    void getInfo(PrintWriter pw) {
+        if (counters.isEmpty()) {
+            return;
+        }
+        pw.println(" Messages passed by reference");
+        counters.entrySet().stream()
+              .sorted(Comparator.comparing(e -> e.getKey().getName()))
+              .forEach(e -> {
+                  Counter counter = e.getValue();
+                  long messages = counter.messages.get();
+                  pw.format("  %s: msgs=%d;saved bytes~%d;saved ms~%d\n",
+                        e.getKey().getName(), messages,
+                        counter.estimateBytes(messages),
+                        TimeUnit.NANOSECONDS.toMillis(counter.estimateNanos(messages)));
+              });
+    }
+
+    private static class Counter {
+
+        private final AtomicLong messages = new AtomicLong();
+        private long samples;
+        private long sampledBytes;
+        private long sampledNanos;
+
+        synchronized void sample(long bytes, long nanos) {
+            samples++;
+            sampledBytes += bytes;
+            sampledNanos += nanos;
+        }
+
+        synchronized long estimateBytes(long messages) {
+            return samples == 0 ? 0 : messages * sampledBytes / samples;
+        }
+
+        synchronized long estimateNanos(long messages) {
+            return samples == 0 ? 0 : messages * sampledNanos / samples;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package dmg.cells.nucleus;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Decides whether a message payload may be delivered to cells in the same domain without being
+ * serialized.
+ * <p>
+ * A payload is passed by reference if its class is annotated with {@link PassByReference} or
+ * has been registered with this class. The latter allows immutable classes that cannot be
+ * annotated, such as those of the JDK, to take the same shortcut.
+ */
+public final class PassByReferenceRegistry {
+
+    private static final Set<Class<?>> REGISTERED = new CopyOnWriteArraySet<>(Set.of(
+          String.class, Boolean.class, Byte.class, Character.class, Short.class, Integer.class,
+          Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class,
+          UUID.class));
+
+    private static final ClassValue<Boolean> IS_PASS_BY_REFERENCE = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return type.isAnnotationPresent(PassByReference.class) || REGISTERED.contains(type);
+        }
+    };
+
+    private PassByReferenceRegistry() {
+    }
+
+    /**
+     * Registers a deeply immutable class as safe to be passed by reference. Must be called before
+     * the first message of that class is sent.
+     */
+    public static void register(Class<?> type) {
+        REGISTERED.add(type);
+    }
+
+    /**
+     * Returns whether {@code message} may be delivered to a cell in the same domain without
+     * being serialized.
+     */
+    public static boolean isPassByReference(Object message) {
+        return message == null || IS_PASS_BY_REFERENCE.get(message.getClass());
+    }
+}
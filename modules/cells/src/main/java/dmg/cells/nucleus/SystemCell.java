@@ -297,6 +297,7 @@ public class SystemCell
         long tm = _runtime.totalMemory();
 
         pw.format(" Memory : tot=%d;free=%d;used=%d\n", tm, fm, tm - fm);
+        _nucleus.getPassByReferenceInfo(pw);
         pw.println(" Cells (Threads)");
         for (String name : _nucleus.getCellNames()) {
             pw.append(" ").append(name).append("(");
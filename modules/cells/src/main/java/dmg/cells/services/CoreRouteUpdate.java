@@ -21,6 +21,7 @@ package dmg.cells.services;
 import static java.util.Arrays.asList;
 import static java.util.Collections.unmodifiableCollection;
 
+import dmg.cells.nucleus.PassByReference;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
@@ -28,6 +29,7 @@ import java.util.Optional;
 import javax.annotation.concurrent.Immutable;
 
 @Immutable
+@PassByReference
 public class CoreRouteUpdate implements Serializable {
 
     private static final long serialVersionUID = 5105253793542041494L;
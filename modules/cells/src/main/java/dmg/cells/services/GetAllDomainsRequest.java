@@ -17,8 +17,10 @@
  */
 package dmg.cells.services;
 
+import dmg.cells.nucleus.PassByReference;
 import java.io.Serializable;
 
+@PassByReference
 public class GetAllDomainsRequest implements Serializable {
 
     private static final long serialVersionUID = 6709938224289181893L;
@@ -18,8 +18,10 @@
  */
 package dmg.cells.services;
 
+import dmg.cells.nucleus.PassByReference;
 import java.io.Serializable;
 
+@PassByReference
 public class PeerShutdownNotification implements Serializable {
 
     private static final long serialVersionUID = 8153133416685738651L;
@@ -6,6 +6,7 @@ import static java.util.stream.Collectors.toList;
 
 import com.google.common.base.Joiner;
 import diskCacheV111.util.FsPath;
+import dmg.cells.nucleus.PassByReference;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
@@ -14,6 +15,7 @@ import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.ProtocolFamily;
 import java.net.StandardProtocolFamily;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -30,6 +32,7 @@ import org.dcache.util.NetworkUtils.InetAddressScope;
  * name should be cached within the InetAddress object. This should preferably be the FQDN. The
  * exception to this rule is when the IP addresses doesn't have a corresponding name.
  */
+@PassByReference
 public class LoginBrokerInfo implements Serializable {
 
     private static final long serialVersionUID = 4077557054990432737L;
@@ -80,10 +83,10 @@ public class LoginBrokerInfo implements Serializable {
         _protocolVersion = requireNonNull(protocolVersion);
         _protocolEngine = requireNonNull(protocolEngine);
         _root = root;
-        _tags = requireNonNull(tags);
-        _readPaths = requireNonNull(readPaths);
-        _writePaths = requireNonNull(writePaths);
-        _addresses = requireNonNull(addresses);
+        _tags = Collections.unmodifiableList(new ArrayList<>(tags));
+        _readPaths = Collections.unmodifiableList(new ArrayList<>(readPaths));
+        _writePaths = Collections.unmodifiableList(new ArrayList<>(writePaths));
+        _addresses = Collections.unmodifiableList(new ArrayList<>(addresses));
         _port = port;
         _load = load;
         _update = updateTime;
@@ -17,11 +17,13 @@
  */
 package dmg.cells.services.login;
 
+import dmg.cells.nucleus.PassByReference;
 import java.io.Serializable;
 
 /**
  * Requests the receiver to reply with LoginBrokerInfo.
  */
+@PassByReference
 public class LoginBrokerInfoRequest implements Serializable {
 
     private static final long serialVersionUID = -2576631790553309824L;
@@ -0,0 +1,96 @@
+package dmg.cells.nucleus;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.apache.curator.framework.CuratorFramework;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class CellGlueTest {
+
+    private CellGlue glue;
+    private CellNucleus destination;
+
+    @Before
+    public void setUp() {
+        glue = new CellGlue("domain", mock(CuratorFramework.class), Optional.empty(),
+              SerializationHandler.Serializer.JOS);
+        destination = mock(CellNucleus.class);
+        when(destination.getCellName()).thenReturn("destination");
+        when(destination.getThisCell()).thenReturn(mock(Cell.class));
+        glue.registerCell(destination);
+        glue.publishCell(destination);
+    }
+
+    @After
+    public void tearDown() {
+        glue.shutdown();
+    }
+
+    @Test
+    public void shouldDeliverPassByReferencePayloadLocallyWithoutCopy() {
+        ImmutablePayload payload = new ImmutablePayload("value");
+
+        Serializable delivered = send(payload);
+
+        assertThat(delivered, sameInstance(payload));
+    }
+
+    @Test
+    public void shouldDeliverOtherPayloadLocallyAsCopy() {
+        ArrayList<String> payload = new ArrayList<>(List.of("value"));
+
+        Serializable delivered = send(payload);
+
+        assertThat(delivered, not(sameInstance(payload)));
+        assertThat(delivered, equalTo(payload));
+    }
+
+    @Test
+    public void shouldCopyEnvelopeOfPassByReferencePayload() {
+        CellMessage envelope = new CellMessage(new CellPath("destination@domain"),
+              new ImmutablePayload("value"));
+        envelope.addSourceAddress(new CellAddressCore("source", "domain"));
+
+        glue.sendMessage(envelope, true, true);
+
+        assertThat(receive(), not(sameInstance(envelope)));
+    }
+
+    private Serializable send(Serializable payload) {
+        CellMessage envelope = new CellMessage(new CellPath("destination@domain"), payload);
+        envelope.addSourceAddress(new CellAddressCore("source", "domain"));
+        glue.sendMessage(envelope, true, true);
+        return receive().getMessageObject();
+    }
+
+    private CellMessage receive() {
+        ArgumentCaptor<MessageEvent> event = ArgumentCaptor.forClass(MessageEvent.class);
+        verify(destination).addToEventQueue(event.capture());
+        return event.getValue().getMessage();
+    }
+
+    @PassByReference
+    private static final class ImmutablePayload implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String value;
+
+        ImmutablePayload(String value) {
+            this.value = value;
+        }
+    }
+}
@@ -87,6 +87,20 @@ public class CellMessageTest {
         assertTrue(message.isReply());
     }
 
+    @Test
+    public void shouldCopyEncodedMessageToOtherDestination() throws Exception {
+        CellMessage message = new CellMessage(new CellPath("foo", "bar"), "payload")
+              .encodeWith(SerializationHandler.Serializer.JOS);
+
+        CellMessage copy = message.copyTo(new CellPath("baz", "bar"));
+
+        assertTrue(copy.isStreamMode());
+        assertEquals("[>baz@bar]", copy.getDestinationPath().toString());
+        assertEquals("[>foo@bar]", message.getDestinationPath().toString());
+        assertNotEquals(message.getUOID(), copy.getUOID());
+        assertEquals("payload", copy.decode().getMessageObject());
+    }
+
     @Test
     public void shouldReturnFalseIfObjectIsNull() {
         CellMessage message = new CellMessage();
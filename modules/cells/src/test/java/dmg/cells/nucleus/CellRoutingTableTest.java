@@ -8,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -281,4 +282,70 @@ public class CellRoutingTableTest {
 
         assertEquals(2, alternativeRoutes.size());
     }
+
+    @Test
+    public void testLocalOnlyQueueRoute() {
+
+        CellAddressCore remote = new CellAddressCore("*", "core");
+        CellAddressCore local = new CellAddressCore("cell-B", "local");
+        routingTable.add(new CellRoute("cell-A", remote, Optional.empty(), CellRoute.QUEUE));
+
+        assertNull(routingTable.find(new CellAddressCore("cell-A"), Optional.empty(), false));
+
+        routingTable.add(new CellRoute("cell-A", local, Optional.empty(), CellRoute.QUEUE));
+        assertEquals(local,
+              routingTable.find(new CellAddressCore("cell-A"), Optional.empty(), false)
+                    .getTarget());
+    }
+
+    @Test
+    public void testTopicRoutesAreNotModifiedByLaterChanges() {
+
+        CellAddressCore gateway1 = new CellAddressCore("gw-1", "core-1");
+        CellAddressCore gateway2 = new CellAddressCore("gw-2", "core-2");
+        CellRoute route1 = new CellRoute("topic", gateway1, Optional.empty(), CellRoute.TOPIC);
+        CellRoute route2 = new CellRoute("topic", gateway2, Optional.empty(), CellRoute.TOPIC);
+
+        routingTable.add(route1);
+        Set<CellRoute> routes = routingTable.findTopicRoutes(new CellAddressCore("topic"));
+        routingTable.add(route2);
+
+        assertEquals(1, routes.size());
+        assertEquals(2, routingTable.findTopicRoutes(new CellAddressCore("topic")).size());
+
+        routingTable.delete(gateway1);
+        routingTable.delete(gateway2);
+        assertTrue(routingTable.findTopicRoutes(new CellAddressCore("topic")).isEmpty());
+    }
+
+    @Test
+    public void testExactRouteTakesPrecedenceOverDomainRoute() {
+
+        CellAddressCore gateway1 = new CellAddressCore("gw-1", "core-1");
+        CellAddressCore gateway2 = new CellAddressCore("gw-2", "core-2");
+        routingTable.add(new CellRoute("core-3", gateway1, Optional.empty(), CellRoute.DOMAIN));
+        routingTable.add(new CellRoute("cell-A@core-3", gateway2, Optional.empty(),
+              CellRoute.EXACT));
+
+        assertEquals(gateway2,
+              routingTable.find(new CellAddressCore("cell-A", "core-3"), Optional.empty(), true)
+                    .getTarget());
+        assertEquals(gateway1,
+              routingTable.find(new CellAddressCore("cell-B", "core-3"), Optional.empty(), true)
+                    .getTarget());
+    }
+
+    @Test
+    public void testLookupSeesRoutesChangedAfterPreviousLookup() {
+
+        CellAddressCore gateway = new CellAddressCore("gw", "core");
+        CellAddressCore cell = new CellAddressCore("cell-A");
+        CellRoute route = new CellRoute("cell-A", gateway, Optional.empty(), CellRoute.QUEUE);
+
+        assertNull(routingTable.find(cell, Optional.empty(), true));
+        routingTable.add(route);
+        assertEquals(route, routingTable.find(cell, Optional.empty(), true));
+        routingTable.delete(route);
+        assertNull(routingTable.find(cell, Optional.empty(), true));
+    }
 }
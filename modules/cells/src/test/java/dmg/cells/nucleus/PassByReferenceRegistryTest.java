@@ -0,0 +1,59 @@
+package dmg.cells.nucleus;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import org.junit.Test;
+
+public class PassByReferenceRegistryTest {
+
+    @Test
+    public void shouldPassAnnotatedPayloadByReference() {
+        assertTrue(PassByReferenceRegistry.isPassByReference(new ImmutablePayload()));
+    }
+
+    @Test
+    public void shouldNotPassSubclassOfAnnotatedPayloadByReference() {
+        assertFalse(PassByReferenceRegistry.isPassByReference(new MutablePayload()));
+    }
+
+    @Test
+    public void shouldPassStringByReference() {
+        assertTrue(PassByReferenceRegistry.isPassByReference("payload"));
+    }
+
+    @Test
+    public void shouldPassNullByReference() {
+        assertTrue(PassByReferenceRegistry.isPassByReference(null));
+    }
+
+    @Test
+    public void shouldNotPassMutablePayloadByReference() {
+        assertFalse(PassByReferenceRegistry.isPassByReference(new ArrayList<>()));
+    }
+
+    @Test
+    public void shouldPassRegisteredPayloadByReference() {
+        PassByReferenceRegistry.register(RegisteredPayload.class);
+        assertTrue(PassByReferenceRegistry.isPassByReference(new RegisteredPayload()));
+    }
+
+    @PassByReference
+    private static class ImmutablePayload implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class MutablePayload extends ImmutablePayload {
+
+        private static final long serialVersionUID = 1L;
+        private int value;
+    }
+
+    private static class RegisteredPayload implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
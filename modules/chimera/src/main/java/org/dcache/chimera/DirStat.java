@@ -0,0 +1,50 @@
+package org.dcache.chimera;
+
+/**
+ * Recursive statistics of a directory: the number and total size of all regular files in the
+ * directory and its subdirectories, and the time the last of these changed. A file with multiple
+ * hard links is counted once per link.
+ */
+
+/* Immutable */
+public class DirStat {
+
+    public static final DirStat EMPTY = new DirStat(0, 0, 0);
+
+    private final long _size;
+    private final long _files;
+    private final long _mtime;
+
+    public DirStat(long size, long files, long mtime) {
+        _size = size;
+        _files = files;
+        _mtime = mtime;
+    }
+
+    /**
+     * @return total number of bytes of all files below the directory.
+     */
+    public long getSize() {
+        return _size;
+    }
+
+    /**
+     * @return total number of files below the directory.
+     */
+    public long getFiles() {
+        return _files;
+    }
+
+    /**
+     * @return the time in milliseconds since the epoch of the last change below the directory, or
+     * zero if unknown.
+     */
+    public long getMTime() {
+        return _mtime;
+    }
+
+    @Override
+    public String toString() {
+        return "DirStat[size=" + _size + ",files=" + _files + ",mtime=" + _mtime + "]";
+    }
+}
@@ -426,6 +426,26 @@ public interface FileSystemProvider extends Closeable {
      */
     FsStat getFsStat() throws ChimeraFsException;
 
+    /**
+     * Get recursive statistics of a directory. The statistics lag behind changes to the
+     * namespace until these are folded by the periodic maintenance task.
+     *
+     * @param dir directory
+     * @return {@link DirStat} of the directory or empty if recursive statistics are not
+     * maintained
+     */
+    Optional<DirStat> getDirStat(FsInode dir) throws ChimeraFsException;
+
+    /**
+     * Calculate recursive statistics of a directory by walking the tree below it.
+     *
+     * @param dir directory
+     * @param fix whether to correct the stored statistics of the directory, its subdirectories
+     *            and its ancestors
+     * @return the calculated {@link DirStat}
+     */
+    DirStat checkDirStat(FsInode dir, boolean fix) throws ChimeraFsException;
+
     /**
      * Get list of Access Control Entries for specified inode.
      *
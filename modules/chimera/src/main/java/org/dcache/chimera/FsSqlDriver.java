@@ -52,6 +52,7 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import javax.sql.DataSource;
 import org.dcache.acl.ACE;
@@ -119,6 +120,11 @@ public class FsSqlDriver {
 
     private final long _root;
 
+    /**
+     * Whether changes to regular files are recorded for recursive directory statistics.
+     */
+    private volatile boolean _dirStatsEnabled;
+
 
     /**
      * this is a utility class which is issues SQL queries on database
@@ -213,7 +219,11 @@ public class FsSqlDriver {
      */
     FsInode createFileWithId(FsInode parent, String id, String name, int owner, int group, int mode,
           int type) {
-        return createInodeInParent(parent, name, id, owner, group, mode, type, 1, 0);
+        FsInode inode = createInodeInParent(parent, name, id, owner, group, mode, type, 1, 0);
+        if (_dirStatsEnabled && (type & UnixPermission.S_TYPE) == UnixPermission.S_IFREG) {
+            addDirStatDelta(parent.ino(), 0, 1, System.currentTimeMillis());
+        }
+        return inode;
     }
 
     Long getInumber(String id) {
@@ -314,10 +324,14 @@ public class FsSqlDriver {
         decNlink(parent);
         removeAllTags(inode);
 
+        // before the directory's t_dirstat row is deleted, in the same order as a fold
+        if (_dirStatsEnabled) {
+            removeDirStat(parent.ino(), inode);
+        }
+
         if (!removeInodeIfUnlinked(inode, true)) {
             throw new DirNotEmptyChimeraFsException("directory is not empty");
         }
-
         return true;
     }
 
@@ -327,6 +341,9 @@ public class FsSqlDriver {
         if (!removeEntryInParent(parent, name, inode)) {
             return false;
         }
+        if (_dirStatsEnabled) {
+            addDirStatLink(parent, inode, -1);
+        }
         // hard link counts
         decNlink(inode);
         // ignore the result as the file might have a hardlink
@@ -357,7 +374,11 @@ public class FsSqlDriver {
         }
 
         for (Long parent : parents) {
-            decNlink(new FsInode(inode.getFs(), parent), isDir ? 1 : 0);
+            FsInode dir = new FsInode(inode.getFs(), parent);
+            decNlink(dir, isDir ? 1 : 0);
+            if (_dirStatsEnabled && !isDir) {
+                addDirStatLink(dir, inode, -1);
+            }
         }
 
         int n = _jdbc.update("DELETE FROM t_dirs WHERE ichild=?", inode.ino());
@@ -366,6 +387,9 @@ public class FsSqlDriver {
                   "DELETE FROM t_dirs WHERE ichild=?", parents.size(), n);
         }
 
+        if (_dirStatsEnabled && isDir && !parents.isEmpty()) {
+            removeDirStat(parents.get(0), inode);
+        }
         boolean removed = removeInodeIfUnlinked(inode, isDir);
         if (!removed && isDir) {
             throw new DirNotEmptyChimeraFsException("directory is not empty");
@@ -475,6 +499,10 @@ public class FsSqlDriver {
      * @return true if moved, false if source did not exist
      */
     boolean rename(FsInode inode, FsInode srcDir, String source, FsInode destDir, String dest) {
+        boolean moveDir = _dirStatsEnabled && !srcDir.equals(destDir) && inode.isDirectory();
+        if (moveDir) {
+            lockDirStats();
+        }
         String moveLink = "UPDATE t_dirs SET iparent=?, iname=? WHERE iparent=? AND iname=? AND ichild=?";
         int n = _jdbc.update(moveLink,
               ps -> {
@@ -499,6 +527,14 @@ public class FsSqlDriver {
         if (!srcDir.equals(destDir)) {
             incNlink(destDir, nlinkDelta);
             decNlink(srcDir, nlinkDelta);
+            if (_dirStatsEnabled) {
+                if (moveDir) {
+                    moveDirStat(inode, srcDir, destDir);
+                } else {
+                    addDirStatLink(srcDir, inode, -1);
+                    addDirStatLink(destDir, inode, 1);
+                }
+            }
         } else {
             incNlink(srcDir, 0);
         }
@@ -823,7 +859,14 @@ public class FsSqlDriver {
     }
 
     boolean setInodeAttributes(FsInode inode, int level, Stat stat) {
-        return _jdbc.update(con -> generateAttributeUpdateStatement(con, inode, stat, level)) > 0;
+        Long size = _dirStatsEnabled && level == 0 && stat.isDefined(StatAttributes.SIZE)
+              ? lockFileSize(inode) : null;
+        boolean applied =
+              _jdbc.update(con -> generateAttributeUpdateStatement(con, inode, stat, level)) > 0;
+        if (applied && size != null) {
+            addDirStatResize(inode, stat.getSize() - size);
+        }
+        return applied;
     }
 
     /**
@@ -882,11 +925,15 @@ public class FsSqlDriver {
             }
 
             // correct file size
+            Long size = _dirStatsEnabled ? lockFileSize(inode) : null;
             _jdbc.update("UPDATE t_inodes SET isize=? WHERE inumber=?",
                   ps -> {
                       ps.setLong(1, len);
                       ps.setLong(2, inode.ino());
                   });
+            if (size != null) {
+                addDirStatResize(inode, len - size);
+            }
         } else {
             Integer n = _jdbc.queryForObject(
                   "SELECT count(*) FROM t_level_" + level + " WHERE inumber=?", Integer.class,
@@ -2235,6 +2282,351 @@ public class FsSqlDriver {
     }
 
 
+    /**
+     * A change to the recursive statistics of a directory.
+     */
+    static class DirStatDelta {
+
+        final long inumber;
+        final long size;
+        final long files;
+        final long mtime;
+
+        DirStatDelta(long inumber, long size, long files, long mtime) {
+            this.inumber = inumber;
+            this.size = size;
+            this.files = files;
+            this.mtime = mtime;
+        }
+
+        DirStatDelta plus(DirStatDelta other) {
+            return new DirStatDelta(inumber, size + other.size, files + other.files,
+                  Math.max(mtime, other.mtime));
+        }
+    }
+
+    void setDirStatsEnabled(boolean enabled) {
+        _dirStatsEnabled = enabled;
+    }
+
+    boolean isDirStatsEnabled() {
+        return _dirStatsEnabled;
+    }
+
+    /**
+     * Serializes folding and fixing the recursive statistics with moving directories between
+     * parents, until the end of the transaction. Folding resolves the ancestors of directories
+     * without locking them, thus they must not change until the folded changes are applied.
+     * <p>
+     * The row of the root directory in t_dirstat serves as the lock, as it always exists and is
+     * updated by every fold anyway.
+     */
+    private void lockDirStats() {
+        _jdbc.queryForList("SELECT inumber FROM t_dirstat WHERE inumber=? FOR UPDATE",
+              Long.class, _root);
+    }
+
+    /**
+     * Records a change to the recursive statistics of a directory. The change is applied to the
+     * directory and all its ancestors when it is folded.
+     */
+    void addDirStatDelta(long dir, long size, long files, long mtime) {
+        _jdbc.update("INSERT INTO t_dirstat_delta (inumber, isize, ifiles, imtime) VALUES (?,?,?,?)",
+              dir, size, files, new Timestamp(mtime));
+    }
+
+    /**
+     * Records that a link to {@code inode} was added to (sign 1) or removed from (sign -1)
+     * {@code dir}. Only regular files are counted.
+     */
+    void addDirStatLink(FsInode dir, FsInode inode, int sign) {
+        List<Long> sizes = _jdbc.queryForList(
+              "SELECT isize FROM t_inodes WHERE inumber=? AND itype=?",
+              Long.class, inode.ino(), UnixPermission.S_IFREG);
+        if (!sizes.isEmpty()) {
+            addDirStatDelta(dir.ino(), sign * sizes.get(0), sign, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Returns the size of a regular file, locking the inode until the end of the transaction, or
+     * null if the inode is not a regular file.
+     */
+    private Long lockFileSize(FsInode inode) {
+        List<Long> sizes = _jdbc.queryForList(
+              "SELECT isize FROM t_inodes WHERE inumber=? AND itype=? FOR UPDATE",
+              Long.class, inode.ino(), UnixPermission.S_IFREG);
+        return sizes.isEmpty() ? null : sizes.get(0);
+    }
+
+    /**
+     * Records a change of the size of a regular file in all directories linking to it.
+     */
+    private void addDirStatResize(FsInode inode, long delta) {
+        if (delta != 0) {
+            long now = System.currentTimeMillis();
+            for (Long parent : _jdbc.queryForList("SELECT iparent FROM t_dirs WHERE ichild=?",
+                  Long.class, inode.ino())) {
+                addDirStatDelta(parent, delta, 0, now);
+            }
+        }
+    }
+
+    /**
+     * Accounts for the removal of an empty directory. Its statistics, as seen by its ancestors,
+     * and the changes not yet folded into them cancel out, thus moving the latter to the parent
+     * removes the directory's contribution from all ancestors.
+     */
+    private void removeDirStat(long parent, FsInode dir) {
+        _jdbc.update("UPDATE t_dirstat_delta SET inumber=? WHERE inumber=?", parent, dir.ino());
+    }
+
+    /**
+     * Accounts for moving a directory. Its folded statistics are moved between the ancestors;
+     * changes not yet folded are applied to the new ancestors when they are folded. Must be
+     * called with {@link #lockDirStats} held, so that no fold applies changes to the old
+     * ancestors after the statistics have been moved.
+     */
+    private void moveDirStat(FsInode dir, FsInode srcDir, FsInode destDir) {
+        _jdbc.query("SELECT isize, ifiles, imtime FROM t_dirstat WHERE inumber=? FOR UPDATE",
+              rs -> {
+                  long size = rs.getLong("isize");
+                  long files = rs.getLong("ifiles");
+                  long now = System.currentTimeMillis();
+                  addDirStatDelta(srcDir.ino(), -size, -files, now);
+                  addDirStatDelta(destDir.ino(), size, files, now);
+              },
+              dir.ino());
+    }
+
+    /**
+     * Returns the recursive statistics of a directory as of the last fold.
+     */
+    DirStat getDirStat(FsInode dir) {
+        return _jdbc.query("SELECT isize, ifiles, imtime FROM t_dirstat WHERE inumber=?",
+              rs -> rs.next() ? toDirStat(rs) : DirStat.EMPTY,
+              dir.ino());
+    }
+
+    private static DirStat toDirStat(ResultSet rs) throws SQLException {
+        Timestamp mtime = rs.getTimestamp("imtime");
+        return new DirStat(rs.getLong("isize"), rs.getLong("ifiles"),
+              mtime == null ? 0 : mtime.getTime());
+    }
+
+    /**
+     * Returns the changes not yet folded: the total of their absolute sizes and number of files
+     * and the time of the oldest.
+     */
+    DirStat getPendingDirStat() {
+        return _jdbc.query(
+              "SELECT SUM(ABS(isize)) AS isize, SUM(ABS(ifiles)) AS ifiles, MIN(imtime) AS imtime "
+                    + "FROM t_dirstat_delta",
+              rs -> {
+                  rs.next();
+                  return toDirStat(rs);
+              });
+    }
+
+    long countDirStatDeltas() {
+        Long count = _jdbc.queryForObject("SELECT COUNT(*) FROM t_dirstat_delta", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Removes and returns up to {@code limit} recorded changes, oldest first.
+     */
+    List<DirStatDelta> pollDirStatDeltas(int limit) {
+        List<Long> ids = new ArrayList<>();
+        List<DirStatDelta> deltas = _jdbc.query(
+              con -> {
+                  PreparedStatement ps = con.prepareStatement(
+                        "SELECT id, inumber, isize, ifiles, imtime FROM t_dirstat_delta "
+                              + "ORDER BY id FOR UPDATE");
+                  ps.setMaxRows(limit);
+                  return ps;
+              },
+              (rs, n) -> {
+                  ids.add(rs.getLong("id"));
+                  return toDirStatDelta(rs);
+              });
+        _jdbc.batchUpdate("DELETE FROM t_dirstat_delta WHERE id=?", ids, ids.size(),
+              (ps, id) -> ps.setLong(1, id));
+        return deltas;
+    }
+
+    static DirStatDelta toDirStatDelta(ResultSet rs) throws SQLException {
+        return new DirStatDelta(rs.getLong("inumber"), rs.getLong("isize"), rs.getLong("ifiles"),
+              rs.getTimestamp("imtime").getTime());
+    }
+
+    /**
+     * Folds up to {@code limit} recorded changes into the recursive statistics of the directories
+     * they were recorded for and all their ancestors. Changes recorded for the same directory are
+     * combined, as are their contributions to common ancestors, so each affected directory is
+     * updated once.
+     *
+     * @return the number of folded changes
+     */
+    int foldDirStats(int limit) {
+        lockDirStats();
+        List<DirStatDelta> deltas = pollDirStatDeltas(limit);
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, DirStatDelta> byDir = new HashMap<>();
+        for (DirStatDelta delta : deltas) {
+            byDir.merge(delta.inumber, delta, DirStatDelta::plus);
+        }
+
+        Map<Long, Long> parents = new HashMap<>();
+        // sorted to update rows in a stable order
+        Map<Long, DirStatDelta> totals = new TreeMap<>();
+        for (DirStatDelta delta : byDir.values()) {
+            long dir = delta.inumber;
+            while (true) {
+                Long parent = dir == _root ? null : parents.computeIfAbsent(dir, this::getParentInumber);
+                if (parent == null && dir != _root) {
+                    // directory removed; its ancestors have already been accounted for
+                    break;
+                }
+                totals.merge(dir, delta, DirStatDelta::plus);
+                if (parent == null) {
+                    break;
+                }
+                dir = parent;
+            }
+        }
+
+        totals.forEach(this::applyDirStatDelta);
+        return deltas.size();
+    }
+
+    private Long getParentInumber(long dir) {
+        List<Long> parents = _jdbc.queryForList("SELECT iparent FROM t_dirs WHERE ichild=?",
+              Long.class, dir);
+        return parents.isEmpty() ? null : parents.get(0);
+    }
+
+    private void applyDirStatDelta(long dir, DirStatDelta delta) {
+        Timestamp mtime = new Timestamp(delta.mtime);
+        int n = _jdbc.update("UPDATE t_dirstat SET isize=isize+?, ifiles=ifiles+?, "
+                    + "imtime=CASE WHEN imtime IS NULL OR imtime < ? THEN ? ELSE imtime END "
+                    + "WHERE inumber=?",
+              delta.size, delta.files, mtime, mtime, dir);
+        if (n == 0) {
+            _jdbc.update("INSERT INTO t_dirstat (inumber, isize, ifiles, imtime) "
+                        + "SELECT inumber, ?, ?, ? FROM t_inodes WHERE inumber=?",
+                  delta.size, delta.files, mtime, dir);
+        }
+    }
+
+    /**
+     * Calculates the recursive statistics of a directory by walking the tree below it.
+     */
+    DirStat calculateDirStat(long dir) {
+        long[] sums = _jdbc.query(
+              "SELECT COUNT(*) AS n, SUM(i.isize) AS isize, MAX(i.imtime) AS imtime "
+                    + "FROM t_dirs d JOIN t_inodes i ON d.ichild = i.inumber "
+                    + "WHERE d.iparent=? AND i.itype=?",
+              rs -> {
+                  rs.next();
+                  Timestamp mtime = rs.getTimestamp("imtime");
+                  return new long[]{rs.getLong("isize"), rs.getLong("n"),
+                        mtime == null ? 0 : mtime.getTime()};
+              },
+              dir, UnixPermission.S_IFREG);
+
+        List<Long> subdirs = _jdbc.queryForList(
+              "SELECT d.ichild FROM t_dirs d JOIN t_inodes i ON d.ichild = i.inumber "
+                    + "WHERE d.iparent=? AND i.itype=?",
+              Long.class, dir, UnixPermission.S_IFDIR);
+        for (long subdir : subdirs) {
+            DirStat stat = calculateDirStat(subdir);
+            sums[0] += stat.getSize();
+            sums[1] += stat.getFiles();
+            sums[2] = Math.max(sums[2], stat.getMTime());
+        }
+        return new DirStat(sums[0], sums[1], sums[2]);
+    }
+
+    /**
+     * Replaces the stored recursive statistics of a directory and all its subdirectories by ones
+     * calculated by walking the tree below it, and corrects those of its ancestors accordingly.
+     * <p>
+     * Changes recorded but not yet folded are kept and subtracted from the stored statistics, as
+     * folding adds them again. The entries of each directory and the changes recorded for it are
+     * read by the same statement, thus a concurrent change is either seen in both or in neither.
+     * Subdirectories are locked before they are walked, so they cannot be removed or moved until
+     * the end of the transaction.
+     *
+     * @return the calculated statistics of the directory
+     */
+    DirStat fixDirStat(FsInode dir) {
+        lockDirStats();
+        DirStat old = getDirStat(dir);
+        long[] pending = new long[2];
+        DirStat stat = fixDirStat(dir.ino(), pending);
+        if (dir.ino() != _root) {
+            for (Long parent : _jdbc.queryForList("SELECT iparent FROM t_dirs WHERE ichild=?",
+                  Long.class, dir.ino())) {
+                addDirStatDelta(parent, stat.getSize() - pending[0] - old.getSize(),
+                      stat.getFiles() - pending[1] - old.getFiles(), stat.getMTime());
+            }
+        }
+        return stat;
+    }
+
+    /**
+     * Walks the tree below {@code dir}, storing the statistics of each directory less the changes
+     * not yet folded for it and its subdirectories. These changes are added to {@code pending}.
+     */
+    private DirStat fixDirStat(long dir, long[] pending) {
+        List<Long> subdirs = _jdbc.queryForList(
+              "SELECT ichild FROM t_dirs d WHERE iparent=? AND EXISTS "
+                    + "(SELECT 1 FROM t_inodes i WHERE i.inumber = d.ichild AND i.itype=?) "
+                    + "FOR UPDATE",
+              Long.class, dir, UnixPermission.S_IFDIR);
+
+        long[] sums = _jdbc.query(
+              "SELECT COUNT(*) AS n, SUM(i.isize) AS isize, MAX(i.imtime) AS imtime, "
+                    + "(SELECT SUM(isize) FROM t_dirstat_delta WHERE inumber=?) AS pending_size, "
+                    + "(SELECT SUM(ifiles) FROM t_dirstat_delta WHERE inumber=?) AS pending_files "
+                    + "FROM t_dirs d JOIN t_inodes i ON d.ichild = i.inumber "
+                    + "WHERE d.iparent=? AND i.itype=?",
+              rs -> {
+                  rs.next();
+                  Timestamp mtime = rs.getTimestamp("imtime");
+                  return new long[]{rs.getLong("isize"), rs.getLong("n"),
+                        mtime == null ? 0 : mtime.getTime(),
+                        rs.getLong("pending_size"), rs.getLong("pending_files")};
+              },
+              dir, dir, dir, UnixPermission.S_IFREG);
+
+        long[] subtreePending = {sums[3], sums[4]};
+        for (long subdir : subdirs) {
+            DirStat stat = fixDirStat(subdir, subtreePending);
+            sums[0] += stat.getSize();
+            sums[1] += stat.getFiles();
+            sums[2] = Math.max(sums[2], stat.getMTime());
+        }
+
+        long size = sums[0] - subtreePending[0];
+        long files = sums[1] - subtreePending[1];
+        Timestamp mtime = sums[2] == 0 ? null : new Timestamp(sums[2]);
+        int n = _jdbc.update("UPDATE t_dirstat SET isize=?, ifiles=?, imtime=? WHERE inumber=?",
+              size, files, mtime, dir);
+        if (n == 0) {
+            _jdbc.update("INSERT INTO t_dirstat (inumber, isize, ifiles, imtime) VALUES (?,?,?,?)",
+                  dir, size, files, mtime);
+        }
+
+        pending[0] += subtreePending[0];
+        pending[1] += subtreePending[1];
+        return new DirStat(sums[0], sums[1], sums[2]);
+    }
+
     /**
      * File system backend specific periodic maintenance task. It's recommended to run the
      * maintenance task runs as a single transaction, or as a series of transactions, if sub-tasks
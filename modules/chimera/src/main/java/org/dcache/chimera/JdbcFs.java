@@ -39,11 +39,13 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -51,6 +53,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import javax.sql.DataSource;
 import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
 import org.dcache.acl.ACE;
@@ -197,6 +200,23 @@ public class JdbcFs implements FileSystemProvider, LeaderLatchListener {
 
     private ScheduledFuture<?> maintenanceTask;
 
+    /**
+     * Extended attributes exposing the recursive statistics of a directory.
+     */
+    public static final String XATTR_DIR_RBYTES = "dcache.dir.rbytes";
+    public static final String XATTR_DIR_RFILES = "dcache.dir.rfiles";
+    public static final String XATTR_DIR_RMTIME = "dcache.dir.rmtime";
+
+    /**
+     * Maximum number of recorded changes to recursive directory statistics folded in a single
+     * transaction.
+     */
+    private static final int DIR_STAT_FOLD_BATCH = 10000;
+
+    private final LongAdder _dirStatFolded = new LongAdder();
+    private volatile long _dirStatLastFold;
+    private volatile long _dirStatLastFoldDuration;
+
 
     public JdbcFs(DataSource dataSource, PlatformTransactionManager txManager, String consistency)
           throws SQLException, ChimeraFsException {
@@ -226,6 +246,14 @@ public class JdbcFs implements FileSystemProvider, LeaderLatchListener {
         }
     }
 
+    /**
+     * Whether changes to regular files are recorded to maintain recursive directory statistics.
+     * Must be enabled in all instances modifying the namespace.
+     */
+    public void setDirStatsEnabled(boolean enabled) {
+        _sqlDriver.setDirStatsEnabled(enabled);
+    }
+
     public void setDefaultRetentionPolicy(RetentionPolicy rp) {
         _defaultRetentionPolicy = rp;
     }
@@ -369,6 +397,9 @@ public class JdbcFs implements FileSystemProvider, LeaderLatchListener {
                 _sqlDriver.createEntryInParent(parent, name, inode);
                 _sqlDriver.incNlink(inode);
                 _sqlDriver.incNlink(parent, 0);
+                if (_sqlDriver.isDirStatsEnabled()) {
+                    _sqlDriver.addDirStatLink(parent, inode, 1);
+                }
             } catch (DuplicateKeyException e) {
                 throw new FileExistsChimeraFsException(e);
             }
@@ -1449,6 +1480,68 @@ public class JdbcFs implements FileSystemProvider, LeaderLatchListener {
     //
     //  Some information
     //
+    @Override
+    public Optional<DirStat> getDirStat(FsInode dir) throws ChimeraFsException {
+        if (!_sqlDriver.isDirStatsEnabled()) {
+            return Optional.empty();
+        }
+        if (!dir.isDirectory()) {
+            throw new NotDirChimeraException(dir);
+        }
+        return Optional.of(inTransaction(status -> _sqlDriver.getDirStat(dir)));
+    }
+
+    @Override
+    public DirStat checkDirStat(FsInode dir, boolean fix) throws ChimeraFsException {
+        if (!dir.isDirectory()) {
+            throw new NotDirChimeraException(dir);
+        }
+        if (!fix) {
+            return inTransaction(status -> _sqlDriver.calculateDirStat(dir.ino()));
+        }
+        return inTransaction(status -> _sqlDriver.fixDirStat(dir));
+    }
+
+    /**
+     * Folds all recorded changes into the recursive directory statistics.
+     */
+    void foldDirStats() {
+        if (!_sqlDriver.isDirStatsEnabled()) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int n;
+            do {
+                n = inTransaction(status -> _sqlDriver.foldDirStats(DIR_STAT_FOLD_BATCH));
+                _dirStatFolded.add(n);
+            } while (n == DIR_STAT_FOLD_BATCH);
+            _dirStatLastFold = System.currentTimeMillis();
+            _dirStatLastFoldDuration = _dirStatLastFold - start;
+        } catch (ChimeraFsException e) {
+            LOGGER.error("Failed to fold directory statistics: {}", e.getMessage());
+        }
+    }
+
+    private byte[] getDirStatXattr(FsInode dir, String attr) throws ChimeraFsException {
+        DirStat stat = inTransaction(status -> _sqlDriver.getDirStat(dir));
+        String value;
+        switch (attr) {
+            case XATTR_DIR_RBYTES:
+                value = Long.toString(stat.getSize());
+                break;
+            case XATTR_DIR_RFILES:
+                value = Long.toString(stat.getFiles());
+                break;
+            case XATTR_DIR_RMTIME:
+                value = String.format("%d.%03d", stat.getMTime() / 1000, stat.getMTime() % 1000);
+                break;
+            default:
+                throw new NoXdataChimeraException(attr);
+        }
+        return value.getBytes(UTF_8);
+    }
+
     @Override
     public String getInfo() {
 
@@ -1480,6 +1573,33 @@ public class JdbcFs implements FileSystemProvider, LeaderLatchListener {
         }
         sb.append("FsId      : ").append(_fsId).append('\n');
         sb.append("Wcc       : ").append(_attributeConsistency).append("\n");
+        if (_sqlDriver.isDirStatsEnabled()) {
+            sb.append("DirStats  : enabled\n");
+            try {
+                long pending = inTransaction(status -> _sqlDriver.countDirStatDeltas());
+                DirStat unfolded = inTransaction(status -> _sqlDriver.getPendingDirStat());
+                sb.append("  pending : ").append(pending).append(" changes, ")
+                      .append(unfolded.getSize()).append(" bytes, ")
+                      .append(unfolded.getFiles()).append(" files");
+                if (pending > 0) {
+                    sb.append(", oldest ")
+                          .append(TimeUnit.MILLISECONDS.toSeconds(
+                                System.currentTimeMillis() - unfolded.getMTime()))
+                          .append(" s ago");
+                }
+                sb.append('\n');
+            } catch (ChimeraFsException e) {
+                sb.append("  pending : ").append(e.getMessage()).append('\n');
+            }
+            sb.append("  folded  : ").append(_dirStatFolded.sum()).append(" changes");
+            if (_dirStatLastFold > 0) {
+                sb.append(", last ").append(Instant.ofEpochMilli(_dirStatLastFold))
+                      .append(" in ").append(_dirStatLastFoldDuration).append(" ms");
+            }
+            sb.append('\n');
+        } else {
+            sb.append("DirStats  : disabled\n");
+        }
         return sb.toString();
     }
 
@@ -1517,6 +1637,10 @@ public class JdbcFs implements FileSystemProvider, LeaderLatchListener {
 
     @Override
     public byte[] getXattr(FsInode inode, String attr) throws ChimeraFsException {
+        if (attr.startsWith("dcache.dir.") && _sqlDriver.isDirStatsEnabled()
+              && inode.isDirectory()) {
+            return getDirStatXattr(inode, attr);
+        }
         return inTransaction(status -> _sqlDriver.getXattr(inode, attr));
     }
 
@@ -1684,7 +1808,10 @@ public class JdbcFs implements FileSystemProvider, LeaderLatchListener {
     private synchronized void enableMaintenanceTask() {
         if (maintenanceTask == null) {
             maintenanceTask = maintenanceTaskExecutor.scheduleWithFixedDelay(
-                  () -> _sqlDriver.performMaintenanceTask(), 10, 20, TimeUnit.SECONDS
+                  () -> {
+                      _sqlDriver.performMaintenanceTask();
+                      foldDirStats();
+                  }, 10, 20, TimeUnit.SECONDS
             );
         }
     }
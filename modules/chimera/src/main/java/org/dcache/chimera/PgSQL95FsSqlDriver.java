@@ -16,9 +16,8 @@
  */
 package org.dcache.chimera;
 
-import com.google.common.base.Throwables;
 import java.io.File;
-import java.net.SocketException;
+import java.math.BigDecimal;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -478,23 +477,25 @@ public class PgSQL95FsSqlDriver extends FsSqlDriver {
     }
 
     /**
-     * Update file system cache table.
+     * The file system statistics are maintained by a trigger on t_inodes, thus there is nothing to
+     * update.  The trigger is the third one run on every write to t_inodes, after
+     * tgr_locationinfo_trash on deletes and tgr_quota_delta.
      */
-
     @Override
     void updateFsStat() {
-        try {
-            _jdbc.update("UPDATE t_fstat SET iusedFiles = t.usedFiles, " +
-                  "iusedSpace = t.usedSpace " +
-                  "FROM (SELECT count(*) AS usedFiles, " +
-                  "SUM(isize) AS usedSpace FROM t_inodes " +
-                  "WHERE itype=32768) as t");
-        } catch (DataAccessException e) {
-            Throwable cause = Throwables.getRootCause(e);
-            if (cause instanceof SocketException) {
-                LOGGER.warn("FS stat update interrupted {}", e.getMessage());
-            }
-        }
+    }
+
+    @Override
+    FsStat getFsStat() {
+        return _jdbc.queryForObject(
+              "SELECT SUM(iusedfiles) AS usedFiles, SUM(iusedspace) AS usedSpace FROM t_fstat_shard",
+              (rs, rowNum) -> new FsStat(JdbcFs.AVAILABLE_SPACE, JdbcFs.TOTAL_FILES,
+                    clamp(rs.getBigDecimal("usedSpace")), clamp(rs.getBigDecimal("usedFiles"))));
+    }
+
+    private static long clamp(BigDecimal value) {
+        return value == null ? 0L
+              : value.max(BigDecimal.ZERO).min(BigDecimal.valueOf(Long.MAX_VALUE)).longValue();
     }
 
     // triggers weak attribute merge
@@ -510,6 +511,19 @@ public class PgSQL95FsSqlDriver extends FsSqlDriver {
     }
 
 
+    /*
+     * Removes and returns the changes in a single statement. Rows locked by a concurrent removal
+     * of a directory are left for the next run.
+     */
+    @Override
+    List<DirStatDelta> pollDirStatDeltas(int limit) {
+        return _jdbc.query("DELETE FROM t_dirstat_delta WHERE id IN "
+                    + "(SELECT id FROM t_dirstat_delta ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) "
+                    + "RETURNING inumber, isize, ifiles, imtime",
+              (rs, n) -> toDirStatDelta(rs),
+              limit);
+    }
+
     @Override
     void decNlink(FsInode inode, int delta) {
         if (delta > 0 || !enableLazyWcc) {
@@ -212,4 +212,16 @@ public class JdbcQuota implements QuotaHandler {
         LOGGER.info("Running updateGroupQuotas.");
         sqlDriver.updateGroupQuota();
     }
+
+    @Override
+    public synchronized void foldQuotaDeltas() {
+        int count = sqlDriver.foldQuotaDeltas();
+        LOGGER.debug("Folded {} quota changes.", count);
+    }
+
+    @Override
+    public synchronized void reconcileQuotas() {
+        LOGGER.info("Running reconcileQuotas.");
+        sqlDriver.reconcileQuotas();
+    }
 }
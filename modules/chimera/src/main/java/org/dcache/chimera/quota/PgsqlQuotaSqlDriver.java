@@ -137,4 +137,70 @@ public class PgsqlQuotaSqlDriver extends QuotaSqlDriver {
             }
         }
     }
+
+    private static final String SUM_DELTAS =
+          "SUM(CASE WHEN iretention_policy = 2 THEN isize ELSE 0 END) AS replica, " +
+                "SUM(CASE WHEN iretention_policy = 1 THEN isize ELSE 0 END) AS output, " +
+                "SUM(CASE WHEN iretention_policy = 0 THEN isize ELSE 0 END) AS custodial ";
+
+    /*
+     * Removing the recorded changes and applying them is a single statement, thus a change is
+     * either folded completely or left for the next run.
+     */
+    private static final String FOLD_QUOTA_DELTAS_SQL =
+          "WITH d AS (DELETE FROM t_quota_delta RETURNING iuid, igid, iretention_policy, isize), " +
+                "u AS (UPDATE t_user_quota SET " +
+                "ireplica_used = ireplica_used + t.replica, " +
+                "icustodial_used = icustodial_used + t.custodial, " +
+                "ioutput_used = ioutput_used + t.output " +
+                "FROM (SELECT iuid, " + SUM_DELTAS + "FROM d GROUP BY iuid) AS t " +
+                "WHERE t.iuid = t_user_quota.iuid), " +
+                "g AS (UPDATE t_group_quota SET " +
+                "ireplica_used = ireplica_used + t.replica, " +
+                "icustodial_used = icustodial_used + t.custodial, " +
+                "ioutput_used = ioutput_used + t.output " +
+                "FROM (SELECT igid, " + SUM_DELTAS + "FROM d GROUP BY igid) AS t " +
+                "WHERE t.igid = t_group_quota.igid) " +
+                "SELECT COUNT(*) FROM d";
+
+    /**
+     * Fold the changes recorded by the t_inodes trigger into the quota tables.
+     */
+    @Override
+    public int foldQuotaDeltas() {
+        try {
+            Integer count = jdbc.queryForObject(FOLD_QUOTA_DELTAS_SQL, Integer.class);
+            return count == null ? 0 : count;
+        } catch (DataAccessException e) {
+            LOGGER.warn("Failed to fold quota changes {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    /*
+     * All parts of the statement see the same snapshot. Recorded changes visible to that snapshot
+     * are already included in the scan of t_inodes and are discarded; changes committed later
+     * remain and are folded by the next run.
+     */
+    private static final String RECONCILE_QUOTAS_SQL =
+          "WITH d AS (DELETE FROM t_quota_delta), " +
+                "u AS (" + UPDATE_USER_QUOTAS_SQL + ") " +
+                UPDATE_GROUP_QUOTAS_SQL;
+
+    /**
+     * Recalculate user and group quotas with a full scan of the namespace.
+     */
+    @Override
+    public void reconcileQuotas() {
+        try {
+            jdbc.update(RECONCILE_QUOTAS_SQL);
+        } catch (DataAccessException e) {
+            Throwable cause = Throwables.getRootCause(e);
+            if (cause instanceof SocketException) {
+                LOGGER.warn("Quotas reconciliation interrupted {}", e.getMessage());
+            } else {
+                LOGGER.error("Failed to reconcile quotas {}", e.getMessage());
+            }
+        }
+    }
 }
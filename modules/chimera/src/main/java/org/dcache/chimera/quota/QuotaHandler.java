@@ -144,6 +144,17 @@ public interface QuotaHandler {
      */
     void updateGroupQuotas();
 
+    /**
+     * Fold space usage changes recorded since the last call into user and group quotas on the
+     * backend
+     */
+    void foldQuotaDeltas();
+
+    /**
+     * Recalculate user and group quotas on the backend from the entire namespace
+     */
+    void reconcileQuotas();
+
     void scheduleRefreshQuota();
 
 }
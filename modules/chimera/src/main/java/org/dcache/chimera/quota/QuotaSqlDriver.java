@@ -111,7 +111,7 @@ public class QuotaSqlDriver {
                 "SUM(CASE WHEN iretention_policy = 2 THEN isize ELSE 0 END) AS replica " +
                 "FROM t_inodes WHERE itype=32768 " +
                 "AND iuid IN (SELECT iuid FROM t_user_quota) " +
-                "GROUP BY iuid) AS t(iuid, custodial, output, replica) " +
+                "GROUP BY iuid) AS t " +
                 "ON t.iuid = t_user_quota.iuid " +
                 "WHEN MATCHED THEN UPDATE SET " +
                 "t_user_quota.icustodial_used = t.custodial, " +
@@ -141,7 +141,7 @@ public class QuotaSqlDriver {
                 "SUM(CASE WHEN iretention_policy = 2 THEN isize ELSE 0 END) AS replica " +
                 "FROM t_inodes WHERE itype=32768 " +
                 "AND igid IN (SELECT igid FROM t_group_quota) " +
-                "GROUP BY igid) AS t(igid, custodial, output, replica) " +
+                "GROUP BY igid) AS t " +
                 "ON t.igid = t_group_quota.igid " +
                 "WHEN MATCHED THEN UPDATE SET " +
                 "t_group_quota.icustodial_used = t.custodial, " +
@@ -162,6 +162,26 @@ public class QuotaSqlDriver {
         }
     }
 
+    /**
+     * Folds space usage changes recorded since the last call into the user and group quotas.
+     * Back-ends that do not record such changes rely on {@link #reconcileQuotas} alone and
+     * return zero.
+     *
+     * @return the number of recorded changes that were folded
+     */
+    public int foldQuotaDeltas() {
+        return 0;
+    }
+
+    /**
+     * Recalculate user and group quota usage from the namespace, discarding any recorded changes
+     * already reflected in the result.
+     */
+    public void reconcileQuotas() {
+        updateUserQuota();
+        updateGroupQuota();
+    }
+
     private static final String SELECT_USER_QUOTAS_SQL =
           "SELECT iuid, " +
                 "icustodial_used, icustodial_limit, " +
@@ -5,6 +5,7 @@ import com.zaxxer.hikari.HikariDataSource;
 import java.io.InputStream;
 import java.net.URL;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.Properties;
 import liquibase.Liquibase;
 import liquibase.database.Database;
@@ -16,6 +17,14 @@ import org.junit.Before;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
 
+/**
+ * Sets up a fresh Chimera database for every test.
+ * <p>
+ * By default an in-memory H2 database is used.  Some features are only available on PostgreSQL;
+ * the tests covering them are skipped unless the {@code chimera.db.url}, {@code chimera.db.user}
+ * and {@code chimera.db.password} system properties point to a PostgreSQL database.  That
+ * database must be reserved for the tests, as its public schema is dropped after each test.
+ */
 public abstract class ChimeraTestCaseHelper {
 
     private final static URL DB_TEST_PROPERTIES =
@@ -34,9 +43,10 @@ public abstract class ChimeraTestCaseHelper {
         }
 
         _dataSource = FsFactory.getDataSource(
-              dbProperties.getProperty("chimera.db.url"),
-              dbProperties.getProperty("chimera.db.user"),
-              dbProperties.getProperty("chimera.db.password"));
+              System.getProperty("chimera.db.url", dbProperties.getProperty("chimera.db.url")),
+              System.getProperty("chimera.db.user", dbProperties.getProperty("chimera.db.user")),
+              System.getProperty("chimera.db.password",
+                    dbProperties.getProperty("chimera.db.password")));
 
         try (Connection conn = _dataSource.getConnection()) {
             conn.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
@@ -56,10 +66,22 @@ public abstract class ChimeraTestCaseHelper {
 
     @After
     public void tearDown() throws Exception {
-        Connection conn = _dataSource.getConnection();
-        conn.createStatement().execute("SHUTDOWN;");
+        if (isPostgreSQL()) {
+            try (Connection conn = _dataSource.getConnection()) {
+                conn.createStatement().execute("DROP SCHEMA public CASCADE; CREATE SCHEMA public;");
+            }
+        } else {
+            Connection conn = _dataSource.getConnection();
+            conn.createStatement().execute("SHUTDOWN;");
+        }
         _dataSource.close();
         _fs.close();
     }
 
+    protected boolean isPostgreSQL() throws SQLException {
+        try (Connection conn = _dataSource.getConnection()) {
+            return conn.getMetaData().getDatabaseProductName().equals("PostgreSQL");
+        }
+    }
+
 }
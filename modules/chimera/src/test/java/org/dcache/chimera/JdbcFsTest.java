@@ -13,10 +13,13 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import diskCacheV111.util.RetentionPolicy;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -28,12 +31,18 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.dcache.acl.ACE;
 import org.dcache.acl.enums.AccessMask;
 import org.dcache.acl.enums.AceType;
 import org.dcache.acl.enums.RsType;
 import org.dcache.acl.enums.Who;
 import org.dcache.chimera.posix.Stat;
+import org.dcache.chimera.quota.JdbcQuota;
+import org.dcache.chimera.quota.Quota;
 import org.dcache.util.Checksum;
 import org.dcache.util.ChecksumType;
 import org.junit.Ignore;
@@ -1693,13 +1702,37 @@ public class JdbcFsTest extends ChimeraTestCaseHelper {
     }
 
     @Test
-    public void testFsStat() throws ChimeraFsException {
+    public void testFsStat() throws Exception {
+        // On PostgreSQL the statistics are maintained by a trigger, see testFsStatFollowsFiles
+        assumeFalse(isPostgreSQL());
 
         FsStat fsStat = _fs.getFsStat();
         assertThat(fsStat.getUsedSpace(), is(1048576L));
         assertThat(fsStat.getUsedFiles(), is(1048576L));
     }
 
+    @Test
+    public void testFsStatFollowsFiles() throws Exception {
+        FsInode dir = _fs.mkdir("/test");
+        FsInode file1 = _fs.createFile(dir, "file1");
+        FsInode file2 = _fs.createFile(dir, "file2");
+        FsInode file3 = _fs.createFile(dir, "file3");
+        assertFsStatMatchesInodes();
+
+        setSize(file1, 100);
+        setSize(file2, 200);
+        setSize(file3, 300);
+        assertFsStatMatchesInodes();
+
+        setSize(file1, 50);
+        setSize(file3, 0);
+        assertFsStatMatchesInodes();
+
+        _fs.remove(dir, "file2", file2);
+        assertFsStatMatchesInodes();
+        assertThat(((JdbcFs) _fs).getFsStat0().getUsedSpace(), is(50L));
+    }
+
     @Test
     public void testSetGetXattr() throws Exception {
 
@@ -2046,12 +2079,273 @@ public class JdbcFsTest extends ChimeraTestCaseHelper {
               _fs.stat(inode).getGeneration(), greaterThan(s0.getGeneration()));
     }
 
+    @Test
+    public void testDirStatDisabledByDefault() throws Exception {
+        FsInode dir = _fs.mkdir("/test");
+        assertFalse(_fs.getDirStat(dir).isPresent());
+    }
+
+    @Test
+    public void testDirStatPropagatesToAncestors() throws Exception {
+        ((JdbcFs) _fs).setDirStatsEnabled(true);
+        FsInode dir = _fs.mkdir("/test");
+        FsInode subdir = _fs.mkdir(dir, "subdir", 0, 0, 0755);
+        createFileOfSize(subdir, "file1", 100);
+        createFileOfSize(dir, "file2", 20);
+
+        ((JdbcFs) _fs).foldDirStats();
+
+        assertThat(_fs.getDirStat(subdir).get().getSize(), equalTo(100L));
+        assertThat(_fs.getDirStat(subdir).get().getFiles(), equalTo(1L));
+        assertThat(_fs.getDirStat(dir).get().getSize(), equalTo(120L));
+        assertThat(_fs.getDirStat(dir).get().getFiles(), equalTo(2L));
+        assertThat(_fs.getDirStat(_rootInode).get().getSize(), equalTo(120L));
+    }
+
+    @Test
+    public void testDirStatAfterRemoveAndRename() throws Exception {
+        ((JdbcFs) _fs).setDirStatsEnabled(true);
+        FsInode dir1 = _fs.mkdir("/dir1");
+        FsInode dir2 = _fs.mkdir("/dir2");
+        FsInode subdir = _fs.mkdir(dir1, "subdir", 0, 0, 0755);
+        FsInode file = createFileOfSize(subdir, "file1", 100);
+        createFileOfSize(subdir, "file2", 10);
+        ((JdbcFs) _fs).foldDirStats();
+
+        _fs.remove(subdir, "file1", file);
+        _fs.rename(subdir, dir1, "subdir", dir2, "subdir");
+        ((JdbcFs) _fs).foldDirStats();
+
+        assertThat(_fs.getDirStat(dir1).get().getSize(), equalTo(0L));
+        assertThat(_fs.getDirStat(dir1).get().getFiles(), equalTo(0L));
+        assertThat(_fs.getDirStat(dir2).get().getSize(), equalTo(10L));
+        assertThat(_fs.getDirStat(dir2).get().getFiles(), equalTo(1L));
+        assertThat(_fs.getDirStat(_rootInode).get().getSize(), equalTo(10L));
+    }
+
+    @Test
+    public void testDirStatWithConcurrentRenameAndFold() throws Exception {
+        ((JdbcFs) _fs).setDirStatsEnabled(true);
+        FsInode dir1 = _fs.mkdir("/dir1");
+        FsInode dir2 = _fs.mkdir("/dir2");
+        FsInode subdir = _fs.mkdir(dir1, "subdir", 0, 0, 0755);
+
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> folding = executor.submit(() -> {
+            while (!done.get()) {
+                ((JdbcFs) _fs).foldDirStats();
+            }
+        });
+        try {
+            for (int i = 0; i < 100; i++) {
+                createFileOfSize(subdir, "file" + i, 10);
+                if (i % 2 == 0) {
+                    _fs.rename(subdir, dir1, "subdir", dir2, "subdir");
+                } else {
+                    _fs.rename(subdir, dir2, "subdir", dir1, "subdir");
+                }
+            }
+        } finally {
+            done.set(true);
+            folding.get();
+            executor.shutdown();
+        }
+        ((JdbcFs) _fs).foldDirStats();
+
+        assertThat(_fs.getDirStat(dir1).get().getSize(), equalTo(1000L));
+        assertThat(_fs.getDirStat(dir1).get().getFiles(), equalTo(100L));
+        assertThat(_fs.getDirStat(dir2).get().getSize(), equalTo(0L));
+        assertThat(_fs.getDirStat(dir2).get().getFiles(), equalTo(0L));
+        assertThat(_fs.getDirStat(_rootInode).get().getSize(), equalTo(1000L));
+    }
+
+    @Test
+    public void testCheckDirStatKeepsPendingChanges() throws Exception {
+        ((JdbcFs) _fs).setDirStatsEnabled(true);
+        FsInode dir = _fs.mkdir("/test");
+        FsInode subdir = _fs.mkdir(dir, "subdir", 0, 0, 0755);
+        createFileOfSize(subdir, "file1", 42);
+        ((JdbcFs) _fs).foldDirStats();
+        createFileOfSize(subdir, "file2", 8);
+
+        assertThat(_fs.checkDirStat(dir, true).getSize(), equalTo(50L));
+        ((JdbcFs) _fs).foldDirStats();
+
+        assertThat(_fs.getDirStat(subdir).get().getSize(), equalTo(50L));
+        assertThat(_fs.getDirStat(dir).get().getSize(), equalTo(50L));
+        assertThat(_fs.getDirStat(dir).get().getFiles(), equalTo(2L));
+        assertThat(_fs.getDirStat(_rootInode).get().getSize(), equalTo(50L));
+    }
+
+    @Test
+    public void testDirStatXattr() throws Exception {
+        ((JdbcFs) _fs).setDirStatsEnabled(true);
+        FsInode dir = _fs.mkdir("/test");
+        createFileOfSize(dir, "file1", 42);
+        ((JdbcFs) _fs).foldDirStats();
+
+        assertArrayEquals("42".getBytes(UTF_8), _fs.getXattr(dir, "dcache.dir.rbytes"));
+        assertArrayEquals("1".getBytes(UTF_8), _fs.getXattr(dir, "dcache.dir.rfiles"));
+    }
+
+    @Test
+    public void testCheckDirStatFixesDrift() throws Exception {
+        FsInode dir = _fs.mkdir("/test");
+        createFileOfSize(dir, "file1", 42);
+        ((JdbcFs) _fs).setDirStatsEnabled(true);
+
+        assertThat(_fs.checkDirStat(dir, false).getSize(), equalTo(42L));
+        assertThat(_fs.getDirStat(dir).get().getSize(), equalTo(0L));
+
+        _fs.checkDirStat(_rootInode, true);
+
+        assertThat(_fs.getDirStat(dir).get().getSize(), equalTo(42L));
+        assertThat(_fs.getDirStat(_rootInode).get().getFiles(), equalTo(1L));
+    }
+
+    private FsInode createFileOfSize(FsInode dir, String name, long size) throws Exception {
+        FsInode inode = _fs.createFile(dir, name);
+        Stat stat = new Stat();
+        stat.setSize(size);
+        _fs.setInodeAttributes(inode, 0, stat);
+        return inode;
+    }
+
+    @Test
+    public void testQuotaDeltaRecordedForOwnerWithQuota() throws Exception {
+        assumeTrue(isPostgreSQL());
+        JdbcQuota quota = new JdbcQuota(_dataSource);
+        quota.createUserQuota(new Quota(1, 0, null, 0, null, 0, null));
+
+        FsInode withQuota = _rootInode.create("withQuota", 1, 1, 0644);
+        FsInode withoutQuota = _rootInode.create("withoutQuota", 2, 2, 0644);
+        setSize(withQuota, 100, RetentionPolicy.CUSTODIAL);
+        setSize(withoutQuota, 100, RetentionPolicy.CUSTODIAL);
+        setSize(withQuota, 30, RetentionPolicy.CUSTODIAL);
+
+        JdbcTemplate jdbc = new JdbcTemplate(_dataSource);
+        assertThat(jdbc.queryForObject(
+                    "SELECT SUM(isize) FROM t_quota_delta WHERE iuid = 1", Long.class),
+              is(30L));
+        assertThat(jdbc.queryForObject(
+                    "SELECT COUNT(*) FROM t_quota_delta WHERE iuid = 2", Long.class),
+              is(0L));
+
+        _fs.remove(_rootInode, "withQuota", withQuota);
+
+        assertThat(jdbc.queryForObject(
+                    "SELECT SUM(isize) FROM t_quota_delta WHERE iuid = 1", Long.class),
+              is(0L));
+    }
+
+    @Test
+    public void testQuotaDeltasFoldedIntoQuota() throws Exception {
+        assumeTrue(isPostgreSQL());
+        JdbcQuota quota = new JdbcQuota(_dataSource);
+        quota.createUserQuota(new Quota(1, 0, null, 0, null, 0, null));
+
+        FsInode custodial = _rootInode.create("custodial", 1, 1, 0644);
+        FsInode replica = _rootInode.create("replica", 1, 1, 0644);
+        setSize(custodial, 100, RetentionPolicy.CUSTODIAL);
+        setSize(replica, 20, RetentionPolicy.REPLICA);
+        setSize(replica, 25, RetentionPolicy.REPLICA);
+
+        quota.foldQuotaDeltas();
+        quota.refreshUserQuotas();
+
+        JdbcTemplate jdbc = new JdbcTemplate(_dataSource);
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM t_quota_delta", Long.class),
+              is(0L));
+        Quota used = quota.getUserQuotas().get(1);
+        assertThat(used.getUsedCustodialSpace(), is(100L));
+        assertThat(used.getUsedReplicaSpace(), is(25L));
+        assertThat(used.getUsedOutputSpace(), is(0L));
+    }
+
+    @Test
+    public void testQuotaReconciledFromNamespace() throws Exception {
+        JdbcQuota quota = new JdbcQuota(_dataSource);
+        quota.createUserQuota(new Quota(1, 0, null, 0, null, 0, null));
+        quota.createGroupQuota(new Quota(1, 0, null, 0, null, 0, null));
+
+        FsInode custodial = _rootInode.create("custodial", 1, 1, 0644);
+        FsInode replica = _rootInode.create("replica", 1, 1, 0644);
+        FsInode removed = _rootInode.create("removed", 1, 1, 0644);
+        setSize(custodial, 100, RetentionPolicy.CUSTODIAL);
+        setSize(replica, 20, RetentionPolicy.REPLICA);
+        setSize(replica, 25, RetentionPolicy.REPLICA);
+        setSize(removed, 50, RetentionPolicy.CUSTODIAL);
+        _fs.remove(_rootInode, "removed", removed);
+
+        quota.reconcileQuotas();
+        quota.foldQuotaDeltas();
+        quota.refreshUserQuotas();
+        quota.refreshGroupQuotas();
+
+        // Changes recorded before reconciliation must not be counted again by the fold
+        for (Quota used : List.of(quota.getUserQuotas().get(1), quota.getGroupQuotas().get(1))) {
+            assertThat(used.getUsedCustodialSpace(), is(100L));
+            assertThat(used.getUsedReplicaSpace(), is(25L));
+            assertThat(used.getUsedOutputSpace(), is(0L));
+        }
+    }
+
+    @Test
+    public void testQuotaFoldWithoutRecordedChanges() throws Exception {
+        // On PostgreSQL changes are recorded, see testQuotaDeltasFoldedIntoQuota
+        assumeFalse(isPostgreSQL());
+        JdbcQuota quota = new JdbcQuota(_dataSource);
+        quota.createUserQuota(new Quota(1, 0, null, 0, null, 0, null));
+
+        FsInode file = _rootInode.create("file", 1, 1, 0644);
+        setSize(file, 100, RetentionPolicy.CUSTODIAL);
+        quota.reconcileQuotas();
+        setSize(file, 30, RetentionPolicy.CUSTODIAL);
+
+        quota.foldQuotaDeltas();
+        quota.refreshUserQuotas();
+        assertThat(quota.getUserQuotas().get(1).getUsedCustodialSpace(), is(100L));
+
+        quota.reconcileQuotas();
+        quota.refreshUserQuotas();
+        assertThat(quota.getUserQuotas().get(1).getUsedCustodialSpace(), is(30L));
+    }
+
     private long getDirEntryCount(FsInode dir) throws IOException {
         try (var s = _fs.newDirectoryStream(dir)) {
             return s.stream().count();
         }
     }
 
+    private void setSize(FsInode inode, long size) throws ChimeraFsException {
+        Stat stat = new Stat();
+        stat.setSize(size);
+        _fs.setInodeAttributes(inode, 0, stat);
+    }
+
+    /**
+     * On PostgreSQL the statistics are maintained by a trigger and updateFsStat does nothing;
+     * elsewhere they are only updated by updateFsStat.
+     */
+    private void assertFsStatMatchesInodes() throws ChimeraFsException {
+        _fs.updateFsStat();
+        JdbcTemplate jdbc = new JdbcTemplate(_dataSource);
+        FsStat fsStat = ((JdbcFs) _fs).getFsStat0();
+        assertThat(fsStat.getUsedFiles(), is(jdbc.queryForObject(
+              "SELECT COUNT(*) FROM t_inodes WHERE itype = 32768", Long.class)));
+        assertThat(fsStat.getUsedSpace(), is(jdbc.queryForObject(
+              "SELECT COALESCE(SUM(isize), 0) FROM t_inodes WHERE itype = 32768", Long.class)));
+    }
+
+    private void setSize(FsInode inode, long size, RetentionPolicy retentionPolicy)
+          throws ChimeraFsException {
+        Stat stat = new Stat();
+        stat.setSize(size);
+        stat.setRetentionPolicy(retentionPolicy);
+        _fs.setInodeAttributes(inode, 0, stat);
+    }
+
     private void buildWormhole() throws ChimeraFsException {
         _fs.mkdir("/admin");
         _fs.mkdir("/admin/etc");
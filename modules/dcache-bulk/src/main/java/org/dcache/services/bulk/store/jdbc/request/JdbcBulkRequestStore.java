@@ -667,6 +667,14 @@ public final class JdbcBulkRequestStore implements BulkRequestStore {
             return false;
         }
 
+        if (status == BulkRequestStatus.COMPLETED || status == CANCELLED) {
+            /*
+             *  Whether the request is done is decided by the state of its targets in the
+             *  database, which must include the updates still held by the write-behind buffer.
+             */
+            requestTargetDao.flushBufferedUpdates();
+        }
+
         boolean update = false;
 
         if (storedStatus == null) {
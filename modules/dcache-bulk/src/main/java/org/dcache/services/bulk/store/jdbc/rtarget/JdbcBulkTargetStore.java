@@ -195,13 +195,13 @@ public final class JdbcBulkTargetStore implements BulkTargetStore {
         if (id == null) {
             store(target);
         } else {
-            targetDao.update(targetDao.where().id(id), prepareUpdate(target));
+            targetDao.updateLater(id, prepareUpdate(target));
         }
     }
 
     @Override
     public void update(Long id, State state, String errorType, String errorMessage) throws BulkStorageException {
-        targetDao.update(targetDao.where().id(id),
+        targetDao.updateLater(id,
               targetDao.set().state(state).errorType(errorType).errorMessage(errorMessage));
     }
 
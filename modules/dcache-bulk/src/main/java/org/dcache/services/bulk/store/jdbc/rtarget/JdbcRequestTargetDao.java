@@ -143,20 +143,25 @@ public final class JdbcRequestTargetDao extends JdbcDaoSupport {
 
     private BulkServiceStatistics statistics;
     private JdbcBulkDaoUtils utils;
+    private JdbcRequestTargetUpdateBuffer updateBuffer;
 
     public int count(JdbcRequestTargetCriterion criterion) {
+        flushBufferedUpdates();
         return utils.count(criterion, tableNameForSelect(criterion), this);
     }
 
     public Map<String, Long> count(JdbcRequestTargetCriterion criterion, String classifier) {
+        flushBufferedUpdates();
         return utils.countGrouped(criterion.classifier(classifier), tableNameForSelect(criterion), this);
     }
 
     public Map<String, Long> countStates() {
+        flushBufferedUpdates();
         return utils.countGrouped(where().classifier("state"), TABLE_NAME, this);
     }
 
     public int delete(JdbcRequestTargetCriterion criterion) {
+        flushBufferedUpdates();
         if (criterion.isJoined()) {
             return utils.delete(criterion, TABLE_NAME, SECONDARY_TABLE_NAME, this);
         }
@@ -164,11 +169,13 @@ public final class JdbcRequestTargetDao extends JdbcDaoSupport {
     }
 
     public List<BulkRequestTarget> get(JdbcRequestTargetCriterion criterion, int limit) {
+        flushBufferedUpdates();
         return utils.get(getSelect(criterion), criterion, limit, tableNameForSelect(criterion),
               this, criterion.isJoined() ? this::toFullRequestTarget : this::toRequestTarget);
     }
 
     public List<String> getRequestsOfFailed() {
+        flushBufferedUpdates();
         return getJdbcTemplate().queryForList(UIDS_OF_FAILED, String.class);
     }
 
@@ -213,6 +220,10 @@ public final class JdbcRequestTargetDao extends JdbcDaoSupport {
         this.utils = utils;
     }
 
+    public void setUpdateBuffer(JdbcRequestTargetUpdateBuffer updateBuffer) {
+        this.updateBuffer = updateBuffer;
+    }
+
     public BulkRequestTarget toFullRequestTarget(ResultSet rs, int row) throws SQLException {
         BulkRequestTarget target = toRequestTarget(rs, row);
         target.setRuid(rs.getString("ruid"));
@@ -259,6 +270,7 @@ public final class JdbcRequestTargetDao extends JdbcDaoSupport {
     }
 
     public int update(JdbcRequestTargetCriterion criterion, JdbcRequestTargetUpdate update) {
+        flushBufferedUpdates();
         if (criterion.isJoined()) {
             return utils.update(criterion, update, TABLE_NAME, SECONDARY_TABLE_NAME, this);
         }
@@ -266,7 +278,29 @@ public final class JdbcRequestTargetDao extends JdbcDaoSupport {
         return utils.update(criterion, update, TABLE_NAME, this);
     }
 
+    /**
+     * Updates a single target, possibly deferred by the update buffer.  Any subsequent read or
+     * update through this dao reflects the update.
+     */
+    public void updateLater(long id, JdbcRequestTargetUpdate update) {
+        if (updateBuffer == null) {
+            update(where().id(id), update);
+        } else {
+            updateBuffer.add(id, update);
+        }
+    }
+
     public JdbcRequestTargetCriterion where() {
         return new JdbcRequestTargetCriterion();
     }
+
+    /**
+     * Writes the updates held by the update buffer, if any, so that statements not issued
+     * through this dao see the current state of the targets.
+     */
+    public void flushBufferedUpdates() {
+        if (updateBuffer != null) {
+            updateBuffer.flush();
+        }
+    }
 }
@@ -0,0 +1,356 @@
+/*
+COPYRIGHT STATUS:
+Dec 1st 2001, Fermi National Accelerator Laboratory (FNAL) documents and
+software are sponsored by the U.S. Department of Energy under Contract No.
+DE-AC02-76CH03000. Therefore, the U.S. Government retains a  world-wide
+non-exclusive, royalty-free license to publish or reproduce these documents
+and software for U.S. Government purposes.  All documents and software
+available from this server are protected under the U.S. and Foreign
+Copyright Laws, and FNAL reserves all rights.
+
+Distribution of the software available from this server is free of
+charge subject to the user following the terms of the Fermitools
+Software Legal Information.
+
+Redistribution and/or modification of the software shall be accompanied
+by the Fermitools Software Legal Information  (including the copyright
+notice).
+
+The user is asked to feed back problems, benefits, and/or suggestions
+about the software to the Fermilab Software Providers.
+
+Neither the name of Fermilab, the  URA, nor the names of the contributors
+may be used to endorse or promote products derived from this software
+without specific prior written permission.
+
+DISCLAIMER OF LIABILITY (BSD):
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED  WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED  WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL FERMILAB,
+OR THE URA, OR THE U.S. DEPARTMENT of ENERGY, OR CONTRIBUTORS BE LIABLE
+FOR  ANY  DIRECT, INDIRECT,  INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+OF SUBSTITUTE  GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY  OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT  OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE  POSSIBILITY OF SUCH DAMAGE.
+
+Liabilities of the Government:
+
+This software is provided by URA, independent from its Prime Contract
+with the U.S. Department of Energy. URA is acting independently from
+the Government and in its own private capacity and is not acting on
+behalf of the U.S. Government, nor as its contractor nor its agent.
+Correspondingly, it is understood and agreed that the U.S. Government
+has no connection to this software and in no manner whatsoever shall
+be liable for nor assume any responsibility or obligation for any claim,
+cost, or damages arising out of or resulting from the use of the software
+available from this server.
+
+Export Control:
+
+All documents and software available from this server are subject to U.S.
+export control laws.  Anyone downloading information from this server is
+obligated to secure any necessary Government licenses before exporting
+documents or software obtained from this server.
+ */
+package org.dcache.services.bulk.store.jdbc.rtarget;
+
+import static java.util.stream.Collectors.joining;
+import static org.dcache.services.bulk.store.jdbc.rtarget.JdbcRequestTargetDao.TABLE_NAME;
+
+import com.google.common.collect.Lists;
+import dmg.cells.nucleus.CellInfoProvider;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
+import org.dcache.commons.stats.RequestExecutionTimeGauges;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.support.JdbcDaoSupport;
+
+/**
+ * Write-behind buffer for updates to individual targets.
+ * <p>
+ * As a target moves through its states, each transition would otherwise be written to the
+ * database as a single-row UPDATE.  Instead, updates are held in memory and coalesced per
+ * target, so that only the latest value of each column is written.  The buffer is flushed
+ * periodically, when it reaches the maximum batch size, and before the table is read or
+ * modified by any other means (see {@link JdbcRequestTargetDao}), so that readers always see
+ * the buffered updates.  Updates with the same set of columns are written as a JDBC batch.
+ * <p>
+ * The buffer is flushed on shutdown and when leadership is lost.  Should the service die
+ * with updates still buffered, the affected targets remain in a non-terminal state in the
+ * database; these are reset and processed again when the requests are reloaded at restart,
+ * exactly as targets which were running at the time of the failure.  This includes targets
+ * which had already completed in memory, so their activity is performed a second time.  For
+ * most activities this is harmless, but not for delete: the second attempt fails because the
+ * file no longer exists, so a target which had in fact been deleted ends up FAILED rather
+ * than COMPLETED.  Write-behind is therefore disabled unless configured otherwise, in which
+ * case each update is written immediately.
+ */
+public final class JdbcRequestTargetUpdateBuffer extends JdbcDaoSupport
+      implements CellInfoProvider, LeaderLatchListener {
+
+    private static final Logger LOGGER
+          = LoggerFactory.getLogger(JdbcRequestTargetUpdateBuffer.class);
+
+    private static final String FORMAT = "%-25s :    %s";
+    private static final String FLUSH = "flush";
+
+    private final Object lock = new Object();
+    private final Lock flushLock = new ReentrantLock();
+
+    /**
+     * Guarded by lock.  Columns are kept sorted so that updates of the same columns map to the
+     * same statement.
+     */
+    private Map<Long, Map<String, Object>> pending = new LinkedHashMap<>();
+    private long coalesced;
+
+    /**
+     * Guarded by flushLock.
+     */
+    private long flushes;
+    private long flushed;
+    private int largestBatch;
+    private final RequestExecutionTimeGauges<String> gauges
+          = new RequestExecutionTimeGauges<>("Target update flushes");
+
+    private ScheduledExecutorService flushExecutor;
+    private long flushInterval;
+    private TimeUnit flushIntervalUnit;
+    private int maxBatchSize;
+    private boolean enabled;
+    private volatile boolean running;
+    private ScheduledFuture<?> future;
+
+    /**
+     * Buffers the update of a target.  If buffering is disabled or the buffer has been shut
+     * down, the update is written immediately.
+     *
+     * @param id     of the target.
+     * @param update to apply to the target.
+     */
+    public void add(long id, JdbcRequestTargetUpdate update) {
+        boolean isBuffered;
+        boolean isFull = false;
+        synchronized (lock) {
+            isBuffered = running;
+            if (isBuffered) {
+                Map<String, Object> columns = pending.get(id);
+                if (columns == null) {
+                    pending.put(id, new TreeMap<>(update.updates()));
+                } else {
+                    columns.putAll(update.updates());
+                    ++coalesced;
+                }
+                isFull = pending.size() >= maxBatchSize;
+            }
+        }
+
+        if (!isBuffered) {
+            /*
+             *  Updates buffered before shutdown must not overwrite this one.
+             */
+            flush();
+            write(Map.<Long, Map<String, Object>>of(id, new TreeMap<>(update.updates())));
+        } else if (isFull) {
+            try {
+                flushExecutor.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                /*
+                 *  The buffer was shut down after the update was added.
+                 */
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Writes all buffered updates to the database.  Returns once the updates buffered at the
+     * time of the call, including those of a flush already in progress, have been written.
+     * If writing fails, the updates are retained for the next flush.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Long, Map<String, Object>> batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+            }
+
+            long start = System.currentTimeMillis();
+            try {
+                write(batch);
+            } catch (DataAccessException e) {
+                synchronized (lock) {
+                    batch.forEach((id, columns) -> pending.merge(id, columns,
+                          (newer, older) -> {
+                              older.putAll(newer);
+                              return older;
+                          }));
+                }
+                throw e;
+            }
+            long elapsed = System.currentTimeMillis() - start;
+            gauges.update(FLUSH, elapsed);
+
+            ++flushes;
+            flushed += batch.size();
+            largestBatch = Math.max(largestBatch, batch.size());
+            LOGGER.trace("flushed {} target updates in {} ms.", batch.size(), elapsed);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void getInfo(PrintWriter pw) {
+        pw.print(getInfo());
+    }
+
+    public String getInfo() {
+        int pendingCount;
+        long coalescedCount;
+        synchronized (lock) {
+            pendingCount = pending.size();
+            coalescedCount = coalesced;
+        }
+
+        StringBuilder builder = new StringBuilder()
+              .append(String.format(FORMAT, "Target write-behind:",
+                    enabled ? flushInterval + " " + flushIntervalUnit : "disabled"))
+              .append("\n")
+              .append(String.format(FORMAT, "Pending target updates:", pendingCount))
+              .append("\n")
+              .append(String.format(FORMAT, "Coalesced updates:", coalescedCount))
+              .append("\n");
+
+        flushLock.lock();
+        try {
+            builder.append(String.format(FORMAT, "Flushes:", flushes))
+                  .append("\n")
+                  .append(String.format(FORMAT, "Targets flushed:", flushed))
+                  .append("\n")
+                  .append(String.format(FORMAT, "Average batch size:",
+                        flushes == 0 ? 0 : flushed / flushes))
+                  .append("\n")
+                  .append(String.format(FORMAT, "Largest batch size:", largestBatch))
+                  .append("\n")
+                  .append(gauges)
+                  .append("\n");
+        } finally {
+            flushLock.unlock();
+        }
+
+        return builder.toString();
+    }
+
+    public synchronized void initialize() {
+        if (enabled) {
+            running = true;
+            future = flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushInterval,
+                  flushInterval, flushIntervalUnit);
+        }
+    }
+
+    @Override
+    public void isLeader() {
+        // Nothing to do; updates are only buffered while targets are being processed.
+    }
+
+    @Override
+    public void notLeader() {
+        /*
+         *  Make sure the new leader sees the state of the targets processed here.
+         */
+        flushQuietly();
+    }
+
+    @Required
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Required
+    public void setFlushExecutor(ScheduledExecutorService flushExecutor) {
+        this.flushExecutor = flushExecutor;
+    }
+
+    @Required
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    @Required
+    public void setFlushIntervalUnit(TimeUnit flushIntervalUnit) {
+        this.flushIntervalUnit = flushIntervalUnit;
+    }
+
+    @Required
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public synchronized void shutdown() {
+        synchronized (lock) {
+            running = false;
+        }
+        if (future != null) {
+            future.cancel(false);
+        }
+        flushQuietly();
+        flushExecutor.shutdown();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to write target updates, will retry: {}.", e.toString());
+        }
+    }
+
+    /**
+     * Updates sharing the same columns are written as one JDBC batch.
+     */
+    private void write(Map<Long, Map<String, Object>> updates) {
+        Map<String, List<Object[]>> statements = new LinkedHashMap<>();
+        updates.forEach((id, columns) -> {
+            String sql = "UPDATE " + TABLE_NAME + " SET "
+                  + columns.keySet().stream().map(c -> c + " = ?").collect(joining(","))
+                  + " WHERE id = ?";
+            Object[] arguments = Stream.concat(columns.values().stream(), Stream.of(id))
+                  .toArray();
+            statements.computeIfAbsent(sql, s -> new ArrayList<>()).add(arguments);
+        });
+
+        statements.forEach((sql, arguments) -> {
+            LOGGER.trace("batch update {} ({} targets).", sql, arguments.size());
+            for (List<Object[]> chunk : Lists.partition(arguments, maxBatchSize)) {
+                getJdbcTemplate().batchUpdate(sql, chunk);
+            }
+        });
+    }
+}
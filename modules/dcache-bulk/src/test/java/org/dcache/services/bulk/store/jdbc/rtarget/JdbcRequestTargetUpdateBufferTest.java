@@ -0,0 +1,253 @@
+/*
+COPYRIGHT STATUS:
+Dec 1st 2001, Fermi National Accelerator Laboratory (FNAL) documents and
+software are sponsored by the U.S. Department of Energy under Contract No.
+DE-AC02-76CH03000. Therefore, the U.S. Government retains a  world-wide
+non-exclusive, royalty-free license to publish or reproduce these documents
+and software for U.S. Government purposes.  All documents and software
+available from this server are protected under the U.S. and Foreign
+Copyright Laws, and FNAL reserves all rights.
+
+Distribution of the software available from this server is free of
+charge subject to the user following the terms of the Fermitools
+Software Legal Information.
+
+Redistribution and/or modification of the software shall be accompanied
+by the Fermitools Software Legal Information  (including the copyright
+notice).
+
+The user is asked to feed back problems, benefits, and/or suggestions
+about the software to the Fermilab Software Providers.
+
+Neither the name of Fermilab, the  URA, nor the names of the contributors
+may be used to endorse or promote products derived from this software
+without specific prior written permission.
+
+DISCLAIMER OF LIABILITY (BSD):
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED  WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED  WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL FERMILAB,
+OR THE URA, OR THE U.S. DEPARTMENT of ENERGY, OR CONTRIBUTORS BE LIABLE
+FOR  ANY  DIRECT, INDIRECT,  INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+OF SUBSTITUTE  GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY  OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT  OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE  POSSIBILITY OF SUCH DAMAGE.
+
+Liabilities of the Government:
+
+This software is provided by URA, independent from its Prime Contract
+with the U.S. Department of Energy. URA is acting independently from
+the Government and in its own private capacity and is not acting on
+behalf of the U.S. Government, nor as its contractor nor its agent.
+Correspondingly, it is understood and agreed that the U.S. Government
+has no connection to this software and in no manner whatsoever shall
+be liable for nor assume any responsibility or obligation for any claim,
+cost, or damages arising out of or resulting from the use of the software
+available from this server.
+
+Export Control:
+
+All documents and software available from this server are subject to U.S.
+export control laws.  Anyone downloading information from this server is
+obligated to secure any necessary Government licenses before exporting
+documents or software obtained from this server.
+ */
+package org.dcache.services.bulk.store.jdbc.rtarget;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class JdbcRequestTargetUpdateBufferTest {
+
+    private static final String UPDATE_ERROR_TYPE
+          = "UPDATE request_target SET error_type = ? WHERE id = ?";
+    private static final String UPDATE_ERROR
+          = "UPDATE request_target SET error_message = ?,error_type = ? WHERE id = ?";
+
+    private JdbcTemplate jdbcTemplate;
+    private ScheduledExecutorService executor;
+    private JdbcRequestTargetUpdateBuffer buffer;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        executor = mock(ScheduledExecutorService.class);
+        buffer = new JdbcRequestTargetUpdateBuffer();
+        buffer.setJdbcTemplate(jdbcTemplate);
+        buffer.setEnabled(true);
+        buffer.setFlushExecutor(executor);
+        buffer.setFlushInterval(1);
+        buffer.setFlushIntervalUnit(TimeUnit.SECONDS);
+        buffer.setMaxBatchSize(100);
+        buffer.initialize();
+    }
+
+    @Test
+    public void shouldNotWriteUpdatesBeforeFlush() {
+        buffer.add(1L, errorType("first"));
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    public void shouldCoalesceUpdatesOfSameTarget() {
+        buffer.add(1L, errorType("first"));
+        buffer.add(1L, errorType("second"));
+        buffer.add(1L, errorType("third"));
+
+        buffer.flush();
+
+        List<Object[]> rows = batchUpdateOf(UPDATE_ERROR_TYPE);
+        assertEquals(1, rows.size());
+        assertArrayEquals(new Object[]{"third", 1L}, rows.get(0));
+    }
+
+    @Test
+    public void shouldMergeColumnsOfSameTarget() {
+        buffer.add(1L, errorType("type"));
+        buffer.add(1L, new JdbcRequestTargetUpdate().errorMessage("message"));
+
+        buffer.flush();
+
+        List<Object[]> rows = batchUpdateOf(UPDATE_ERROR);
+        assertArrayEquals(new Object[]{"message", "type", 1L}, rows.get(0));
+    }
+
+    @Test
+    public void shouldGroupUpdatesWithSameColumnsIntoOneBatch() {
+        buffer.add(1L, errorType("a"));
+        buffer.add(2L, errorType("b"));
+        buffer.add(3L, errorType("c").errorMessage("message"));
+
+        buffer.flush();
+
+        assertEquals(2, batchUpdateOf(UPDATE_ERROR_TYPE).size());
+        assertEquals(1, batchUpdateOf(UPDATE_ERROR).size());
+    }
+
+    @Test
+    public void shouldWriteNothingWhenEmpty() {
+        buffer.flush();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    public void shouldRetainUpdatesWhenWriteFailsWithNewerValuesWinning() {
+        buffer.add(1L, errorType("older"));
+        buffer.add(2L, errorType("unchanged"));
+        doAnswer(invocation -> {
+            buffer.add(1L, errorType("newer"));
+            throw new TransientDataAccessResourceException("connection lost");
+        }).when(jdbcTemplate).batchUpdate(eq(UPDATE_ERROR_TYPE), anyList());
+
+        try {
+            buffer.flush();
+            fail("Expected the failure to be propagated.");
+        } catch (TransientDataAccessResourceException expected) {
+        }
+
+        doAnswer(invocation -> new int[0])
+              .when(jdbcTemplate).batchUpdate(eq(UPDATE_ERROR_TYPE), anyList());
+        buffer.flush();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(UPDATE_ERROR_TYPE), rows.capture());
+        List<Object[]> retried = rows.getAllValues().get(1);
+        assertEquals(2, retried.size());
+        assertArrayEquals(new Object[]{"newer", 1L}, retried.get(0));
+        assertArrayEquals(new Object[]{"unchanged", 2L}, retried.get(1));
+    }
+
+    @Test
+    public void shouldFlushInBackgroundWhenBatchIsFull() {
+        buffer.setMaxBatchSize(2);
+
+        buffer.add(1L, errorType("a"));
+        verify(executor, never()).execute(any());
+
+        buffer.add(2L, errorType("b"));
+        verify(executor).execute(any());
+    }
+
+    @Test
+    public void shouldFlushDirectlyWhenShutDownWhileBatchIsFull() {
+        buffer.setMaxBatchSize(1);
+        doThrow(new RejectedExecutionException()).when(executor).execute(any());
+
+        buffer.add(1L, errorType("a"));
+
+        assertArrayEquals(new Object[]{"a", 1L}, batchUpdateOf(UPDATE_ERROR_TYPE).get(0));
+    }
+
+    @Test
+    public void shouldFlushOnShutdown() {
+        buffer.add(1L, errorType("a"));
+
+        buffer.shutdown();
+
+        assertArrayEquals(new Object[]{"a", 1L}, batchUpdateOf(UPDATE_ERROR_TYPE).get(0));
+        verify(executor).shutdown();
+    }
+
+    @Test
+    public void shouldWriteDirectlyAfterShutdown() {
+        buffer.shutdown();
+
+        buffer.add(1L, errorType("a"));
+
+        assertArrayEquals(new Object[]{"a", 1L}, batchUpdateOf(UPDATE_ERROR_TYPE).get(0));
+    }
+
+    @Test
+    public void shouldFlushBeforeReadingTargets() {
+        JdbcRequestTargetDao dao = new JdbcRequestTargetDao();
+        dao.setJdbcTemplate(jdbcTemplate);
+        dao.setUpdateBuffer(buffer);
+
+        dao.updateLater(1L, errorType("a"));
+        dao.getRequestsOfFailed();
+
+        InOrder inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).batchUpdate(eq(UPDATE_ERROR_TYPE), anyList());
+        inOrder.verify(jdbcTemplate).queryForList(anyString(), eq(String.class));
+    }
+
+    private List<Object[]> batchUpdateOf(String sql) {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(sql), rows.capture());
+        return rows.getValue();
+    }
+
+    private static JdbcRequestTargetUpdate errorType(String errorType) {
+        return new JdbcRequestTargetUpdate().errorType(errorType);
+    }
+}
@@ -57,7 +57,9 @@ import diskCacheV111.vehicles.StorageInfo;
 import dmg.cells.nucleus.CellCommandListener;
 import dmg.cells.nucleus.CellInfo;
 import dmg.cells.nucleus.CellInfoProvider;
+import dmg.util.command.Argument;
 import dmg.util.command.Command;
+import dmg.util.command.Option;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -89,6 +91,7 @@ import org.dcache.auth.Subjects;
 import org.dcache.chimera.ChimeraDirectoryEntry;
 import org.dcache.chimera.ChimeraFsException;
 import org.dcache.chimera.DirNotEmptyChimeraFsException;
+import org.dcache.chimera.DirStat;
 import org.dcache.chimera.DirectoryStreamB;
 import org.dcache.chimera.FileExistsChimeraFsException;
 import org.dcache.chimera.FileNotFoundChimeraFsException;
@@ -110,6 +113,7 @@ import org.dcache.namespace.FileAttribute;
 import org.dcache.namespace.FileType;
 import org.dcache.namespace.ListHandler;
 import org.dcache.namespace.PermissionHandler;
+import org.dcache.namespace.RecursiveStats;
 import org.dcache.util.Checksum;
 import org.dcache.util.ChecksumType;
 import org.dcache.util.Exceptions;
@@ -902,6 +906,35 @@ public class ChimeraNameSpaceProvider
         }
     }
 
+    @Command(name = "check recursive stats", hint = "verify recursive directory statistics",
+          description = "Calculates the number and total size of all files below a directory by"
+                + " walking the tree below it and compares the result with the maintained"
+                + " recursive statistics of the directory. The latter lag behind recent changes"
+                + " until these are folded. With -fix, the maintained statistics of the"
+                + " directory, its subdirectories and ancestors are corrected; folding and"
+                + " moving directories between parents are blocked while the command runs.")
+    public class CheckRecursiveStatsCommand implements Callable<String> {
+
+        @Argument(usage = "path of the directory")
+        String path;
+
+        @Option(name = "fix", usage = "correct the maintained statistics")
+        boolean fix;
+
+        @Override
+        public String call() throws ChimeraFsException {
+            FsInode dir = _fs.path2inode(path);
+            DirStat maintained = _fs.getDirStat(dir).orElse(DirStat.EMPTY);
+            DirStat actual = _fs.checkDirStat(dir, fix);
+            return String.format("%-10s %20s %15s%n%-10s %20d %15d%n%-10s %20d %15d%n%-10s %20d %15d",
+                  "", "bytes", "files",
+                  "actual", actual.getSize(), actual.getFiles(),
+                  "maintained", maintained.getSize(), maintained.getFiles(),
+                  "drift", maintained.getSize() - actual.getSize(),
+                  maintained.getFiles() - actual.getFiles());
+        }
+    }
+
     @Override
     public Collection<Link> find(Subject subject, PnfsId pnfsId) throws CacheException {
         try {
@@ -1068,6 +1101,13 @@ public class ChimeraNameSpaceProvider
                         attributes.setQosState(qosState);
                     }
                     break;
+                case RECURSIVE_STATS:
+                    if (inode.isDirectory()) {
+                        _fs.getDirStat(inode).ifPresent(dirStat ->
+                              attributes.setRecursiveStats(new RecursiveStats(dirStat.getSize(),
+                                    dirStat.getFiles(), dirStat.getMTime())));
+                    }
+                    break;
                 default:
                     throw new UnsupportedOperationException(
                           "Attribute " + attribute + " not supported yet.");
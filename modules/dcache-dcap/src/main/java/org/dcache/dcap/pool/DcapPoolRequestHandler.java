@@ -0,0 +1,560 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2024 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.dcap.pool;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.dcache.dcap.pool.DcapResponses.ack;
+import static org.dcache.dcap.pool.DcapResponses.blockHeader;
+import static org.dcache.dcap.pool.DcapResponses.dataHeader;
+import static org.dcache.dcap.pool.DcapResponses.dataTrailer;
+import static org.dcache.dcap.pool.DcapResponses.endOfBlock;
+import static org.dcache.dcap.pool.DcapResponses.fin;
+import static org.dcache.dcap.pool.DcapResponses.locateAck;
+import static org.dcache.dcap.pool.DcapResponses.seekAck;
+import static org.dcache.util.ByteUnit.MiB;
+
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.DiskErrorCacheException;
+import diskCacheV111.vehicles.DCapProtocolInfo;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.codec.DecoderException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.UUID;
+import org.dcache.namespace.FileAttribute;
+import org.dcache.pool.movers.DCapConstants;
+import org.dcache.pool.movers.NettyTransferService;
+import org.dcache.pool.movers.RepositoryFileRegion;
+import org.dcache.pool.repository.OutOfDiskException;
+import org.dcache.util.Checksum;
+import org.dcache.util.ChecksumType;
+import org.dcache.util.Exceptions;
+import org.dcache.vehicles.FileAttributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the requests of a single DCAP data connection.
+ * <p>
+ * The handler implements the same protocol as {@link org.dcache.pool.movers.DCapProtocol_3_nio},
+ * but runs on the event loop of the transfer service rather than in a thread of its own.  Data
+ * is sent to the client with {@link RepositoryFileRegion}s, so that reads use zero-copy where
+ * the file store supports it, and data received from the client is written to the file from the
+ * pooled buffers of the channel.
+ * <p>
+ * The file pointer of the DCAP session is maintained by the handler and all file I/O is
+ * positional.  Once an I/O error occurred, further data requests are denied until the client
+ * seeks to the start of the file, just like with the thread based mover.
+ */
+public class DcapPoolRequestHandler extends ChannelInboundHandlerAdapter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DcapPoolRequestHandler.class);
+
+    /**
+     * Max size of a data block sent to the client.
+     */
+    private static final int MAX_BLOCK_SIZE = MiB.toBytes(1);
+
+    private final DcapTransferService service;
+
+    private NettyTransferService<DCapProtocolInfo>.NettyMoverChannel file;
+    private boolean isWrite;
+    private long position;
+
+    private boolean ioOk = true;
+    private Exception ioException;
+
+    /**
+     * Bytes after which an I/O error is simulated, or -1.
+     */
+    private long ioError = -1;
+    private long bytesTransferred;
+
+    /**
+     * The write request whose data is currently received.
+     */
+    private int writeCommand;
+
+    public DcapPoolRequestHandler(DcapTransferService service) {
+        this.service = service;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        ctx.channel().config().setOption(ChannelOption.TCP_NODELAY, true);
+        ctx.channel().config().setOption(ChannelOption.SO_KEEPALIVE, true);
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (file != null) {
+            if (!ioOk) {
+                if (ioException instanceof OutOfDiskException) {
+                    file.release(ioException);
+                } else {
+                    file.release(new DiskErrorCacheException(
+                          "Disk I/O Error " + (ioException != null ? ioException.toString() : "")));
+                }
+            } else {
+                /* A client closing the connection without sending IOCMD_CLOSE is not
+                 * treated as an error.
+                 */
+                file.release();
+            }
+            file = null;
+        }
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable t) {
+        if (t instanceof DecoderException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        if (t instanceof IOException) {
+            LOGGER.debug("Data connection failed: {}", t.toString());
+        } else {
+            LOGGER.error("Problem in command block", t);
+        }
+        if (file != null) {
+            file.release(t);
+            file = null;
+        }
+        ctx.close();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof DcapRequestDecoder.Request) {
+            DcapRequestDecoder.Request request = (DcapRequestDecoder.Request) msg;
+            try {
+                if (file == null) {
+                    ctx.close();
+                } else {
+                    LOGGER.debug("Request Block : {}", request);
+                    process(ctx, request);
+                }
+            } finally {
+                request.release();
+            }
+        } else if (msg instanceof ByteBuf) {
+            ByteBuf data = (ByteBuf) msg;
+            try {
+                write(data);
+            } finally {
+                data.release();
+            }
+        } else if (msg == DcapRequestDecoder.END_OF_DATA) {
+            finishWrite(ctx);
+        } else if (msg instanceof DcapRequestDecoder.Challenge) {
+            open(ctx, (DcapRequestDecoder.Challenge) msg);
+        } else if (msg instanceof DcapRequestDecoder.ProtocolViolation) {
+            ctx.writeAndFlush(ack(ctx.alloc(), 9, 44,
+                  ((DcapRequestDecoder.ProtocolViolation) msg).getMessage()));
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    private void open(ChannelHandlerContext ctx, DcapRequestDecoder.Challenge challenge) {
+        try {
+            String decoded = new String(Base64.getDecoder().decode(challenge.getChallenge()),
+                  US_ASCII);
+            file = service.openFile(UUID.fromString(decoded), challenge.getSessionId());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Invalid challenge from client: {}", e.getMessage());
+        }
+        if (file == null) {
+            LOGGER.warn("Rejecting connection from {} with unknown session {}",
+                  ctx.channel().remoteAddress(), challenge.getSessionId());
+            ctx.close();
+            return;
+        }
+
+        isWrite = file.getIoMode().contains(StandardOpenOption.WRITE);
+        if (isWrite) {
+            // The dcap protocol allows the client to supply a checksum value as
+            // part of the IOCMD_CLOSE block.  However, by then we have already
+            // received all the file's data; requesting an ADLER32 checksum avoids
+            // re-reading the file's content.
+            file.addChecksumType(ChecksumType.ADLER32);
+        }
+
+        FileAttributes attributes = file.getFileAttributes();
+        if (attributes.isDefined(FileAttribute.STORAGEINFO)) {
+            try {
+                String io = attributes.getStorageInfo().getKey("io-error");
+                if (io != null) {
+                    ioError = Long.parseLong(io);
+                }
+            } catch (NumberFormatException e) { /* bad values are ignored */}
+        }
+        LOGGER.debug("Client connected for session {}", challenge.getSessionId());
+    }
+
+    private void process(ChannelHandlerContext ctx, DcapRequestDecoder.Request request)
+          throws IOException {
+        ByteBufAllocator alloc = ctx.alloc();
+        ByteBuf args = request.getArguments();
+
+        switch (request.getCommandCode()) {
+            case DCapConstants.IOCMD_WRITE:
+                if (!ioOk) {
+                    String errmsg = "WRITE denied (IO not ok)";
+                    LOGGER.error(errmsg);
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_WRITE,
+                          CacheException.ERROR_IO_DISK, errmsg));
+                } else if (isWrite) {
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_WRITE));
+                    expectData(ctx, DCapConstants.IOCMD_WRITE);
+                } else {
+                    String errmsg = "WRITE denied (not allowed)";
+                    LOGGER.error(errmsg);
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_WRITE,
+                          CacheException.ERROR_IO_DISK, errmsg));
+                }
+                break;
+
+            case DCapConstants.IOCMD_READ: {
+                long blockSize = args.readLong();
+                LOGGER.debug("READ byte={}", blockSize);
+                if (ioOk) {
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_READ));
+                    read(ctx, blockSize);
+                    finishRead(ctx, DCapConstants.IOCMD_READ, "FIN : READ failed (IO not ok)");
+                } else {
+                    String errmsg = "ACK : READ denied (IO not ok)";
+                    LOGGER.error(errmsg);
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_READ,
+                          CacheException.ERROR_IO_DISK, errmsg));
+                }
+                break;
+            }
+
+            case DCapConstants.IOCMD_SEEK: {
+                long offset = args.readLong();
+                int whence = args.readInt();
+                seek(whence, offset);
+                if (ioOk) {
+                    ctx.write(seekAck(alloc, position));
+                } else {
+                    String errmsg = "SEEK failed : IOError ";
+                    LOGGER.error(errmsg);
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_SEEK, 6, errmsg));
+                }
+                break;
+            }
+
+            case DCapConstants.IOCMD_SEEK_AND_READ: {
+                long offset = args.readLong();
+                int whence = args.readInt();
+                long blockSize = args.readLong();
+                if (ioOk) {
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_SEEK_AND_READ));
+                    seek(whence, offset);
+                    if (ioOk) {
+                        read(ctx, blockSize);
+                    }
+                    finishRead(ctx, DCapConstants.IOCMD_SEEK_AND_READ,
+                          "FIN : SEEK_READ failed (IO not ok)");
+                } else {
+                    String errmsg = "SEEK_AND_READ denied : IOError ";
+                    LOGGER.error(errmsg);
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_SEEK_AND_READ,
+                          CacheException.ERROR_IO_DISK, errmsg));
+                }
+                break;
+            }
+
+            case DCapConstants.IOCMD_SEEK_AND_WRITE: {
+                long offset = args.readLong();
+                int whence = args.readInt();
+                if (!ioOk) {
+                    String errmsg = "SEEK_AND_WRITE denied : IOError";
+                    LOGGER.error(errmsg);
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_SEEK_AND_WRITE,
+                          CacheException.ERROR_IO_DISK, errmsg));
+                } else if (!isWrite) {
+                    String errmsg = "SEEK_AND_WRITE denied (not allowed)";
+                    LOGGER.error(errmsg);
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_SEEK_AND_WRITE,
+                          CacheException.ERROR_IO_DISK, errmsg));
+                } else {
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_SEEK_AND_WRITE));
+                    seek(whence, offset);
+                    expectData(ctx, DCapConstants.IOCMD_SEEK_AND_WRITE);
+                }
+                break;
+            }
+
+            case DCapConstants.IOCMD_CLOSE:
+                ByteBuf reply;
+                if (ioOk) {
+                    reply = ack(alloc, DCapConstants.IOCMD_CLOSE);
+                    try {
+                        while (args.readableBytes() > 4) {
+                            scanCloseBlock(args);
+                        }
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Problem in close block {}", e.toString());
+                    }
+                } else {
+                    reply = ack(alloc, DCapConstants.IOCMD_CLOSE,
+                          CacheException.ERROR_IO_DISK, "IOError");
+                }
+                ctx.writeAndFlush(reply).addListener(ChannelFutureListener.CLOSE);
+                return;
+
+            case DCapConstants.IOCMD_LOCATE:
+                try {
+                    long size = file.size();
+                    LOGGER.debug("LOCATE : size={};position={}", size, position);
+                    ctx.write(locateAck(alloc, size, position));
+                } catch (IOException e) {
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_LOCATE, -1, e.toString()));
+                }
+                break;
+
+            case DCapConstants.IOCMD_READV:
+                if (ioOk) {
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_READV));
+                    readv(ctx, args);
+                    finishRead(ctx, DCapConstants.IOCMD_READV, "FIN : READV failed (IO not ok)");
+                } else {
+                    String errmsg = "ACK : READV denied (IO not ok)";
+                    LOGGER.error(errmsg);
+                    ctx.write(ack(alloc, DCapConstants.IOCMD_READV,
+                          CacheException.ERROR_IO_DISK, errmsg));
+                }
+                break;
+
+            default:
+                ctx.write(ack(alloc, 666, 9, "Invalid mover command : " + request));
+        }
+        ctx.flush();
+    }
+
+    private void expectData(ChannelHandlerContext ctx, int command) {
+        writeCommand = command;
+        ctx.pipeline().get(DcapRequestDecoder.class).expectData();
+    }
+
+    private void write(ByteBuf data) {
+        int length = data.readableBytes();
+        if (ioOk) {
+            try {
+                for (ByteBuffer buffer : data.nioBuffers()) {
+                    while (buffer.hasRemaining()) {
+                        position += file.write(buffer, position);
+                    }
+                }
+            } catch (OutOfDiskException e) {
+                ioOk = false;
+                ioException = e;
+            } catch (IOException e) {
+                LOGGER.error("IOException in writing data to disk : {}", e.toString());
+                ioOk = false;
+            }
+        }
+        bytesTransferred += length;
+        if (ioError > 0L && bytesTransferred > ioError) {
+            ioOk = false;
+        }
+    }
+
+    private void finishWrite(ChannelHandlerContext ctx) {
+        LOGGER.debug("Block Done");
+        if (ioOk) {
+            ctx.writeAndFlush(fin(ctx.alloc(), writeCommand));
+        } else {
+            String op = writeCommand == DCapConstants.IOCMD_WRITE ? "WRITE" : "SEEK_AND_WRITE";
+            String errmsg = op + " failed : " + (ioException == null ? "IOError"
+                  : Exceptions.messageOrClassName(ioException));
+            int rc;
+            if (ioException instanceof OutOfDiskException) {
+                LOGGER.debug(errmsg);
+                rc = CacheException.RESOURCE;
+            } else {
+                LOGGER.error(errmsg);
+                rc = CacheException.ERROR_IO_DISK;
+            }
+            ctx.writeAndFlush(fin(ctx.alloc(), writeCommand, rc, errmsg));
+        }
+    }
+
+    private void finishRead(ChannelHandlerContext ctx, int command, String errmsg) {
+        if (ioOk) {
+            ctx.write(fin(ctx.alloc(), command));
+        } else {
+            LOGGER.error(errmsg);
+            ctx.write(fin(ctx.alloc(), command, CacheException.ERROR_IO_DISK, errmsg));
+        }
+    }
+
+    private void read(ChannelHandlerContext ctx, long blockSize) {
+        ctx.write(dataHeader(ctx.alloc()));
+        if (blockSize == 0) {
+            ctx.write(endOfBlock(ctx.alloc()));
+            return;
+        }
+        try {
+            long count = Math.max(0, Math.min(blockSize, file.size() - position));
+            position += sendBlocks(ctx, position, count);
+        } catch (IOException e) {
+            ioOk = false;
+        }
+        //
+        // data chain delimiter
+        //
+        ctx.write(dataTrailer(ctx.alloc()));
+    }
+
+    private void readv(ChannelHandlerContext ctx, ByteBuf args) {
+        ctx.write(dataHeader(ctx.alloc()));
+        int blocks = args.readInt();
+        LOGGER.debug("READV: {} to read", blocks);
+        try {
+            long size = file.size();
+            for (int i = 0; i < blocks && ioOk; i++) {
+                long offset = args.readLong();
+                int count = args.readInt();
+                LOGGER.debug("READV: offset/len: {}/{}", offset, count);
+                sendBlocks(ctx, offset, Math.max(0, Math.min(count, size - offset)));
+            }
+        } catch (IOException e) {
+            ioOk = false;
+        }
+    }
+
+    /**
+     * Sends up to {@code count} bytes starting at {@code offset} as a sequence of data blocks.
+     * The data itself is transferred as file regions.
+     *
+     * @return the number of bytes sent.
+     */
+    private long sendBlocks(ChannelHandlerContext ctx, long offset, long count) {
+        if (ioError > 0L && bytesTransferred + count > ioError) {
+            count = Math.max(0, ioError - bytesTransferred);
+            ioOk = false;
+        }
+        long sent = 0;
+        while (sent < count) {
+            int size = (int) Math.min(MAX_BLOCK_SIZE, count - sent);
+            ctx.write(blockHeader(ctx.alloc(), size));
+            ctx.write(new RepositoryFileRegion<>(file, offset + sent, size))
+                  .addListener((ChannelFutureListener) future -> {
+                      if (!future.isSuccess()) {
+                          /* The client has been promised data that cannot be sent, thus
+                           * the connection cannot be used any longer.
+                           */
+                          LOGGER.error("Failed to send data: {}", future.cause().toString());
+                          ioOk = false;
+                          future.channel().close();
+                      }
+                  });
+            sent += size;
+        }
+        bytesTransferred += sent;
+        return sent;
+    }
+
+    private void seek(int whence, long offset) {
+        try {
+            long eofSize = file.size();
+            long newOffset;
+            switch (whence) {
+                case DCapConstants.IOCMD_SEEK_SET:
+                    LOGGER.debug("SEEK {} SEEK_SET", offset);
+                    //
+                    // this should reset the io state
+                    //
+                    if (offset == 0L) {
+                        ioOk = true;
+                    }
+                    newOffset = offset;
+                    break;
+                case DCapConstants.IOCMD_SEEK_CURRENT:
+                    LOGGER.debug("SEEK {} SEEK_CURRENT", offset);
+                    newOffset = position + offset;
+                    break;
+                case DCapConstants.IOCMD_SEEK_END:
+                    LOGGER.debug("SEEK {} SEEK_END", offset);
+                    newOffset = eofSize + offset;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid seek mode : " + whence);
+            }
+            if (newOffset > eofSize && !isWrite) {
+                throw new IOException("Seek beyond EOF not allowed (write not allowed)");
+            }
+            if (newOffset < 0) {
+                throw new IOException("Seek before start of file");
+            }
+            position = newOffset;
+        } catch (IOException | IllegalArgumentException e) {
+            //
+            //          don't disable pools because of this.
+            //
+            LOGGER.error("Problem in seek : {}", e.toString());
+        }
+    }
+
+    private void scanCloseBlock(ByteBuf args) {
+        //
+        //    Close Block Format :
+        //        Size          Purpose
+        //          4       (Size following)
+        //          4        sub block type  (1=crc)
+        //
+        //   if crc
+        //          4        crc type (1=adler32)
+        //          n        checksum
+        //
+        int blockSize = args.readInt();
+        if (blockSize < 4) {
+            LOGGER.error("Not a valid block size in close");
+            throw new IllegalArgumentException("Not a valid block size in close");
+        }
+
+        int blockMode = args.readInt();
+        if (blockMode != 1) { // crc block
+            LOGGER.error("Unknown block mode ({}) in close", blockMode);
+            args.skipBytes(blockSize - 4);
+            return;
+        }
+        int crcType = args.readInt();
+        byte[] array = new byte[blockSize - 8];
+        args.readBytes(array);
+
+        Checksum checksum = new Checksum(ChecksumType.getChecksumType(crcType), array);
+        file.addChecksum(checksum);
+        FileAttributes attributes = file.getFileAttributes();
+        if (attributes.isDefined(FileAttribute.STORAGEINFO)) {
+            attributes.getStorageInfo().setKey("flag-c", checksum.toString());
+        }
+    }
+}
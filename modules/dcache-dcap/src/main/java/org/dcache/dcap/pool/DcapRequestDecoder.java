@@ -0,0 +1,276 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2024 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.dcap.pool;
+
+import static org.dcache.util.ByteUnit.KiB;
+import static org.dcache.util.ByteUnit.MiB;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import java.io.IOException;
+import java.util.List;
+import org.dcache.pool.movers.DCapConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits the byte stream of a DCAP data connection into messages.
+ * <p>
+ * A connection starts with the client presenting the session id and the challenge it received
+ * from the door, which is decoded into a {@link Challenge}.  Afterwards the client sends request
+ * blocks, each prefixed by its size, which are decoded into {@link Request}s.  After the handler
+ * accepted a write request it calls {@link #expectData()}; the data blocks that follow are passed
+ * on as {@link ByteBuf}s as they arrive, followed by {@link #END_OF_DATA}.
+ */
+public class DcapRequestDecoder extends ByteToMessageDecoder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DcapRequestDecoder.class);
+
+    /**
+     * Max request size that client sent by client that we will accept.
+     */
+    private static final int MAX_REQUEST_SIZE = MiB.toBytes(8);
+
+    /**
+     * Max size of the challenge presented by the client.
+     */
+    private static final int MAX_CHALLENGE_SIZE = KiB.toBytes(1);
+
+    /**
+     * Marks the end of the data blocks of a write request.
+     */
+    public static final Object END_OF_DATA = new Object();
+
+    private enum State {
+        CHALLENGE, REQUEST, SKIP, DATA_REQUEST, BLOCK_SIZE, BLOCK_DATA
+    }
+
+    private State state = State.CHALLENGE;
+
+    /**
+     * Bytes left to skip or to pass on in the current state.
+     */
+    private long remaining;
+
+    /**
+     * The session id and challenge presented by the client when connecting.
+     */
+    public static class Challenge {
+
+        private final int sessionId;
+        private final byte[] challenge;
+
+        Challenge(int sessionId, byte[] challenge) {
+            this.sessionId = sessionId;
+            this.challenge = challenge;
+        }
+
+        public int getSessionId() {
+            return sessionId;
+        }
+
+        /**
+         * Returns the challenge, still base64 encoded as sent by the client.
+         */
+        public byte[] getChallenge() {
+            return challenge;
+        }
+    }
+
+    /**
+     * A request block.  The arguments are only valid until the request is released.
+     */
+    public static class Request {
+
+        private final int size;
+        private final int commandCode;
+        private final ByteBuf arguments;
+
+        Request(int size, int commandCode, ByteBuf arguments) {
+            this.size = size;
+            this.commandCode = commandCode;
+            this.arguments = arguments;
+        }
+
+        public int getCommandCode() {
+            return commandCode;
+        }
+
+        public ByteBuf getArguments() {
+            return arguments;
+        }
+
+        public void release() {
+            arguments.release();
+        }
+
+        @Override
+        public String toString() {
+            return "RequestBlock [Size=" + size + " Code=" + commandCode
+                  + " Buffer=" + arguments + "]";
+        }
+    }
+
+    /**
+     * A request block that violates the protocol.  It has been discarded.
+     */
+    public static class ProtocolViolation {
+
+        private final String message;
+
+        ProtocolViolation(String message) {
+            this.message = message;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Switches to decoding the data blocks of a write request.  Must be called from the event
+     * loop while handling the write request.
+     */
+    public void expectData() {
+        state = State.DATA_REQUEST;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out)
+          throws IOException {
+        switch (state) {
+            case CHALLENGE:
+                decodeChallenge(ctx, in, out);
+                break;
+            case REQUEST:
+                decodeRequest(in, out);
+                break;
+            case SKIP:
+                int skip = (int) Math.min(in.readableBytes(), remaining);
+                in.skipBytes(skip);
+                remaining -= skip;
+                if (remaining == 0) {
+                    state = State.REQUEST;
+                    out.add(new ProtocolViolation(
+                          "Protocol Violation: request block too big"));
+                }
+                break;
+            case DATA_REQUEST:
+                decodeDataRequest(in);
+                break;
+            case BLOCK_SIZE:
+                if (in.readableBytes() >= 4) {
+                    int size = in.readInt();
+                    if (size < 0) {
+                        state = State.REQUEST;
+                        out.add(END_OF_DATA);
+                    } else if (size > 0) {
+                        LOGGER.debug("Next data block : {} bytes", size);
+                        remaining = size;
+                        state = State.BLOCK_DATA;
+                    }
+                }
+                break;
+            case BLOCK_DATA:
+                int length = (int) Math.min(in.readableBytes(), remaining);
+                if (length > 0) {
+                    out.add(in.readRetainedSlice(length));
+                    remaining -= length;
+                }
+                if (remaining == 0) {
+                    state = State.BLOCK_SIZE;
+                }
+                break;
+        }
+    }
+
+    private void decodeChallenge(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < 8) {
+            return;
+        }
+        int sessionId = in.getInt(in.readerIndex());
+        int length = in.getInt(in.readerIndex() + 4);
+        if (length < 0 || length > MAX_CHALLENGE_SIZE) {
+            LOGGER.warn("Invalid challenge length {} from client", length);
+            in.skipBytes(in.readableBytes());
+            ctx.close();
+            return;
+        }
+        if (in.readableBytes() < 8 + length) {
+            return;
+        }
+        in.skipBytes(8);
+        byte[] challenge = new byte[length];
+        in.readBytes(challenge);
+        state = State.REQUEST;
+        out.add(new Challenge(sessionId, challenge));
+    }
+
+    private void decodeRequest(ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < 4) {
+            return;
+        }
+        int size = in.getInt(in.readerIndex());
+        if (size < 4) {
+            in.skipBytes(4);
+            out.add(new ProtocolViolation("Protocol Violation (cl<4)"));
+            return;
+        }
+        if (size > MAX_REQUEST_SIZE) {
+            /*
+             * well, protocol tells nothing about command block size limit (my bad).
+             * but we will send "protocol violation" to indicate client that we cant handle it.
+             */
+            LOGGER.warn("Command size excided command block size : {}/{}", size,
+                  MAX_REQUEST_SIZE);
+            in.skipBytes(4);
+            remaining = size;
+            state = State.SKIP;
+            return;
+        }
+        if (in.readableBytes() < 4 + size) {
+            return;
+        }
+        in.skipBytes(4);
+        int commandCode = in.readInt();
+        out.add(new Request(size, commandCode, in.readRetainedSlice(size - 4)));
+    }
+
+    private void decodeDataRequest(ByteBuf in) throws IOException {
+        if (in.readableBytes() < 4) {
+            return;
+        }
+        int size = in.getInt(in.readerIndex());
+        if (size < 4 || size > MAX_REQUEST_SIZE) {
+            throw new IOException("Protocol Violation: invalid data block size " + size);
+        }
+        if (in.readableBytes() < 4 + size) {
+            return;
+        }
+        in.skipBytes(4);
+        int commandCode = in.readInt();
+        if (commandCode != DCapConstants.IOCMD_DATA) {
+            throw new IOException("Expecting : " + DCapConstants.IOCMD_DATA + "; got : "
+                  + commandCode);
+        }
+        in.skipBytes(size - 4);
+        state = State.BLOCK_SIZE;
+    }
+}
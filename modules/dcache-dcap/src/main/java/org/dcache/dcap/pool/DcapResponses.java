@@ -0,0 +1,109 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2024 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.dcap.pool;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.dcache.pool.movers.DCapConstants;
+
+/**
+ * Encodes the replies of a DCAP mover into buffers taken from a Netty allocator.  The wire
+ * format is the same as that of {@link org.dcache.pool.movers.DCapOutputByteBuffer}.
+ */
+class DcapResponses {
+
+    private DcapResponses() {
+    }
+
+    static ByteBuf ack(ByteBufAllocator alloc, int command) {
+        return alloc.buffer(16)
+              .writeInt(12)
+              .writeInt(DCapConstants.IOCMD_ACK)
+              .writeInt(command)
+              .writeInt(0);
+    }
+
+    static ByteBuf ack(ByteBufAllocator alloc, int command, int returnCode, String message) {
+        return reply(alloc, DCapConstants.IOCMD_ACK, command, returnCode, message);
+    }
+
+    static ByteBuf seekAck(ByteBufAllocator alloc, long location) {
+        return alloc.buffer(24)
+              .writeInt(4 + 4 + 4 + 8)
+              .writeInt(DCapConstants.IOCMD_ACK)
+              .writeInt(DCapConstants.IOCMD_SEEK)
+              .writeInt(0)
+              .writeLong(location);
+    }
+
+    static ByteBuf locateAck(ByteBufAllocator alloc, long location, long size) {
+        return alloc.buffer(32)
+              .writeInt(4 + 4 + 4 + 8 + 8)
+              .writeInt(DCapConstants.IOCMD_ACK)
+              .writeInt(DCapConstants.IOCMD_LOCATE)
+              .writeInt(0)
+              .writeLong(location)
+              .writeLong(size);
+    }
+
+    static ByteBuf fin(ByteBufAllocator alloc, int command) {
+        return alloc.buffer(16)
+              .writeInt(12)
+              .writeInt(DCapConstants.IOCMD_FIN)
+              .writeInt(command)
+              .writeInt(0);
+    }
+
+    static ByteBuf fin(ByteBufAllocator alloc, int command, int returnCode, String message) {
+        return reply(alloc, DCapConstants.IOCMD_FIN, command, returnCode, message);
+    }
+
+    static ByteBuf dataHeader(ByteBufAllocator alloc) {
+        return alloc.buffer(8)
+              .writeInt(4)
+              .writeInt(DCapConstants.IOCMD_DATA);
+    }
+
+    static ByteBuf dataTrailer(ByteBufAllocator alloc) {
+        return alloc.buffer(4).writeInt(-1);
+    }
+
+    static ByteBuf endOfBlock(ByteBufAllocator alloc) {
+        return alloc.buffer(8).writeInt(0).writeInt(-1);
+    }
+
+    static ByteBuf blockHeader(ByteBufAllocator alloc, int size) {
+        return alloc.buffer(4).writeInt(size);
+    }
+
+    private static ByteBuf reply(ByteBufAllocator alloc, int type, int command, int returnCode,
+          String message) {
+        byte[] msgBytes = message.getBytes(UTF_8);
+        int len = 4 + 4 + 4 + 2 + msgBytes.length;
+        return alloc.buffer(4 + len)
+              .writeInt(len)
+              .writeInt(type)
+              .writeInt(command)
+              .writeInt(returnCode)
+              .writeShort(msgBytes.length)
+              .writeBytes(msgBytes);
+    }
+}
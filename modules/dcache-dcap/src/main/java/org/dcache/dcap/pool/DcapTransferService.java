@@ -0,0 +1,100 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2024 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.dcap.pool;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import diskCacheV111.vehicles.DCapProtocolInfo;
+import diskCacheV111.vehicles.PoolPassiveIoFileMessage;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.logging.LoggingHandler;
+import java.net.InetSocketAddress;
+import java.util.UUID;
+import org.dcache.pool.movers.NettyMover;
+import org.dcache.pool.movers.NettyTransferService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Netty-based DCAP transfer service.
+ * <p>
+ * In contrast to {@link org.dcache.pool.movers.DCapProtocol_3_nio}, which dedicates a thread and
+ * a listening socket to each transfer, all DCAP transfers of a pool share a single server port
+ * and a small number of event loop threads.
+ * <p>
+ * The UUID identifying a transfer is used as the challenge that the door forwards to the client.
+ * When connecting, the client presents the challenge along with its session id, which allows
+ * the server to find the right mover.
+ */
+public class DcapTransferService extends NettyTransferService<DCapProtocolInfo> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DcapTransferService.class);
+
+    public DcapTransferService() {
+        super("dcap");
+    }
+
+    @Override
+    protected UUID createUuid(DCapProtocolInfo protocolInfo) {
+        return UUID.randomUUID();
+    }
+
+    /**
+     * Send the network address of this mover to the door, along with the challenge the client
+     * has to present.
+     */
+    @Override
+    protected void sendAddressToDoor(NettyMover<DCapProtocolInfo> mover,
+          InetSocketAddress localEndpoint) {
+        DCapProtocolInfo protocolInfo = mover.getProtocolInfo();
+        byte[] challenge = mover.getUuid().toString().getBytes(US_ASCII);
+        PoolPassiveIoFileMessage<byte[]> msg =
+              new PoolPassiveIoFileMessage<>("pool", localEndpoint, challenge);
+        msg.setId(protocolInfo.getSessionId());
+        LOGGER.debug("Sending address {} to door {}", localEndpoint, protocolInfo.door());
+        doorStub.notify(protocolInfo.door(), msg);
+    }
+
+    @Override
+    protected void initChannel(Channel ch) throws Exception {
+        super.initChannel(ch);
+
+        ChannelPipeline pipeline = ch.pipeline();
+        if (LOGGER.isDebugEnabled()) {
+            pipeline.addLast("logger", new LoggingHandler());
+        }
+        pipeline.addLast("decoder", new DcapRequestDecoder());
+        pipeline.addLast("transfer", new DcapPoolRequestHandler(this));
+    }
+
+    /**
+     * Opens the file of the transfer identified by {@code uuid} for exclusive use, provided the
+     * session id matches that of the transfer.
+     *
+     * @return the file, or null if there is no such transfer or it is already in use
+     */
+    NettyMoverChannel openFile(UUID uuid, int sessionId) {
+        NettyMoverChannel channel = uuids.get(uuid);
+        if (channel == null || channel.getProtocolInfo().getSessionId() != sessionId) {
+            return null;
+        }
+        return openFile(uuid, true);
+    }
+}
@@ -0,0 +1,218 @@
+package org.dcache.dcap.pool;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import diskCacheV111.util.CacheException;
+import diskCacheV111.vehicles.DCapProtocolInfo;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.UUID;
+import org.dcache.pool.movers.DCapConstants;
+import org.dcache.pool.movers.NettyTransferService;
+import org.dcache.pool.movers.RepositoryFileRegion;
+import org.dcache.util.Checksum;
+import org.dcache.util.ChecksumType;
+import org.dcache.vehicles.FileAttributes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DcapPoolRequestHandlerTest {
+
+    private static final int SESSION = 42;
+    private static final long FILE_SIZE = 100;
+
+    private final UUID uuid = UUID.randomUUID();
+
+    private DcapTransferService service;
+    private NettyTransferService<DCapProtocolInfo>.NettyMoverChannel file;
+    private EmbeddedChannel channel;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        service = mock(DcapTransferService.class);
+        file = mock(NettyTransferService.NettyMoverChannel.class);
+        when(file.size()).thenReturn(FILE_SIZE);
+        when(file.getFileAttributes()).thenReturn(FileAttributes.of().build());
+        channel = new EmbeddedChannel(new DcapRequestDecoder(), new DcapPoolRequestHandler(service));
+    }
+
+    @After
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void shouldCloseConnectionWithUnknownSession() {
+        connect(SESSION);
+
+        assertThat(channel.isOpen(), is(false));
+    }
+
+    @Test
+    public void shouldReplyToSeekWithNewPosition() {
+        open(StandardOpenOption.READ);
+
+        send(Unpooled.buffer().writeInt(16).writeInt(DCapConstants.IOCMD_SEEK)
+              .writeLong(10).writeInt(DCapConstants.IOCMD_SEEK_SET));
+
+        ByteBuf reply = channel.readOutbound();
+        assertThat(reply.readInt(), is(20));
+        assertThat(reply.readInt(), is(DCapConstants.IOCMD_ACK));
+        assertThat(reply.readInt(), is(DCapConstants.IOCMD_SEEK));
+        assertThat(reply.readInt(), is(0));
+        assertThat(reply.readLong(), is(10L));
+        reply.release();
+    }
+
+    @Test
+    public void shouldSendReadDataAsFileRegion() {
+        open(StandardOpenOption.READ);
+
+        send(Unpooled.buffer().writeInt(12).writeInt(DCapConstants.IOCMD_READ).writeLong(10));
+
+        assertAck(channel.readOutbound(), DCapConstants.IOCMD_READ, 0);
+        ByteBuf header = channel.readOutbound();
+        assertThat(header.readInt(), is(4));
+        assertThat(header.readInt(), is(DCapConstants.IOCMD_DATA));
+        header.release();
+        ByteBuf blockSize = channel.readOutbound();
+        assertThat(blockSize.readInt(), is(10));
+        blockSize.release();
+        Object region = channel.readOutbound();
+        assertThat(region, instanceOf(RepositoryFileRegion.class));
+        assertThat(((RepositoryFileRegion<?>) region).count(), is(10L));
+        ReferenceCountUtil.release(region);
+        ByteBuf trailer = channel.readOutbound();
+        assertThat(trailer.readInt(), is(-1));
+        trailer.release();
+        assertFin(channel.readOutbound(), DCapConstants.IOCMD_READ, 0);
+    }
+
+    @Test
+    public void shouldDenyWriteOfReadOnlyTransfer() throws Exception {
+        open(StandardOpenOption.READ);
+
+        send(Unpooled.buffer().writeInt(4).writeInt(DCapConstants.IOCMD_WRITE));
+
+        assertAck(channel.readOutbound(), DCapConstants.IOCMD_WRITE, CacheException.ERROR_IO_DISK);
+        verify(file, never()).write(any(ByteBuffer.class), anyLong());
+    }
+
+    @Test
+    public void shouldWriteDataBlocksToFile() throws Exception {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        when(file.write(any(ByteBuffer.class), anyLong())).thenAnswer(invocation -> {
+            ByteBuffer buffer = invocation.getArgument(0);
+            int length = buffer.remaining();
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            written.write(bytes);
+            return length;
+        });
+        open(StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        send(Unpooled.buffer().writeInt(4).writeInt(DCapConstants.IOCMD_WRITE));
+        assertAck(channel.readOutbound(), DCapConstants.IOCMD_WRITE, 0);
+
+        send(Unpooled.buffer()
+              .writeInt(4).writeInt(DCapConstants.IOCMD_DATA)
+              .writeInt(5).writeBytes("hello".getBytes(US_ASCII))
+              .writeInt(0)
+              .writeInt(-1));
+
+        assertFin(channel.readOutbound(), DCapConstants.IOCMD_WRITE, 0);
+        assertThat(written.toString(US_ASCII), is(equalTo("hello")));
+        verify(file).addChecksumType(ChecksumType.ADLER32);
+    }
+
+    @Test
+    public void shouldCloseConnectionAfterCloseReply() {
+        open(StandardOpenOption.READ);
+
+        send(Unpooled.buffer().writeInt(4).writeInt(DCapConstants.IOCMD_CLOSE));
+
+        assertAck(channel.readOutbound(), DCapConstants.IOCMD_CLOSE, 0);
+        assertThat(channel.isOpen(), is(false));
+        verify(file).release();
+    }
+
+    @Test
+    public void shouldPassChecksumOfCloseBlockToIntegrityChecker() {
+        open(StandardOpenOption.READ, StandardOpenOption.WRITE);
+        byte[] value = {0x01, 0x02, 0x03, 0x04};
+
+        send(Unpooled.buffer().writeInt(20).writeInt(DCapConstants.IOCMD_CLOSE)
+              .writeInt(12).writeInt(1).writeInt(ChecksumType.ADLER32.getType())
+              .writeBytes(value));
+
+        assertAck(channel.readOutbound(), DCapConstants.IOCMD_CLOSE, 0);
+        verify(file).addChecksum(new Checksum(ChecksumType.ADLER32, value));
+    }
+
+    @Test
+    public void shouldRejectUnknownCommand() {
+        open(StandardOpenOption.READ);
+
+        send(Unpooled.buffer().writeInt(4).writeInt(4711));
+
+        assertAck(channel.readOutbound(), 666, 9);
+        assertThat(channel.isOpen(), is(true));
+    }
+
+    private void open(StandardOpenOption... ioMode) {
+        doReturn(EnumSet.of(ioMode[0], ioMode)).when(file).getIoMode();
+        when(service.openFile(uuid, SESSION)).thenReturn(file);
+        connect(SESSION);
+        assertThat(channel.readOutbound(), is(nullValue()));
+    }
+
+    private void connect(int session) {
+        byte[] challenge = Base64.getEncoder().encode(uuid.toString().getBytes(US_ASCII));
+        send(Unpooled.buffer().writeInt(session).writeInt(challenge.length)
+              .writeBytes(challenge));
+    }
+
+    private void send(ByteBuf data) {
+        channel.writeInbound(data);
+    }
+
+    private static void assertAck(ByteBuf reply, int command, int returnCode) {
+        assertReply(reply, DCapConstants.IOCMD_ACK, command, returnCode);
+    }
+
+    private static void assertFin(ByteBuf reply, int command, int returnCode) {
+        assertReply(reply, DCapConstants.IOCMD_FIN, command, returnCode);
+    }
+
+    private static void assertReply(ByteBuf reply, int type, int command, int returnCode) {
+        try {
+            reply.skipBytes(4);
+            assertThat(reply.readInt(), is(type));
+            assertThat(reply.readInt(), is(command));
+            assertThat(reply.readInt(), is(returnCode));
+        } finally {
+            reply.release();
+        }
+    }
+}
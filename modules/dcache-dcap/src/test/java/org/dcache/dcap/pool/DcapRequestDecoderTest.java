@@ -0,0 +1,100 @@
+package org.dcache.dcap.pool;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.dcache.pool.movers.DCapConstants;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DcapRequestDecoderTest {
+
+    private DcapRequestDecoder decoder;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        decoder = new DcapRequestDecoder();
+        channel = new EmbeddedChannel(decoder);
+    }
+
+    private void connect() {
+        byte[] challenge = "Y2hhbGxlbmdl".getBytes(US_ASCII);
+        channel.writeInbound(Unpooled.buffer()
+              .writeInt(42).writeInt(challenge.length).writeBytes(challenge));
+        channel.readInbound();
+    }
+
+    @Test
+    public void shouldDecodeChallenge() {
+        byte[] challenge = "Y2hhbGxlbmdl".getBytes(US_ASCII);
+        channel.writeInbound(Unpooled.buffer().writeInt(42).writeInt(challenge.length));
+        assertThat(channel.readInbound(), is(nullValue()));
+
+        channel.writeInbound(Unpooled.wrappedBuffer(challenge));
+        DcapRequestDecoder.Challenge msg = channel.readInbound();
+
+        assertThat(msg.getSessionId(), is(42));
+        assertThat(new String(msg.getChallenge(), US_ASCII), is("Y2hhbGxlbmdl"));
+    }
+
+    @Test
+    public void shouldDecodeFragmentedRequest() {
+        connect();
+
+        channel.writeInbound(Unpooled.buffer().writeInt(12).writeInt(DCapConstants.IOCMD_READ));
+        assertThat(channel.readInbound(), is(nullValue()));
+
+        channel.writeInbound(Unpooled.buffer().writeLong(4711));
+        DcapRequestDecoder.Request request = channel.readInbound();
+
+        assertThat(request.getCommandCode(), is(DCapConstants.IOCMD_READ));
+        assertThat(request.getArguments().readLong(), is(4711L));
+        request.release();
+    }
+
+    @Test
+    public void shouldRejectShortRequest() {
+        connect();
+
+        channel.writeInbound(Unpooled.buffer().writeInt(2));
+
+        assertThat(channel.readInbound(), instanceOf(DcapRequestDecoder.ProtocolViolation.class));
+    }
+
+    @Test
+    public void shouldPassDataBlocksAfterWriteRequest() {
+        connect();
+        channel.writeInbound(Unpooled.buffer().writeInt(4).writeInt(DCapConstants.IOCMD_WRITE));
+        DcapRequestDecoder.Request request = channel.readInbound();
+        request.release();
+        decoder.expectData();
+
+        channel.writeInbound(Unpooled.buffer()
+              .writeInt(4).writeInt(DCapConstants.IOCMD_DATA)
+              .writeInt(5).writeBytes("hel".getBytes(US_ASCII)));
+        channel.writeInbound(Unpooled.buffer()
+              .writeBytes("lo".getBytes(US_ASCII))
+              .writeInt(0)
+              .writeInt(-1)
+              .writeInt(4).writeInt(DCapConstants.IOCMD_CLOSE));
+
+        ByteBuf first = channel.readInbound();
+        ByteBuf second = channel.readInbound();
+        assertThat(first.toString(US_ASCII) + second.toString(US_ASCII), equalTo("hello"));
+        first.release();
+        second.release();
+        assertThat(channel.readInbound(), is(sameInstance(DcapRequestDecoder.END_OF_DATA)));
+        DcapRequestDecoder.Request close = channel.readInbound();
+        assertThat(close.getCommandCode(), is(DCapConstants.IOCMD_CLOSE));
+        close.release();
+    }
+}
@@ -0,0 +1,53 @@
+package org.dcache.ftp.data;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.dcache.util.CDCThreadFactory;
+
+/**
+ * Event loops and disk I/O threads shared by the data channels of all FTP transfers.
+ * <p>
+ * Each transfer is bound to a single event loop for all its data channels, so the state of a
+ * transfer is only ever accessed from one thread, like with a {@link Multiplexer}.  Disk I/O is
+ * never performed on an event loop, but is submitted to a separate pool of threads.
+ */
+public class DataChannelEventLoops {
+
+    private final EventLoopGroup _group;
+    private final ExecutorService _diskExecutor;
+
+    /**
+     * @param threads     the number of event loops; zero selects the Netty default
+     * @param diskThreads the number of threads performing disk I/O
+     */
+    public DataChannelEventLoops(int threads, int diskThreads) {
+        _group = new NioEventLoopGroup(threads, new CDCThreadFactory(
+              new ThreadFactoryBuilder().setNameFormat("ftp-data-%d").build()));
+        _diskExecutor = Executors.newFixedThreadPool(diskThreads, new CDCThreadFactory(
+              new ThreadFactoryBuilder().setNameFormat("ftp-disk-%d").build()));
+    }
+
+    /**
+     * Returns the event loop for the next transfer.
+     */
+    public EventLoop next() {
+        return _group.next();
+    }
+
+    /**
+     * Returns the executor for disk I/O.
+     */
+    public Executor diskExecutor() {
+        return _diskExecutor;
+    }
+
+    public void shutdown() {
+        _group.shutdownGracefully();
+        _diskExecutor.shutdown();
+    }
+}
@@ -1,6 +1,5 @@
 package org.dcache.ftp.data;
 
-import static org.dcache.util.ByteUnit.KiB;
 import static org.dcache.util.Strings.describe;
 import static org.dcache.util.Strings.describeSize;
 import static org.dcache.util.Strings.toThreeSigFig;
@@ -10,26 +9,18 @@ import com.google.common.net.InetAddresses;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.InetSocketAddress;
-import java.net.Socket;
 import java.net.SocketAddress;
-import java.nio.ByteBuffer;
-import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
-import java.nio.channels.SocketChannel;
 import java.nio.channels.UnresolvedAddressException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.dcache.pool.repository.RepositoryChannel;
 import org.dcache.util.Strings;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Base class for FTP transfer mode implementations.
@@ -37,10 +28,11 @@ import org.slf4j.LoggerFactory;
  * A mode may make use of several connections at the same time. The transfer will be coordinated by
  * the mode object. Therefore, the mode object knows about the file to transfer and the direction of
  * the transfer.
+ * <p>
+ * How the data channels are driven is left to subclasses: see {@link MultiplexerMode} and {@link
+ * NettyMode}.
  */
-public abstract class Mode extends AbstractMultiplexerListener {
-
-    private static final Logger LOGGER = LoggerFactory.getLogger(Mode.class);
+public abstract class Mode {
 
     protected Role _role;
     protected Direction _direction;
@@ -53,20 +45,15 @@ public abstract class Mode extends AbstractMultiplexerListener {
 
     protected long _fileSize;
 
-    /**
-     * Buffer for transferTo and transferFrom.
-     */
-    private final ByteBuffer _buffer = ByteBuffer.allocate(KiB.toBytes(8));
-
     /**
      * The address to connect to for outgoing connections.
      */
-    private InetSocketAddress _address;
+    protected InetSocketAddress _address;
 
     /**
      * The channel used for incomming connections.
      */
-    private ServerSocketChannel _channel;
+    protected ServerSocketChannel _channel;
 
     /**
      * Local adress of _channel.  Cached to avoid ClosedChannelException.
@@ -76,19 +63,13 @@ public abstract class Mode extends AbstractMultiplexerListener {
     /**
      * Size of send and recv buffer when larger than 0.
      */
-    private int _bufferSize;
+    protected int _bufferSize;
 
     /**
      * The largest number of concurrent connections to accept.
      */
     protected int _parallelism = 1;
 
-    /**
-     * Disabled keys. The value is the interest set of the key.
-     */
-    protected final Map<SelectionKey, Integer> disabled
-          = new HashMap<>();
-
     /**
      * Number of connections for which connect failed.
      */
@@ -109,14 +90,14 @@ public abstract class Mode extends AbstractMultiplexerListener {
      * remote addresses; for ACTIVE transfers (Direction.Outgoing) this is a list of local
      * transfes.
      */
-    private final List<InetSocketAddress> _addresses = new ArrayList<>();
+    protected final List<InetSocketAddress> _addresses = new ArrayList<>();
 
-    private String _lastFailure;
+    protected String _lastFailure;
 
     /**
      * Local endpoint used for transfer.
      */
-    private volatile InetSocketAddress _localEndpoint;
+    protected volatile InetSocketAddress _localEndpoint;
 
     /**
      * Constructs a new mode for outgoing connections.
@@ -216,156 +197,6 @@ public abstract class Mode extends AbstractMultiplexerListener {
         return Collections.unmodifiableCollection(_addresses);
     }
 
-    /**
-     * Like calling _file.transferTo().
-     * <p>
-     * This method behaves similarly to FileChannel.transferTo, except that it never uses zero-copy
-     * mode. FileChannel.transferTo has been subject to a large number of bugs throughout the
-     * history of Java.
-     */
-    protected long transferTo(long position, long count, SocketChannel socket)
-          throws IOException {
-        long tr = 0;                        // Total bytes read
-        long pos = position;
-        _buffer.clear();
-        while (tr < count) {
-            _buffer.limit((int) Math.min((count - tr),
-                  (long) _buffer.capacity()));
-            int nr = _file.read(_buffer, pos);
-            if (nr < 0 && tr == 0) {
-                return -1;
-            }
-            if (nr <= 0) {
-                break;
-            }
-            _buffer.flip();
-            int nw = socket.write(_buffer);
-            tr += nw;
-            if (nw != nr) {
-                break;
-            }
-            pos += nw;
-            _buffer.clear();
-        }
-        return tr;
-    }
-
-    /**
-     * Similar to _file.transferFrom(). In contrast to FileChannel.transferFrom(), this method does
-     * detect end-of-stream and returns -1 in that case.
-     * <p>
-     * Originally, this method was based on FileChannel.transferFrom(), but spurious behaviour was
-     * observed in some cases (transferFrom returning 0, even though the selector claimed data was
-     * ready and a normal read returned data).
-     * <p>
-     * The current implementation copies data into memory and writes it do disk. This should be no
-     * slower than using FileChannel.transferFrom() from JDK 6, since that does exactly the same
-     * when copying from a SocketChannel.
-     * <p>
-     * An alternative would be to map the file into memory and read from the socket directly into
-     * the mapped file. That however would be better done at a higher level and it is currently
-     * unknown if the performance would improve.
-     */
-    protected long transferFrom(SocketChannel socket, long position, long count)
-          throws IOException {
-        long tw = 0;                    // Total bytes written
-        long pos = position;
-        try {
-            _buffer.clear();
-            while (tw < count) {
-                _buffer.limit((int) Math.min((count - tw),
-                      (long) _buffer.capacity()));
-                int nr = socket.read(_buffer);
-                if (nr < 0 && tw == 0) {
-                    return -1;
-                }
-                if (nr <= 0) {
-                    break;
-                }
-                _buffer.flip();
-                int nw = _file.write(_buffer, pos);
-                tw += nw;
-                if (nw != nr) {
-                    break;
-                }
-                pos += nw;
-                _buffer.clear();
-            }
-            return tw;
-        } catch (IOException x) {
-            if (tw > 0) {
-                return tw;
-            }
-            throw x;
-        }
-    }
-
-    /**
-     * Register the mode for outgoing connections. One or more connections will be established
-     * asynchronously. The number of connections to create is controlled by the parallelism.
-     * <p>
-     * An IOException may be thrown if all connections attempts fail. Failures to create a
-     * SocketChannel are propagated to the caller.
-     *
-     * @see Mode#setParallelism, SocketChannel#open
-     */
-    protected void registerOutgoing(Multiplexer multiplexer)
-          throws IOException {
-        IOException lastException = null;
-
-        for (int i = 0; i < _parallelism; i++) {
-            /* Errors in socket channel creation are likely to
-             * indicate some serious problems. Therefore we let the
-             * caller figure out what to do (i.e. we do not catch the
-             * exception).
-             */
-            SocketChannel channel = SocketChannel.open();
-            try {
-                channel.configureBlocking(false);
-                if (_bufferSize > 0) {
-                    channel.socket().setReceiveBufferSize(_bufferSize);
-                    channel.socket().setSendBufferSize(_bufferSize);
-                }
-                channel.socket().setKeepAlive(true);
-
-                SelectionKey key =
-                      multiplexer.register(this, SelectionKey.OP_CONNECT, channel);
-
-                LOGGER.debug("Connecting to {}", _address);
-                if (channel.connect(_address)) {
-                    connect(multiplexer, key);
-                }
-            } catch (IOException e) {
-                SocketAddress remoteAddress = channel.getRemoteAddress();
-
-                // Any error is logged, but otherwise ignored.  As
-                // long as at least one connection succeeds, the
-                // transfer can be completed.
-                channel.close();
-                lastException = e;
-                String displayAddress;
-                if (remoteAddress instanceof InetSocketAddress) {
-                    InetSocketAddress ia = (InetSocketAddress) remoteAddress;
-                    displayAddress =
-                          InetAddresses.toUriString(ia.getAddress()) + ":" + ia.getPort();
-                } else {
-                    displayAddress = remoteAddress.toString();
-                }
-                LOGGER.warn("Problem with {}: {}", displayAddress, e.getMessage());
-                _lastFailure = e.toString();
-                _failed++;
-
-                if (allConnectionsEstablished()) {
-                    enableDisabledKeys();
-                }
-            }
-        }
-
-        if (_failed == _parallelism) {
-            throw lastException;
-        }
-    }
-
     public String getRemoteAddressDescription() {
         switch (_direction) {
             case Outgoing:
@@ -385,174 +216,18 @@ public abstract class Mode extends AbstractMultiplexerListener {
         return null;
     }
 
-    /**
-     * Register the mode for incomming connections.
-     */
-    protected void registerIncomming(Multiplexer multiplexer)
-          throws IOException {
-        _channel.configureBlocking(false);
-        LOGGER.debug("Accepting connections on {}", _channel.socket().getLocalSocketAddress());
-        multiplexer.register(this, SelectionKey.OP_ACCEPT, _channel);
-    }
-
-    /**
-     * Registers this mode with a multiplexer.
-     */
-    @Override
-    public void register(Multiplexer multiplexer)
-          throws IOException {
-        assert _address != null || _channel != null
-              : "Mode must be either set to passive or active.";
-
-        switch (_direction) {
-            case Incomming:
-                registerIncomming(multiplexer);
-                break;
-            case Outgoing:
-                registerOutgoing(multiplexer);
-                break;
-            default:
-                // Ignore
-                break;
-        }
-    }
-
-    /**
-     * Called by the multiplexer when a new incomming connection can be accepted. A new socket is
-     * created and newConnection() is called.
-     * <p>
-     * Failure to accept the connection is propagated to the caller.
-     */
-    @Override
-    public void accept(Multiplexer multiplexer, SelectionKey key)
-          throws IOException {
-        ServerSocketChannel server = (ServerSocketChannel) key.channel();
-        SocketChannel channel = server.accept();
-        if (channel != null) {
-            Socket socket = channel.socket();
-            _opened++;
-            LOGGER.debug("Opened {}", socket);
-            _addresses.add((InetSocketAddress) socket.getRemoteSocketAddress());
-            _localEndpoint = (InetSocketAddress) socket.getLocalSocketAddress();
-            channel.configureBlocking(false);
-            if (_bufferSize > 0) {
-                channel.socket().setSendBufferSize(_bufferSize);
-            }
-            channel.socket().setKeepAlive(true);
-            newConnection(multiplexer, channel);
-        }
-    }
-
-    /**
-     * Called by the multiplexer when a new outgoing connection has been established. If all
-     * outgoing connections have been established or failed, then all keys disabled by
-     * waitForConnectionCompletion() are enabled.
-     * <p>
-     * Propagates failures to finish the connection establishment to the caller.
-     */
-    @Override
-    public void connect(Multiplexer multiplexer, SelectionKey key)
-          throws IOException {
-        try {
-            SocketChannel channel = (SocketChannel) key.channel();
-            if (channel.finishConnect()) {
-                Socket socket = channel.socket();
-                _opened++;
-                LOGGER.debug("Opened {}", socket);
-                _addresses.add((InetSocketAddress) socket.getLocalSocketAddress());
-                _localEndpoint = (InetSocketAddress) socket.getLocalSocketAddress();
-                newConnection(multiplexer, channel);
-            }
-        } catch (IOException e) {
-            _lastFailure = e.toString();
-            _failed++;
-            if (_failed == _parallelism) {
-                throw e;
-            }
-        } finally {
-            if (allConnectionsEstablished()) {
-                enableDisabledKeys();
-            }
-        }
-    }
-
-    /**
-     * Close the socket channel associated with key.
-     * <p>
-     * If mayShutdown is true and all connections have been closed, then the multiplexer is shut
-     * down.
-     */
-    protected void close(Multiplexer multiplexer, SelectionKey key,
-          boolean mayShutdown)
-          throws IOException {
-        SocketChannel channel = (SocketChannel) key.channel();
-        LOGGER.debug("Closing {}", channel.socket());
-
-        key.cancel();
-        channel.close();
-
-        _closed++;
-        if (mayShutdown && _closed == _opened) {
-            multiplexer.shutdown();
-        }
-    }
-
-    /**
-     * Reestablishes notification for all disabled keys.
-     *
-     * @see Mode#disableKey
-     */
-    private void enableDisabledKeys() {
-        for (Map.Entry<SelectionKey, Integer> e : disabled.entrySet()) {
-            e.getKey().interestOps(e.getValue());
-        }
-        disabled.clear();
-    }
-
-    /**
-     * Disables notification for a key.
-     *
-     * @see Mode#enableDisabledKeys
-     */
-    private void disableKey(SelectionKey key) {
-        if (!disabled.containsKey(key)) {
-            disabled.put(key, key.interestOps());
-            key.interestOps(0);
-        }
-    }
-
     /**
      * Returns true iff all connections have been either established or failed.
      */
-    private boolean allConnectionsEstablished() {
+    protected boolean allConnectionsEstablished() {
         return (_opened + _failed >= _parallelism);
     }
 
-    /**
-     * Returns true if all connections have been established or connection establishment has failed
-     * (wrt. the parallelism), false otherwise. When false, the key is deactivated until
-     * waitForConnectionCompletion would return true.
-     * <p>
-     * This call is only valid if the direction of the mode is set to Outgoing.
-     */
-    protected boolean waitForConnectionCompletion(SelectionKey key) {
-        if (_direction != Direction.Outgoing) {
-            throw new IllegalArgumentException("Call is only valid for outgoing connections");
-        }
-        if (allConnectionsEstablished()) {
-            return true;
-        }
-        disableKey(key);
-        return false;
-    }
 
     /**
-     * Called by a Connection object when a new connection has been established.
+     * Performs the transfer. Returns once all data channels have been closed.
      */
-    protected abstract void newConnection(Multiplexer multiplexer,
-          SocketChannel channel)
-          throws IOException;
-
+    public abstract void transfer() throws Exception;
 
     public void getInfo(PrintWriter pw) {
         switch (_direction) {
@@ -19,7 +19,7 @@ import org.dcache.pool.repository.RepositoryChannel;
  * Be aware that it is quite easy to introduce race conditions, so please keep this in mind when
  * making changes. In particular the EOD and EOD count handling is a little tricky.
  */
-public class ModeE extends Mode {
+public class ModeE extends MultiplexerMode {
 
     /**
      * Header length of a mode E block.
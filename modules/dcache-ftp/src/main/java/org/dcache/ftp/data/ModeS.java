@@ -11,7 +11,7 @@ import org.dcache.pool.repository.RepositoryChannel;
 /**
  * Implementation of MODE S.
  */
-public class ModeS extends Mode {
+public class ModeS extends MultiplexerMode {
 
     private final int _blockSize;
     private volatile boolean _transferStarted;
@@ -20,7 +20,7 @@ import org.dcache.pool.repository.RepositoryChannel;
 /**
  * Implementation of MODE X.
  */
-public class ModeX extends Mode {
+public class ModeX extends MultiplexerMode {
 
     enum SenderState {
         /**
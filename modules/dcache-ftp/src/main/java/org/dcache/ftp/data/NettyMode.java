@@ -0,0 +1,343 @@
+package org.dcache.ftp.data;
+
+import static org.dcache.util.ByteUnit.KiB;
+import static org.dcache.util.ByteUnit.MiB;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.SettableFuture;
+import dmg.cells.nucleus.CDC;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import org.dcache.pool.repository.RepositoryChannel;
+import org.dcache.util.SequentialExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Base class for transfer modes running on shared Netty event loops rather than on a {@link
+ * Multiplexer} of their own.
+ * <p>
+ * All data channels of a transfer are bound to the same event loop, thus the mode is never
+ * accessed concurrently and may keep its state in plain fields, just like a mode driven by a
+ * Multiplexer.  Data is read from and written to the file with positional I/O on a disk executor
+ * shared by all transfers; the disk operations of a single transfer are executed in order.
+ */
+public abstract class NettyMode extends Mode {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NettyMode.class);
+
+    /**
+     * Amount of data received on a data channel, but not yet written to disk, at which the
+     * channel stops reading from the network.
+     */
+    private static final int HIGH_WATER_MARK = MiB.toBytes(2);
+
+    /**
+     * Amount of data not yet written to disk at which a data channel resumes reading.
+     */
+    private static final int LOW_WATER_MARK = KiB.toBytes(512);
+
+    private final DataChannelEventLoops _eventLoops;
+
+    private final SettableFuture<Void> _done = SettableFuture.create();
+
+    private final List<Channel> _channels = new ArrayList<>();
+
+    /**
+     * The event loop of this transfer.
+     */
+    protected EventLoop _loop;
+
+    /**
+     * Executes the disk I/O of this transfer.
+     */
+    protected Executor _disk;
+
+    /**
+     * True once the transfer failed or was aborted.
+     */
+    protected volatile boolean _aborted;
+
+    public NettyMode(Role role, RepositoryChannel file, ConnectionMonitor monitor,
+          DataChannelEventLoops eventLoops)
+          throws IOException {
+        super(role, file, monitor);
+        _eventLoops = eventLoops;
+    }
+
+    /**
+     * Creates the handler for a new data channel.
+     */
+    protected abstract ChannelHandler newHandler();
+
+    /**
+     * Called on the event loop when a new data channel has been established.
+     */
+    protected void opened(Channel channel) {
+    }
+
+    /**
+     * Called on the event loop once all outgoing connections have been either established or
+     * failed.
+     */
+    protected void connectionsEstablished() {
+    }
+
+    @Override
+    public void transfer() throws Exception {
+        CDC cdc = new CDC();
+        Executor diskExecutor = _eventLoops.diskExecutor();
+        _disk = new SequentialExecutor(task -> diskExecutor.execute(() -> {
+            try (CDC ignored = cdc.restore()) {
+                task.run();
+            }
+        }));
+        _loop = _eventLoops.next();
+        _loop.execute(() -> {
+            try (CDC ignored = cdc.restore()) {
+                start();
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        });
+
+        try {
+            _done.get();
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), Exception.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        } finally {
+            _aborted = true;
+            _loop.submit(this::closeAll).awaitUninterruptibly();
+        }
+    }
+
+    private void start() throws IOException {
+        switch (_direction) {
+            case Incomming:
+                startIncomming();
+                break;
+            case Outgoing:
+                startOutgoing();
+                break;
+        }
+    }
+
+    private void startIncomming() {
+        NioServerSocketChannel server = new NioServerSocketChannel(_channel);
+        LOGGER.debug("Accepting connections on {}", _channel.socket().getLocalSocketAddress());
+        server.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                accept((Channel) msg);
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                fail(cause);
+            }
+        });
+        _channels.add(server);
+        _loop.register(server).addListener(this::failOnError);
+    }
+
+    private void accept(Channel channel) {
+        LOGGER.debug("Opened {}", channel);
+        _opened++;
+        _addresses.add((InetSocketAddress) channel.remoteAddress());
+        _localEndpoint = (InetSocketAddress) channel.localAddress();
+        channel.config().setOption(ChannelOption.SO_KEEPALIVE, true);
+        if (_bufferSize > 0) {
+            channel.config().setOption(ChannelOption.SO_SNDBUF, _bufferSize);
+        }
+        channel.pipeline().addLast(newHandler());
+        _channels.add(channel);
+        opened(channel);
+        _loop.register(channel).addListener(this::failOnError);
+    }
+
+    private void startOutgoing() {
+        Bootstrap bootstrap = new Bootstrap()
+              .group(_loop)
+              .channel(NioSocketChannel.class)
+              .option(ChannelOption.SO_KEEPALIVE, true)
+              .handler(new ChannelInitializer<Channel>() {
+                  @Override
+                  protected void initChannel(Channel ch) {
+                      ch.pipeline().addLast(newHandler());
+                  }
+              });
+        if (_bufferSize > 0) {
+            bootstrap.option(ChannelOption.SO_RCVBUF, _bufferSize);
+            bootstrap.option(ChannelOption.SO_SNDBUF, _bufferSize);
+        }
+
+        for (int i = 0; i < _parallelism; i++) {
+            LOGGER.debug("Connecting to {}", _address);
+            ChannelFuture future = bootstrap.connect(_address);
+            _channels.add(future.channel());
+            future.addListener(f -> connected(future));
+        }
+    }
+
+    private void connected(ChannelFuture future) {
+        if (future.isSuccess()) {
+            Channel channel = future.channel();
+            LOGGER.debug("Opened {}", channel);
+            _opened++;
+            _addresses.add((InetSocketAddress) channel.localAddress());
+            _localEndpoint = (InetSocketAddress) channel.localAddress();
+            opened(channel);
+        } else {
+            /* Any error is logged, but otherwise ignored.  As long as at
+             * least one connection succeeds, the transfer can be completed.
+             */
+            LOGGER.warn("Problem with {}: {}", getRemoteAddressDescription(),
+                  future.cause().getMessage());
+            _lastFailure = future.cause().toString();
+            _failed++;
+            if (_failed == _parallelism) {
+                fail(future.cause());
+                return;
+            }
+        }
+        if (allConnectionsEstablished()) {
+            connectionsEstablished();
+        }
+    }
+
+    private void failOnError(io.netty.util.concurrent.Future<?> future) {
+        if (!future.isSuccess()) {
+            fail(future.cause());
+        }
+    }
+
+    /**
+     * Fails the transfer. All data channels are closed.
+     */
+    protected void fail(Throwable t) {
+        if (_done.setException(t)) {
+            LOGGER.debug("Transfer failed: {}", t.toString());
+            _aborted = true;
+            closeAll();
+        }
+    }
+
+    private void closeAll() {
+        for (Channel channel : _channels) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Called when a data channel has been closed.
+     * <p>
+     * If mayShutdown is true and all connections have been closed, then the transfer completes
+     * once all pending disk I/O has finished.
+     */
+    protected void closed(Channel channel, boolean mayShutdown) {
+        LOGGER.debug("Closing {}", channel);
+        channel.close();
+
+        _closed++;
+        if (mayShutdown && _closed == _opened) {
+            _disk.execute(() -> _loop.execute(() -> _done.set(null)));
+        }
+    }
+
+    /**
+     * Reads count bytes at the given position of the file into the buffer on the disk executor.
+     * The callback is invoked on the event loop.  The buffer is released if the read fails.
+     */
+    protected void read(ByteBuf buffer, long position, int count, Consumer<ByteBuf> callback) {
+        _disk.execute(() -> {
+            try {
+                int index = buffer.writerIndex();
+                ByteBuffer nio = buffer.nioBuffer(index, count);
+                long offset = position;
+                while (nio.hasRemaining()) {
+                    int n = _file.read(nio, offset);
+                    if (n < 0) {
+                        throw new EOFException("Unexpected end of file at " + offset);
+                    }
+                    offset += n;
+                }
+                buffer.writerIndex(index + count);
+                _loop.execute(() -> callback.accept(buffer));
+            } catch (IOException | RuntimeException e) {
+                buffer.release();
+                _loop.execute(() -> fail(e));
+            }
+        });
+    }
+
+    /**
+     * Base class for handlers receiving data. Received data is written to the file on the disk
+     * executor.  The data channel stops reading while too much data is waiting to be written.
+     */
+    protected abstract class DataReceiver extends ChannelInboundHandlerAdapter {
+
+        private long _pending;
+
+        protected void write(ChannelHandlerContext ctx, ByteBuf data, long position) {
+            int length = data.readableBytes();
+            _pending += length;
+            if (_pending > HIGH_WATER_MARK && ctx.channel().config().isAutoRead()) {
+                ctx.channel().config().setAutoRead(false);
+            }
+            _disk.execute(() -> {
+                try {
+                    if (!_aborted) {
+                        long offset = position;
+                        for (ByteBuffer buffer : data.nioBuffers()) {
+                            while (buffer.hasRemaining()) {
+                                offset += _file.write(buffer, offset);
+                            }
+                        }
+                    }
+                    _loop.execute(() -> written(ctx, position, length));
+                } catch (IOException | RuntimeException e) {
+                    _loop.execute(() -> fail(e));
+                } finally {
+                    data.release();
+                }
+            });
+        }
+
+        private void written(ChannelHandlerContext ctx, long position, int length) {
+            _pending -= length;
+            if (_aborted) {
+                return;
+            }
+            try {
+                _monitor.receivedBlock(position, length);
+            } catch (FTPException e) {
+                fail(e);
+                return;
+            }
+            if (_pending <= LOW_WATER_MARK && !ctx.channel().config().isAutoRead()) {
+                ctx.channel().config().setAutoRead(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package org.dcache.ftp.data;
+
+import static org.dcache.ftp.data.ModeE.EOD_DESCRIPTOR;
+import static org.dcache.ftp.data.ModeE.EOF_DESCRIPTOR;
+import static org.dcache.ftp.data.ModeE.HEADER_LENGTH;
+import static org.dcache.ftp.data.ModeE.KNOWN_DESCRIPTORS;
+import static org.dcache.ftp.data.ModeE.SENDER_CLOSES_THIS_STREAM_DESCRIPTOR;
+import static org.dcache.util.Exceptions.messageOrClassName;
+import static org.dcache.util.Strings.describeSize;
+import static org.dcache.util.Strings.toThreeSigFig;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.dcache.pool.repository.RepositoryChannel;
+
+/**
+ * Implementation of MODE E on shared Netty event loops.
+ * <p>
+ * The protocol handling is the same as in {@link ModeE}, including the EOD and EOD count
+ * handling. Blocks are read into pooled buffers together with their header and sent with a
+ * single write. Received blocks are written to the file with positional writes.
+ */
+public class NettyModeE extends NettyMode {
+
+    /**
+     * The chunk size used when sending files.
+     */
+    private final int _blockSize;
+
+    /**
+     * Position in file when sending data. Used by the sender.
+     */
+    private long _currentPosition;
+
+    /**
+     * Number of bytes that have to be transferred. Used by the sender.
+     */
+    private long _currentCount;
+
+    /**
+     * EOD count received. Zero as long as no EOD count was received.
+     */
+    private long _eodc;
+
+    /**
+     * Whether the transfer has started.
+     */
+    private volatile boolean _transferStarted;
+
+    /**
+     * Number of active channels.
+     */
+    private final AtomicLong _activeDataChannels = new AtomicLong();
+
+    /**
+     * Number of channels that closed in error.
+     */
+    private final LongAdder _errorDataChannels = new LongAdder();
+
+    private String _lastError;
+
+    /**
+     * The sender waiting for all connections to be established before it sends the EOF.
+     */
+    private ChannelHandlerContext _eofSender;
+
+    /**
+     * Common part of sender and receiver.
+     */
+    private abstract class DataChannel extends DataReceiver {
+
+        /**
+         * True once the channel was closed by us.
+         */
+        protected boolean _closing;
+
+        protected void closeChannel(Channel channel, boolean mayShutdown) {
+            _closing = true;
+            closed(channel, mayShutdown);
+            _activeDataChannels.decrementAndGet();
+        }
+
+        protected void error(Exception e) {
+            _errorDataChannels.increment();
+            _lastError = messageOrClassName(e);
+            fail(e);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            error(cause instanceof Exception ? (Exception) cause : new IOException(cause));
+        }
+    }
+
+    /**
+     * Implementation of send in mode E. There will be an instance per data channel. The sender
+     * repeatedly bites _blockSize bytes of the file and transfers it as a single block. While a
+     * block is being sent, the next block is read from disk.
+     */
+    private class Sender extends DataChannel {
+
+        /**
+         * True if this sender must send the EOF.
+         */
+        private boolean _sendEOF;
+
+        /**
+         * True while a block is being read from disk.
+         */
+        private boolean _reading;
+
+        /**
+         * True once the EOD has been sent.
+         */
+        private boolean _finished;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            fill(ctx);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            fill(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (!_closing && !_aborted) {
+                error(new IOException("Data channel was closed by peer"));
+            }
+        }
+
+        private void fill(ChannelHandlerContext ctx) {
+            if (_reading || _finished || _aborted || !ctx.channel().isWritable()) {
+                return;
+            }
+
+            /* Prepare new block. We 'bite' up to _blockSize bytes
+             * of the file and reserve it for this data channel.
+             */
+            long position = _currentPosition;
+            int count = (int) Math.min(_currentCount, _blockSize);
+            if (count == 0) {
+                sendEod(ctx);
+                return;
+            }
+            _currentPosition += count;
+            _currentCount -= count;
+
+            ByteBuf block = ctx.alloc().directBuffer(HEADER_LENGTH + count);
+            block.writeByte(0);
+            block.writeLong(count);         // Count
+            block.writeLong(position);      // Position
+            _reading = true;
+            read(block, position, count, data -> {
+                _reading = false;
+                if (_aborted) {
+                    data.release();
+                    return;
+                }
+                ctx.writeAndFlush(data).addListener((ChannelFuture f) -> {
+                    if (!f.isSuccess()) {
+                        error(f.cause() instanceof Exception
+                              ? (Exception) f.cause() : new IOException(f.cause()));
+                        return;
+                    }
+                    try {
+                        _monitor.sentBlock(position, count);
+                    } catch (FTPException e) {
+                        error(e);
+                    }
+                });
+                fill(ctx);
+            });
+        }
+
+        private void sendEod(ChannelHandlerContext ctx) {
+            ByteBuf header = ctx.alloc().buffer(HEADER_LENGTH);
+            if (_sendEOF) {
+                if (!allConnectionsEstablished()) {
+                    header.release();
+                    _eofSender = ctx;
+                    return;
+                }
+                // Send EOD and EOD count. Since all connections
+                // have been established by now, we know that
+                // _opened is the actual number of connections
+                // that have been established.
+                header.writeByte(EOF_DESCRIPTOR | EOD_DESCRIPTOR
+                      | SENDER_CLOSES_THIS_STREAM_DESCRIPTOR);
+                header.writeLong(0);              // Unused
+                header.writeLong(_opened);        // EOD count
+            } else {
+                // No more data. Send EOD.
+                header.writeByte(EOD_DESCRIPTOR | SENDER_CLOSES_THIS_STREAM_DESCRIPTOR);
+                header.writeLong(0);              // Count
+                header.writeLong(0);              // Position
+            }
+            _finished = true;
+
+            /* As in ModeE, the channel may shut down the transfer once all
+             * channels are closed: the first sender does not close its
+             * channel until it has sent EOF, and it does not send EOF until
+             * all connections have been established.
+             */
+            ctx.writeAndFlush(header).addListener((ChannelFuture f) -> {
+                if (f.isSuccess()) {
+                    closeChannel(ctx.channel(), true);
+                } else {
+                    error(f.cause() instanceof Exception
+                          ? (Exception) f.cause() : new IOException(f.cause()));
+                }
+            });
+        }
+    }
+
+    /**
+     * Implementation of receive in mode E. There will be an instance per data channel.
+     */
+    private class Receiver extends DataChannel {
+
+        /**
+         * Number of bytes left of current block.
+         */
+        private long _count;
+
+        /**
+         * The file position at which we will receive data next.
+         */
+        private long _position;
+
+        /**
+         * Header flags from the current block.
+         */
+        private int _flags;
+
+        /**
+         * True if any data has flown over this data channel.
+         */
+        private boolean _used;
+
+        /**
+         * Buffer for receiving the block header.
+         */
+        private final ByteBuf _header = Unpooled.buffer(HEADER_LENGTH, HEADER_LENGTH);
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf in = (ByteBuf) msg;
+            try {
+                doRead(ctx, in);
+            } catch (FTPException e) {
+                error(e);
+            } finally {
+                in.release();
+            }
+        }
+
+        private void doRead(ChannelHandlerContext ctx, ByteBuf in) throws FTPException {
+            while (in.isReadable() && !_closing && !_aborted) {
+                _used = true;
+
+                /* _count is zero when we have received all of the
+                 * previous block. We expect to read the header of the
+                 * next block.
+                 */
+                if (_count == 0) {
+                    in.readBytes(_header, Math.min(in.readableBytes(), _header.writableBytes()));
+                    if (_header.isWritable()) {
+                        /* Incomplete header.
+                         */
+                        return;
+                    }
+
+                    _flags = _header.readByte();
+                    _count = _header.readLong();
+                    _position = _header.readLong();
+                    _header.clear();
+
+                    /* The GridFTP spec states that we should generate an
+                     * error whenever we receive a descriptor we don't
+                     * know how to handle.
+                     */
+                    if ((_flags & ~KNOWN_DESCRIPTORS) != 0) {
+                        throw new FTPException(
+                              "Received block with unknown descriptor (" + _flags + ")");
+                    }
+
+                    /* Exactly one EOF must be received on one of the data
+                     * channels. It contains the number of EOD markers
+                     * that must be received. See ModeE for a discussion.
+                     */
+                    if ((_flags & EOF_DESCRIPTOR) != 0) {
+                        if (_eodc != 0) {
+                            throw new FTPException("Multible EODC received");
+                        }
+                        if (_position <= 0) {
+                            throw new FTPException("Non-positive EODC received");
+                        }
+                        _eodc = (int) _position;
+                        _count = _position = 0; // No data
+                    }
+                } else {
+                    /* Receive data.
+                     */
+                    int nbytes = (int) Math.min(_count, in.readableBytes());
+                    write(ctx, in.readRetainedSlice(nbytes), _position);
+                    _position += nbytes;
+                    _count -= nbytes;
+                }
+
+                /* If EOD was received, then close channel.
+                 */
+                if (_count == 0 && (_flags & EOD_DESCRIPTOR) != 0) {
+                    closeChannel(ctx.channel(), _opened == _eodc);
+                }
+            }
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (_closing || _aborted) {
+                return;
+            }
+            if (_count > 0) {
+                error(new FTPException("Stream was closed in the middle of a block"));
+            } else if (_used) {
+                /* Stream was closed. Like ModeE, we accept a data channel
+                 * being closed without EOD as long as no data has been
+                 * transferred on it.
+                 */
+                error(new FTPException("Stream ended before EOD"));
+            } else {
+                closeChannel(ctx.channel(), _opened == _eodc);
+            }
+        }
+    }
+
+    public NettyModeE(Role role, RepositoryChannel file, ConnectionMonitor monitor,
+          int blockSize, DataChannelEventLoops eventLoops)
+          throws IOException {
+        super(role, file, monitor, eventLoops);
+        _currentPosition = getStartPosition();
+        _currentCount = getSize();
+        _eodc = 0;
+        _blockSize = blockSize;
+    }
+
+    @Override
+    public void setPartialRetrieveParameters(long position, long size) {
+        super.setPartialRetrieveParameters(position, size);
+        _currentPosition = getStartPosition();
+        _currentCount = getSize();
+    }
+
+    @Override
+    protected ChannelHandler newHandler() {
+        switch (_role) {
+            case Sender:
+                return new Sender();
+            case Receiver:
+                return new Receiver();
+            default:
+                throw new IllegalStateException("Unknown role: " + _role);
+        }
+    }
+
+    @Override
+    protected void opened(Channel channel) {
+        _transferStarted = true;
+        _activeDataChannels.incrementAndGet();
+        Sender sender = channel.pipeline().get(Sender.class);
+        if (sender != null) {
+            sender._sendEOF = (_opened == 1); // First sender sends EOF
+        }
+    }
+
+    @Override
+    protected void connectionsEstablished() {
+        if (_eofSender != null) {
+            _eofSender.channel().pipeline().get(Sender.class).fill(_eofSender);
+            _eofSender = null;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "E (Extended)";
+    }
+
+    @Override
+    public void getInfo(PrintWriter pw) {
+        super.getInfo(pw);
+
+        switch (_direction) {
+            case Incomming:
+                pw.println("EOF flag: " + (_eodc == 0 ? "not received" : "received"));
+                if (_eodc > 0) {
+                    pw.println("Expected streams: " + _eodc);
+                }
+                break;
+
+            case Outgoing:
+                String percent = getSize() > 0
+                      ? (" (" + toThreeSigFig(100 * _currentCount / (double) getSize(), 1000)
+                      + "% desired transfer)")
+                      : "";
+                pw.println("Bytes still to send: " + describeSize(_currentCount) + percent);
+                pw.println("Offset of next send block: " + describeSize(_currentPosition));
+                break;
+        }
+
+        if (_lastError != null) {
+            pw.println("Last error: " + _lastError);
+        }
+    }
+
+    @Override
+    public boolean hasCompletedSuccessfully() {
+        return _transferStarted && _activeDataChannels.get() == 0
+              && _errorDataChannels.longValue() == 0;
+    }
+}
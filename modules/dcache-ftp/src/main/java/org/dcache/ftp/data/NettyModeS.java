@@ -0,0 +1,178 @@
+package org.dcache.ftp.data;
+
+import static org.dcache.util.Exceptions.messageOrClassName;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import org.dcache.pool.repository.RepositoryChannel;
+
+/**
+ * Implementation of MODE S on shared Netty event loops.
+ */
+public class NettyModeS extends NettyMode {
+
+    private final int _blockSize;
+    private volatile boolean _transferStarted;
+    private volatile boolean _transferCompleted;
+    private volatile boolean _transferFailed;
+    private String _lastError;
+
+    private void error(Throwable t) {
+        Exception e = t instanceof Exception ? (Exception) t : new IOException(t);
+        _transferFailed = true;
+        _lastError = messageOrClassName(e);
+        fail(e);
+    }
+
+    /* Implements MODE S send operation. */
+    private class Sender extends ChannelInboundHandlerAdapter {
+
+        private long _position = getStartPosition();
+        private long _count = getSize();
+        private boolean _reading;
+        private ChannelFuture _lastWrite;
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            fill(ctx);
+        }
+
+        @Override
+        public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+            fill(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (!_transferCompleted && !_aborted) {
+                error(new IOException("Data channel was closed by peer"));
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            error(cause);
+        }
+
+        private void fill(ChannelHandlerContext ctx) {
+            if (_reading || _aborted || _transferCompleted || !ctx.channel().isWritable()) {
+                return;
+            }
+
+            /* There is no special end-of-file signal in mode S. Just
+             * close the connection.
+             */
+            if (_count == 0) {
+                _transferCompleted = true;
+                if (_lastWrite == null) {
+                    closed(ctx.channel(), true);
+                } else {
+                    _lastWrite.addListener(f -> closed(ctx.channel(), true));
+                }
+                return;
+            }
+
+            long position = _position;
+            int count = (int) Math.min(_count, _blockSize);
+            _position += count;
+            _count -= count;
+
+            _reading = true;
+            read(ctx.alloc().directBuffer(count), position, count, data -> {
+                _reading = false;
+                if (_aborted) {
+                    data.release();
+                    return;
+                }
+                _lastWrite = ctx.writeAndFlush(data);
+                _lastWrite.addListener((ChannelFuture f) -> {
+                    if (!f.isSuccess()) {
+                        error(f.cause());
+                        return;
+                    }
+                    try {
+                        _monitor.sentBlock(position, count);
+                    } catch (FTPException e) {
+                        error(e);
+                    }
+                });
+                fill(ctx);
+            });
+        }
+    }
+
+    /* Implements MODE S receive operation. */
+    private class Receiver extends DataReceiver {
+
+        private long _position;
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            ByteBuf data = (ByteBuf) msg;
+            long position = _position;
+            _position += data.readableBytes();
+            write(ctx, data, position);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            if (!_aborted) {
+                _transferCompleted = true;
+                closed(ctx.channel(), true);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            error(cause);
+        }
+    }
+
+    public NettyModeS(Role role, RepositoryChannel file, ConnectionMonitor monitor,
+          int blockSize, DataChannelEventLoops eventLoops)
+          throws IOException {
+        super(role, file, monitor, eventLoops);
+        _blockSize = blockSize;
+    }
+
+    @Override
+    protected ChannelHandler newHandler() {
+        switch (_role) {
+            case Sender:
+                return new Sender();
+            case Receiver:
+                return new Receiver();
+            default:
+                throw new IllegalStateException("Unknown role: " + _role);
+        }
+    }
+
+    @Override
+    protected void opened(Channel channel) {
+        _transferStarted = true;
+    }
+
+    @Override
+    public void getInfo(PrintWriter pw) {
+        super.getInfo(pw);
+        if (_lastError != null) {
+            pw.println("Last error: " + _lastError);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "S (Stream)";
+    }
+
+    @Override
+    public boolean hasCompletedSuccessfully() {
+        return _transferStarted && _transferCompleted && !_transferFailed;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2026 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.ftp.pool;
+
+import static java.util.Objects.requireNonNull;
+
+import diskCacheV111.vehicles.ProtocolInfo;
+import org.dcache.ftp.data.DataChannelEventLoops;
+import org.dcache.pool.classic.AbstractMoverProtocolTransferService;
+import org.dcache.pool.movers.GFtpProtocol_2_nio;
+import org.dcache.pool.movers.MoverProtocol;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * Transfer service for GridFTP movers whose data channels run on the event loops of the pool.
+ */
+public class GFtpTransferService extends AbstractMoverProtocolTransferService {
+
+    private DataChannelEventLoops _eventLoops;
+
+    @Required
+    public void setDataChannelEventLoops(DataChannelEventLoops eventLoops) {
+        _eventLoops = requireNonNull(eventLoops);
+    }
+
+    @Override
+    protected MoverProtocol createMoverProtocol(ProtocolInfo info) {
+        GFtpProtocol_2_nio mover = new GFtpProtocol_2_nio(getCellEndpoint());
+        mover.setCellArgs(getArgs());
+        mover.setDataChannelEventLoops(_eventLoops);
+        return mover;
+    }
+}
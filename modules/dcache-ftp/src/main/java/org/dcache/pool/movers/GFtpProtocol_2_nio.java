@@ -43,12 +43,14 @@ import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.dcache.ftp.data.BlockLog;
 import org.dcache.ftp.data.ConnectionMonitor;
+import org.dcache.ftp.data.DataChannelEventLoops;
 import org.dcache.ftp.data.FTPException;
 import org.dcache.ftp.data.Mode;
 import org.dcache.ftp.data.ModeE;
 import org.dcache.ftp.data.ModeS;
 import org.dcache.ftp.data.ModeX;
-import org.dcache.ftp.data.Multiplexer;
+import org.dcache.ftp.data.NettyModeE;
+import org.dcache.ftp.data.NettyModeS;
 import org.dcache.ftp.data.Role;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.pool.repository.FileRepositoryChannel;
@@ -137,11 +139,6 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
      */
     protected long _lastTransferred;
 
-    /**
-     * All communication is asynchronous.
-     */
-    protected Multiplexer _multiplexer;
-
     /**
      * Status of space reservation request.
      */
@@ -173,6 +170,12 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
      */
     protected boolean _allowPassivePool;
 
+    /**
+     * Event loops shared by the data channels of all movers of the pool. If set, mode S and mode
+     * E data channels run on these event loops rather than on a multiplexer of their own.
+     */
+    protected DataChannelEventLoops _eventLoops;
+
     /**
      * True while the transfer is in progress.
      */
@@ -204,11 +207,15 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
             case 'S':
                 blockSize =
                       (_blockSize == null) ? MODE_S_DEFAULT_BLOCK_SIZE : _blockSize;
-                return new ModeS(role, fileChannel, this, blockSize);
+                return (_eventLoops != null)
+                      ? new NettyModeS(role, fileChannel, this, blockSize, _eventLoops)
+                      : new ModeS(role, fileChannel, this, blockSize);
             case 'E':
                 blockSize =
                       (_blockSize == null) ? MODE_E_DEFAULT_BLOCK_SIZE : _blockSize;
-                return new ModeE(role, fileChannel, this, blockSize);
+                return (_eventLoops != null)
+                      ? new NettyModeE(role, fileChannel, this, blockSize, _eventLoops)
+                      : new ModeE(role, fileChannel, this, blockSize);
             case 'X':
                 blockSize =
                       (_blockSize == null) ? MODE_X_DEFAULT_BLOCK_SIZE : _blockSize;
@@ -238,13 +245,9 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
         /* Startup the transfer. The transfer is performed on a single
          * thread, no matter the number of streams.
          */
-        _multiplexer = new Multiplexer();
         try {
             _inProgress = true;
-            _multiplexer.add(mode);
-
-            LOGGER.trace("Entering event loop");
-            _multiplexer.loop();
+            mode.transfer();
         } catch (ClosedByInterruptException e) {
             /* Many NIO operations throw a ClosedByInterruptException
              * rather than InterruptedException. We rethrow this as an
@@ -271,11 +274,6 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
              */
             _blockLog.setEof();
 
-            /* Close all open channels.
-             */
-            LOGGER.trace("Left event loop and closing channels");
-            _multiplexer.close();
-
             /* Log some useful information about the transfer.
              */
             long amount = getBytesTransferred();
@@ -722,6 +720,10 @@ public class GFtpProtocol_2_nio implements ConnectionMonitor,
         }
     }
 
+    public void setDataChannelEventLoops(DataChannelEventLoops eventLoops) {
+        _eventLoops = eventLoops;
+    }
+
     @Override
     public Optional<InetSocketAddress> getLocalEndpoint() {
         if (_mode == null) {
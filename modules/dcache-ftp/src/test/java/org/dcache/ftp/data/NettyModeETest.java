@@ -0,0 +1,192 @@
+package org.dcache.ftp.data;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.dcache.pool.repository.FileRepositoryChannel;
+import org.dcache.pool.repository.FileStore;
+import org.dcache.pool.repository.RepositoryChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NettyModeETest {
+
+    private static final int SIZE = 1_000_001;
+    private static final int STREAMS = 4;
+    private static final int BLOCK_SIZE = 10_000;
+
+    private final ConnectionMonitor monitor = new ConnectionMonitor() {
+        @Override
+        public void receivedBlock(long position, long size) {
+        }
+
+        @Override
+        public void sentBlock(long position, long size) {
+        }
+    };
+
+    private DataChannelEventLoops eventLoops;
+    private ExecutorService executor;
+    private ServerSocketChannel server;
+    private Path file;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException {
+        eventLoops = new DataChannelEventLoops(2, 2);
+        executor = Executors.newCachedThreadPool();
+        server = ServerSocketChannel.open()
+              .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        file = Files.createTempFile("netty-mode-e", ".dat");
+        data = new byte[SIZE];
+        new Random(42).nextBytes(data);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        executor.shutdownNow();
+        eventLoops.shutdown();
+        Files.delete(file);
+    }
+
+    @Test
+    public void shouldSendFileOverParallelStreams() throws Exception {
+        Files.write(file, data);
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, FileStore.O_READ)) {
+            NettyModeE mode = new NettyModeE(Role.Sender, channel, monitor, BLOCK_SIZE,
+                  eventLoops);
+            mode.setActive((InetSocketAddress) server.getLocalAddress());
+            mode.setParallelism(STREAMS);
+            Future<?> transfer = executor.submit(() -> {
+                mode.transfer();
+                return null;
+            });
+
+            byte[] received = new byte[SIZE];
+            List<Future<Long>> streams = new ArrayList<>();
+            for (int i = 0; i < STREAMS; i++) {
+                SocketChannel socket = server.accept();
+                streams.add(executor.submit(() -> receive(socket, received)));
+            }
+            long eodc = 0;
+            for (Future<Long> stream : streams) {
+                eodc += stream.get();
+            }
+            transfer.get();
+
+            assertThat(received, is(equalTo(data)));
+            assertThat(eodc, is((long) STREAMS));
+            assertThat(mode.hasCompletedSuccessfully(), is(true));
+        }
+    }
+
+    @Test
+    public void shouldReceiveFileOverParallelStreams() throws Exception {
+        try (RepositoryChannel channel = new FileRepositoryChannel(file, FileStore.O_RW)) {
+            NettyModeE mode = new NettyModeE(Role.Receiver, channel, monitor, BLOCK_SIZE,
+                  eventLoops);
+            mode.setPassive(server);
+            Future<?> transfer = executor.submit(() -> {
+                mode.transfer();
+                return null;
+            });
+
+            List<Future<?>> streams = new ArrayList<>();
+            for (int i = 0; i < STREAMS; i++) {
+                int stream = i;
+                streams.add(executor.submit(() -> {
+                    send(stream);
+                    return null;
+                }));
+            }
+            for (Future<?> stream : streams) {
+                stream.get();
+            }
+            transfer.get();
+
+            assertThat(Files.readAllBytes(file), is(equalTo(data)));
+            assertThat(mode.hasCompletedSuccessfully(), is(true));
+        }
+    }
+
+    /**
+     * Reads mode E blocks into the given array until the stream is closed. Returns the EOD count
+     * if an EOF was received on this stream, zero otherwise.
+     */
+    private static long receive(SocketChannel socket, byte[] received) throws IOException {
+        try (DataInputStream in = new DataInputStream(socket.socket().getInputStream())) {
+            long eodc = 0;
+            while (true) {
+                int flags;
+                try {
+                    flags = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    return eodc;
+                }
+                long count = in.readLong();
+                long position = in.readLong();
+                if ((flags & ModeE.EOF_DESCRIPTOR) != 0) {
+                    eodc = position;
+                } else {
+                    byte[] block = new byte[(int) count];
+                    in.readFully(block);
+                    synchronized (received) {
+                        System.arraycopy(block, 0, received, (int) position, (int) count);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends every STREAMS'th block of the data followed by an EOD. The first stream also sends
+     * the EOF.
+     */
+    private void send(int stream) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+              server.socket().getLocalPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            for (int position = stream * BLOCK_SIZE; position < SIZE;
+                  position += STREAMS * BLOCK_SIZE) {
+                int count = Math.min(BLOCK_SIZE, SIZE - position);
+                out.writeByte(0);
+                out.writeLong(count);
+                out.writeLong(position);
+                out.write(data, position, count);
+            }
+            if (stream == 0) {
+                out.writeByte(ModeE.EOF_DESCRIPTOR | ModeE.EOD_DESCRIPTOR);
+                out.writeLong(0);
+                out.writeLong(STREAMS);
+            } else {
+                out.writeByte(ModeE.EOD_DESCRIPTOR);
+                out.writeLong(0);
+                out.writeLong(0);
+            }
+            out.flush();
+
+            /* Wait for the pool to close the data channel. */
+            socket.getInputStream().read();
+        }
+    }
+}
@@ -9,7 +9,9 @@ import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FsPath;
 import diskCacheV111.util.PermissionDeniedCacheException;
 import dmg.cells.nucleus.CellCommandListener;
+import dmg.cells.nucleus.CellInfoProvider;
 import java.io.File;
+import java.io.PrintWriter;
 import java.security.Principal;
 import java.util.Collection;
 import java.util.Collections;
@@ -42,7 +44,8 @@ import org.springframework.beans.factory.annotation.Required;
 /**
  * A LoginStrategy that delegates login requests to an instance of org.dcache.gplazma.GPlazma.
  */
-public class Gplazma2LoginStrategy implements LoginStrategy, CellCommandListener {
+public class Gplazma2LoginStrategy implements LoginStrategy, CellCommandListener,
+      CellInfoProvider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Gplazma2LoginStrategy.class);
 
@@ -106,6 +109,11 @@ public class Gplazma2LoginStrategy implements LoginStrategy, CellCommandListener
         return _configurationFile;
     }
 
+    @Override
+    public void getInfo(PrintWriter pw) {
+        _gplazma.printPluginLatencies(pw);
+    }
+
     /*
      *  REVISIT  2023/01/23
      *
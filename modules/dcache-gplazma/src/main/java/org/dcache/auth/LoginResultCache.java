@@ -0,0 +1,273 @@
+package org.dcache.auth;
+
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import diskCacheV111.util.CacheException;
+import dmg.cells.nucleus.CellCommandListener;
+import dmg.cells.nucleus.CellInfoProvider;
+import dmg.util.command.Command;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.security.auth.Subject;
+import org.dcache.gplazma.ReloadObserver;
+import org.dcache.gplazma.util.JsonWebToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A LoginStrategy that caches successful logins in the gPlazma service, so that a credential
+ * presented to several doors is only mapped once.
+ * <p>
+ * Logins are identified by a fingerprint of the credentials and the principals supplied by the
+ * door. Bearer tokens and X.509 certificate chains, including any VOMS attributes embedded in the
+ * chain, are fingerprinted with a SHA-256 hash; the credentials themselves are not kept. Logins
+ * with any other credential, such as a password, are not cached.
+ * <p>
+ * A cached login expires after the configured lifetime or when the credential expires, whichever
+ * comes first. All cached logins are discarded when the gPlazma configuration is reloaded. Failed
+ * logins are not cached.
+ */
+public class LoginResultCache implements LoginStrategy, ReloadObserver, CellCommandListener,
+      CellInfoProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoginResultCache.class);
+
+    private final LoginStrategy _inner;
+    private final Cache<Key, Entry> _cache;
+    private final long _lifetime;
+    private final Clock _clock;
+
+    private final LongAdder _uncacheable = new LongAdder();
+    private final LongAdder _expired = new LongAdder();
+    private final LongAdder _reloads = new LongAdder();
+
+    /**
+     * Incremented on every reload, so that logins mapped with the previous configuration but
+     * completing after the reload are not served from the cache.
+     */
+    private volatile long _generation;
+
+    public LoginResultCache(LoginStrategy inner, int size, long lifetime, TimeUnit unit) {
+        this(inner, size, lifetime, unit, Clock.systemUTC());
+    }
+
+    LoginResultCache(LoginStrategy inner, int size, long lifetime, TimeUnit unit, Clock clock) {
+        _inner = requireNonNull(inner);
+        _lifetime = unit.toMillis(lifetime);
+        _clock = clock;
+        _cache = CacheBuilder.newBuilder()
+              .maximumSize(size)
+              .expireAfterWrite(lifetime, unit)
+              .recordStats()
+              .build();
+    }
+
+    @Override
+    public LoginReply login(Subject subject) throws CacheException {
+        Optional<Key> key = Key.of(subject);
+        if (!key.isPresent()) {
+            _uncacheable.increment();
+            return _inner.login(subject);
+        }
+
+        boolean[] loaded = {false};
+        Callable<Entry> loader = () -> {
+            loaded[0] = true;
+            long generation = _generation;
+            return new Entry(_inner.login(subject), expiryOf(subject), generation);
+        };
+        try {
+            Entry entry = _cache.get(key.get(), loader);
+            if (!loaded[0] && !entry.isValid(_clock.instant(), _generation)) {
+                _expired.increment();
+                _cache.asMap().remove(key.get(), entry);
+                entry = _cache.get(key.get(), loader);
+            }
+            return entry.reply;
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), CacheException.class);
+            throw new RuntimeException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @Override
+    public Principal map(Principal principal) throws CacheException {
+        return _inner.map(principal);
+    }
+
+    @Override
+    public Set<Principal> reverseMap(Principal principal) throws CacheException {
+        return _inner.reverseMap(principal);
+    }
+
+    @Override
+    public synchronized void configReloaded() {
+        _generation++;
+        _reloads.increment();
+        _cache.invalidateAll();
+    }
+
+    /**
+     * Returns the time at which a login with the credentials of the subject must no longer be
+     * served from the cache.
+     */
+    private Instant expiryOf(Subject subject) {
+        Instant expiry = _clock.instant().plusMillis(_lifetime);
+        for (Object credential : subject.getPrivateCredentials()) {
+            if (credential instanceof BearerTokenCredential) {
+                String token = ((BearerTokenCredential) credential).getToken();
+                if (JsonWebToken.isCompatibleFormat(token)) {
+                    try {
+                        Optional<Instant> exp = new JsonWebToken(token).getPayloadInstant("exp");
+                        if (exp.isPresent() && exp.get().isBefore(expiry)) {
+                            expiry = exp.get();
+                        }
+                    } catch (IOException e) {
+                        LOGGER.debug("Unable to parse token: {}", e.toString());
+                    }
+                }
+            }
+        }
+        for (Object credential : subject.getPublicCredentials()) {
+            if (credential instanceof X509Certificate[]) {
+                for (X509Certificate certificate : (X509Certificate[]) credential) {
+                    Instant notAfter = certificate.getNotAfter().toInstant();
+                    if (notAfter.isBefore(expiry)) {
+                        expiry = notAfter;
+                    }
+                }
+            }
+        }
+        return expiry;
+    }
+
+    @Override
+    public void getInfo(PrintWriter pw) {
+        CacheStats stats = _cache.stats();
+        pw.println("Login result cache:");
+        pw.println("    Entries     : " + _cache.size());
+        pw.println("    Lifetime    : " + _lifetime + " ms");
+        pw.println("    Requests    : " + stats.requestCount());
+        pw.println(String.format("    Hit ratio   : %.1f%%", stats.hitRate() * 100));
+        pw.println("    Expired     : " + _expired.sum());
+        pw.println("    Uncacheable : " + _uncacheable.sum());
+        pw.println("    Invalidated : " + _reloads.sum() + " times by reload");
+    }
+
+    @Command(name = "login cache clear", hint = "discard cached login results",
+          description = "Discards all cached login results. Subsequent logins are mapped by "
+                + "the gPlazma plugins again.")
+    public class ClearCommand implements Callable<String> {
+
+        @Override
+        public String call() {
+            _cache.invalidateAll();
+            return "";
+        }
+    }
+
+    /**
+     * Identifies a login by a fingerprint of its credentials and its principals.
+     */
+    private static class Key {
+
+        private final HashCode _fingerprint;
+        private final Set<Principal> _principals;
+
+        private Key(HashCode fingerprint, Set<Principal> principals) {
+            _fingerprint = fingerprint;
+            _principals = principals;
+        }
+
+        /**
+         * Returns the key for a login of the subject, or empty if the login must not be cached.
+         */
+        static Optional<Key> of(Subject subject) {
+            Hasher hasher = Hashing.sha256().newHasher();
+            for (Object credential : subject.getPrivateCredentials()) {
+                if (!(credential instanceof BearerTokenCredential)) {
+                    return Optional.empty();
+                }
+            }
+            subject.getPrivateCredentials().stream()
+                  .map(c -> ((BearerTokenCredential) c).getToken())
+                  .sorted()
+                  .forEach(t -> hasher.putString("bearer:", StandardCharsets.US_ASCII)
+                        .putString(t, StandardCharsets.US_ASCII));
+            for (Object credential : subject.getPublicCredentials()) {
+                if (!(credential instanceof X509Certificate[])) {
+                    return Optional.empty();
+                }
+            }
+            try {
+                for (Object credential : subject.getPublicCredentials()) {
+                    hasher.putString("x509:", StandardCharsets.US_ASCII);
+                    for (X509Certificate certificate : (X509Certificate[]) credential) {
+                        hasher.putBytes(certificate.getEncoded());
+                    }
+                }
+            } catch (CertificateEncodingException e) {
+                return Optional.empty();
+            }
+            return Optional.of(new Key(hasher.hash(), new HashSet<>(subject.getPrincipals())));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return _fingerprint.equals(other._fingerprint) && _principals.equals(other._principals);
+        }
+
+        @Override
+        public int hashCode() {
+            return _fingerprint.hashCode() ^ _principals.hashCode();
+        }
+    }
+
+    private static class Entry {
+
+        private final LoginReply reply;
+        private final Instant expiry;
+        private final long generation;
+
+        Entry(LoginReply reply, Instant expiry, long generation) {
+            this.reply = reply;
+            this.expiry = expiry;
+            this.generation = generation;
+        }
+
+        boolean isValid(Instant now, long currentGeneration) {
+            return now.isBefore(expiry) && generation == currentGeneration;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.dcache.auth;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import diskCacheV111.util.PermissionDeniedCacheException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.Subject;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoginResultCacheTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    private LoginStrategy inner;
+    private MutableClock clock;
+    private LoginResultCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        inner = mock(LoginStrategy.class);
+        when(inner.login(any())).thenAnswer(i -> new LoginReply(new Subject(), Set.of()));
+        clock = new MutableClock(NOW);
+        cache = new LoginResultCache(inner, 100, 10, TimeUnit.MINUTES, clock);
+    }
+
+    @Test
+    public void shouldMapTokenOnce() throws Exception {
+        LoginReply first = cache.login(withToken("token"));
+        LoginReply second = cache.login(withToken("token"));
+
+        assertThat(second, sameInstance(first));
+        verify(inner, times(1)).login(any());
+        assertThat(info(), containsString("Hit ratio   : 50.0%"));
+    }
+
+    @Test
+    public void shouldDistinguishTokens() throws Exception {
+        cache.login(withToken("token1"));
+        cache.login(withToken("token2"));
+
+        verify(inner, times(2)).login(any());
+    }
+
+    @Test
+    public void shouldDistinguishPrincipals() throws Exception {
+        Subject subject = withToken("token");
+        cache.login(subject);
+        subject.getPrincipals().add(new Origin("192.168.1.1"));
+        cache.login(subject);
+
+        verify(inner, times(2)).login(any());
+    }
+
+    @Test
+    public void shouldNotCachePasswords() throws Exception {
+        Subject subject = new Subject();
+        subject.getPrivateCredentials().add(new PasswordCredential("user", "secret"));
+        cache.login(subject);
+        cache.login(subject);
+
+        verify(inner, times(2)).login(any());
+        assertThat(info(), containsString("Uncacheable : 2"));
+    }
+
+    @Test
+    public void shouldNotCacheFailures() throws Exception {
+        when(inner.login(any())).thenThrow(new PermissionDeniedCacheException("denied"));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.login(withToken("token"));
+            } catch (PermissionDeniedCacheException expected) {
+            }
+        }
+
+        verify(inner, times(2)).login(any());
+    }
+
+    @Test
+    public void shouldExpireWithToken() throws Exception {
+        String jwt = jwt(NOW.plus(Duration.ofMinutes(1)));
+        cache.login(withToken(jwt));
+        clock.advance(Duration.ofMinutes(2));
+        cache.login(withToken(jwt));
+
+        verify(inner, times(2)).login(any());
+        assertThat(info(), containsString("Expired     : 1"));
+    }
+
+    @Test
+    public void shouldDiscardCacheOnReload() throws Exception {
+        cache.login(withToken("token"));
+        cache.configReloaded();
+        cache.login(withToken("token"));
+
+        verify(inner, times(2)).login(any());
+    }
+
+    private static Subject withToken(String token) {
+        Subject subject = new Subject();
+        subject.getPrivateCredentials().add(new BearerTokenCredential(token));
+        return subject;
+    }
+
+    private static String jwt(Instant exp) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"none\"}".getBytes())
+              + "." + encoder.encodeToString(("{\"exp\":" + exp.getEpochSecond() + "}").getBytes())
+              + "." + encoder.encodeToString("signature".getBytes());
+    }
+
+    private String info() {
+        StringWriter sw = new StringWriter();
+        cache.getInfo(new PrintWriter(sw));
+        return sw.toString();
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -5,9 +5,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,6 +33,11 @@ import org.slf4j.LoggerFactory;
  * org.dcache.services.info.serialisation package), but some synchronous classes also use this to
  * build lists from dCache current state (e.g., to send a message requesting data to each currently
  * known pool).
+ * <p>
+ * The state tree is persistent: each StateTransition results in a new tree that shares all
+ * unchanged subtrees with its predecessor, which is then published atomically.  Visitors therefore
+ * see a consistent snapshot without taking any lock and never delay updates, no matter how long
+ * the visit takes.  Updates are serialised with respect to each other.
  *
  * @author Paul Millar <paul.millar@desy.de>
  */
@@ -50,9 +56,9 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
      */
 
     /**
-     * The root branch of the dCache state
+     * The root branch of the most recently published dCache state
      */
-    private final StateComposite _state;
+    private volatile StateComposite _state;
 
     /**
      * All registered StateWatchers
@@ -60,12 +66,20 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
     private volatile Collection<StateWatcherInfo> _watchers = new ArrayList<>();
 
     /**
-     * Our read/write lock: we use the fair version to reduce the risk of writers constantly
-     * blocking a reader
+     * All registered StateDeltaListeners
+     */
+    private final List<StateDeltaListener> _deltaListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Serialises updates, so that each StateTransition is built against, and applied to, the same
+     * published state.  Readers never take this lock.
      */
-    private final ReadWriteLock _stateRWLock = new ReentrantReadWriteLock(true);
-    private final Lock _stateReadLock = _stateRWLock.readLock();
-    private final Lock _stateWriteLock = _stateRWLock.writeLock();
+    private final Lock _updateLock = new ReentrantLock();
+
+    /**
+     * Number of StateTransitions published so far.
+     */
+    private final AtomicLong _publishedTransitions = new AtomicLong();
 
     // TODO: remove this completely. It's only needed to support derived
     // metrics
@@ -145,9 +159,8 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
 
         StateTransition transition = new StateTransition();
 
+        _updateLock.lock();
         try {
-            _stateReadLock.lock();
-
             /**
              * Update our new StateTransition based on the StateUpdate.
              */
@@ -167,17 +180,17 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
                 _updateManager.enqueueUpdate(resultingUpdate);
             }
 
+            applyTransition(transition);
         } finally {
-            _stateReadLock.unlock();
+            _updateLock.unlock();
         }
-
-        applyTransition(transition);
     }
 
     /**
      * Apply a StateTransition to dCache state. This is the final step in updating the dCache state
-     * where the proposed changes are made permanent. This requires obtaining a writer-lock on the
-     * state.
+     * where the proposed changes are made permanent.  A new tree is built, sharing unaffected
+     * subtrees with the current tree, and published atomically.  Must be called while holding the
+     * update lock.
      *
      * @param transition the StateTransition to apply.
      */
@@ -187,16 +200,46 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
                   transition.dumpContents());
         }
 
-        try {
-            _stateWriteLock.lock();
+        StateComposite before = _state;
+        StateComposite after = before.withTransition(null, transition);
+        _state = after;
+        _publishedTransitions.incrementAndGet();
+
+        if (!_deltaListeners.isEmpty() && after != before) {
+            StateDelta delta = StateDelta.between(before, after,
+                  new SnapshotStateExhibitor(after));
+            if (!delta.isEmpty()) {
+                for (StateDeltaListener listener : _deltaListeners) {
+                    notifyListener(listener, delta);
+                }
+            }
+        }
+    }
 
-            _state.applyTransition(null, transition);
+    private static void notifyListener(StateDeltaListener listener, StateDelta delta) {
+        try {
+            listener.deltaPublished(delta);
+        } catch (RuntimeException e) {
+            LOGGER.error("Bug detected in delta listener {}", listener, e);
+        }
+    }
 
+    @Override
+    public void addStateDeltaListener(StateDeltaListener listener) {
+        _updateLock.lock();
+        try {
+            _deltaListeners.add(listener);
+            notifyListener(listener, StateDelta.unchanged(new SnapshotStateExhibitor(_state)));
         } finally {
-            _stateWriteLock.unlock();
+            _updateLock.unlock();
         }
     }
 
+    @Override
+    public void removeStateDeltaListener(StateDeltaListener listener) {
+        _deltaListeners.remove(listener);
+    }
+
     /**
      * For a given a StateTransition, check all registered StateWatchers to see if they are
      * affected. This is achieved by checking each StateWatcher's Collection of
@@ -214,7 +257,8 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
     @Override
     public StateUpdate checkWatchers(StateTransition transition) {
         StateUpdate update = new StateUpdate();
-        StateExhibitor currentState = this;
+        StateComposite root = _state;
+        StateExhibitor currentState = new SnapshotStateExhibitor(root);
         StateExhibitor futureState = null;
 
         for (StateWatcherInfo thisWatcherInfo : _watchers) {
@@ -232,7 +276,7 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
             for (StatePathPredicate thisPredicate : thisWatcher.getPredicate()) {
                 LOGGER.trace("checking watcher {} predicate {}", thisWatcher, thisPredicate);
 
-                hasBeenTriggered = _state.predicateHasBeenTriggered(null,
+                hasBeenTriggered = root.predicateHasBeenTriggered(null,
                       thisPredicate,
                       transition);
 
@@ -341,7 +385,7 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
      * <ol>
      */
     @Override
-    public synchronized void removeExpiredMetrics() {
+    public void removeExpiredMetrics() {
         // A quick check before obtaining the lock
         Date expDate = getEarliestMetricExpiryDate();
 
@@ -352,9 +396,8 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
         LOGGER.trace("Building StateTransition for expired StateComponents");
         StateTransition transition = new StateTransition();
 
+        _updateLock.lock();
         try {
-            _stateReadLock.lock();
-
             _state.buildRemovalTransition(null, transition, false);
 
             StateUpdate resultingUpdate = checkWatchers(transition);
@@ -365,11 +408,10 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
                 _updateManager.enqueueUpdate(resultingUpdate);
             }
 
+            applyTransition(transition);
         } finally {
-            _stateReadLock.unlock();
+            _updateLock.unlock();
         }
-
-        applyTransition(transition);
     }
 
     /**
@@ -377,8 +419,9 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
      * call-backs describing the process of walking over the state and the contents therein.
      * <p>
      * The data obtained from a single call of <code>visitState()</code> is protected from
-     * inconsistencies due to data being updated whilst the iteration is taking place. No such
-     * protection is available for multiple calls to <code>visitState()</code>.
+     * inconsistencies due to data being updated whilst the iteration is taking place: the visitor
+     * walks the snapshot of the state that was current when the visit started. No such protection
+     * is available for multiple calls to <code>visitState()</code>.
      *
      * @param visitor the algorithm that wishes to visit our current state
      */
@@ -386,30 +429,50 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
     public void visitState(StateVisitor visitor) {
         LOGGER.trace("visitor {} wishing to visit current state", visitor);
 
-        try {
-            long beforeLock = System.currentTimeMillis();
+        long beforeVisit = System.currentTimeMillis();
 
-            LOGGER.trace("visitor {} acquiring read lock", visitor);
-            _stateReadLock.lock();
+        visitSnapshot(_state, visitor);
 
-            long afterLock = System.currentTimeMillis();
+        LOGGER.trace("visitor {} finished (took {} ms).", visitor,
+              System.currentTimeMillis() - beforeVisit);
+    }
 
-            LOGGER.trace("visitor {} acquired read lock (took {} ms), starting visit.",
-                  visitor, (afterLock - beforeLock) / 1000.0);
+    private static void visitSnapshot(StateComposite root, StateVisitor visitor) {
+        if (visitor.isVisitable(null)) {
+            root.acceptVisitor(null, visitor);
+        }
+    }
 
-            if (visitor.isVisitable(null)) {
-                _state.acceptVisitor(null, visitor);
-            }
+    /**
+     * Return the StateComponent currently found at the given path.  As published state is never
+     * modified, the same object is returned for as long as the subtree remains unchanged.
+     */
+    @Override
+    public Object getSubtreeVersion(StatePath path) {
+        StateComposite root = _state;
+        return path == null ? root : root.getDescendant(path);
+    }
 
-            long afterVisit = System.currentTimeMillis();
+    /**
+     * A StateExhibitor for a particular snapshot of dCache state.
+     */
+    private static class SnapshotStateExhibitor implements StateExhibitor {
 
-            LOGGER.trace("visitor {} completed visit (took {} ms), releasing read lock.",
-                  visitor, (afterVisit - afterLock) / 1000.0);
-        } finally {
-            _stateReadLock.unlock();
+        private final StateComposite _root;
+
+        SnapshotStateExhibitor(StateComposite root) {
+            _root = root;
         }
 
-        LOGGER.trace("visitor {} finished.", visitor);
+        @Override
+        public void visitState(StateVisitor visitor) {
+            visitSnapshot(_root, visitor);
+        }
+
+        @Override
+        public Object getSubtreeVersion(StatePath path) {
+            return path == null ? _root : _root.getDescendant(path);
+        }
     }
 
     /**
@@ -471,5 +534,11 @@ public class State implements StateCaretaker, StateExhibitor, StateObservatory {
 
         pw.print(_updateManager.countPendingUpdates());
         pw.println(" pending updates to state.");
+
+        pw.print(_publishedTransitions.get());
+        pw.println(" state transitions published.");
+
+        pw.print(_deltaListeners.size());
+        pw.println(" delta listeners.");
     }
 }
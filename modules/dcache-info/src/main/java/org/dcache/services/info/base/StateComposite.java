@@ -26,6 +26,11 @@ import org.slf4j.LoggerFactory;
  * A StateComposite also maintains a record of the earliest any of its children (or children of
  * children) will expire.  This is an optimisation, allowing a quick determination when a tree
  * should next be purged and, with any subtree, whether it is necessary to purge that subtree.
+ * <p>
+ * A StateComposite that is part of a published dCache state tree is never modified.  Instead,
+ * {@link #withTransition(StatePath, StateTransition)} builds a new tree that shares all
+ * unaffected subtrees with the existing one.  Therefore a subtree is unchanged for exactly as long
+ * as the same StateComposite object is found at its path.
  *
  * @author Paul Millar <paul.millar@desy.de>
  */
@@ -38,6 +43,11 @@ public class StateComposite implements StateComponent {
      */
     static final long DEFAULT_LIFETIME = 10;
 
+    /**
+     * A StateComposite without children; never published and never modified.
+     */
+    private static final StateComposite EMPTY = new StateComposite();
+
     private final Map<String, StateComponent> _children = new HashMap<>();
     private StatePersistentMetadata _metadataRef;
     private Date _earliestChildExpiry;
@@ -95,6 +105,20 @@ public class StateComposite implements StateComponent {
         _metadataRef = persistentMetadata;
     }
 
+    /**
+     * Build a shallow copy of an existing StateComposite: the copy has the same children, metadata
+     * and expiry information as the original.
+     *
+     * @param original the StateComposite to copy.
+     */
+    private StateComposite(StateComposite original) {
+        _children.putAll(original._children);
+        _metadataRef = original._metadataRef;
+        _earliestChildExpiry = original._earliestChildExpiry;
+        _whenIShouldExpire = original._whenIShouldExpire;
+        _isEphemeral = original._isEphemeral;
+    }
+
     /**
      * Build an Immortal StateComposite with specific metadata link. This should only be used by the
      * State singleton.
@@ -338,6 +362,42 @@ public class StateComposite implements StateComponent {
             return;
         }
 
+        applyChangeSet(ourPath, changeSet, transition, false);
+    }
+
+
+    /**
+     * Return what this StateComposite will look like after a transition has been applied, without
+     * modifying this StateComposite or any of its descendants.  Only those StateComposites along
+     * the paths affected by the transition are copied; all other children are shared between the
+     * existing and the returned tree.
+     *
+     * @param ourPath    the path to this within dCache tree, or null for top-most StateComposite
+     * @param transition the StateTransition to apply
+     * @return the StateComposite after the transition; this object if the transition does not
+     * affect this StateComposite.
+     */
+    public StateComposite withTransition(StatePath ourPath, StateTransition transition) {
+        StateChangeSet changeSet = transition.getStateChangeSet(ourPath);
+
+        if (changeSet == null) {
+            return this;
+        }
+
+        StateComposite copy = new StateComposite(this);
+        copy.applyChangeSet(ourPath, changeSet, transition, true);
+        return copy;
+    }
+
+
+    /**
+     * Apply the changes described by a StateChangeSet to this StateComposite.
+     *
+     * @param copyOnWrite whether descendant StateComposites are to be replaced by modified copies
+     *                    rather than being modified in place.
+     */
+    private void applyChangeSet(StatePath ourPath, StateChangeSet changeSet,
+          StateTransition transition, boolean copyOnWrite) {
         Date newExpDate = changeSet.getWhenIShouldExpireDate();
         updateWhenIShouldExpireDate(newExpDate);
         if (newExpDate == null) {
@@ -388,7 +448,13 @@ public class StateComposite implements StateComponent {
                 continue;
             }
 
-            child.applyTransition(buildChildPath(ourPath, childName), transition);
+            StatePath childPath = buildChildPath(ourPath, childName);
+            if (copyOnWrite && child instanceof StateComposite) {
+                _children.put(childName,
+                      ((StateComposite) child).withTransition(childPath, transition));
+            } else {
+                child.applyTransition(childPath, transition);
+            }
         }
 
         recalcEarliestChildExpiry();
@@ -419,6 +485,77 @@ public class StateComposite implements StateComponent {
     }
 
 
+    /**
+     * Return the descendant StateComponent at the given path, relative to this StateComposite.
+     *
+     * @param path the relative path of the descendant
+     * @return the StateComponent, or null if there is no such descendant.
+     */
+    StateComponent getDescendant(StatePath path) {
+        StateComponent child = _children.get(path.getFirstElement());
+
+        if (path.isSimplePath() || child == null) {
+            return child;
+        }
+
+        return child instanceof StateComposite
+              ? ((StateComposite) child).getDescendant(path.childPath()) : null;
+    }
+
+
+    /**
+     * Record how the subtree rooted at this StateComposite differs from the corresponding subtree
+     * of a later version of the state.  As published StateComposites are never modified, subtrees
+     * that are shared between the two versions are skipped without being descended.
+     *
+     * @param ourPath the path of this StateComposite, or null if we are the root
+     * @param later   the StateComposite at the same path in the later version
+     * @param updated receives all metrics that are new or have a different value
+     * @param removed receives the paths of all removed components; the removal of a branch is
+     *                recorded only by the branch's path
+     */
+    void collectChanges(StatePath ourPath, StateComposite later,
+          Map<StatePath, StateValue> updated, Collection<StatePath> removed) {
+        if (later == this) {
+            return;
+        }
+
+        for (Map.Entry<String, StateComponent> entry : later._children.entrySet()) {
+            StateComponent oldChild = _children.get(entry.getKey());
+            StateComponent newChild = entry.getValue();
+
+            if (oldChild == newChild) {
+                continue;
+            }
+
+            StatePath childPath = buildChildPath(ourPath, entry.getKey());
+
+            if (newChild instanceof StateValue) {
+                if (oldChild instanceof StateComposite) {
+                    removed.add(childPath);
+                }
+                if (!newChild.equals(oldChild)) {
+                    updated.put(childPath, (StateValue) newChild);
+                }
+            } else if (oldChild instanceof StateComposite) {
+                ((StateComposite) oldChild).collectChanges(childPath, (StateComposite) newChild,
+                      updated, removed);
+            } else {
+                if (oldChild != null) {
+                    removed.add(childPath);
+                }
+                EMPTY.collectChanges(childPath, (StateComposite) newChild, updated, removed);
+            }
+        }
+
+        for (String childName : _children.keySet()) {
+            if (!later._children.containsKey(childName)) {
+                removed.add(buildChildPath(ourPath, childName));
+            }
+        }
+    }
+
+
     /**
      * Look up persistent metadata reference for child and return it.  If none is available, null is
      * returned.
@@ -0,0 +1,79 @@
+package org.dcache.services.info.base;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A StateDelta describes how dCache state has changed as the result of publishing a
+ * StateTransition: which metrics were added or have a new value, and which components were
+ * removed.  It also provides access to the state that was published, so that consumers may
+ * take a consistent checkpoint.
+ * <p>
+ * Metrics that were refreshed with an identical value are not included.  The removal of a branch
+ * is described by the branch's path alone.
+ */
+public class StateDelta {
+
+    private final StateExhibitor _state;
+    private final Map<StatePath, StateValue> _updated;
+    private final List<StatePath> _removed;
+
+    private StateDelta(StateExhibitor state, Map<StatePath, StateValue> updated,
+          List<StatePath> removed) {
+        _state = state;
+        _updated = unmodifiableMap(updated);
+        _removed = unmodifiableList(removed);
+    }
+
+    /**
+     * Build a StateDelta describing the difference between two versions of the state.
+     *
+     * @param before the root of the state before the transition
+     * @param after  the root of the state after the transition
+     * @param state  an exhibitor for the state after the transition
+     */
+    static StateDelta between(StateComposite before, StateComposite after,
+          StateExhibitor state) {
+        Map<StatePath, StateValue> updated = new LinkedHashMap<>();
+        List<StatePath> removed = new ArrayList<>();
+        before.collectChanges(null, after, updated, removed);
+        return new StateDelta(state, updated, removed);
+    }
+
+    /**
+     * A StateDelta without any changes.
+     */
+    static StateDelta unchanged(StateExhibitor state) {
+        return new StateDelta(state, new LinkedHashMap<>(), new ArrayList<>());
+    }
+
+    /**
+     * @return the dCache state after the change was published.
+     */
+    public StateExhibitor getState() {
+        return _state;
+    }
+
+    /**
+     * @return metrics that are new or have a different value, in no particular order.
+     */
+    public Map<StatePath, StateValue> getUpdatedMetrics() {
+        return _updated;
+    }
+
+    /**
+     * @return the paths of metrics and branches that were removed.
+     */
+    public List<StatePath> getRemovedPaths() {
+        return _removed;
+    }
+
+    public boolean isEmpty() {
+        return _updated.isEmpty() && _removed.isEmpty();
+    }
+}
@@ -0,0 +1,19 @@
+package org.dcache.services.info.base;
+
+/**
+ * Classes that implement StateDeltaListener are informed of each change to dCache state as it is
+ * published.
+ */
+public interface StateDeltaListener {
+
+    /**
+     * Called with each StateDelta, in the order in which they were published.  The first call,
+     * made when the listener is registered, has no changes and provides the state at that time.
+     * <p>
+     * This method is called whilst further updates to dCache state are blocked, so it must return
+     * quickly.
+     *
+     * @param delta the published change
+     */
+    void deltaPublished(StateDelta delta);
+}
@@ -6,10 +6,10 @@ package org.dcache.services.info.base;
  * dCache's state must implement the StateVisitor interface.
  * <p>
  * The class implementing StateExhibitor must ensure the self-consistency of the data produced. This
- * is likely achieved by holding some form of read-lock. It is desirable that these locks are not
- * held for an excessive time; therefore, it is important that the class implementing StateVisitor
- * does not undertake activity that is likely to block activity of the Thread for an unpredictable
- * or a long time.
+ * is achieved either by holding some form of read-lock or by visiting an immutable snapshot. Where
+ * locks are used, it is desirable that they are not held for an excessive time; therefore, it is
+ * important that the class implementing StateVisitor does not undertake activity that is likely to
+ * block activity of the Thread for an unpredictable or a long time.
  */
 public interface StateExhibitor {
 
@@ -17,4 +17,16 @@ public interface StateExhibitor {
      * Query the state of dCache.
      */
     void visitState(StateVisitor visitor);
+
+    /**
+     * Return an opaque token describing the current content of the subtree at the given path.  If
+     * two calls return the identical (non-null) object then the subtree has not changed between
+     * the two calls.  This allows callers to cache information derived from a subtree.
+     *
+     * @param path the path of the subtree, or null for the whole state.
+     * @return the token, or null if no such information is available.
+     */
+    default Object getSubtreeVersion(StatePath path) {
+        return null;
+    }
 }
@@ -13,6 +13,9 @@ import java.util.List;
  * satisfy the StateWatcher's interest. As a special case, those StateWatchers that are secondary
  * information providers (those that maintain derived metrics) may wish to update metric values as a
  * result of a StateTransition.
+ * <p>
+ * A StateObservatory also allows StateDeltaListeners to follow all changes to dCache state, as
+ * they are published.
  */
 public interface StateObservatory {
 
@@ -53,4 +56,15 @@ public interface StateObservatory {
      * @return a StateUpdate with all changes to derived metrics, or null if there are none.
      */
     StateUpdate checkWatchers(StateTransition transition);
+
+    /**
+     * Register a StateDeltaListener.  The listener is immediately informed of the current state,
+     * and subsequently of all changes, until it is removed.
+     */
+    void addStateDeltaListener(StateDeltaListener listener);
+
+    /**
+     * Remove a previously registered StateDeltaListener.
+     */
+    void removeStateDeltaListener(StateDeltaListener listener);
 }
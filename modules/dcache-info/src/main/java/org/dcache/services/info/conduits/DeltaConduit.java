@@ -0,0 +1,291 @@
+package org.dcache.services.info.conduits;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.net.InetAddresses;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import org.dcache.services.info.base.StateDelta;
+import org.dcache.services.info.base.StateDeltaListener;
+import org.dcache.services.info.base.StateExhibitor;
+import org.dcache.services.info.base.StateObservatory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * A conduit that streams changes to dCache state over plain TCP connections.
+ * <p>
+ * A client receives a checkpoint, describing all metrics, when it connects.  Subsequently it
+ * receives a delta for each published change to dCache state, and further checkpoints
+ * periodically.  Each message carries a sequence number, allowing clients to verify that they
+ * have not missed a delta.  See {@link DeltaEncoder} for the format.
+ * <p>
+ * Messages are encoded at most once, no matter how many clients are connected, and encoding
+ * takes place in the threads writing to clients rather than whilst updates to dCache state are
+ * blocked.  A client that falls too far behind is disconnected; it is expected to reconnect and
+ * resynchronise from a new checkpoint.
+ */
+public class DeltaConduit extends AbstractThreadedConduit implements StateDeltaListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeltaConduit.class);
+
+    /**
+     * Maximum number of messages queued for a client before the client is disconnected.
+     */
+    private static final int MAX_QUEUED_MESSAGES = 1000;
+
+    private int _port;
+    private int _backlog;
+    private String _bindAddress;
+    private boolean _autoEnable;
+    private StateObservatory _observatory;
+    private long _checkpointPeriod;
+    private TimeUnit _checkpointPeriodUnit;
+
+    private ServerSocket _svr_skt;
+
+    private final Set<Subscriber> _subscribers = new CopyOnWriteArraySet<>();
+
+    /**
+     * Sequence number of the most recent delta.
+     */
+    private long _sequence;
+
+    /**
+     * Checkpoint of the most recently published state.
+     */
+    private Supplier<String> _checkpoint;
+
+    private long _lastCheckpoint;
+
+    @Required
+    public void setStateObservatory(StateObservatory observatory) {
+        _observatory = observatory;
+    }
+
+    @Required
+    public void setPort(int port) {
+        _port = port;
+    }
+
+    @Required
+    public void setBacklog(int backlog) {
+        _backlog = backlog;
+    }
+
+    @Required
+    public void setBindAddress(String address) {
+        _bindAddress = address;
+    }
+
+    @Required
+    public void setCheckpointPeriod(long period) {
+        _checkpointPeriod = period;
+    }
+
+    @Required
+    public void setCheckpointPeriodUnit(TimeUnit unit) {
+        _checkpointPeriodUnit = unit;
+    }
+
+    /**
+     * Whether the conduit is enabled when the info service starts.  The conduit may also be enabled
+     * later through the admin interface.
+     */
+    public void setAutoEnable(boolean autoEnable) {
+        _autoEnable = autoEnable;
+    }
+
+    public void autoEnable() {
+        if (_autoEnable) {
+            enable();
+        }
+    }
+
+    @Override
+    public void enable() {
+        try {
+            _svr_skt = new ServerSocket(_port, _backlog, InetAddresses.forString(_bindAddress));
+        } catch (IOException e) {
+            LOGGER.error("Failed to listen on port {}: {}", _port, e.getMessage());
+            return;
+        } catch (SecurityException e) {
+            LOGGER.error("security issue creating port {}", _port, e);
+            return;
+        }
+        _lastCheckpoint = System.currentTimeMillis();
+        _observatory.addStateDeltaListener(this);
+        super.enable();
+    }
+
+    @Override
+    public void disable() {
+        _observatory.removeStateDeltaListener(this);
+        super.disable();
+        for (Subscriber subscriber : _subscribers) {
+            subscriber.close();
+        }
+    }
+
+    @Override
+    public synchronized void deltaPublished(StateDelta delta) {
+        StateExhibitor state = delta.getState();
+
+        if (delta.isEmpty()) {
+            _checkpoint = checkpoint(_sequence, state);
+            return;
+        }
+
+        long sequence = ++_sequence;
+        Supplier<String> message = Suppliers.memoize(() -> DeltaEncoder.delta(sequence, delta));
+        _checkpoint = checkpoint(sequence, state);
+
+        long now = System.currentTimeMillis();
+        boolean isCheckpointDue =
+              now - _lastCheckpoint >= _checkpointPeriodUnit.toMillis(_checkpointPeriod);
+        if (isCheckpointDue) {
+            _lastCheckpoint = now;
+        }
+
+        for (Subscriber subscriber : _subscribers) {
+            subscriber.send(message);
+            if (isCheckpointDue) {
+                subscriber.send(_checkpoint);
+            }
+        }
+    }
+
+    private static Supplier<String> checkpoint(long sequence, StateExhibitor state) {
+        return Suppliers.memoize(() -> DeltaEncoder.checkpoint(sequence, state));
+    }
+
+    @Override
+    void triggerBlockingActivityToReturn() {
+        if (_svr_skt == null) {
+            return;
+        }
+
+        try {
+            _svr_skt.close();
+        } catch (IOException e) {
+            LOGGER.error("Problem closing server socket", e);
+        } finally {
+            _svr_skt = null;
+        }
+    }
+
+    /**
+     * Wait for an incoming connection to the listening socket.  When one is received, subscribe
+     * it to the stream, starting with a checkpoint of the current state.
+     */
+    @Override
+    void blockingActivity() {
+        Socket skt;
+
+        try {
+            skt = _svr_skt.accept();
+        } catch (SocketException e) {
+            if (_svr_skt != null && (this._should_run || !_svr_skt.isClosed())) {
+                LOGGER.error("accept() failed", e);
+            }
+            return;
+        } catch (IOException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (SecurityException e) {
+            LOGGER.error("accept() failed for security reasons", e);
+            return;
+        }
+
+        LOGGER.trace("Incoming connection from {}", skt);
+
+        _callCount++;
+        Subscriber subscriber = new Subscriber(skt);
+        synchronized (this) {
+            subscriber.send(_checkpoint);
+            _subscribers.add(subscriber);
+        }
+        subscriber.start();
+    }
+
+    @Override
+    public synchronized String getInfo() {
+        String info = super.getInfo();
+        if (!isEnabled()) {
+            return info;
+        }
+        return info + " " + _subscribers.size() + " subscribers, sequence " + _sequence;
+    }
+
+    /**
+     * A connected client.  Messages are queued and written to the client by a dedicated thread.
+     */
+    private class Subscriber implements Runnable {
+
+        private final Socket _socket;
+        private final BlockingQueue<Supplier<String>> _queue =
+              new ArrayBlockingQueue<>(MAX_QUEUED_MESSAGES);
+        private final Thread _thread;
+
+        Subscriber(Socket socket) {
+            _socket = socket;
+            _thread = new Thread(this, "delta-stream " + socket.getRemoteSocketAddress());
+        }
+
+        void start() {
+            _thread.start();
+        }
+
+        void send(Supplier<String> message) {
+            if (!_queue.offer(message)) {
+                LOGGER.warn("Disconnecting {}: client is not keeping up with changes.",
+                      _socket.getRemoteSocketAddress());
+                close();
+            }
+        }
+
+        void close() {
+            _subscribers.remove(this);
+            _thread.interrupt();
+            try {
+                _socket.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close socket: {}", e.toString());
+            }
+        }
+
+        @Override
+        public void run() {
+            try (Writer out = new BufferedWriter(
+                  new OutputStreamWriter(_socket.getOutputStream(), UTF_8))) {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Supplier<String> message = _queue.take();
+                    out.write(message.get());
+                    out.write('\n');
+                    if (_queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (InterruptedException ignored) {
+            } catch (IOException e) {
+                LOGGER.debug("Client {} disconnected: {}", _socket.getRemoteSocketAddress(),
+                      e.toString());
+            } finally {
+                close();
+            }
+        }
+    }
+}
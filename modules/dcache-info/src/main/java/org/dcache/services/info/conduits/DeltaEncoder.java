@@ -0,0 +1,178 @@
+package org.dcache.services.info.conduits;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import org.dcache.services.info.base.BooleanStateValue;
+import org.dcache.services.info.base.FloatingPointStateValue;
+import org.dcache.services.info.base.IntegerStateValue;
+import org.dcache.services.info.base.StateDelta;
+import org.dcache.services.info.base.StateExhibitor;
+import org.dcache.services.info.base.StatePath;
+import org.dcache.services.info.base.StateValue;
+import org.dcache.services.info.base.StateVisitor;
+import org.dcache.services.info.base.StringStateValue;
+
+/**
+ * Encodes the messages of the delta stream.  Each message is a single line of JSON.  A checkpoint
+ * has the form
+ * <pre>
+ * {"type":"checkpoint","seq":42,"metrics":[{"path":["pools","pool_1","enabled"],"type":"boolean","value":true}, ...]}
+ * </pre>
+ * and a delta has the form
+ * <pre>
+ * {"type":"delta","seq":43,"set":[{"path":[...],"type":"integer","value":17}, ...],"remove":[["pools","pool_2"], ...]}
+ * </pre>
+ */
+final class DeltaEncoder {
+
+    private DeltaEncoder() {
+    }
+
+    static String checkpoint(long sequence, StateExhibitor state) {
+        return encode(writer -> {
+            writer.beginObject();
+            writer.name("type").value("checkpoint");
+            writer.name("seq").value(sequence);
+            writer.name("metrics").beginArray();
+            MetricWriter metrics = new MetricWriter(writer);
+            state.visitState(metrics);
+            metrics.rethrow();
+            writer.endArray();
+            writer.endObject();
+        });
+    }
+
+    static String delta(long sequence, StateDelta delta) {
+        return encode(writer -> {
+            writer.beginObject();
+            writer.name("type").value("delta");
+            writer.name("seq").value(sequence);
+            writer.name("set").beginArray();
+            MetricWriter metrics = new MetricWriter(writer);
+            for (Map.Entry<StatePath, StateValue> entry : delta.getUpdatedMetrics().entrySet()) {
+                entry.getValue().acceptVisitor(entry.getKey(), metrics);
+            }
+            metrics.rethrow();
+            writer.endArray();
+            writer.name("remove").beginArray();
+            for (StatePath path : delta.getRemovedPaths()) {
+                writePath(writer, path);
+            }
+            writer.endArray();
+            writer.endObject();
+        });
+    }
+
+    private static String encode(Encoding encoding) {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            encoding.writeTo(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static void writePath(JsonWriter writer, StatePath path) throws IOException {
+        writer.beginArray();
+        for (StatePath p = path; p != null; p = p.childPath()) {
+            writer.value(p.getFirstElement());
+        }
+        writer.endArray();
+    }
+
+    @FunctionalInterface
+    private interface Encoding {
+
+        void writeTo(JsonWriter writer) throws IOException;
+    }
+
+    /**
+     * Writes each visited metric as an element of a JSON array.
+     */
+    private static class MetricWriter implements StateVisitor {
+
+        private final JsonWriter _writer;
+        private IOException _error;
+
+        MetricWriter(JsonWriter writer) {
+            _writer = writer;
+        }
+
+        @Override
+        public boolean isVisitable(StatePath path) {
+            return _error == null;
+        }
+
+        @Override
+        public void visitString(StatePath path, StringStateValue value) {
+            try {
+                writeMetric(path, value).value(value.getValue());
+                _writer.endObject();
+            } catch (IOException e) {
+                _error = e;
+            }
+        }
+
+        @Override
+        public void visitInteger(StatePath path, IntegerStateValue value) {
+            try {
+                writeMetric(path, value).value(value.getValue());
+                _writer.endObject();
+            } catch (IOException e) {
+                _error = e;
+            }
+        }
+
+        @Override
+        public void visitBoolean(StatePath path, BooleanStateValue value) {
+            try {
+                writeMetric(path, value).value(value.getValue());
+                _writer.endObject();
+            } catch (IOException e) {
+                _error = e;
+            }
+        }
+
+        @Override
+        public void visitFloatingPoint(StatePath path, FloatingPointStateValue value) {
+            try {
+                double d = value.getValue();
+                JsonWriter writer = writeMetric(path, value);
+                if (Double.isFinite(d)) {
+                    writer.value(d);
+                } else {
+                    writer.value(Double.toString(d));
+                }
+                _writer.endObject();
+            } catch (IOException e) {
+                _error = e;
+            }
+        }
+
+        @Override
+        public void visitCompositePreDescend(StatePath path, Map<String, String> metadata) {
+        }
+
+        @Override
+        public void visitCompositePostDescend(StatePath path, Map<String, String> metadata) {
+        }
+
+        private JsonWriter writeMetric(StatePath path, StateValue value) throws IOException {
+            _writer.beginObject();
+            _writer.name("path");
+            writePath(_writer, path);
+            _writer.name("type").value(value.getTypeName());
+            return _writer.name("value");
+        }
+
+        void rethrow() throws IOException {
+            if (_error != null) {
+                throw _error;
+            }
+        }
+    }
+}
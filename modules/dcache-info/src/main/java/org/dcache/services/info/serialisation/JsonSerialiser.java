@@ -20,6 +20,7 @@ public class JsonSerialiser extends SubtreeVisitor implements StateSerialiser {
 
     public static final String NAME = "json";
     private StateExhibitor _exhibitor;
+    private final SerialisationCache _cache = new SerialisationCache();
 
     private JsonWriter _writer;
     private StringWriter _string;
@@ -103,8 +104,16 @@ public class JsonSerialiser extends SubtreeVisitor implements StateSerialiser {
         return serialise(null);
     }
 
+    /**
+     * Serialise the subtree at the given path.  The result is reused for as long as the subtree
+     * remains unchanged.
+     */
     @Override
     public String serialise(StatePath start) {
+        return _cache.get(_exhibitor, start, () -> serialiseCurrentState(start));
+    }
+
+    private String serialiseCurrentState(StatePath start) {
         _top = start;
 
         _string = new StringWriter();
@@ -0,0 +1,92 @@
+package org.dcache.services.info.serialisation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.dcache.services.info.base.StateExhibitor;
+import org.dcache.services.info.base.StatePath;
+
+/**
+ * A cache of serialised subtrees of dCache state.
+ * <p>
+ * Each entry records the subtree version (as reported by {@link StateExhibitor#getSubtreeVersion})
+ * of the subtree that was serialised.  An entry is reused for as long as the exhibitor reports the
+ * identical version; any StateTransition that changes the subtree results in a new version and so
+ * invalidates the entry.  Exhibitors that do not report versions are never cached.
+ * <p>
+ * A bounded number of subtrees are cached, least recently used entries are discarded first.
+ */
+public class SerialisationCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private final Map<StatePath, Entry> _entries;
+
+    private long _hits;
+    private long _misses;
+
+    public SerialisationCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public SerialisationCache(int maxEntries) {
+        _entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<StatePath, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Return the serialisation of the subtree at {@code start}, either from the cache or by
+     * calling {@code serialiser}.
+     *
+     * @param exhibitor  the source of the subtree's version
+     * @param start      the subtree being serialised, or null for the whole state
+     * @param serialiser produces the serialisation of the subtree's current content
+     */
+    public synchronized String get(StateExhibitor exhibitor, StatePath start,
+          Supplier<String> serialiser) {
+        Object version = exhibitor.getSubtreeVersion(start);
+
+        if (version != null) {
+            Entry entry = _entries.get(start);
+            if (entry != null && entry.version == version) {
+                _hits++;
+                return entry.output;
+            }
+        }
+
+        _misses++;
+        String output = serialiser.get();
+
+        /* Only cache the output if the subtree didn't change whilst it was being serialised. */
+        if (version != null && exhibitor.getSubtreeVersion(start) == version) {
+            _entries.put(start, new Entry(version, output));
+        } else {
+            _entries.remove(start);
+        }
+
+        return output;
+    }
+
+    public synchronized long getHits() {
+        return _hits;
+    }
+
+    public synchronized long getMisses() {
+        return _misses;
+    }
+
+    private static class Entry {
+
+        final Object version;
+        final String output;
+
+        Entry(Object version, String output) {
+            this.version = version;
+            this.output = output;
+        }
+    }
+}
@@ -46,6 +46,8 @@ public class XmlSerialiser extends SubtreeVisitor implements StateSerialiser {
 
     private StateExhibitor _exhibitor;
 
+    private final SerialisationCache _cache = new SerialisationCache();
+
     @Required
     public void setStateExhibitor(StateExhibitor exhibitor) {
         _exhibitor = exhibitor;
@@ -73,13 +75,18 @@ public class XmlSerialiser extends SubtreeVisitor implements StateSerialiser {
 
     /**
      * Serialise the current dCache state into XML, starting at the given path.  This selects only a
-     * subset of the total available XML infoset, but the resulting document will validate.
+     * subset of the total available XML infoset, but the resulting document will validate.  The
+     * result is reused for as long as the subtree remains unchanged.
      *
      * @param start the StatePath to start serialising data.
      * @return a String containing dCache current state as XML data.
      */
     @Override
     public String serialise(StatePath start) {
+        return _cache.get(_exhibitor, start, () -> serialiseCurrentState(start));
+    }
+
+    private String serialiseCurrentState(StatePath start) {
         _out = new StringBuilder();
         _isTopBranch = true;
         _haveLastBranch = false;
@@ -436,6 +436,33 @@ public class StateCompositeTest extends InfoBaseTestHelper {
     }
 
 
+    /**
+     * Test method for {@link StateComposite#withTransition(StatePath, StateTransition)}.
+     */
+    @Test
+    public void testWithTransitionLeavesOriginalUnchanged() throws MetricStatePathException {
+        StatePath metricPath = BRANCH_MORTAL_PATH.newChild("foo");
+        StateValue metricValue = new StringStateValue("some dummy data");
+
+        StateTransition transition = new StateTransition();
+        _rootComposite.buildTransition(null, metricPath, metricValue, transition);
+        StateComposite updated = _rootComposite.withTransition(null, transition);
+
+        assertNotSame("Transition not applied to a copy", _rootComposite, updated);
+        assertNull("Original modified", _rootComposite.getDescendant(metricPath));
+        assertSame("Metric not added to copy", metricValue, updated.getDescendant(metricPath));
+        assertSame("Unchanged subtree not shared", _immortalComposite,
+              updated.getDescendant(BRANCH_IMMORTAL_PATH));
+        assertNotSame("Changed subtree shared", _mortalComposite,
+              updated.getDescendant(BRANCH_MORTAL_PATH));
+    }
+
+    @Test
+    public void testWithEmptyTransitionReturnsSameComposite() {
+        assertSame("Empty transition created a copy", _rootComposite,
+              _rootComposite.withTransition(null, new StateTransition()));
+    }
+
     @Test
     public void testApplyTransitionRemovingMetrics() throws MetricStatePathException {
 
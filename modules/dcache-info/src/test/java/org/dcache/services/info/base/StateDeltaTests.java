@@ -0,0 +1,112 @@
+package org.dcache.services.info.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the StateDeltas published by State.
+ */
+public class StateDeltaTests {
+
+    private static final StatePath POOL_1 = StatePath.parsePath("pools.pool_1");
+    private static final StatePath POOL_2 = StatePath.parsePath("pools.pool_2");
+
+    private State _state;
+    private List<StateDelta> _deltas;
+
+    @Before
+    public void setUp() {
+        _state = new State();
+        _state.setStateUpdateManager(new QueuingStateUpdateManager());
+        _deltas = new ArrayList<>();
+    }
+
+    @Test
+    public void shouldReceiveCurrentStateWhenAdded() {
+        givenUpdate(POOL_1.newChild("total"), new IntegerStateValue(10));
+
+        _state.addStateDeltaListener(_deltas::add);
+
+        assertEquals(1, _deltas.size());
+        assertTrue(_deltas.get(0).isEmpty());
+        assertEquals(_state.getSubtreeVersion(null),
+              _deltas.get(0).getState().getSubtreeVersion(null));
+    }
+
+    @Test
+    public void shouldReceiveNewMetrics() {
+        _state.addStateDeltaListener(_deltas::add);
+
+        givenUpdate(POOL_1.newChild("total"), new IntegerStateValue(10));
+
+        assertEquals(2, _deltas.size());
+        StateDelta delta = _deltas.get(1);
+        assertEquals(Collections.singletonMap(POOL_1.newChild("total"), new IntegerStateValue(10)),
+              delta.getUpdatedMetrics());
+        assertTrue(delta.getRemovedPaths().isEmpty());
+    }
+
+    @Test
+    public void shouldReceiveOnlyChangedMetrics() {
+        givenUpdate(POOL_1.newChild("total"), new IntegerStateValue(10));
+        givenUpdate(POOL_2.newChild("total"), new IntegerStateValue(20));
+        _state.addStateDeltaListener(_deltas::add);
+
+        StateUpdate update = new StateUpdate();
+        update.appendUpdate(POOL_1.newChild("total"), new IntegerStateValue(10));
+        update.appendUpdate(POOL_2.newChild("total"), new IntegerStateValue(25));
+        _state.processUpdate(update);
+
+        assertEquals(2, _deltas.size());
+        assertEquals(Collections.singletonMap(POOL_2.newChild("total"), new IntegerStateValue(25)),
+              _deltas.get(1).getUpdatedMetrics());
+    }
+
+    @Test
+    public void shouldNotPublishUnchangedState() {
+        givenUpdate(POOL_1.newChild("total"), new IntegerStateValue(10));
+        _state.addStateDeltaListener(_deltas::add);
+
+        givenUpdate(POOL_1.newChild("total"), new IntegerStateValue(10));
+
+        assertEquals(1, _deltas.size());
+    }
+
+    @Test
+    public void shouldReceiveRemovedBranch() {
+        givenUpdate(POOL_1.newChild("total"), new IntegerStateValue(10));
+        givenUpdate(POOL_2.newChild("total"), new IntegerStateValue(20));
+        _state.addStateDeltaListener(_deltas::add);
+
+        StateUpdate update = new StateUpdate();
+        update.purgeUnder(POOL_2);
+        _state.processUpdate(update);
+
+        assertEquals(2, _deltas.size());
+        assertTrue(_deltas.get(1).getUpdatedMetrics().isEmpty());
+        assertEquals(Collections.singletonList(POOL_2), _deltas.get(1).getRemovedPaths());
+    }
+
+    @Test
+    public void shouldNotReceiveDeltasAfterRemoval() {
+        StateDeltaListener listener = _deltas::add;
+        _state.addStateDeltaListener(listener);
+        _state.removeStateDeltaListener(listener);
+
+        givenUpdate(POOL_1.newChild("total"), new IntegerStateValue(10));
+
+        assertEquals(1, _deltas.size());
+    }
+
+    private void givenUpdate(StatePath path, StateValue value) {
+        StateUpdate update = new StateUpdate();
+        update.appendUpdate(path, value);
+        _state.processUpdate(update);
+    }
+}
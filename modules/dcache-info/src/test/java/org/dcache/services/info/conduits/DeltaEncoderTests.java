@@ -0,0 +1,58 @@
+package org.dcache.services.info.conduits;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.dcache.services.info.base.IntegerStateValue;
+import org.dcache.services.info.base.QueuingStateUpdateManager;
+import org.dcache.services.info.base.State;
+import org.dcache.services.info.base.StateDelta;
+import org.dcache.services.info.base.StatePath;
+import org.dcache.services.info.base.StateUpdate;
+import org.dcache.services.info.base.StringStateValue;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeltaEncoderTests {
+
+    private State _state;
+    private List<StateDelta> _deltas;
+
+    @Before
+    public void setUp() {
+        _state = new State();
+        _state.setStateUpdateManager(new QueuingStateUpdateManager());
+        _deltas = new ArrayList<>();
+        _state.addStateDeltaListener(_deltas::add);
+    }
+
+    @Test
+    public void shouldEncodeDelta() {
+        StateUpdate update = new StateUpdate();
+        update.appendUpdate(StatePath.parsePath("pools.pool_1.total"), new IntegerStateValue(10));
+        _state.processUpdate(update);
+
+        update = new StateUpdate();
+        update.appendUpdate(StatePath.parsePath("pools.pool_2.total"), new IntegerStateValue(20));
+        update.purgeUnder(StatePath.parsePath("pools.pool_1"));
+        _state.processUpdate(update);
+
+        assertEquals("{\"type\":\"delta\",\"seq\":7,"
+                    + "\"set\":[{\"path\":[\"pools\",\"pool_2\",\"total\"],\"type\":\"integer\",\"value\":20}],"
+                    + "\"remove\":[[\"pools\",\"pool_1\"]]}",
+              DeltaEncoder.delta(7, _deltas.get(2)));
+    }
+
+    @Test
+    public void shouldEncodeCheckpoint() {
+        StateUpdate update = new StateUpdate();
+        update.appendUpdate(StatePath.parsePath("domains.dCacheDomain.version"),
+              new StringStateValue("9.2"));
+        _state.processUpdate(update);
+
+        assertEquals("{\"type\":\"checkpoint\",\"seq\":3,\"metrics\":["
+                    + "{\"path\":[\"domains\",\"dCacheDomain\",\"version\"],\"type\":\"string\",\"value\":\"9.2\"}]}",
+              DeltaEncoder.checkpoint(3, _deltas.get(1).getState()));
+    }
+}
@@ -14,9 +14,7 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import diskCacheV111.namespace.EventNotifier;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FileNotFoundCacheException;
-import diskCacheV111.util.FileNotInCacheException;
 import diskCacheV111.util.FsPath;
-import diskCacheV111.util.PermissionDeniedCacheException;
 import diskCacheV111.util.PnfsHandler;
 import diskCacheV111.util.PnfsId;
 import diskCacheV111.vehicles.DoorRequestInfoMessage;
@@ -167,9 +165,8 @@ import org.dcache.oncrpc4j.rpc.OncRpcSvc;
 import org.dcache.oncrpc4j.rpc.OncRpcSvcBuilder;
 import org.dcache.oncrpc4j.rpc.gss.GssSessionManager;
 import org.dcache.pool.assumption.Assumptions;
-import org.dcache.poolmanager.CostException;
+import org.dcache.poolmanager.LocalReadPoolSelector;
 import org.dcache.poolmanager.PoolManagerStub;
-import org.dcache.poolmanager.PoolMonitor;
 import org.dcache.util.ByteUnit;
 import org.dcache.util.CDCScheduledExecutorServiceDecorator;
 import org.dcache.util.FireAndForgetTask;
@@ -248,7 +245,7 @@ public class NFSv41Door extends AbstractCellComponent implements
     private CellStub _billingStub;
     private PnfsHandler _pnfsHandler;
 
-    private PoolMonitor _poolMonitor;
+    private LocalReadPoolSelector _localReadPoolSelector;
 
     private String _ioQueue;
 
@@ -416,8 +413,8 @@ public class NFSv41Door extends AbstractCellComponent implements
     }
 
     @Required
-    public void setPoolMonitor(PoolMonitor poolMonitor) {
-        _poolMonitor = poolMonitor;
+    public void setLocalReadPoolSelector(LocalReadPoolSelector selector) {
+        _localReadPoolSelector = selector;
     }
 
     public VirtualFileSystem wrapWithMonitoring(VirtualFileSystem inner) {
@@ -744,6 +741,7 @@ public class NFSv41Door extends AbstractCellComponent implements
                     transfer.setBillingStub(_billingStub);
                     transfer.setPoolStub(_poolStub);
                     transfer.setPoolManagerStub(_poolManagerStub);
+                    transfer.setLocalReadPoolSelector(_localReadPoolSelector);
                     transfer.setPnfsId(pnfsId);
                     transfer.setClientAddress(remote);
                     transfer.setIoQueue(_ioQueue);
@@ -1293,25 +1291,13 @@ public class NFSv41Door extends AbstractCellComponent implements
                 }
 
                 if (expectedOnline) {
-                    try {
-
-                        /*
-                         * On a read we are OK to by-pass selection if file is available on a pool
-                         * from which client is allowed to read. The retry mechanism of
-                         * selectPoolAndStartMoverAsync will take care that stage or p2p takes
-                         * place in case of incorrect information.
-                         */
-                        var pool = _poolMonitor.getPoolSelector(attr, getProtocolInfo(), null,
-                                    null)
-                              .selectReadPool();
-                        setPool(new Pool(pool.name(), pool.address(), pool.assumption()));
-                        setFileAttributes(attr);
-                        _log.debug("by-passed selecting {} for read", pool);
-                    } catch (FileNotInCacheException | PermissionDeniedCacheException | CostException e) {
-                        // fallback to regular selection
-                        _log.info("selection by-pass failed: {}", e.getMessage());
-                        expectedOnline = false;
-                    }
+                    /*
+                     * On a read we are OK to by-pass selection if file is available on a pool
+                     * from which client is allowed to read. The retry mechanism of
+                     * selectPoolAndStartMoverAsync will take care that stage or p2p takes
+                     * place in case of incorrect information.
+                     */
+                    expectedOnline = selectReadPoolLocally();
                 }
 
                 _log.debug("looking a read pool for {}", getPnfsId());
@@ -59,9 +59,12 @@ documents or software obtained from this server.
  */
 package org.dcache.qos.services.scanner.namespace;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.dcache.qos.data.QoSMessageType.SYSTEM_SCAN;
 import static org.dcache.util.SqlHelper.tryToClose;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.PnfsId;
 import java.io.PrintWriter;
@@ -71,12 +74,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import javax.sql.DataSource;
 import org.dcache.chimera.BackEndErrorChimeraFsException;
 import org.dcache.chimera.ChimeraFsException;
 import org.dcache.qos.QoSException;
-import org.dcache.qos.data.QoSMessageType;
 import org.dcache.qos.listeners.QoSVerificationListener;
 import org.dcache.qos.services.scanner.data.PoolScanSummary;
 import org.dcache.qos.services.scanner.data.SystemScanSummary;
@@ -121,13 +126,21 @@ public class LocalNamespaceAccess implements NamespaceAccess {
     /**
      * Pool status or config changes should be concerned only with the disk status of the file, so
      * we check only ONLINE files again.  Files for which a QoS policy is defined are included.
+     * <p/>
+     * The query is keyset-paginated, to scan a partition of the inumber range in batches.  The
+     * primary key of t_locationinfo begins with inumber, so each batch is an index range scan
+     * starting where the previous batch ended.
      */
     static final String SQL_GET_ONLINE_FOR_LOCATION
-          = "SELECT n.ipnfsid FROM t_locationinfo l, t_inodes n"
+          = "SELECT l.inumber, n.ipnfsid FROM t_locationinfo l, t_inodes n"
           + " WHERE l.inumber = n.inumber"
           + " AND l.itype = 1"
           + " AND n.iaccess_latency = 1"
-          + " AND l.ilocation = ?";
+          + " AND l.ilocation = ?"
+          + " AND l.inumber > ?"
+          + " AND l.inumber <= ?"
+          + " ORDER BY l.inumber ASC"
+          + " LIMIT ?";
 
     /**
      * Get the current range of the entire scan.
@@ -162,16 +175,30 @@ public class LocalNamespaceAccess implements NamespaceAccess {
     private DataSource connectionPool;
 
     /**
-     * Round-trip buffer used when running pool-based queries.
+     * Round-trip buffer used when running pool-based queries.  Also the size of the batches
+     * in which a pool is scanned.
      */
     private int fetchSize;
 
+    /**
+     * Number of partitions of the inumber range which are scanned in parallel for a pool.
+     */
+    private int poolScanPartitions = 1;
+
+    /**
+     * Runs the partitions of a pool scan.  If undefined, partitions are scanned sequentially
+     * on the calling thread.
+     */
+    private ExecutorService poolScanExecutor;
+
     public long[] getMinMaxInumbers() throws CacheException {
         try {
             Connection connection = getConnection();
+            PreparedStatement statement = null;
+            ResultSet resultSet = null;
             try {
-                PreparedStatement statement = connection.prepareStatement(SQL_GET_MIN_MAX_INUMBER);
-                ResultSet resultSet = statement.executeQuery();
+                statement = connection.prepareStatement(SQL_GET_MIN_MAX_INUMBER);
+                resultSet = statement.executeQuery();
                 resultSet.next();
                 long[] results = new long[2];
                 results[0] = resultSet.getLong(1);
@@ -180,6 +207,8 @@ public class LocalNamespaceAccess implements NamespaceAccess {
             } catch (SQLException e) {
                 throw new ChimeraFsException(e.getMessage());
             } finally {
+                tryToClose(resultSet);
+                tryToClose(statement);
                 tryToClose(connection);
             }
         } catch (ChimeraFsException e) {
@@ -187,9 +216,57 @@ public class LocalNamespaceAccess implements NamespaceAccess {
         }
     }
 
+    /**
+     * The inumber range of the namespace is split into partitions which are scanned in parallel.
+     * Each partition is read in keyset-paginated batches, so that no query holds a connection
+     * or a cursor for longer than it takes to fetch one batch, and each batch is dispatched to
+     * the verification service as soon as it has been read.
+     */
     @Override
-    public void handlePoolScan(PoolScanSummary poolScan) throws CacheException {
-        handleQuery((connection, scan) -> handleQuery(connection, scan), poolScan);
+    public void handlePoolScan(PoolScanSummary scan) throws CacheException {
+        if (scan.isCancelled()) {
+            return;
+        }
+
+        long[] range = getMinMaxInumbers();
+        List<long[]> partitions = partition(range[0] - 1, range[1], poolScanPartitions);
+
+        LOGGER.debug("handlePoolScan: (pool {}) scanning inumbers {} to {} in {} partitions.",
+              scan.getId(), range[0], range[1], partitions.size());
+
+        if (poolScanExecutor == null || partitions.size() == 1) {
+            for (long[] partition : partitions) {
+                scanPartition(scan, partition[0], partition[1]);
+            }
+            return;
+        }
+
+        List<Future<Void>> futures = new ArrayList<>();
+        for (long[] partition : partitions) {
+            futures.add(poolScanExecutor.submit(() -> {
+                scanPartition(scan, partition[0], partition[1]);
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!scan.isCancelled()) {
+                throw new CacheException(CacheException.RESOURCE,
+                      String.format("Scan of %s was interrupted", scan.getId()));
+            }
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), CacheException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new CacheException(CacheException.RESOURCE,
+                  String.format("Could not handle query %s", scan), e.getCause());
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
     }
 
     @Override
@@ -230,6 +307,15 @@ public class LocalNamespaceAccess implements NamespaceAccess {
         this.fetchSize = fetchSize;
     }
 
+    public void setPoolScanExecutor(ExecutorService poolScanExecutor) {
+        this.poolScanExecutor = poolScanExecutor;
+    }
+
+    public void setPoolScanPartitions(int poolScanPartitions) {
+        checkArgument(poolScanPartitions > 0, "Pool scans need at least one partition.");
+        this.poolScanPartitions = poolScanPartitions;
+    }
+
     public void setVerificationListener(QoSVerificationListener verificationListener) {
         this.verificationListener = verificationListener;
     }
@@ -261,53 +347,73 @@ public class LocalNamespaceAccess implements NamespaceAccess {
     }
 
     /**
-     * The query processes all online replicas for the location by batching the returned pnfsids
-     * into lists to be dispatched to the verification service.
+     * Fetches the online replicas of the pool in the inumber range (from, to] batch by batch and
+     * dispatches each batch to the verification service.
      */
-    private void handleQuery(Connection connection, PoolScanSummary scan)
-          throws SQLException, QoSException {
-        PreparedStatement statement = null;
-        ResultSet resultSet = null;
+    private void scanPartition(PoolScanSummary scan, long from, long to) throws CacheException {
         String pool = scan.getId();
-        String group = scan.getGroup();
-        String storageUnit = scan.getStorageUnit();
-        QoSMessageType type = scan.getType();
-        boolean forced = scan.isForced();
-        List<PnfsId> replicas = new ArrayList<>();
-        QoSScannerVerificationRequest request;
+        long last = from;
 
-        LOGGER.debug("handleQuery: (pool {})(group {})(storageUnit {})(type {})(forced {})",
-              pool, group, storageUnit, type, forced);
-
-        try {
-            statement = connection.prepareStatement(SQL_GET_ONLINE_FOR_LOCATION);
-            statement.setString(1, pool);
-            statement.setFetchSize(fetchSize);
-            if (scan.isCancelled()) {
-                return;
+        while (!scan.isCancelled()) {
+            List<PnfsId> replicas = new ArrayList<>(fetchSize);
+            last = fetchBatch(pool, last, to, replicas);
+            if (replicas.isEmpty() || scan.isCancelled()) {
+                break;
             }
 
-            resultSet = statement.executeQuery();
+            scan.incrementCount(replicas.size());
+            QoSScannerVerificationRequest request = new QoSScannerVerificationRequest(pool,
+                  replicas, scan.getType(), scan.getGroup(), scan.getStorageUnit(),
+                  scan.isForced());
+            try {
+                verificationListener.fileQoSVerificationRequested(request);
+            } catch (QoSException e) {
+                throw CacheExceptionUtils.getCacheExceptionFrom(e);
+            }
 
-            while (resultSet.next() && !scan.isCancelled()) {
-                replicas.add(new PnfsId(resultSet.getString(1)));
-                scan.incrementCount();
-                if (replicas.size() >= fetchSize) {
-                    request = new QoSScannerVerificationRequest(pool, replicas, type, group,
-                          storageUnit, forced);
-                    verificationListener.fileQoSVerificationRequested(request);
-                    replicas = new ArrayList<>();
-                }
+            if (replicas.size() < fetchSize) {
+                break;
             }
+        }
+    }
 
-            if (!replicas.isEmpty() && !scan.isCancelled()) {
-                request = new QoSScannerVerificationRequest(pool, replicas, type, group,
-                      storageUnit, forced);
-                verificationListener.fileQoSVerificationRequested(request);
+    /**
+     * Fills the list with the next batch of online replicas for the location, beginning after
+     * the given inumber.
+     *
+     * @return the inumber of the last replica of the batch.
+     */
+    private long fetchBatch(String pool, long after, long to, List<PnfsId> replicas)
+          throws CacheException {
+        try {
+            Connection connection = getConnection();
+            PreparedStatement statement = null;
+            ResultSet resultSet = null;
+            try {
+                statement = connection.prepareStatement(SQL_GET_ONLINE_FOR_LOCATION);
+                statement.setString(1, pool);
+                statement.setLong(2, after);
+                statement.setLong(3, to);
+                statement.setInt(4, fetchSize);
+                statement.setFetchSize(fetchSize);
+                resultSet = statement.executeQuery();
+
+                long last = after;
+                while (resultSet.next()) {
+                    last = resultSet.getLong(1);
+                    replicas.add(new PnfsId(resultSet.getString(2)));
+                }
+                return last;
+            } catch (SQLException e) {
+                throw new ChimeraFsException(e.getMessage());
+            } finally {
+                tryToClose(resultSet);
+                tryToClose(statement);
+                tryToClose(connection);
             }
-        } finally {
-            tryToClose(resultSet);
-            tryToClose(statement);
+        } catch (ChimeraFsException e) {
+            throw new CacheException(CacheException.RESOURCE,
+                  String.format("Could not handle pnfsids for %s", pool), e);
         }
     }
 
@@ -368,6 +474,25 @@ public class LocalNamespaceAccess implements NamespaceAccess {
         }
     }
 
+    /**
+     * Splits the inumber range (from, to] into at most the given number of contiguous partitions
+     * of roughly equal length.
+     *
+     * @return the (exclusive, inclusive) bounds of each partition.
+     */
+    @VisibleForTesting
+    static List<long[]> partition(long from, long to, int count) {
+        List<long[]> partitions = new ArrayList<>();
+        long length = Math.max(1, (to - from + count - 1) / count);
+        for (long start = from; start < to; start += length) {
+            partitions.add(new long[]{start, Math.min(start + length, to)});
+        }
+        if (partitions.isEmpty()) {
+            partitions.add(new long[]{from, to});
+        }
+        return partitions;
+    }
+
     private void printResults(Connection connection, List<String> locations, PrintWriter writer)
           throws SQLException, InterruptedException {
         String placeholders = locations.stream().map(l -> "?")
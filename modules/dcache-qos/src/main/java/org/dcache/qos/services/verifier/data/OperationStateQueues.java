@@ -0,0 +1,228 @@
+/*
+COPYRIGHT STATUS:
+Dec 1st 2001, Fermi National Accelerator Laboratory (FNAL) documents and
+software are sponsored by the U.S. Department of Energy under Contract No.
+DE-AC02-76CH03000. Therefore, the U.S. Government retains a  world-wide
+non-exclusive, royalty-free license to publish or reproduce these documents
+and software for U.S. Government purposes.  All documents and software
+available from this server are protected under the U.S. and Foreign
+Copyright Laws, and FNAL reserves all rights.
+
+Distribution of the software available from this server is free of
+charge subject to the user following the terms of the Fermitools
+Software Legal Information.
+
+Redistribution and/or modification of the software shall be accompanied
+by the Fermitools Software Legal Information  (including the copyright
+notice).
+
+The user is asked to feed back problems, benefits, and/or suggestions
+about the software to the Fermilab Software Providers.
+
+Neither the name of Fermilab, the  URA, nor the names of the contributors
+may be used to endorse or promote products derived from this software
+without specific prior written permission.
+
+DISCLAIMER OF LIABILITY (BSD):
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED  WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED  WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL FERMILAB,
+OR THE URA, OR THE U.S. DEPARTMENT of ENERGY, OR CONTRIBUTORS BE LIABLE
+FOR  ANY  DIRECT, INDIRECT,  INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+OF SUBSTITUTE  GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY  OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT  OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE  POSSIBILITY OF SUCH DAMAGE.
+
+Liabilities of the Government:
+
+This software is provided by URA, independent from its Prime Contract
+with the U.S. Department of Energy. URA is acting independently from
+the Government and in its own private capacity and is not acting on
+behalf of the U.S. Government, nor as its contractor nor its agent.
+Correspondingly, it is understood and agreed that the U.S. Government
+has no connection to this software and in no manner whatsoever shall
+be liable for nor assume any responsibility or obligation for any claim,
+cost, or damages arising out of or resulting from the use of the software
+available from this server.
+
+Export Control:
+
+All documents and software available from this server are subject to U.S.
+export control laws.  Anyone downloading information from this server is
+obligated to secure any necessary Government licenses before exporting
+documents or software obtained from this server.
+ */
+package org.dcache.qos.services.verifier.data;
+
+import diskCacheV111.util.PnfsId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ *  Tracks the pnfsids of a verify operation queue according to their state (running, ready,
+ *  waiting).
+ *  <p/>
+ *  Each state is a doubly linked list, and all entries are indexed by pnfsid, so that checking
+ *  for, moving and removing an entry are constant time operations; the number of entries in
+ *  each state is kept as a counter.  A pnfsid can be in at most one state at a time; adding a
+ *  pnfsid which is already present moves it.
+ *  <p/>
+ *  Access must be guarded by the owner.
+ */
+@NotThreadSafe
+final class OperationStateQueues {
+
+    enum State {
+        RUNNING, READY, WAITING
+    }
+
+    private static final class Node {
+        final PnfsId pnfsId;
+        State state;
+        Node previous;
+        Node next;
+
+        Node(PnfsId pnfsId) {
+            this.pnfsId = pnfsId;
+        }
+    }
+
+    private final Map<PnfsId, Node> index = new HashMap<>();
+    private final Node[] heads = new Node[State.values().length];
+    private final Node[] tails = new Node[State.values().length];
+    private final int[] counts = new int[State.values().length];
+
+    void addFirst(State state, PnfsId pnfsId) {
+        Node node = detachOrCreate(pnfsId);
+        int i = state.ordinal();
+        node.state = state;
+        node.next = heads[i];
+        if (heads[i] == null) {
+            tails[i] = node;
+        } else {
+            heads[i].previous = node;
+        }
+        heads[i] = node;
+        ++counts[i];
+    }
+
+    void addLast(State state, PnfsId pnfsId) {
+        Node node = detachOrCreate(pnfsId);
+        int i = state.ordinal();
+        node.state = state;
+        node.previous = tails[i];
+        if (tails[i] == null) {
+            heads[i] = node;
+        } else {
+            tails[i].next = node;
+        }
+        tails[i] = node;
+        ++counts[i];
+    }
+
+    boolean contains(State state, PnfsId pnfsId) {
+        Node node = index.get(pnfsId);
+        return node != null && node.state == state;
+    }
+
+    boolean isEmpty(State state) {
+        return counts[state.ordinal()] == 0;
+    }
+
+    /**
+     *  Moves the pnfsid to the end of the given state if it currently is in the
+     *  other state.
+     *
+     *  @return true if the pnfsid was moved.
+     */
+    boolean move(PnfsId pnfsId, State from, State to) {
+        if (!contains(from, pnfsId)) {
+            return false;
+        }
+        addLast(to, pnfsId);
+        return true;
+    }
+
+    /**
+     *  @return the first pnfsid of the given state, which is removed, or null if there is none.
+     */
+    PnfsId pollFirst(State state) {
+        Node node = heads[state.ordinal()];
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        index.remove(node.pnfsId);
+        return node.pnfsId;
+    }
+
+    boolean remove(PnfsId pnfsId) {
+        Node node = index.remove(pnfsId);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    /**
+     *  Removes all pnfsids of the given state matching the filter, in a single pass.
+     *
+     *  @return the removed pnfsids, in queue order.
+     */
+    List<PnfsId> removeIf(State state, Predicate<PnfsId> filter) {
+        List<PnfsId> removed = new ArrayList<>();
+        Node node = heads[state.ordinal()];
+        while (node != null) {
+            Node next = node.next;
+            if (filter.test(node.pnfsId)) {
+                unlink(node);
+                index.remove(node.pnfsId);
+                removed.add(node.pnfsId);
+            }
+            node = next;
+        }
+        return removed;
+    }
+
+    int size(State state) {
+        return counts[state.ordinal()];
+    }
+
+    private Node detachOrCreate(PnfsId pnfsId) {
+        Node node = index.get(pnfsId);
+        if (node == null) {
+            node = new Node(pnfsId);
+            index.put(pnfsId, node);
+        } else {
+            unlink(node);
+        }
+        return node;
+    }
+
+    private void unlink(Node node) {
+        int i = node.state.ordinal();
+        if (node.previous == null) {
+            heads[i] = node.next;
+        } else {
+            node.previous.next = node.next;
+        }
+        if (node.next == null) {
+            tails[i] = node.previous;
+        } else {
+            node.next.previous = node.previous;
+        }
+        node.previous = null;
+        node.next = null;
+        --counts[i];
+    }
+}
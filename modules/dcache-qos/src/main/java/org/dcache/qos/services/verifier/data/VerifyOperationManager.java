@@ -622,6 +622,14 @@ public class VerifyOperationManager extends RunnableModule implements CellInfoPr
         counts.entrySet()
               .forEach(e -> info.append(String.format(COUNTS_FORMAT, e.getKey(), e.getValue())));
 
+        info.append("\nQUEUED OPERATIONS BY QUEUE:\n");
+        for (VerifyOperationQueue queue : queueIndex.getQueues()) {
+            info.append(String.format("    %s\n", queue.getQueueType().getName()));
+            for (OperationStateQueues.State state : OperationStateQueues.State.values()) {
+                info.append(String.format(COUNTS_FORMAT, state, queue.count(state)));
+            }
+        }
+
         return info.toString();
     }
 
@@ -59,19 +59,21 @@ documents or software obtained from this server.
  */
 package org.dcache.qos.services.verifier.data;
 
+import static org.dcache.qos.services.verifier.data.OperationStateQueues.State.READY;
+import static org.dcache.qos.services.verifier.data.OperationStateQueues.State.RUNNING;
+import static org.dcache.qos.services.verifier.data.OperationStateQueues.State.WAITING;
+
 import com.google.common.annotations.VisibleForTesting;
 import diskCacheV111.util.PnfsId;
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 import javax.annotation.concurrent.GuardedBy;
+import org.dcache.qos.services.verifier.data.OperationStateQueues.State;
 import org.dcache.qos.services.verifier.data.VerifyOperationQueueIndex.QueueType;
 import org.dcache.util.SignalAware;
 import org.slf4j.Logger;
@@ -80,15 +82,16 @@ import org.slf4j.LoggerFactory;
 /**
  *  Responsible for the management of a verify operation of a given message type.
  *  Uses three internal queues to track the state of the operation (running, ready, waiting).
+ *  These are indexed by pnfsid, so that the state of an operation can be checked and changed
+ *  in constant time even when a pool status change has queued millions of operations.
  *  Calls back the manager when an operation is ready for post-processing.
  */
 public class VerifyOperationQueue implements SignalAware, Runnable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(VerifyOperationQueue.class);
 
-    private final Deque<PnfsId> running = new LinkedList<PnfsId>();
-    private final Deque<PnfsId> ready = new LinkedList<PnfsId>();
-    private final Deque<PnfsId> waiting = new LinkedList<PnfsId>();
+    @GuardedBy("lock")
+    private final OperationStateQueues queues = new OperationStateQueues();
     private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
     private final Lock write = lock.writeLock();
     private final Lock read = lock.readLock();
@@ -122,7 +125,8 @@ public class VerifyOperationQueue implements SignalAware, Runnable {
     public boolean addFirst(PnfsId pnfsId) {
         write.lock();
         try {
-            return ready.offerFirst(pnfsId);
+            queues.addFirst(READY, pnfsId);
+            return true;
         } finally {
             write.unlock();
             signal();
@@ -132,13 +136,26 @@ public class VerifyOperationQueue implements SignalAware, Runnable {
     public boolean addLast(PnfsId pnfsId) {
         write.lock();
         try {
-            return ready.offerLast(pnfsId);
+            queues.addLast(READY, pnfsId);
+            return true;
         } finally {
             write.unlock();
             signal();
         }
     }
 
+    /**
+     *  @return the number of operations of this queue in the given state.
+     */
+    int count(State state) {
+        read.lock();
+        try {
+            return queues.size(state);
+        } finally {
+            read.unlock();
+        }
+    }
+
     @Override
     public int countSignals() {
         return signalled.get();
@@ -151,7 +168,7 @@ public class VerifyOperationQueue implements SignalAware, Runnable {
     public boolean isRunning(PnfsId pnfsId) {
         read.lock();
         try {
-            return running.contains(pnfsId);
+            return queues.contains(RUNNING, pnfsId);
         } finally {
             read.unlock();
         }
@@ -160,7 +177,7 @@ public class VerifyOperationQueue implements SignalAware, Runnable {
     public boolean isWaiting(PnfsId pnfsId) {
         read.lock();
         try {
-            return waiting.contains(pnfsId);
+            return queues.contains(WAITING, pnfsId);
         } finally {
             read.unlock();
         }
@@ -169,7 +186,7 @@ public class VerifyOperationQueue implements SignalAware, Runnable {
     public boolean isReady(PnfsId pnfsId) {
         read.lock();
         try {
-            return ready.contains(pnfsId);
+            return queues.contains(READY, pnfsId);
         } finally {
             read.unlock();
         }
@@ -219,8 +236,7 @@ public class VerifyOperationQueue implements SignalAware, Runnable {
     public void updateToWaiting(PnfsId pnfsId) {
         write.lock();
         try {
-            running.remove(pnfsId);
-            waiting.addLast(pnfsId);
+            queues.move(pnfsId, RUNNING, WAITING);
         } finally {
             write.unlock();
         }
@@ -232,11 +248,11 @@ public class VerifyOperationQueue implements SignalAware, Runnable {
 
         write.lock();
         try {
-            int available = operationManager.getMaxRunning() - running.size();
+            int available = operationManager.getMaxRunning() - queues.size(RUNNING);
             LOGGER.debug("{} queue, available to run: {}", queueType, available);
-            while (available > 0 && !ready.isEmpty()) {
-                PnfsId pnfsId = ready.removeFirst();
-                running.addLast(pnfsId);
+            while (available > 0 && !queues.isEmpty(READY)) {
+                PnfsId pnfsId = queues.pollFirst(READY);
+                queues.addLast(RUNNING, pnfsId);
                 next.add(pnfsId);
                 --available;
             }
@@ -266,11 +282,10 @@ public class VerifyOperationQueue implements SignalAware, Runnable {
     }
 
     @GuardedBy("lock")
-    private List<PnfsId> removeFrom(String name, Deque<PnfsId> deque) {
-        LOGGER.debug("{} queue, {} before remove {}.", queueType, name, deque.size());
-        List<PnfsId> from = deque.stream().filter(terminated).collect(Collectors.toList());
-        from.forEach(deque::remove);
-        LOGGER.debug("{} queue, {} after remove {}.", queueType, name, deque.size());
+    private List<PnfsId> removeFrom(State state) {
+        LOGGER.debug("{} queue, {} before remove {}.", queueType, state, queues.size(state));
+        List<PnfsId> from = queues.removeIf(state, terminated);
+        LOGGER.debug("{} queue, {} after remove {}.", queueType, state, queues.size(state));
         return from;
     }
 
@@ -278,9 +293,9 @@ public class VerifyOperationQueue implements SignalAware, Runnable {
         write.lock();
         try {
             List<PnfsId> terminated = new ArrayList<>();
-            terminated.addAll(removeFrom("running", running));
-            terminated.addAll(removeFrom("waiting", waiting));
-            terminated.addAll(removeFrom("ready", ready));
+            terminated.addAll(removeFrom(RUNNING));
+            terminated.addAll(removeFrom(WAITING));
+            terminated.addAll(removeFrom(READY));
             LOGGER.debug("{} queue, terminated {}.", queueType, terminated.size());
             return terminated;
         } finally {
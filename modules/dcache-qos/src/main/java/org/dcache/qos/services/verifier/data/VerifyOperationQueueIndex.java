@@ -154,6 +154,10 @@ public class VerifyOperationQueueIndex {
         queueExecutor = new BoundedCachedExecutor(numberOfQueues);
     }
 
+    public List<VerifyOperationQueue> getQueues() {
+        return Arrays.asList(operationQueues);
+    }
+
     public VerifyOperationQueue getQueue(QoSMessageType type) {
         return operationQueues[typeMap.get(type).index];
     }
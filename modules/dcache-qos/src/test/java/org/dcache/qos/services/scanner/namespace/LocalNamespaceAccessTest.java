@@ -0,0 +1,258 @@
+/*
+COPYRIGHT STATUS:
+Dec 1st 2001, Fermi National Accelerator Laboratory (FNAL) documents and
+software are sponsored by the U.S. Department of Energy under Contract No.
+DE-AC02-76CH03000. Therefore, the U.S. Government retains a  world-wide
+non-exclusive, royalty-free license to publish or reproduce these documents
+and software for U.S. Government purposes.  All documents and software
+available from this server are protected under the U.S. and Foreign
+Copyright Laws, and FNAL reserves all rights.
+
+Distribution of the software available from this server is free of
+charge subject to the user following the terms of the Fermitools
+Software Legal Information.
+
+Redistribution and/or modification of the software shall be accompanied
+by the Fermitools Software Legal Information  (including the copyright
+notice).
+
+The user is asked to feed back problems, benefits, and/or suggestions
+about the software to the Fermilab Software Providers.
+
+Neither the name of Fermilab, the  URA, nor the names of the contributors
+may be used to endorse or promote products derived from this software
+without specific prior written permission.
+
+DISCLAIMER OF LIABILITY (BSD):
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED  WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED  WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL FERMILAB,
+OR THE URA, OR THE U.S. DEPARTMENT of ENERGY, OR CONTRIBUTORS BE LIABLE
+FOR  ANY  DIRECT, INDIRECT,  INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+OF SUBSTITUTE  GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY  OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT  OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE  POSSIBILITY OF SUCH DAMAGE.
+
+Liabilities of the Government:
+
+This software is provided by URA, independent from its Prime Contract
+with the U.S. Department of Energy. URA is acting independently from
+the Government and in its own private capacity and is not acting on
+behalf of the U.S. Government, nor as its contractor nor its agent.
+Correspondingly, it is understood and agreed that the U.S. Government
+has no connection to this software and in no manner whatsoever shall
+be liable for nor assume any responsibility or obligation for any claim,
+cost, or damages arising out of or resulting from the use of the software
+available from this server.
+
+Export Control:
+
+All documents and software available from this server are subject to U.S.
+export control laws.  Anyone downloading information from this server is
+obligated to secure any necessary Government licenses before exporting
+documents or software obtained from this server.
+ */
+package org.dcache.qos.services.scanner.namespace;
+
+import static org.dcache.qos.data.QoSMessageType.POOL_STATUS_DOWN;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import diskCacheV111.util.PnfsId;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import javax.sql.DataSource;
+import org.dcache.qos.listeners.QoSVerificationListener;
+import org.dcache.qos.services.scanner.data.PoolScanSummary;
+import org.dcache.qos.vehicles.QoSScannerVerificationRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LocalNamespaceAccessTest {
+
+    static final int FETCH_SIZE = 10;
+
+    /*
+     *  Inumbers of the online replicas on the pool being scanned.
+     */
+    final TreeSet<Long> replicas = new TreeSet<>();
+    final List<QoSScannerVerificationRequest> requests =
+          Collections.synchronizedList(new ArrayList<>());
+
+    LocalNamespaceAccess access;
+    ExecutorService executor;
+    PoolScanSummary scan;
+    long maxInumber;
+
+    @Before
+    public void setup() throws Exception {
+        executor = Executors.newFixedThreadPool(3);
+        access = new LocalNamespaceAccess();
+        access.setConnectionPool(givenNamespace());
+        access.setFetchSize(FETCH_SIZE);
+        access.setVerificationListener(listener(requests::add));
+        scan = new PoolScanSummary("pool1", POOL_STATUS_DOWN, null, null, false);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldPartitionRangeIntoContiguousParts() {
+        List<long[]> partitions = LocalNamespaceAccess.partition(0, 100, 3);
+
+        assertEquals(3, partitions.size());
+        assertArrayEquals(new long[]{0, 34}, partitions.get(0));
+        assertArrayEquals(new long[]{34, 68}, partitions.get(1));
+        assertArrayEquals(new long[]{68, 100}, partitions.get(2));
+    }
+
+    @Test
+    public void shouldNotCreateEmptyPartitions() {
+        List<long[]> partitions = LocalNamespaceAccess.partition(0, 2, 4);
+
+        assertEquals(2, partitions.size());
+        assertArrayEquals(new long[]{0, 1}, partitions.get(0));
+        assertArrayEquals(new long[]{1, 2}, partitions.get(1));
+    }
+
+    @Test
+    public void shouldScanAllReplicasInBatchesSequentially() throws Exception {
+        givenReplicasAt(LongStream.rangeClosed(1, 1000).filter(i -> i % 7 == 0));
+
+        access.handlePoolScan(scan);
+
+        assertAllReplicasRequestedOnce();
+        assertTrue(requests.stream().allMatch(r -> r.getReplicas().size() <= FETCH_SIZE));
+        assertEquals(replicas.size(), scan.getCount());
+    }
+
+    @Test
+    public void shouldScanAllReplicasInParallelPartitions() throws Exception {
+        givenReplicasAt(LongStream.rangeClosed(1, 1000).filter(i -> i % 3 == 0));
+        access.setPoolScanPartitions(4);
+        access.setPoolScanExecutor(executor);
+
+        access.handlePoolScan(scan);
+
+        assertAllReplicasRequestedOnce();
+        assertEquals(replicas.size(), scan.getCount());
+    }
+
+    @Test
+    public void shouldStopScanningWhenCancelled() throws Exception {
+        givenReplicasAt(LongStream.rangeClosed(1, 1000));
+        access.setVerificationListener(listener(r -> {
+            requests.add(r);
+            scan.setCancelled(true);
+        }));
+
+        access.handlePoolScan(scan);
+
+        assertEquals(1, requests.size());
+    }
+
+    private void assertAllReplicasRequestedOnce() {
+        List<PnfsId> requested = requests.stream()
+              .flatMap(r -> r.getReplicas().stream())
+              .sorted()
+              .collect(Collectors.toList());
+        List<PnfsId> expected = replicas.stream()
+              .map(LocalNamespaceAccessTest::pnfsIdOf)
+              .sorted()
+              .collect(Collectors.toList());
+        assertEquals(expected, requested);
+    }
+
+    private static QoSVerificationListener listener(
+          Consumer<QoSScannerVerificationRequest> consumer) throws Exception {
+        QoSVerificationListener listener = mock(QoSVerificationListener.class);
+        doAnswer(i -> {
+            consumer.accept(i.getArgument(0));
+            return null;
+        }).when(listener).fileQoSVerificationRequested(any(QoSScannerVerificationRequest.class));
+        return listener;
+    }
+
+    private void givenReplicasAt(LongStream inumbers) {
+        inumbers.forEach(replicas::add);
+        maxInumber = replicas.isEmpty() ? 0 : replicas.last() + 5;
+    }
+
+    /*
+     *  Answers the min/max and the batch queries from the replicas set.
+     */
+    private DataSource givenNamespace() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer(i -> {
+            Connection connection = mock(Connection.class);
+            when(connection.prepareStatement(anyString())).thenAnswer(
+                  j -> statementFor(j.getArgument(0)));
+            return connection;
+        });
+        return dataSource;
+    }
+
+    private PreparedStatement statementFor(String sql) throws Exception {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        long[] bounds = new long[2];
+        int[] limit = new int[1];
+        doAnswer(i -> bounds[(int) i.getArgument(0) - 2] = i.getArgument(1))
+              .when(statement).setLong(anyInt(), anyLong());
+        doAnswer(i -> limit[0] = i.getArgument(1)).when(statement).setInt(eq(4), anyInt());
+
+        when(statement.executeQuery()).thenAnswer(i -> {
+            List<long[]> rows = new ArrayList<>();
+            if (sql.equals(LocalNamespaceAccess.SQL_GET_MIN_MAX_INUMBER)) {
+                rows.add(new long[]{1, maxInumber});
+            } else {
+                replicas.subSet(bounds[0], false, bounds[1], true).stream()
+                      .limit(limit[0])
+                      .forEach(n -> rows.add(new long[]{n, n}));
+            }
+            return resultSetOf(rows);
+        });
+        return statement;
+    }
+
+    private static ResultSet resultSetOf(List<long[]> rows) throws Exception {
+        ResultSet resultSet = mock(ResultSet.class);
+        int[] row = {-1};
+        when(resultSet.next()).thenAnswer(i -> ++row[0] < rows.size());
+        when(resultSet.getLong(anyInt())).thenAnswer(
+              i -> rows.get(row[0])[(int) i.getArgument(0) - 1]);
+        when(resultSet.getString(2)).thenAnswer(i -> pnfsIdOf(rows.get(row[0])[1]).toString());
+        return resultSet;
+    }
+
+    private static PnfsId pnfsIdOf(long inumber) {
+        return new PnfsId(String.format("0000%032X", inumber));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+COPYRIGHT STATUS:
+Dec 1st 2001, Fermi National Accelerator Laboratory (FNAL) documents and
+software are sponsored by the U.S. Department of Energy under Contract No.
+DE-AC02-76CH03000. Therefore, the U.S. Government retains a  world-wide
+non-exclusive, royalty-free license to publish or reproduce these documents
+and software for U.S. Government purposes.  All documents and software
+available from this server are protected under the U.S. and Foreign
+Copyright Laws, and FNAL reserves all rights.
+
+Distribution of the software available from this server is free of
+charge subject to the user following the terms of the Fermitools
+Software Legal Information.
+
+Redistribution and/or modification of the software shall be accompanied
+by the Fermitools Software Legal Information  (including the copyright
+notice).
+
+The user is asked to feed back problems, benefits, and/or suggestions
+about the software to the Fermilab Software Providers.
+
+Neither the name of Fermilab, the  URA, nor the names of the contributors
+may be used to endorse or promote products derived from this software
+without specific prior written permission.
+
+DISCLAIMER OF LIABILITY (BSD):
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+"AS IS" AND ANY EXPRESS OR IMPLIED  WARRANTIES, INCLUDING, BUT NOT
+LIMITED TO, THE IMPLIED  WARRANTIES OF MERCHANTABILITY AND FITNESS
+FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL FERMILAB,
+OR THE URA, OR THE U.S. DEPARTMENT of ENERGY, OR CONTRIBUTORS BE LIABLE
+FOR  ANY  DIRECT, INDIRECT,  INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES  (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT
+OF SUBSTITUTE  GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR
+BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY  OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT  OF THE USE OF THIS
+SOFTWARE, EVEN IF ADVISED OF THE  POSSIBILITY OF SUCH DAMAGE.
+
+Liabilities of the Government:
+
+This software is provided by URA, independent from its Prime Contract
+with the U.S. Department of Energy. URA is acting independently from
+the Government and in its own private capacity and is not acting on
+behalf of the U.S. Government, nor as its contractor nor its agent.
+Correspondingly, it is understood and agreed that the U.S. Government
+has no connection to this software and in no manner whatsoever shall
+be liable for nor assume any responsibility or obligation for any claim,
+cost, or damages arising out of or resulting from the use of the software
+available from this server.
+
+Export Control:
+
+All documents and software available from this server are subject to U.S.
+export control laws.  Anyone downloading information from this server is
+obligated to secure any necessary Government licenses before exporting
+documents or software obtained from this server.
+ */
+package org.dcache.qos.services.verifier.data;
+
+import static org.dcache.qos.services.verifier.data.OperationStateQueues.State.READY;
+import static org.dcache.qos.services.verifier.data.OperationStateQueues.State.RUNNING;
+import static org.dcache.qos.services.verifier.data.OperationStateQueues.State.WAITING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import diskCacheV111.util.PnfsId;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OperationStateQueuesTest {
+
+    static final PnfsId A = new PnfsId("0000A0000000000000000000000000000001");
+    static final PnfsId B = new PnfsId("0000A0000000000000000000000000000002");
+    static final PnfsId C = new PnfsId("0000A0000000000000000000000000000003");
+    static final PnfsId D = new PnfsId("0000A0000000000000000000000000000004");
+
+    OperationStateQueues queues;
+
+    @Before
+    public void setup() {
+        queues = new OperationStateQueues();
+    }
+
+    @Test
+    public void shouldPollInQueueOrder() {
+        queues.addLast(READY, B);
+        queues.addLast(READY, C);
+        queues.addFirst(READY, A);
+
+        assertEquals(A, queues.pollFirst(READY));
+        assertEquals(B, queues.pollFirst(READY));
+        assertEquals(C, queues.pollFirst(READY));
+        assertNull(queues.pollFirst(READY));
+        assertTrue(queues.isEmpty(READY));
+    }
+
+    @Test
+    public void shouldKeepAtMostOneEntryPerPnfsId() {
+        queues.addLast(READY, A);
+        queues.addLast(READY, B);
+        queues.addFirst(READY, B);
+        queues.addLast(RUNNING, A);
+
+        assertEquals(1, queues.size(READY));
+        assertEquals(1, queues.size(RUNNING));
+        assertFalse(queues.contains(READY, A));
+        assertTrue(queues.contains(RUNNING, A));
+    }
+
+    @Test
+    public void shouldMoveOnlyFromGivenState() {
+        queues.addLast(RUNNING, A);
+        queues.addLast(READY, B);
+
+        assertTrue(queues.move(A, RUNNING, WAITING));
+        assertFalse(queues.move(B, RUNNING, WAITING));
+
+        assertTrue(queues.contains(WAITING, A));
+        assertTrue(queues.contains(READY, B));
+        assertEquals(0, queues.size(RUNNING));
+        assertEquals(1, queues.size(WAITING));
+    }
+
+    @Test
+    public void shouldRemoveMatchingEntriesOfState() {
+        queues.addLast(RUNNING, A);
+        queues.addLast(RUNNING, B);
+        queues.addLast(RUNNING, C);
+        queues.addLast(READY, D);
+        Set<PnfsId> terminated = Set.of(A, C, D);
+
+        List<PnfsId> removed = queues.removeIf(RUNNING, terminated::contains);
+
+        assertEquals(List.of(A, C), removed);
+        assertEquals(1, queues.size(RUNNING));
+        assertEquals(B, queues.pollFirst(RUNNING));
+        assertTrue(queues.contains(READY, D));
+    }
+
+    @Test
+    public void shouldAllowReAddingRemovedEntries() {
+        queues.addLast(READY, A);
+        queues.addLast(READY, B);
+
+        assertTrue(queues.remove(A));
+        assertFalse(queues.remove(A));
+        queues.addLast(READY, A);
+
+        assertEquals(B, queues.pollFirst(READY));
+        assertEquals(A, queues.pollFirst(READY));
+        assertTrue(queues.isEmpty(READY));
+    }
+}
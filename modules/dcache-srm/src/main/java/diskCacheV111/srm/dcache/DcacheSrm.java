@@ -28,10 +28,12 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.Uninterruptibles;
 import dmg.cells.nucleus.CellAddressCore;
 import dmg.cells.nucleus.CellIdentityAware;
+import dmg.cells.nucleus.CellInfoProvider;
 import dmg.cells.nucleus.CellMessageReceiver;
 import dmg.cells.nucleus.CellPath;
 import dmg.cells.nucleus.NoRouteToCellException;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.io.Serializable;
 import java.net.URI;
 import java.util.List;
@@ -60,7 +62,7 @@ import org.springframework.dao.DataAccessException;
  * deployments.
  */
 public class DcacheSrm extends SRM implements CuratorFrameworkAware, CellIdentityAware,
-      CellMessageReceiver {
+      CellMessageReceiver, CellInfoProvider {
 
     private PathChildrenCache backends;
 
@@ -90,6 +92,11 @@ public class DcacheSrm extends SRM implements CuratorFrameworkAware, CellIdentit
         }
     }
 
+    @Override
+    public void getInfo(PrintWriter pw) {
+        pw.append(getJobStorageInfo());
+    }
+
     @Override
     public void setCellAddress(CellAddressCore address) {
         this.address = address;
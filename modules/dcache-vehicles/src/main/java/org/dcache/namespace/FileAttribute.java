@@ -47,6 +47,11 @@ public enum FileAttribute {
      * @since 9.2
      */
     QOS_POLICY,
-    QOS_STATE
+    QOS_STATE,
+
+    /**
+     * @since 10.1
+     */
+    RECURSIVE_STATS // Directories only
 
 }
@@ -0,0 +1,52 @@
+package org.dcache.namespace;
+
+import java.io.Serializable;
+
+/**
+ * Recursive statistics of a directory: the number and total size of all regular files in the
+ * directory and its subdirectories, and the time the last of these changed.
+ * <p>
+ * The statistics are maintained lazily by the namespace and may lag behind recent changes.
+ */
+public final class RecursiveStats implements Serializable {
+
+    private static final long serialVersionUID = 6125702213486720915L;
+
+    private final long size;
+    private final long files;
+    private final long modificationTime;
+
+    public RecursiveStats(long size, long files, long modificationTime) {
+        this.size = size;
+        this.files = files;
+        this.modificationTime = modificationTime;
+    }
+
+    /**
+     * Returns the total size in bytes of all files below the directory.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of files below the directory.
+     */
+    public long getFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the time in milliseconds since the epoch of the last change below the directory,
+     * or zero if unknown.
+     */
+    public long getModificationTime() {
+        return modificationTime;
+    }
+
+    @Override
+    public String toString() {
+        return "RecursiveStats[size=" + size + ",files=" + files + ",mtime=" + modificationTime
+              + "]";
+    }
+}
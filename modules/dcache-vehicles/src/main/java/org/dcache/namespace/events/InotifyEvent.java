@@ -36,14 +36,21 @@ public class InotifyEvent implements Event {
     private final String cookie;
     private final PnfsId target;
     private final FileType type;
+    private final long timestamp;
 
     public InotifyEvent(EventType eventType, PnfsId target, String name,
           String cookie, FileType type) {
+        this(eventType, target, name, cookie, type, System.currentTimeMillis());
+    }
+
+    public InotifyEvent(EventType eventType, PnfsId target, String name,
+          String cookie, FileType type, long timestamp) {
         this.eventType = eventType;
         this.name = name;
         this.cookie = cookie;
         this.target = target;
         this.type = type;
+        this.timestamp = timestamp;
     }
 
     public String getCategory() {
@@ -106,6 +113,17 @@ public class InotifyEvent implements Event {
         return type;
     }
 
+    /**
+     * When the activity that triggered this event was observed by the namespace, in milliseconds
+     * since the epoch.  Events sent by older versions of dCache do not carry this information, in
+     * which case zero is returned.  The timestamp is not part of the event's identity.
+     *
+     * @return the time the event was triggered.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(eventType, name, cookie, target, type);
@@ -21,6 +21,7 @@ import static org.dcache.namespace.FileAttribute.OWNER_GROUP;
 import static org.dcache.namespace.FileAttribute.PNFSID;
 import static org.dcache.namespace.FileAttribute.QOS_POLICY;
 import static org.dcache.namespace.FileAttribute.QOS_STATE;
+import static org.dcache.namespace.FileAttribute.RECURSIVE_STATS;
 import static org.dcache.namespace.FileAttribute.RETENTION_POLICY;
 import static org.dcache.namespace.FileAttribute.SIZE;
 import static org.dcache.namespace.FileAttribute.STORAGECLASS;
@@ -51,6 +52,7 @@ import org.dcache.acl.ACL;
 import org.dcache.auth.Subjects;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.namespace.FileType;
+import org.dcache.namespace.RecursiveStats;
 import org.dcache.util.Checksum;
 
 /**
@@ -212,6 +214,11 @@ public class FileAttributes implements Serializable, Cloneable {
      */
     private int _qosState;
 
+    /**
+     * Recursive statistics of a directory.
+     */
+    private RecursiveStats _recursiveStats;
+
     @Override
     public FileAttributes clone() {
         try {
@@ -320,6 +327,10 @@ public class FileAttributes implements Serializable, Cloneable {
                 clone.setQosState(_qosState);
             }
 
+            if (isDefined(RECURSIVE_STATS)) {
+                clone.setRecursiveStats(_recursiveStats);
+            }
+
             return clone;
         } catch (CloneNotSupportedException e) {
             throw new RuntimeException("Bad clone: " + e, e);
@@ -797,6 +808,22 @@ public class FileAttributes implements Serializable, Cloneable {
         _qosState = qosState;
     }
 
+    @Nonnull
+    public Optional<RecursiveStats> getRecursiveStatsIfPresent() {
+        return toOptional(RECURSIVE_STATS, _recursiveStats);
+    }
+
+    @Nonnull
+    public RecursiveStats getRecursiveStats() {
+        guard(RECURSIVE_STATS);
+        return _recursiveStats;
+    }
+
+    public void setRecursiveStats(@Nonnull RecursiveStats recursiveStats) {
+        define(RECURSIVE_STATS);
+        _recursiveStats = recursiveStats;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
@@ -825,6 +852,7 @@ public class FileAttributes implements Serializable, Cloneable {
               .add("labels", _labels)
               .add("qosPolicy", _qosPolicy)
               .add("qosState", _qosState)
+              .add("recursiveStats", _recursiveStats)
               .omitNullValues()
               .toString();
     }
@@ -1051,6 +1079,11 @@ public class FileAttributes implements Serializable, Cloneable {
             return this;
         }
 
+        public Builder recursiveStats(RecursiveStats stats) {
+            setRecursiveStats(stats);
+            return this;
+        }
+
         public Builder retentionPolicy(RetentionPolicy rp) {
             setRetentionPolicy(rp);
             return this;
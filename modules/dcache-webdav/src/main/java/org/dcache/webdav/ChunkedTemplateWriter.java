@@ -0,0 +1,136 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2026 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.webdav;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.stringtemplate.v4.AutoIndentWriter;
+import org.stringtemplate.v4.ST;
+
+/**
+ * Renders a template containing a potentially very large list of entries without holding all
+ * entries in memory.
+ * <p>
+ * Entries are rendered in chunks. For each chunk the complete template is rendered with just the
+ * entries of that chunk, and only the part of the output produced by those entries is written.
+ * The output surrounding the entries is written once, before the first and after the last chunk.
+ * <p>
+ * This relies on the template rendering the entries as a plain concatenation, with the remaining
+ * output not depending on the entries.  Should the first chunk reveal that this is not the case,
+ * all entries are collected and the template is rendered once at the end.
+ */
+class ChunkedTemplateWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedTemplateWriter.class);
+
+    private final Supplier<ST> _templates;
+    private final String _aggregateSpec;
+    private final Writer _out;
+    private final int _chunkSize;
+
+    private final List<Object[]> _entries = new ArrayList<>();
+
+    private boolean _isChunked = true;
+    private String _prefix;
+    private String _suffix;
+
+    /**
+     * @param templates     provides a new instance of the template, with all attributes but the
+     *                      entries set
+     * @param aggregateSpec the aggregate specification used to add entries to the template
+     * @param out           where to write the output to
+     * @param chunkSize     the number of entries to render at a time
+     */
+    ChunkedTemplateWriter(Supplier<ST> templates, String aggregateSpec, Writer out,
+          int chunkSize) {
+        _templates = templates;
+        _aggregateSpec = aggregateSpec;
+        _out = out;
+        _chunkSize = chunkSize;
+    }
+
+    public void add(Object... values) throws IOException {
+        _entries.add(values);
+        if (_isChunked && _entries.size() >= _chunkSize) {
+            writeChunk();
+        }
+    }
+
+    public void finish() throws IOException {
+        if (_prefix == null) {
+            _out.write(render(_entries));
+        } else {
+            if (!_entries.isEmpty()) {
+                writeChunk();
+            }
+            _out.write(_suffix);
+        }
+        _entries.clear();
+    }
+
+    private void writeChunk() throws IOException {
+        String page = render(_entries);
+
+        if (_prefix == null) {
+            String empty = render(Collections.emptyList());
+            int length = commonPrefixLength(empty, page);
+            String suffix = empty.substring(length);
+            if (page.length() - length < suffix.length() || !page.endsWith(suffix)) {
+                LOGGER.debug("Template output depends on entries; rendering in one go.");
+                _isChunked = false;
+                return;
+            }
+            _prefix = empty.substring(0, length);
+            _suffix = suffix;
+            _out.write(_prefix);
+        } else if (!page.startsWith(_prefix) || !page.endsWith(_suffix)) {
+            throw new IOException("Template renders entries inconsistently");
+        }
+
+        _out.write(page, _prefix.length(), page.length() - _prefix.length() - _suffix.length());
+        _out.flush();
+        _entries.clear();
+    }
+
+    private String render(List<Object[]> entries) throws IOException {
+        ST template = _templates.get();
+        for (Object[] values : entries) {
+            template.addAggr(_aggregateSpec, values);
+        }
+        StringWriter writer = new StringWriter();
+        template.write(new AutoIndentWriter(writer));
+        return writer.toString();
+    }
+
+    private static int commonPrefixLength(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+}
@@ -48,6 +48,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 import org.dcache.vehicles.FileAttributes;
@@ -136,6 +137,15 @@ public class DcacheDirectoryResource
         }
     }
 
+    /**
+     * Provides the children of this directory to the consumer as they are received from the
+     * namespace, without collecting them in memory first.
+     */
+    public void forEachChild(Consumer<? super DcacheResource> consumer)
+          throws CacheException, InterruptedException {
+        _factory.list(_path, consumer);
+    }
+
     @Override
     public Resource createNew(String newName, InputStream inputStream,
           Long length, String contentType)
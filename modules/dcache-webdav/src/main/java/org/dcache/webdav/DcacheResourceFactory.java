@@ -84,6 +84,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
@@ -131,6 +132,8 @@ import org.dcache.http.PathMapper;
 import org.dcache.missingfiles.AlwaysFailMissingFileStrategy;
 import org.dcache.missingfiles.MissingFileStrategy;
 import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.FileAttributesCache;
+import org.dcache.poolmanager.LocalReadPoolSelector;
 import org.dcache.poolmanager.PoolManagerStub;
 import org.dcache.poolmanager.PoolMonitor;
 import org.dcache.util.Args;
@@ -182,6 +185,11 @@ public class DcacheResourceFactory
     private static final String HTML_TEMPLATE_LISTING_NAME = "page";
     private static final String HTML_TEMPLATE_CLIENT_NAME = "client";
 
+    /**
+     * Number of directory entries rendered at a time in HTML listings.
+     */
+    private static final int HTML_LISTING_CHUNK_SIZE = 1000;
+
     // Additional attributes needed for PROPFIND requests; e.g., to supply
     // values for properties.
     private static final Set<FileAttribute> PROPFIND_ATTRIBUTES = Sets.union(
@@ -240,6 +248,7 @@ public class DcacheResourceFactory
     private PoolManagerStub _poolManagerStub;
     private CellStub _billingStub;
     private PnfsHandler _pnfs;
+    private FileAttributesCache _attributesCache;
     private String _ioQueue;
     private PathMapper _pathMapper;
     private List<FsPath> _allowedPaths =
@@ -263,6 +272,7 @@ public class DcacheResourceFactory
           new AlwaysFailMissingFileStrategy();
 
     private PoolMonitor _poolMonitor;
+    private LocalReadPoolSelector _localReadPoolSelector;
     private boolean _redirectToHttps;
 
     private Consumer<DoorRequestInfoMessage> _kafkaSender = (s) -> {
@@ -293,6 +303,11 @@ public class DcacheResourceFactory
         _poolMonitor = monitor;
     }
 
+    @Required
+    public void setLocalReadPoolSelector(LocalReadPoolSelector selector) {
+        _localReadPoolSelector = selector;
+    }
+
     @Required
     public void setRedirectToHttps(boolean redirectToHttps) {
         _redirectToHttps = redirectToHttps;
@@ -500,6 +515,17 @@ public class DcacheResourceFactory
      */
     public void setPnfsStub(CellStub stub) {
         _pnfs = new PnfsHandler(stub);
+        _pnfs.setFileAttributesCache(_attributesCache);
+    }
+
+    /**
+     * Sets the cache for file attributes fetched from PnfsManager.
+     */
+    public void setFileAttributesCache(FileAttributesCache cache) {
+        _attributesCache = cache;
+        if (_pnfs != null) {
+            _pnfs.setFileAttributesCache(cache);
+        }
     }
 
     /**
@@ -911,11 +937,21 @@ public class DcacheResourceFactory
      */
     public List<DcacheResource> list(final FsPath path)
           throws InterruptedException, CacheException {
+        final List<DcacheResource> result = new ArrayList<>();
+        list(path, result::add);
+        return result;
+    }
+
+    /**
+     * Performs a directory listing, passing a Resource object for each entry to the consumer as
+     * soon as the entry has been received from the namespace.
+     */
+    public void list(final FsPath path, Consumer<? super DcacheResource> consumer)
+          throws InterruptedException, CacheException {
         if (!_isAnonymousListingAllowed && Subjects.isNobody(getSubject())) {
             throw new PermissionDeniedCacheException("Access denied");
         }
 
-        final List<DcacheResource> result = new ArrayList<>();
         DirectoryListPrinter printer =
               new DirectoryListPrinter() {
                   @Override
@@ -925,14 +961,13 @@ public class DcacheResourceFactory
 
                   @Override
                   public void print(FsPath dir, FileAttributes dirAttr, DirectoryEntry entry) {
-                      result.add(getResource(path.child(entry.getName()),
+                      consumer.accept(getResource(path.child(entry.getName()),
                             entry.getFileAttributes()));
                   }
               };
 
         _list.printDirectory(getSubject(), getRestriction(), printer, path, null,
               Range.<Integer>all());
-        return result;
     }
 
     private class FileLocalityWrapper {
@@ -1022,15 +1057,19 @@ public class DcacheResourceFactory
             throw new PermissionDeniedCacheException("Access denied");
         }
 
-        final ST t = _template.getInstanceOf(HTML_TEMPLATE_LISTING_NAME);
-
-        if (t == null) {
+        if (_template.getInstanceOf(HTML_TEMPLATE_LISTING_NAME) == null) {
             out.append(DcacheHtmlResponseHandler.templateNotFoundErrorPage(_template.getPath(),
                   HTML_TEMPLATE_LISTING_NAME));
             return;
         }
 
-        addTemplateAttributes(t);
+        String remoteAddr = getRemoteAddr();
+        ChunkedTemplateWriter writer = new ChunkedTemplateWriter(() -> {
+            ST t = _template.getInstanceOf(HTML_TEMPLATE_LISTING_NAME);
+            addTemplateAttributes(t);
+            return t;
+        }, "files.{name,isDirectory,showGhosted,mtime,size,isUploading,locality}", out,
+              HTML_LISTING_CHUNK_SIZE);
 
         DirectoryListPrinter printer =
               new DirectoryListPrinter() {
@@ -1070,22 +1109,29 @@ public class DcacheResourceFactory
                        * file's size before uploading.
                        */
                       boolean isUploading = !attr.isDefined(SIZE);
-                      FileLocality locality = _poolMonitor.getFileLocality(attr, getRemoteAddr());
-                      t.addAggr(
-                            "files.{name,isDirectory,showGhosted,mtime,size,isUploading,locality}",
-                            name,
-                            attr.getFileType() == DIR,
-                            attr.getFileType() == LINK,
-                            mtime,
-                            attr.getSizeIfPresent().map(SizeWrapper::new).orElse(null),
-                            isUploading,
-                            new FileLocalityWrapper(locality));
+                      FileLocality locality = _poolMonitor.getFileLocality(attr, remoteAddr);
+                      try {
+                          writer.add(
+                                name,
+                                attr.getFileType() == DIR,
+                                attr.getFileType() == LINK,
+                                mtime,
+                                attr.getSizeIfPresent().map(SizeWrapper::new).orElse(null),
+                                isUploading,
+                                new FileLocalityWrapper(locality));
+                      } catch (IOException e) {
+                          throw new UncheckedIOException(e);
+                      }
                   }
               };
-        _list.printDirectory(getSubject(), getRestriction(), printer, path, null,
-              Range.<Integer>all());
+        try {
+            _list.printDirectory(getSubject(), getRestriction(), printer, path, null,
+                  Range.<Integer>all());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
 
-        t.write(new AutoIndentWriter(out));
+        writer.finish();
     }
 
     /**
@@ -1535,6 +1581,7 @@ public class DcacheResourceFactory
         transfer.setLocation(getLocation());
         transfer.setCellAddress(getCellAddress());
         transfer.setPoolManagerStub(_poolManagerStub);
+        transfer.setLocalReadPoolSelector(_localReadPoolSelector);
         transfer.setPoolStub(_poolStub);
         transfer.setBillingStub(_billingStub);
         transfer.setIoQueue(_ioQueue);
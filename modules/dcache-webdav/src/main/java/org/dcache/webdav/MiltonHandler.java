@@ -10,8 +10,10 @@ import io.milton.http.HttpManager;
 import io.milton.http.RequestParseException;
 import io.milton.servlet.ServletRequest;
 import io.milton.servlet.ServletResponse;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.security.AccessController;
 import java.util.Map;
 import javax.security.auth.Subject;
@@ -91,6 +93,11 @@ public class MiltonHandler
 
         private final HttpServletRequest request;
 
+        /**
+         * The beginning of the request entity if it was inspected by {@link #peekEntity(int)}.
+         */
+        private byte[] entityPrefix;
+
         public DcacheServletRequest(HttpServletRequest request,
               ServletContext context) {
             super(request, context);
@@ -148,6 +155,17 @@ public class MiltonHandler
             }
         }
 
+        /**
+         * Returns the request entity if it is no larger than {@code limit} bytes, or null
+         * otherwise.  The entity remains available through {@link #getInputStream()}.
+         */
+        public byte[] peekEntity(int limit) throws IOException {
+            if (entityPrefix == null) {
+                entityPrefix = super.getInputStream().readNBytes(limit + 1);
+            }
+            return entityPrefix.length > limit ? null : entityPrefix;
+        }
+
         @Override
         public InputStream getInputStream() {
             /* Jetty tells the client to continue uploading data as
@@ -160,7 +178,10 @@ public class MiltonHandler
 
                 private InputStream getRealInputStream() throws IOException {
                     if (inner == null) {
-                        inner = DcacheServletRequest.super.getInputStream();
+                        inner = entityPrefix == null
+                              ? DcacheServletRequest.super.getInputStream()
+                              : new SequenceInputStream(new ByteArrayInputStream(entityPrefix),
+                                    DcacheServletRequest.super.getInputStream());
                     }
                     return inner;
                 }
@@ -0,0 +1,457 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2026 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.webdav;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import diskCacheV111.util.CacheException;
+import io.milton.http.Filter;
+import io.milton.http.FilterChain;
+import io.milton.http.Request;
+import io.milton.http.Response;
+import io.milton.http.http11.ETagGenerator;
+import io.milton.http.webdav.WebDavResponseHandler;
+import io.milton.property.PropertySource.PropertyMetaData;
+import io.milton.resource.GetableResource;
+import io.milton.resource.Resource;
+import io.milton.servlet.ServletRequest;
+import io.milton.servlet.ServletResponse;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import org.dcache.webdav.MiltonHandler.DcacheServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * The PropFindFilter answers PROPFIND requests with depth 1 on directories by streaming the
+ * multistatus response while the directory is being listed.
+ * <p>
+ * Milton collects all children of a directory, builds the responses for all of them and only
+ * then generates the XML document.  For large directories this takes a lot of memory and the
+ * client does not receive anything until the whole directory has been listed.  This filter
+ * writes the response of each entry as soon as the entry has been received from the namespace.
+ * <p>
+ * Only requests naming the requested properties are handled; allprop and propname requests, as
+ * well as requests for DAV properties not supported here, are passed on to Milton.
+ */
+public class PropFindFilter implements Filter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropFindFilter.class);
+
+    /**
+     * Maximum size of a request entity handled by this filter.
+     */
+    private static final int MAX_ENTITY_SIZE = 64 * 1024;
+
+    private static final String DAV_NAMESPACE_URI = "DAV:";
+    private static final String DAV_PREFIX = "d";
+
+    private static final QName CREATION_DATE = new QName(DAV_NAMESPACE_URI, "creationdate");
+    private static final QName LAST_MODIFIED = new QName(DAV_NAMESPACE_URI, "getlastmodified");
+    private static final QName DISPLAY_NAME = new QName(DAV_NAMESPACE_URI, "displayname");
+    private static final QName RESOURCE_TYPE = new QName(DAV_NAMESPACE_URI, "resourcetype");
+    private static final QName CONTENT_LENGTH = new QName(DAV_NAMESPACE_URI, "getcontentlength");
+    private static final QName CONTENT_TYPE = new QName(DAV_NAMESPACE_URI, "getcontenttype");
+    private static final QName ETAG = new QName(DAV_NAMESPACE_URI, "getetag");
+
+    /**
+     * DAV properties provided by the resources themselves.
+     */
+    private static final Set<QName> RESOURCE_DAV_PROPERTIES = ImmutableSet.of(
+          new QName(DAV_NAMESPACE_URI, "quota-available-bytes"),
+          new QName(DAV_NAMESPACE_URI, "quota-used-bytes"));
+
+    private static final Set<QName> SUPPORTED_DAV_PROPERTIES = ImmutableSet.<QName>builder()
+          .add(CREATION_DATE, LAST_MODIFIED, DISPLAY_NAME, RESOURCE_TYPE, CONTENT_LENGTH,
+                CONTENT_TYPE, ETAG)
+          .addAll(RESOURCE_DAV_PROPERTIES)
+          .build();
+
+    private static final DateTimeFormatter CREATION_DATE_FORMAT =
+          DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'").withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter LAST_MODIFIED_FORMAT =
+          DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+                .withZone(ZoneOffset.UTC);
+
+    private static final Escaper PATH_SEGMENT_ESCAPER = UrlEscapers.urlPathSegmentEscaper();
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newFactory();
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private DcacheResourceFactory _resourceFactory;
+    private boolean _isEnabled = true;
+
+    @Required
+    public void setResourceFactory(DcacheResourceFactory factory) {
+        _resourceFactory = requireNonNull(factory);
+    }
+
+    public void setEnabled(boolean isEnabled) {
+        _isEnabled = isEnabled;
+    }
+
+    @Override
+    public void process(FilterChain chain, Request request, Response response) {
+        if (!_isEnabled || request.getMethod() != Request.Method.PROPFIND
+              || !(request instanceof DcacheServletRequest)) {
+            chain.process(request, response);
+            return;
+        }
+
+        HttpServletRequest servletRequest = ServletRequest.getRequest();
+        if (!"1".equals(servletRequest.getHeader("Depth"))) {
+            chain.process(request, response);
+            return;
+        }
+
+        Optional<List<QName>> properties;
+        DcacheDirectoryResource directory;
+        try {
+            byte[] entity = ((DcacheServletRequest) request).peekEntity(MAX_ENTITY_SIZE);
+            properties = entity == null ? Optional.empty() : requestedProperties(entity);
+            Resource resource = properties.isPresent()
+                  ? _resourceFactory.getResource(request.getHostHeader(),
+                  URI.create(request.getAbsoluteUrl()).getPath())
+                  : null;
+            directory = resource instanceof DcacheDirectoryResource
+                  ? (DcacheDirectoryResource) resource
+                  : null;
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            /* Let Milton generate the appropriate error response. */
+            LOGGER.debug("Passing PROPFIND to Milton: {}", e.toString());
+            directory = null;
+            properties = Optional.empty();
+        }
+
+        if (directory == null || properties.isEmpty()) {
+            chain.process(request, response);
+            return;
+        }
+
+        ETagGenerator etags = (WebDavResponseHandler) chain.getHttpManager().getResponseHandler();
+        try {
+            respond(directory, properties.get(), etags, servletRequest.getRequestURI());
+        } catch (IOException | XMLStreamException e) {
+            LOGGER.debug("Failed to send PROPFIND response: {}", e.toString());
+        }
+    }
+
+    /**
+     * Returns the names of the properties requested by a PROPFIND request, or an empty Optional if
+     * the request is not for named properties.
+     */
+    static Optional<List<QName>> requestedProperties(byte[] entity) throws XMLStreamException {
+        if (entity.length == 0) {
+            return Optional.empty(); // Equivalent to allprop
+        }
+
+        XMLStreamReader reader =
+              XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(entity));
+        try {
+            reader.nextTag();
+            if (!isDavElement(reader, "propfind")) {
+                return Optional.empty();
+            }
+            reader.nextTag();
+            if (!isDavElement(reader, "prop")) {
+                return Optional.empty();
+            }
+
+            List<QName> names = new ArrayList<>();
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                QName name = reader.getName();
+                if (name.getNamespaceURI().equals(DAV_NAMESPACE_URI)
+                      && !SUPPORTED_DAV_PROPERTIES.contains(name)) {
+                    return Optional.empty();
+                }
+                names.add(new QName(name.getNamespaceURI(), name.getLocalPart()));
+                skipElement(reader);
+            }
+            return Optional.of(names);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static boolean isDavElement(XMLStreamReader reader, String localName) {
+        return reader.isStartElement()
+              && DAV_NAMESPACE_URI.equals(reader.getNamespaceURI())
+              && localName.equals(reader.getLocalName());
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+            }
+        }
+    }
+
+    private void respond(DcacheDirectoryResource directory, List<QName> properties,
+          ETagGenerator etags, String requestUri) throws IOException, XMLStreamException {
+        HttpServletResponse servletResponse = ServletResponse.getResponse();
+        servletResponse.setStatus(Response.Status.SC_MULTI_STATUS.code);
+        servletResponse.setContentType("application/xml; charset=utf-8");
+
+        Writer out = new BufferedWriter(
+              new OutputStreamWriter(servletResponse.getOutputStream(), UTF_8));
+        MultiStatusWriter writer = new MultiStatusWriter(out, properties, etags);
+
+        String href = requestUri.endsWith("/") ? requestUri : requestUri + "/";
+        writer.start();
+        writer.write(href, directory);
+        writer.flush();
+
+        try {
+            directory.forEachChild(child -> {
+                try {
+                    writer.write(childHref(href, child), child);
+                } catch (XMLStreamException e) {
+                    throw new StreamingException(e);
+                }
+            });
+        } catch (StreamingException e) {
+            throw e.getCause();
+        } catch (CacheException e) {
+            /* As for Milton, failing to list the directory results in a
+             * response without children.
+             */
+            LOGGER.debug("Failed to list {}: {}", requestUri, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        writer.finish();
+    }
+
+    /**
+     * Returns the href of a child of the directory with the given href.
+     */
+    static String childHref(String href, DcacheResource child) {
+        String name = PATH_SEGMENT_ESCAPER.escape(child.getName());
+        return child instanceof DcacheDirectoryResource ? href + name + "/" : href + name;
+    }
+
+    /**
+     * Writes a multistatus response one resource at a time.
+     */
+    static class MultiStatusWriter {
+
+        private final XMLStreamWriter _writer;
+        private final List<QName> _properties;
+        private final ETagGenerator _etags;
+        private final Map<String, String> _prefixes = new LinkedHashMap<>();
+
+        MultiStatusWriter(Writer out, List<QName> properties, ETagGenerator etags)
+              throws XMLStreamException {
+            _writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(out);
+            _properties = properties;
+            _etags = etags;
+
+            _prefixes.put(DAV_NAMESPACE_URI, DAV_PREFIX);
+            for (QName name : properties) {
+                String namespace = name.getNamespaceURI();
+                if (!namespace.equals(XMLConstants.NULL_NS_URI)) {
+                    _prefixes.computeIfAbsent(namespace, ns -> "ns" + _prefixes.size());
+                }
+            }
+        }
+
+        void start() throws XMLStreamException {
+            _writer.writeStartDocument("UTF-8", "1.0");
+            _writer.writeStartElement(DAV_PREFIX, "multistatus", DAV_NAMESPACE_URI);
+            for (Map.Entry<String, String> prefix : _prefixes.entrySet()) {
+                _writer.writeNamespace(prefix.getValue(), prefix.getKey());
+            }
+        }
+
+        void write(String href, DcacheResource resource) throws XMLStreamException {
+            List<QName> unknown = new ArrayList<>();
+
+            _writer.writeStartElement(DAV_PREFIX, "response", DAV_NAMESPACE_URI);
+            writeSimpleElement("href", href);
+
+            _writer.writeStartElement(DAV_PREFIX, "propstat", DAV_NAMESPACE_URI);
+            _writer.writeStartElement(DAV_PREFIX, "prop", DAV_NAMESPACE_URI);
+            for (QName name : _properties) {
+                if (name.equals(RESOURCE_TYPE)) {
+                    writeStartElement(name);
+                    if (resource instanceof DcacheDirectoryResource) {
+                        _writer.writeEmptyElement(DAV_PREFIX, "collection", DAV_NAMESPACE_URI);
+                    }
+                    _writer.writeEndElement();
+                } else {
+                    String value = valueOf(resource, name);
+                    if (value == null) {
+                        unknown.add(name);
+                    } else {
+                        writeStartElement(name);
+                        _writer.writeCharacters(value);
+                        _writer.writeEndElement();
+                    }
+                }
+            }
+            _writer.writeEndElement();
+            writeSimpleElement("status", "HTTP/1.1 200 OK");
+            _writer.writeEndElement();
+
+            if (!unknown.isEmpty()) {
+                _writer.writeStartElement(DAV_PREFIX, "propstat", DAV_NAMESPACE_URI);
+                _writer.writeStartElement(DAV_PREFIX, "prop", DAV_NAMESPACE_URI);
+                for (QName name : unknown) {
+                    writeEmptyElement(name);
+                }
+                _writer.writeEndElement();
+                writeSimpleElement("status", "HTTP/1.1 404 Not Found");
+                _writer.writeEndElement();
+            }
+
+            _writer.writeEndElement();
+        }
+
+        void flush() throws XMLStreamException {
+            _writer.flush();
+        }
+
+        void finish() throws XMLStreamException {
+            _writer.writeEndElement();
+            _writer.writeEndDocument();
+            _writer.flush();
+        }
+
+        /**
+         * Returns the value of a property, or null if the resource does not have the property.
+         */
+        private String valueOf(DcacheResource resource, QName name) {
+            if (name.equals(CREATION_DATE)) {
+                return format(CREATION_DATE_FORMAT, resource.getCreateDate());
+            } else if (name.equals(LAST_MODIFIED)) {
+                return format(LAST_MODIFIED_FORMAT, resource.getModifiedDate());
+            } else if (name.equals(DISPLAY_NAME)) {
+                return resource.getName();
+            } else if (name.equals(CONTENT_LENGTH)) {
+                Long length = resource instanceof GetableResource
+                      ? ((GetableResource) resource).getContentLength()
+                      : null;
+                return length == null ? null : length.toString();
+            } else if (name.equals(CONTENT_TYPE)) {
+                return resource instanceof GetableResource
+                      ? ((GetableResource) resource).getContentType(null)
+                      : null;
+            } else if (name.equals(ETAG)) {
+                String etag = _etags.generateEtag(resource);
+                return etag == null ? null : "\"" + etag + "\"";
+            }
+
+            PropertyMetaData metadata = resource.getPropertyMetaData(name);
+            if (metadata == null || metadata.isUnknown()) {
+                return null;
+            }
+            Object value = resource.getProperty(name);
+            return value == null ? null : value.toString();
+        }
+
+        private static String format(DateTimeFormatter format, Date date) {
+            return date == null ? null : format.format(date.toInstant());
+        }
+
+        private void writeSimpleElement(String localName, String text)
+              throws XMLStreamException {
+            _writer.writeStartElement(DAV_PREFIX, localName, DAV_NAMESPACE_URI);
+            _writer.writeCharacters(text);
+            _writer.writeEndElement();
+        }
+
+        private void writeStartElement(QName name) throws XMLStreamException {
+            String namespace = name.getNamespaceURI();
+            if (namespace.equals(XMLConstants.NULL_NS_URI)) {
+                _writer.writeStartElement(name.getLocalPart());
+            } else {
+                _writer.writeStartElement(_prefixes.get(namespace), name.getLocalPart(),
+                      namespace);
+            }
+        }
+
+        private void writeEmptyElement(QName name) throws XMLStreamException {
+            String namespace = name.getNamespaceURI();
+            if (namespace.equals(XMLConstants.NULL_NS_URI)) {
+                _writer.writeEmptyElement(name.getLocalPart());
+            } else {
+                _writer.writeEmptyElement(_prefixes.get(namespace), name.getLocalPart(),
+                      namespace);
+            }
+        }
+    }
+
+    /**
+     * Carries a failure to write the response out of the directory listing.
+     */
+    private static class StreamingException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        StreamingException(XMLStreamException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized XMLStreamException getCause() {
+            return (XMLStreamException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2026 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.webdav;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import org.junit.Test;
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.STGroupString;
+
+public class ChunkedTemplateWriterTest {
+
+    private static final String AGGREGATE = "files.{name,size}";
+
+    private final StringWriter out = new StringWriter();
+
+    @Test
+    public void shouldRenderPageWithoutEntries() throws IOException {
+        ChunkedTemplateWriter writer = writerFor(
+              "page(files) ::= <<HEAD<files:{f|<f.name>=<f.size>;}>FOOT>>", 2);
+
+        writer.finish();
+
+        assertThat(out.toString(), is(equalTo("HEADFOOT")));
+    }
+
+    @Test
+    public void shouldRenderEntriesInChunks() throws IOException {
+        ChunkedTemplateWriter writer = writerFor(
+              "page(files) ::= <<HEAD<files:{f|<f.name>=<f.size>;}>FOOT>>", 2);
+
+        writer.add("a", 1);
+        writer.add("b", 2);
+        assertThat(out.toString(), is(equalTo("HEADa=1;b=2;")));
+
+        writer.add("c", 3);
+        writer.finish();
+
+        assertThat(out.toString(), is(equalTo("HEADa=1;b=2;c=3;FOOT")));
+    }
+
+    @Test
+    public void shouldRenderInOneGoIfOutputDependsOnEntries() throws IOException {
+        ChunkedTemplateWriter writer = writerFor(
+              "page(files) ::= <<\n<if(files)>list:<files:{f|<f.name>;}><else>empty<endif>\n>>",
+              1);
+
+        writer.add("a", 1);
+        writer.add("b", 2);
+        assertThat(out.toString(), is(equalTo("")));
+
+        writer.finish();
+
+        assertThat(out.toString(), is(equalTo("list:a;b;")));
+    }
+
+    private ChunkedTemplateWriter writerFor(String template, int chunkSize) {
+        STGroup group = new STGroupString(template);
+        return new ChunkedTemplateWriter(() -> group.getInstanceOf("page"), AGGREGATE, out,
+              chunkSize);
+    }
+}
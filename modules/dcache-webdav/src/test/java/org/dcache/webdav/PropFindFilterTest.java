@@ -0,0 +1,268 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2026 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.webdav;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.milton.http.http11.ETagGenerator;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Optional;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import org.junit.Test;
+
+public class PropFindFilterTest {
+
+    private static final String PROLOG = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final String OK = "<d:status>HTTP/1.1 200 OK</d:status>";
+    private static final String NOT_FOUND = "<d:status>HTTP/1.1 404 Not Found</d:status>";
+
+    private static final QName DISPLAY_NAME = new QName("DAV:", "displayname");
+    private static final QName RESOURCE_TYPE = new QName("DAV:", "resourcetype");
+    private static final QName CONTENT_LENGTH = new QName("DAV:", "getcontentlength");
+    private static final QName COLOUR = new QName("http://example.org/ns", "colour");
+
+    private final StringWriter out = new StringWriter();
+    private final ETagGenerator etags = mock(ETagGenerator.class);
+
+    @Test
+    public void shouldReturnNamedProperties() throws Exception {
+        Optional<List<QName>> properties = requestedProperties(
+              "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                    + "<d:propfind xmlns:d=\"DAV:\">"
+                    + "<d:prop><d:displayname/><d:getcontentlength/></d:prop>"
+                    + "</d:propfind>");
+
+        assertThat(properties.get(), contains(DISPLAY_NAME, CONTENT_LENGTH));
+    }
+
+    @Test
+    public void shouldReturnNamedPropertiesOfOtherNamespaces() throws Exception {
+        Optional<List<QName>> properties = requestedProperties(
+              "<propfind xmlns=\"DAV:\">"
+                    + "<prop><resourcetype/><c:colour xmlns:c=\"http://example.org/ns\"/></prop>"
+                    + "</propfind>");
+
+        assertThat(properties.get(), contains(RESOURCE_TYPE, COLOUR));
+    }
+
+    @Test
+    public void shouldIgnoreWhitespaceBetweenProperties() throws Exception {
+        Optional<List<QName>> properties = requestedProperties(
+              "<d:propfind xmlns:d=\"DAV:\">\n"
+                    + "  <d:prop>\n"
+                    + "    <d:displayname/>\n"
+                    + "  </d:prop>\n"
+                    + "</d:propfind>\n");
+
+        assertThat(properties.get(), contains(DISPLAY_NAME));
+    }
+
+    @Test
+    public void shouldFallBackForEmptyBody() throws Exception {
+        assertThat(requestedProperties(""), is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldFallBackForAllprop() throws Exception {
+        assertThat(requestedProperties(
+                    "<d:propfind xmlns:d=\"DAV:\"><d:allprop/></d:propfind>"),
+              is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldFallBackForPropname() throws Exception {
+        assertThat(requestedProperties(
+                    "<d:propfind xmlns:d=\"DAV:\"><d:propname/></d:propfind>"),
+              is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldFallBackForUnsupportedDavProperty() throws Exception {
+        assertThat(requestedProperties(
+                    "<d:propfind xmlns:d=\"DAV:\">"
+                          + "<d:prop><d:displayname/><d:lockdiscovery/></d:prop>"
+                          + "</d:propfind>"),
+              is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldFallBackForOtherRootElement() throws Exception {
+        assertThat(requestedProperties(
+                    "<d:propertyupdate xmlns:d=\"DAV:\"><d:set/></d:propertyupdate>"),
+              is(Optional.empty()));
+    }
+
+    @Test
+    public void shouldFallBackForPropfindOutsideDavNamespace() throws Exception {
+        assertThat(requestedProperties("<propfind><prop><displayname/></prop></propfind>"),
+              is(Optional.empty()));
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void shouldRejectTruncatedBody() throws Exception {
+        requestedProperties("<d:propfind xmlns:d=\"DAV:\"><d:prop><d:displayname/>");
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void shouldRejectBodyThatIsNotXml() throws Exception {
+        requestedProperties("displayname");
+    }
+
+    @Test(expected = XMLStreamException.class)
+    public void shouldRejectTextInsideProp() throws Exception {
+        requestedProperties(
+              "<d:propfind xmlns:d=\"DAV:\"><d:prop>text<d:displayname/></d:prop></d:propfind>");
+    }
+
+    @Test
+    public void shouldWriteDirectoryOnly() throws Exception {
+        DcacheDirectoryResource directory = directory("dir");
+
+        PropFindFilter.MultiStatusWriter writer =
+              new PropFindFilter.MultiStatusWriter(out, List.of(RESOURCE_TYPE, DISPLAY_NAME),
+                    etags);
+        writer.start();
+        writer.write("/dir/", directory);
+        writer.finish();
+
+        assertThat(out.toString(), is(equalTo(PROLOG
+              + "<d:multistatus xmlns:d=\"DAV:\">"
+              + "<d:response><d:href>/dir/</d:href>"
+              + "<d:propstat><d:prop>"
+              + "<d:resourcetype><d:collection/></d:resourcetype>"
+              + "<d:displayname>dir</d:displayname>"
+              + "</d:prop>" + OK + "</d:propstat>"
+              + "</d:response>"
+              + "</d:multistatus>")));
+    }
+
+    @Test
+    public void shouldWriteDirectoryWithChildren() throws Exception {
+        DcacheDirectoryResource directory = directory("dir");
+        DcacheFileResource file = file("file", 42L);
+        DcacheDirectoryResource subdirectory = directory("subdir");
+
+        PropFindFilter.MultiStatusWriter writer =
+              new PropFindFilter.MultiStatusWriter(out, List.of(RESOURCE_TYPE, CONTENT_LENGTH),
+                    etags);
+        writer.start();
+        writer.write("/dir/", directory);
+        writer.write(PropFindFilter.childHref("/dir/", file), file);
+        writer.write(PropFindFilter.childHref("/dir/", subdirectory), subdirectory);
+        writer.finish();
+
+        assertThat(out.toString(), is(equalTo(PROLOG
+              + "<d:multistatus xmlns:d=\"DAV:\">"
+              + "<d:response><d:href>/dir/</d:href>"
+              + "<d:propstat><d:prop>"
+              + "<d:resourcetype><d:collection/></d:resourcetype>"
+              + "</d:prop>" + OK + "</d:propstat>"
+              + "<d:propstat><d:prop><d:getcontentlength/></d:prop>" + NOT_FOUND + "</d:propstat>"
+              + "</d:response>"
+              + "<d:response><d:href>/dir/file</d:href>"
+              + "<d:propstat><d:prop>"
+              + "<d:resourcetype></d:resourcetype>"
+              + "<d:getcontentlength>42</d:getcontentlength>"
+              + "</d:prop>" + OK + "</d:propstat>"
+              + "</d:response>"
+              + "<d:response><d:href>/dir/subdir/</d:href>"
+              + "<d:propstat><d:prop>"
+              + "<d:resourcetype><d:collection/></d:resourcetype>"
+              + "</d:prop>" + OK + "</d:propstat>"
+              + "<d:propstat><d:prop><d:getcontentlength/></d:prop>" + NOT_FOUND + "</d:propstat>"
+              + "</d:response>"
+              + "</d:multistatus>")));
+    }
+
+    @Test
+    public void shouldReportMissingPropertiesAsNotFound() throws Exception {
+        DcacheFileResource file = file("file", 42L);
+
+        PropFindFilter.MultiStatusWriter writer =
+              new PropFindFilter.MultiStatusWriter(out, List.of(CONTENT_LENGTH, COLOUR), etags);
+        writer.start();
+        writer.write("/file", file);
+        writer.finish();
+
+        assertThat(out.toString(), is(equalTo(PROLOG
+              + "<d:multistatus xmlns:d=\"DAV:\" xmlns:ns1=\"http://example.org/ns\">"
+              + "<d:response><d:href>/file</d:href>"
+              + "<d:propstat><d:prop>"
+              + "<d:getcontentlength>42</d:getcontentlength>"
+              + "</d:prop>" + OK + "</d:propstat>"
+              + "<d:propstat><d:prop><ns1:colour/></d:prop>" + NOT_FOUND + "</d:propstat>"
+              + "</d:response>"
+              + "</d:multistatus>")));
+    }
+
+    @Test
+    public void shouldEscapeNamesInHref() {
+        DcacheFileResource file = file("a b#?%.txt", 0L);
+        DcacheDirectoryResource directory = directory("sub dir");
+
+        assertThat(PropFindFilter.childHref("/dir/", file), is(equalTo("/dir/a%20b%23%3F%25.txt")));
+        assertThat(PropFindFilter.childHref("/dir/", directory), is(equalTo("/dir/sub%20dir/")));
+    }
+
+    @Test
+    public void shouldEscapeNamesInXml() throws Exception {
+        DcacheFileResource file = file("a<b&c>\"d", 0L);
+
+        PropFindFilter.MultiStatusWriter writer =
+              new PropFindFilter.MultiStatusWriter(out, List.of(DISPLAY_NAME), etags);
+        writer.start();
+        writer.write("/a<b&c>", file);
+        writer.finish();
+
+        assertThat(out.toString(), is(equalTo(PROLOG
+              + "<d:multistatus xmlns:d=\"DAV:\">"
+              + "<d:response><d:href>/a&lt;b&amp;c&gt;</d:href>"
+              + "<d:propstat><d:prop>"
+              + "<d:displayname>a&lt;b&amp;c&gt;\"d</d:displayname>"
+              + "</d:prop>" + OK + "</d:propstat>"
+              + "</d:response>"
+              + "</d:multistatus>")));
+    }
+
+    private static Optional<List<QName>> requestedProperties(String entity)
+          throws XMLStreamException {
+        return PropFindFilter.requestedProperties(entity.getBytes(UTF_8));
+    }
+
+    private static DcacheDirectoryResource directory(String name) {
+        DcacheDirectoryResource directory = mock(DcacheDirectoryResource.class);
+        when(directory.getName()).thenReturn(name);
+        return directory;
+    }
+
+    private static DcacheFileResource file(String name, long size) {
+        DcacheFileResource file = mock(DcacheFileResource.class);
+        when(file.getName()).thenReturn(name);
+        when(file.getContentLength()).thenReturn(size);
+        return file;
+    }
+}
@@ -109,6 +109,7 @@ import org.dcache.namespace.FileAttribute;
 import org.dcache.namespace.FileType;
 import org.dcache.namespace.PermissionHandler;
 import org.dcache.namespace.PosixPermissionHandler;
+import org.dcache.poolmanager.LocalReadPoolSelector;
 import org.dcache.poolmanager.PoolManagerStub;
 import org.dcache.poolmanager.PoolMonitor;
 import org.dcache.util.Checksum;
@@ -180,6 +181,7 @@ public class XrootdDoor
     private CellStub _billingStub;
 
     private PoolMonitor _poolMonitor;
+    private LocalReadPoolSelector _localReadPoolSelector;
 
     private final PermissionHandler _pdp = new ChainedPermissionHandler(
           new ACLPermissionHandler(),
@@ -288,6 +290,11 @@ public class XrootdDoor
         _poolMonitor = poolMonitor;
     }
 
+    @Required
+    public void setLocalReadPoolSelector(LocalReadPoolSelector selector) {
+        _localReadPoolSelector = selector;
+    }
+
     @Required
     public void setServerProtocolFlags(ServerProtocolFlags serverProtocolFlags) {
         this.serverProtocolFlags = serverProtocolFlags;
@@ -498,6 +505,7 @@ public class XrootdDoor
               };
         transfer.setCellAddress(getCellAddress());
         transfer.setPoolManagerStub(_poolManagerStub);
+        transfer.setLocalReadPoolSelector(_localReadPoolSelector);
         transfer.setPoolStub(_poolStub);
         transfer.setBillingStub(_billingStub);
         transfer.setClientAddress(client);
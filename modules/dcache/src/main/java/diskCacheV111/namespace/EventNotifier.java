@@ -190,9 +190,11 @@ public class EventNotifier implements EventReceiver, CellMessageReceiver,
             selectedEvents = EnumSet.copyOf(events);
         }
 
-        public void accept(EventType eventType, String name, String cookie, FileType type) {
+        public void accept(EventType eventType, String name, String cookie, FileType type,
+              long timestamp) {
             if (selectedEvents.contains(eventType)) {
-                eventSender.accept(new InotifyEvent(eventType, target, name, cookie, type));
+                eventSender.accept(new InotifyEvent(eventType, target, name, cookie, type,
+                      timestamp));
             }
         }
     }
@@ -362,7 +364,7 @@ public class EventNotifier implements EventReceiver, CellMessageReceiver,
     }
 
     private void acceptEvent(EventType eventType, PnfsId target, String name,
-          String cookie, FileType fileType) {
+          String cookie, FileType fileType, long timestamp) {
         synchronized (this) {
             if (dispatchOverflow && !overflowNotificationScheduled) {
                 try {
@@ -376,7 +378,7 @@ public class EventNotifier implements EventReceiver, CellMessageReceiver,
         }
         List<Watch> watches = watchesByPnfsId.get(target);
         synchronized (watchesByPnfsId) {
-            watches.forEach(w -> w.accept(eventType, name, cookie, fileType));
+            watches.forEach(w -> w.accept(eventType, name, cookie, fileType, timestamp));
         }
     }
 
@@ -405,13 +407,14 @@ public class EventNotifier implements EventReceiver, CellMessageReceiver,
     private synchronized void notifyEvent(EventType eventType, PnfsId target, String name,
           String cookie, FileType fileType) {
         if (!dispatchOverflow) {
+            long timestamp = System.currentTimeMillis();
             try {
                 // The acceptEvent is decoupled via the dispatchExecutor to
                 // prevent this method from blocking if acceptEvent blocks.  The
                 // acceptEvent method can block if the set of watches (as
                 // recorded in ZK) changes.
                 dispatchExecutor.execute(
-                      () -> acceptEvent(eventType, target, name, cookie, fileType));
+                      () -> acceptEvent(eventType, target, name, cookie, fileType, timestamp));
             } catch (RejectedExecutionException e) {
                 LOGGER.warn("Inotify overflow: too slow accepting new events");
                 dispatchOverflow = true;
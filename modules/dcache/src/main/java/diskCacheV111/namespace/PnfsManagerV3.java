@@ -219,10 +219,12 @@ public class PnfsManagerV3
     private TimeUnit updateFsStatIntervalUnit;
     private long updateFsStatInterval;
 
-    private ScheduledFuture<?> updateGroupQuotaFuture;
-    private ScheduledFuture<?> updateUserQuotaFuture;
+    private ScheduledFuture<?> reconcileQuotaFuture;
+    private ScheduledFuture<?> foldQuotaFuture;
     private TimeUnit updateQuotaIntervalUnit;
     private long updateQuotaInterval;
+    private TimeUnit foldQuotaIntervalUnit;
+    private long foldQuotaInterval;
     private boolean quotaEnabled;
 
     private boolean useParentHashOnCreate;
@@ -329,6 +331,16 @@ public class PnfsManagerV3
         this.updateQuotaIntervalUnit = updateQuotaIntervalUnit;
     }
 
+    @Required
+    public void setFoldQuotaInterval(long foldQuotaInterval) {
+        this.foldQuotaInterval = foldQuotaInterval;
+    }
+
+    @Required
+    public void setFoldQuotaIntervalUnit(TimeUnit foldQuotaIntervalUnit) {
+        this.foldQuotaIntervalUnit = foldQuotaIntervalUnit;
+    }
+
     @Required
     public void setQuotaEnabled(boolean quotaEnabled) {
         this.quotaEnabled = quotaEnabled;
@@ -543,27 +555,21 @@ public class PnfsManagerV3
                     updateFsStatIntervalUnit.toMillis(updateFsStatInterval),
                     TimeUnit.MILLISECONDS);
 
-        if (quotaEnabled) {
-            updateGroupQuotaFuture = scheduledExecutor.
-                  scheduleWithFixedDelay(
-                        new FireAndForgetTask(new Runnable() {
-                            @Override
-                            public void run() {
-                                quotaSystem.updateGroupQuotas();
-                            }
-                        }),
-                        updateQuotaIntervalUnit.toMillis(updateQuotaInterval),
-                        updateQuotaIntervalUnit.toMillis(updateQuotaInterval),
-                        TimeUnit.MILLISECONDS);
+        /* Changes are recorded by the database whenever a quota is defined for
+         * the owner of a file, even if quotas are not enforced. Folding them
+         * regardless keeps the recorded changes from piling up.
+         */
+        foldQuotaFuture = scheduledExecutor.
+              scheduleWithFixedDelay(
+                    new FireAndForgetTask(quotaSystem::foldQuotaDeltas),
+                    foldQuotaIntervalUnit.toMillis(foldQuotaInterval),
+                    foldQuotaIntervalUnit.toMillis(foldQuotaInterval),
+                    TimeUnit.MILLISECONDS);
 
-            updateUserQuotaFuture = scheduledExecutor.
+        if (quotaEnabled) {
+            reconcileQuotaFuture = scheduledExecutor.
                   scheduleWithFixedDelay(
-                        new FireAndForgetTask(new Runnable() {
-                            @Override
-                            public void run() {
-                                quotaSystem.updateUserQuotas();
-                            }
-                        }),
+                        new FireAndForgetTask(quotaSystem::reconcileQuotas),
                         updateQuotaIntervalUnit.toMillis(updateQuotaInterval),
                         updateQuotaIntervalUnit.toMillis(updateQuotaInterval),
                         TimeUnit.MILLISECONDS);
@@ -573,9 +579,9 @@ public class PnfsManagerV3
     @Override
     public void notLeader() {
         updateFsFuture.cancel(true);
+        foldQuotaFuture.cancel(true);
         if (quotaEnabled) {
-            updateGroupQuotaFuture.cancel(true);
-            updateUserQuotaFuture.cancel(true);
+            reconcileQuotaFuture.cancel(true);
         }
     }
 
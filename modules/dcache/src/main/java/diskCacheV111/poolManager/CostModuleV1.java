@@ -19,8 +19,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 import org.dcache.poolmanager.PoolInfo;
@@ -41,6 +44,23 @@ public class CostModuleV1
     private static final long serialVersionUID = -267023006449629909L;
 
     private final Map<String, Entry> _hash = new HashMap<>();
+
+    /**
+     * Identifies this instance. Versions are only comparable between cost modules with the same
+     * epoch.
+     */
+    private final long _epoch = ThreadLocalRandom.current().nextLong();
+
+    /**
+     * Incremented for every change to {@code _hash}.
+     */
+    private long _version;
+
+    /**
+     * The version at which a pool was removed. Used to inform subscribers about removed pools.
+     */
+    private final Map<String, Long> _removed = new HashMap<>();
+
     private boolean _cachedPercentileCostCutIsValid;
     private double _cachedPercentileCostCut;
     private double _cachedPercentileFraction;
@@ -48,18 +68,21 @@ public class CostModuleV1
     /**
      * Information about some specific pool.
      */
-    private static class Entry implements Serializable {
+    static class Entry implements Serializable {
 
         private static final long serialVersionUID = -6380756950554320179L;
 
         private final long timestamp;
+        private final long version;
         private final PoolCostInfo _info;
         private double _fakeCpu = -1.0;
         private final ImmutableMap<String, String> _tagMap;
         private final CellAddressCore _address;
 
-        public Entry(CellAddressCore address, PoolCostInfo info, Map<String, String> tagMap) {
+        public Entry(CellAddressCore address, PoolCostInfo info, Map<String, String> tagMap,
+              long version) {
             timestamp = System.currentTimeMillis();
+            this.version = version;
             _address = address;
             _info = info;
             _tagMap =
@@ -106,10 +129,58 @@ public class CostModuleV1
         }
 
         if (shouldRemovePool) {
-            _hash.remove(poolName);
+            if (_hash.remove(poolName) != null) {
+                _version++;
+                _removed.put(poolName, _version);
+            }
         } else if (newInfo != null) {
-            _hash.put(poolName, new Entry(poolAddress, newInfo, msg.getTagMap()));
+            _version++;
+            _hash.put(poolName, new Entry(poolAddress, newInfo, msg.getTagMap(), _version));
+            _removed.remove(poolName);
+        }
+    }
+
+    public long getEpoch() {
+        return _epoch;
+    }
+
+    public synchronized long getVersion() {
+        return _version;
+    }
+
+    /**
+     * Returns the changes made to this cost module after the given version.
+     */
+    public synchronized PoolMonitorDelta getChangesSince(long version) {
+        Map<String, Entry> updated = new HashMap<>();
+        _hash.forEach((pool, entry) -> {
+            if (entry.version > version) {
+                updated.put(pool, entry);
+            }
+        });
+        Set<String> removed = new HashSet<>();
+        _removed.forEach((pool, removedAt) -> {
+            if (removedAt > version) {
+                removed.add(pool);
+            }
+        });
+        return new PoolMonitorDelta(_epoch, version, _version, updated, removed);
+    }
+
+    /**
+     * Applies changes obtained from the {@link #getChangesSince} of another cost module.
+     * <p>
+     * The caller must ensure that the delta has the same epoch and that its base version is not
+     * newer than the version of this cost module, otherwise changes are lost.
+     */
+    public synchronized void apply(PoolMonitorDelta delta) {
+        if (delta.getEpoch() != _epoch) {
+            throw new IllegalArgumentException("Delta epoch does not match cost module.");
         }
+        delta.getUpdatedEntries().forEach(_hash::put);
+        delta.getRemovedPools().forEach(_hash::remove);
+        _version = Math.max(_version, delta.getVersion());
+        _cachedPercentileCostCutIsValid = false;
     }
 
     private void considerInvalidatingCache(PoolCostInfo currentInfo, PoolCostInfo newInfo) {
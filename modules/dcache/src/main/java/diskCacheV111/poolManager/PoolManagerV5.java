@@ -51,6 +51,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.LongAdder;
+import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
 import org.dcache.alarms.AlarmMarkerFactory;
 import org.dcache.alarms.PredefinedAlarm;
 import org.dcache.cells.CellStub;
@@ -70,7 +71,7 @@ import org.springframework.beans.factory.annotation.Required;
 
 public class PoolManagerV5
       implements CellCommandListener, CellMessageReceiver, CellLifeCycleAware, CellInfoProvider,
-      CellArgsAware {
+      CellArgsAware, LeaderLatchListener {
 
     private static final Version VERSION = Version.of(PoolManagerV5.class);
 
@@ -82,12 +83,19 @@ public class PoolManagerV5
     private CostModule _costModule;
     private CellStub _poolStatusTopic;
     private CellStub _poolMonitorTopic;
+    private CellStub _poolMonitorDeltaTopic;
     private PnfsHandler _pnfsHandler;
 
     private RequestContainerV5 _requestContainer;
     private WatchdogThread _watchdog;
     private PoolMonitorThread _poolMonitorThread;
 
+    /**
+     * Whether this instance publishes on the pool monitor delta topic. Only one of several
+     * replicas publishes there, as subscribers can only follow the cost module of one instance.
+     */
+    private volatile boolean _isLeader;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(PoolManagerV5.class);
 
     private final ExecutorService _executor = new CDCExecutorServiceDecorator<>(
@@ -98,6 +106,8 @@ public class PoolManagerV5
     private long _poolMonitorUpdatePeriod;
     private TimeUnit _poolMonitorUpdatePeriodUnit;
     private double _poolMonitorMaxUpdatesPerSecond;
+    private long _poolMonitorDeltaPeriod;
+    private TimeUnit _poolMonitorDeltaPeriodUnit;
 
     private Args _args;
 
@@ -141,6 +151,11 @@ public class PoolManagerV5
         _poolMonitorTopic = stub;
     }
 
+    @Required
+    public void setPoolMonitorDeltaTopic(CellStub stub) {
+        _poolMonitorDeltaTopic = stub;
+    }
+
     @Required
     public void setPoolMonitorUpdatePeriod(long period) {
         _poolMonitorUpdatePeriod = period;
@@ -156,6 +171,16 @@ public class PoolManagerV5
         _poolMonitorMaxUpdatesPerSecond = maxUpdatesPerSecond;
     }
 
+    @Required
+    public void setPoolMonitorDeltaPeriod(long period) {
+        _poolMonitorDeltaPeriod = period;
+    }
+
+    @Required
+    public void setPoolMonitorDeltaPeriodUnit(TimeUnit unit) {
+        _poolMonitorDeltaPeriodUnit = unit;
+    }
+
     public void init() {
         String watchdogParam = _args.getOpt("watchdog");
         if (watchdogParam != null && !watchdogParam.isEmpty()) {
@@ -178,6 +203,22 @@ public class PoolManagerV5
         _poolMonitorThread.onChange();
     }
 
+    @Override
+    public void isLeader() {
+        _isLeader = true;
+        /* Subscribers of the delta topic need the complete pool monitor of this instance
+         * before they can apply its deltas.
+         */
+        if (_poolMonitorThread != null) {
+            _poolMonitorThread.onChange();
+        }
+    }
+
+    @Override
+    public void notLeader() {
+        _isLeader = false;
+    }
+
     public void shutdown() throws InterruptedException {
         if (_watchdog != null) {
             _watchdog.interrupt();
@@ -271,35 +312,102 @@ public class PoolManagerV5
         }
     }
 
+    /**
+     * Publishes the pool monitor.
+     * <p>
+     * The complete pool monitor is published on the pool monitor topic periodically and whenever
+     * its structure changes. Subscribers of the delta topic receive the complete pool monitor
+     * only on structural changes; in between they receive the cost information that changed
+     * since the previous publication. Only the leader among several pool manager replicas
+     * publishes on the delta topic.
+     */
     private class PoolMonitorThread extends Thread {
 
         private boolean isChanged;
 
         private final RateLimiter limiter = RateLimiter.create(_poolMonitorMaxUpdatesPerSecond);
 
+        /**
+         * Cost module version on which the next delta is based.
+         */
+        private long publishedVersion;
+
+        /**
+         * Whether the complete pool monitor was published on the delta topic since this instance
+         * became leader. Deltas are useless to subscribers until then.
+         */
+        private boolean hasPublishedBase;
+
         @Override
         public void run() {
             try {
                 limiter.acquire();
+                publish(true);
                 while (!Thread.interrupted()) {
-                    if (LOGGER.isDebugEnabled()) { // For RT 9250.
-                        if (_poolMonitor.getPoolSelectionUnit().getLinkGroups().isEmpty()) {
-                            LOGGER.debug("notifying with PoolMonitor that has empty linkgroups");
-                        }
+                    long deadline = System.nanoTime()
+                          + _poolMonitorUpdatePeriodUnit.toNanos(_poolMonitorUpdatePeriod);
+                    boolean isStructural;
+                    while (!(isStructural = waitUntilNextUpdate(deadline))
+                          && System.nanoTime() - deadline < 0) {
+                        publishDelta();
                     }
-                    _poolMonitorTopic.notify(_poolMonitor);
-                    waitUntilNextUpdate();
                     limiter.acquire();
+                    publish(isStructural);
                 }
             } catch (InterruptedException ignored) {
             }
         }
 
-        protected synchronized void waitUntilNextUpdate() throws InterruptedException {
+        private void publish(boolean isStructural) {
+            if (LOGGER.isDebugEnabled()) { // For RT 9250.
+                if (_poolMonitor.getPoolSelectionUnit().getLinkGroups().isEmpty()) {
+                    LOGGER.debug("notifying with PoolMonitor that has empty linkgroups");
+                }
+            }
+            if (!_isLeader) {
+                hasPublishedBase = false;
+                _poolMonitorTopic.notify(_poolMonitor);
+            } else if (isStructural) {
+                /* The published pool monitor is at least as recent as this version. */
+                if (_costModule instanceof CostModuleV1) {
+                    publishedVersion = ((CostModuleV1) _costModule).getVersion();
+                }
+                _poolMonitorTopic.notify(List.of(_poolMonitorTopic.getDestinationPath(),
+                      _poolMonitorDeltaTopic.getDestinationPath()), _poolMonitor);
+                hasPublishedBase = true;
+            } else {
+                _poolMonitorTopic.notify(_poolMonitor);
+            }
+        }
+
+        private void publishDelta() {
+            if (_isLeader && hasPublishedBase && _costModule instanceof CostModuleV1) {
+                PoolMonitorDelta delta =
+                      ((CostModuleV1) _costModule).getChangesSince(publishedVersion);
+                if (!delta.isEmpty()) {
+                    _poolMonitorDeltaTopic.notify(delta);
+                    publishedVersion = delta.getVersion();
+                }
+            }
+        }
+
+        /**
+         * Waits for at most one delta period, but not beyond the deadline.
+         *
+         * @return true if the pool monitor changed structurally
+         */
+        protected synchronized boolean waitUntilNextUpdate(long deadline)
+              throws InterruptedException {
             if (!isChanged) {
-                _poolMonitorUpdatePeriodUnit.timedWait(this, _poolMonitorUpdatePeriod);
+                long timeout = Math.min(deadline - System.nanoTime(),
+                      _poolMonitorDeltaPeriodUnit.toNanos(_poolMonitorDeltaPeriod));
+                if (timeout > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, timeout);
+                }
             }
+            boolean changed = isChanged;
             isChanged = false;
+            return changed;
         }
 
         public synchronized void onChange() {
@@ -325,6 +433,7 @@ public class PoolManagerV5
             // set pool mode
             //
             pool.setReadOnly((msg.getPoolMode() & PoolManagerPoolModeMessage.WRITE) == 0);
+            _poolMonitorThread.onChange();
         }
 
         msg.setSucceeded();
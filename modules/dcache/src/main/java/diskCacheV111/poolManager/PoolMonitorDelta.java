@@ -0,0 +1,77 @@
+package diskCacheV111.poolManager;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes to the cost information of a pool monitor between two versions.
+ * <p>
+ * Pool manager publishes these at a higher rate than the complete pool monitor. A subscriber
+ * holding a pool monitor whose cost module has the same epoch and a version between the base
+ * version and the version of the delta may apply the delta to bring its copy up to date. Any
+ * other subscriber has missed an update and has to fetch the complete pool monitor.
+ * <p>
+ * Structural changes, such as changes to the pool selection configuration or pools changing
+ * their mode, are not part of a delta; pool manager publishes the complete pool monitor in that
+ * case.
+ */
+public final class PoolMonitorDelta implements Serializable {
+
+    private static final long serialVersionUID = 3912278474839265215L;
+
+    private final long epoch;
+    private final long baseVersion;
+    private final long version;
+    private final ImmutableMap<String, CostModuleV1.Entry> updated;
+    private final ImmutableSet<String> removed;
+
+    PoolMonitorDelta(long epoch, long baseVersion, long version,
+          Map<String, CostModuleV1.Entry> updated, Set<String> removed) {
+        this.epoch = epoch;
+        this.baseVersion = baseVersion;
+        this.version = version;
+        this.updated = ImmutableMap.copyOf(updated);
+        this.removed = ImmutableSet.copyOf(removed);
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public boolean isEmpty() {
+        return updated.isEmpty() && removed.isEmpty();
+    }
+
+    /**
+     * Returns the names of pools for which updated cost information is included. These are the
+     * pools that sent a heartbeat since the base version.
+     */
+    public Set<String> getUpdatedPools() {
+        return updated.keySet();
+    }
+
+    public Set<String> getRemovedPools() {
+        return removed;
+    }
+
+    Map<String, CostModuleV1.Entry> getUpdatedEntries() {
+        return updated;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolMonitorDelta[epoch=" + epoch + ",base=" + baseVersion + ",version=" + version
+              + ",updated=" + updated.size() + ",removed=" + removed.size() + "]";
+    }
+}
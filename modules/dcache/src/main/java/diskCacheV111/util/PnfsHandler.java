@@ -41,6 +41,7 @@ import org.dcache.acl.enums.AccessMask;
 import org.dcache.auth.attributes.Restriction;
 import org.dcache.cells.CellStub;
 import org.dcache.namespace.FileAttribute;
+import org.dcache.namespace.FileAttributesCache;
 import org.dcache.namespace.FileType;
 import org.dcache.util.ChecksumType;
 import org.dcache.vehicles.FileAttributes;
@@ -61,6 +62,7 @@ public class PnfsHandler implements CellMessageSender {
 
     private Subject _subject;
     private Restriction _restriction;
+    private FileAttributesCache _attributesCache;
 
     private static final Logger _logNameSpace =
           LoggerFactory.getLogger("logger.org.dcache.namespace."
@@ -113,6 +115,7 @@ public class PnfsHandler implements CellMessageSender {
         _cellStub = handler._cellStub;
         _subject = subject;
         _restriction = restriction;
+        _attributesCache = handler._attributesCache;
     }
 
     /**
@@ -140,6 +143,14 @@ public class PnfsHandler implements CellMessageSender {
         _restriction = restriction;
     }
 
+    /**
+     * Sets a cache for file attributes.  The cache is shared with all PnfsHandlers copied from
+     * this one.  Modifications made through this PnfsHandler invalidate the affected entries.
+     */
+    public void setFileAttributesCache(FileAttributesCache cache) {
+        _attributesCache = cache;
+    }
+
     /**
      * Sends a PnfsMessage to PnfsManager.
      */
@@ -332,11 +343,15 @@ public class PnfsHandler implements CellMessageSender {
     public void renameEntry(PnfsId pnfsId, String path, String newName, boolean overwrite)
           throws CacheException {
         request(new PnfsRenameMessage(pnfsId, path, newName, overwrite));
+        invalidate(pnfsId, path);
+        invalidate(null, newName);
     }
 
     public void renameEntry(String path, String newName, boolean overwrite)
           throws CacheException {
         request(new PnfsRenameMessage(path, newName, overwrite));
+        invalidate(null, path);
+        invalidate(null, newName);
     }
 
     public PnfsCreateEntryMessage createPnfsEntry(String path,
@@ -386,7 +401,10 @@ public class PnfsHandler implements CellMessageSender {
     public FileAttributes deletePnfsEntry(PnfsId pnfsid, String path, Set<FileType> allowed,
           Set<FileAttribute> attr)
           throws CacheException {
-        return request(new PnfsDeleteEntryMessage(pnfsid, path, allowed, attr)).getFileAttributes();
+        FileAttributes attributes =
+              request(new PnfsDeleteEntryMessage(pnfsid, path, allowed, attr)).getFileAttributes();
+        invalidate(pnfsid, path);
+        return attributes;
     }
 
     /**
@@ -486,6 +504,10 @@ public class PnfsHandler implements CellMessageSender {
      */
     public FileAttributes getFileAttributes(PnfsId pnfsid, Set<FileAttribute> attr)
           throws CacheException {
+        if (_attributesCache != null) {
+            return _attributesCache.getFileAttributes(_subject, _restriction, pnfsid, attr,
+                  (id, a) -> request(new PnfsGetFileAttributes(id, a)).getFileAttributes());
+        }
         return request(new PnfsGetFileAttributes(pnfsid, attr)).getFileAttributes();
     }
 
@@ -518,6 +540,10 @@ public class PnfsHandler implements CellMessageSender {
      */
     public FileAttributes getFileAttributes(String path, Set<FileAttribute> attr)
           throws CacheException {
+        if (_attributesCache != null) {
+            return _attributesCache.getFileAttributes(_subject, _restriction, path, attr,
+                  (p, a) -> request(new PnfsGetFileAttributes(p, a)).getFileAttributes());
+        }
         return request(new PnfsGetFileAttributes(path, attr)).getFileAttributes();
     }
 
@@ -560,7 +586,10 @@ public class PnfsHandler implements CellMessageSender {
      */
     public FileAttributes setFileAttributes(PnfsId pnfsid, FileAttributes attr,
           Set<FileAttribute> acquire) throws CacheException {
-        return request(new PnfsSetFileAttributes(pnfsid, attr, acquire)).getFileAttributes();
+        FileAttributes attributes =
+              request(new PnfsSetFileAttributes(pnfsid, attr, acquire)).getFileAttributes();
+        invalidate(pnfsid, null);
+        return attributes;
     }
 
     /**
@@ -571,6 +600,7 @@ public class PnfsHandler implements CellMessageSender {
      */
     public void setFileAttributes(PnfsId pnfsid, FileAttributes attr) throws CacheException {
         request(new PnfsSetFileAttributes(pnfsid, attr));
+        invalidate(pnfsid, null);
     }
 
     /**
@@ -587,8 +617,10 @@ public class PnfsHandler implements CellMessageSender {
      */
     public FileAttributes setFileAttributes(FsPath path, FileAttributes attr,
           Set<FileAttribute> acquire) throws CacheException {
-        return request(
+        FileAttributes attributes = request(
               new PnfsSetFileAttributes(path.toString(), attr, acquire)).getFileAttributes();
+        invalidate(null, path.toString());
+        return attributes;
     }
 
     /**
@@ -601,6 +633,7 @@ public class PnfsHandler implements CellMessageSender {
     public void setFileAttributes(FsPath path, FileAttributes attr) throws CacheException {
         request(new PnfsSetFileAttributes(path.toString(), attr,
               EnumSet.noneOf(FileAttribute.class)));
+        invalidate(null, path.toString());
     }
 
     /**
@@ -654,6 +687,7 @@ public class PnfsHandler implements CellMessageSender {
               new PnfsWriteExtendedAttributesMessage(path.toString(), mode);
         message.putValue(name, value);
         request(message);
+        invalidate(null, path.toString());
     }
 
     /**
@@ -675,6 +709,7 @@ public class PnfsHandler implements CellMessageSender {
               new PnfsWriteExtendedAttributesMessage(path.toString(), mode);
         xattrs.forEach(message::putValue);
         request(message);
+        invalidate(null, path.toString());
     }
 
     /**
@@ -693,6 +728,7 @@ public class PnfsHandler implements CellMessageSender {
               new PnfsRemoveExtendedAttributesMessage(path.toString());
         message.addName(name);
         request(message);
+        invalidate(null, path.toString());
     }
 
     /**
@@ -711,6 +747,7 @@ public class PnfsHandler implements CellMessageSender {
               new PnfsRemoveExtendedAttributesMessage(path.toString());
         names.forEach(message::addName);
         request(message);
+        invalidate(null, path.toString());
     }
 
     /**
@@ -731,5 +768,17 @@ public class PnfsHandler implements CellMessageSender {
               new PnfsRemoveLabelsMessage(path.toString());
         message.addLabel(label);
         request(message);
+        invalidate(null, path.toString());
+    }
+
+    private void invalidate(PnfsId id, String path) {
+        if (_attributesCache != null) {
+            if (id != null) {
+                _attributesCache.invalidate(id);
+            }
+            if (path != null && path.startsWith("/")) {
+                _attributesCache.invalidate(FsPath.create(path));
+            }
+        }
     }
 }
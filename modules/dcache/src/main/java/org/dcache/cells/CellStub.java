@@ -20,7 +20,9 @@ import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellMessageSender;
 import dmg.cells.nucleus.CellPath;
 import dmg.cells.nucleus.NoRouteToCellException;
+import dmg.cells.nucleus.SerializationHandler;
 import java.io.Serializable;
+import java.util.Collection;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
@@ -436,6 +438,22 @@ public class CellStub
         _endpoint.sendMessage(envelope);
     }
 
+    /**
+     * Sends {@literal message} to each of {@literal destinations}. The message is serialized only
+     * once; all destinations receive copies of the same encoded message.
+     */
+    public void notify(Collection<CellPath> destinations, Serializable message) {
+        /* Cells currently support a single serializer, so the message can be encoded here
+         * rather than by the cell glue on every send.
+         */
+        CellMessage encoded = new CellMessage(new CellPath(), message)
+              .encodeWith(SerializationHandler.Serializer.JOS);
+        for (CellPath destination : destinations) {
+            _rateLimiter.acquire();
+            _endpoint.sendMessage(encoded.copyTo(destination));
+        }
+    }
+
     @Override
     public String toString() {
         CellPath path = getDestinationPath();
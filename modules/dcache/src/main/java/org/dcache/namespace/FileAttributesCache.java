@@ -0,0 +1,809 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2026 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.namespace;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static diskCacheV111.namespace.EventNotifier.INOTIFY_PATH;
+import static java.util.Objects.requireNonNull;
+import static org.dcache.namespace.FileAttribute.PNFSID;
+import static org.dcache.namespace.FileAttribute.TYPE;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
+import diskCacheV111.namespace.EventNotifier;
+import diskCacheV111.util.CacheException;
+import diskCacheV111.util.FsPath;
+import diskCacheV111.util.PnfsId;
+import dmg.cells.nucleus.CellAddressCore;
+import dmg.cells.nucleus.CellIdentityAware;
+import dmg.cells.nucleus.CellInfoProvider;
+import dmg.cells.nucleus.CellLifeCycleAware;
+import dmg.cells.nucleus.CellMessageReceiver;
+import java.io.PrintWriter;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import javax.security.auth.Subject;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.nodes.PersistentNode;
+import org.apache.curator.utils.CloseableUtils;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException.NodeExistsException;
+import org.dcache.auth.Origin;
+import org.dcache.auth.attributes.Restriction;
+import org.dcache.cells.CuratorFrameworkAware;
+import org.dcache.events.Event;
+import org.dcache.events.NotificationMessage;
+import org.dcache.namespace.events.EventType;
+import org.dcache.namespace.events.InotifyEvent;
+import org.dcache.vehicles.FileAttributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * A cache of file attributes for use by doors.
+ * <p>
+ * Attributes are cached per file, per user and per restriction, as PnfsManager checks
+ * permissions when fetching attributes.  Cached attributes are kept coherent with the namespace
+ * through inotify events: the cache subscribes with the EventNotifier in PnfsManager to events for
+ * every cached file and directory and invalidates the affected entries when an event arrives.
+ * <p>
+ * Entries cached by path depend on the directories leading to the file.  Every such directory is
+ * watched as well, so that renaming or deleting a directory, or replacing an entry within a
+ * directory, invalidates the entries below it.
+ * <p>
+ * A lookup by path costs a single request to PnfsManager.  The result is only cached if the
+ * directories leading to the path are cached; otherwise these are fetched in the background.
+ * <p>
+ * Subscriptions are published through ZooKeeper.  PnfsManager does not acknowledge them; they are
+ * assumed to be in effect once a fixed propagation delay has passed after publishing.  An entry is
+ * only used if the subscriptions for all the objects it depends on were in effect before the
+ * attributes were fetched.  Until then, requests are passed on to PnfsManager.  Should the event
+ * notifier drop events, all entries are invalidated.
+ */
+public class FileAttributesCache implements CellMessageReceiver, CellInfoProvider,
+      CellIdentityAware, CellLifeCycleAware, CuratorFrameworkAware {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileAttributesCache.class);
+
+    /**
+     * Events on a file or directory that change its attributes.
+     */
+    private static final Set<EventType> SELF_EVENTS =
+          EnumSet.of(EventType.IN_ATTRIB, EventType.IN_MODIFY, EventType.IN_DELETE_SELF,
+                EventType.IN_MOVE_SELF);
+
+    /**
+     * Events on a directory that change the object a path refers to.
+     */
+    private static final Set<EventType> CHILD_EVENTS =
+          EnumSet.of(EventType.IN_CREATE, EventType.IN_DELETE, EventType.IN_MOVED_FROM,
+                EventType.IN_MOVED_TO);
+
+    private static final Set<EventType> SUBSCRIBED_EVENTS = Sets.union(SELF_EVENTS, CHILD_EVENTS);
+
+    /**
+     * Attributes always fetched, as they are needed to maintain the cache.
+     */
+    private static final Set<FileAttribute> REQUIRED_ATTRIBUTES = EnumSet.of(PNFSID, TYPE);
+
+    /**
+     * ZooKeeper limits the size of a node to about one megabyte.
+     */
+    private static final int MAXIMUM_SUBSCRIPTION_SIZE = 1000 * 1000;
+
+    /**
+     * Fetches file attributes from the namespace.
+     */
+    @FunctionalInterface
+    public interface Fetcher<T> {
+
+        FileAttributes fetch(T target, Set<FileAttribute> attributes) throws CacheException;
+    }
+
+    /**
+     * The cache key: the identity of the user, the restriction and the file, either by PNFS-ID or
+     * by path.
+     */
+    private static class Key {
+
+        private final Set<Principal> principals;
+        private final Restriction restriction;
+        private final PnfsId id;
+        private final FsPath path;
+
+        private Key(@Nullable Set<Principal> principals, @Nullable Restriction restriction,
+              @Nullable PnfsId id, @Nullable FsPath path) {
+            this.principals = principals;
+            this.restriction = restriction;
+            this.id = id;
+            this.path = path;
+        }
+
+        private Key withPath(FsPath path) {
+            return new Key(principals, restriction, null, path);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Objects.equals(id, other.id) && Objects.equals(path, other.path)
+                  && Objects.equals(principals, other.principals)
+                  && Objects.equals(restriction, other.restriction);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(principals, restriction, id, path);
+        }
+    }
+
+    /**
+     * Cached attributes together with what is needed to invalidate them.
+     */
+    private static class Entry {
+
+        private final FileAttributes attributes;
+        private final Set<FileAttribute> fetched;
+        private final long fetchedAt; // System#nanoTime when fetching started
+
+        /**
+         * The PNFS-IDs of the object and, for entries cached by path, of all directories on the
+         * path, starting with the root directory.  Null if these are not known, in which case
+         * the entry cannot be cached.
+         */
+        private final List<PnfsId> watched;
+
+        private Entry(FileAttributes attributes, Set<FileAttribute> fetched, long fetchedAt,
+              @Nullable List<PnfsId> ancestors) {
+            this.attributes = attributes;
+            this.fetched = fetched;
+            this.fetchedAt = fetchedAt;
+            this.watched = ancestors == null || !attributes.isDefined(PNFSID)
+                  ? null
+                  : ImmutableList.<PnfsId>builder()
+                        .addAll(ancestors).add(attributes.getPnfsId()).build();
+        }
+
+        private PnfsId id() {
+            return attributes.getPnfsId();
+        }
+
+        @Nullable
+        private PnfsId parent() {
+            int size = watched.size();
+            return size > 1 ? watched.get(size - 2) : null;
+        }
+    }
+
+    /**
+     * A published subscription to events of some object.
+     */
+    private static class Watch {
+
+        /**
+         * From when on, as given by System#nanoTime, events for this object are received.
+         */
+        private final long activeSince;
+
+        /**
+         * The sequence number of the last event received for this object.
+         */
+        private long lastEvent;
+
+        private Watch(long activeSince) {
+            this.activeSince = activeSince;
+        }
+    }
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder warmUps = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+    private final LongAdder lagCount = new LongAdder();
+    private final LongAdder lagSum = new LongAdder();
+    private final LongAccumulator lagMax = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Which keys depend on an object.
+     */
+    private final SetMultimap<PnfsId, Key> dependents = HashMultimap.create();
+
+    /**
+     * The published subscriptions.  Replaced as a whole when subscriptions are published.
+     */
+    private volatile Map<PnfsId, Watch> watches = new HashMap<>();
+
+    /**
+     * Counts received events, so that attributes fetched while an event was received are not
+     * cached.
+     */
+    private long sequence;
+    private long lastOverflow;
+    private boolean subscriptionsChanged;
+    private final AtomicBoolean isWarmingUp = new AtomicBoolean();
+
+    /**
+     * Publishing is retried every publish period; failures are only logged occasionally.
+     */
+    private final RateLimiter failureWarnings = RateLimiter.create(1.0 / 60);
+
+    private boolean isEnabled;
+    private long maximumSize = 10_000;
+    private long lifetime = 10;
+    private TimeUnit lifetimeUnit = TimeUnit.MINUTES;
+    private long propagationDelay = 1000;
+    private long publishPeriod = 500;
+    private boolean isInotifyGenerationEnabled = true;
+
+    private Cache<Key, Entry> entries;
+    private CuratorFramework curator;
+    private String subscriptionPath;
+    private PersistentNode subscriptions;
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> publisher;
+
+    public void setEnabled(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    /**
+     * Whether pnfsmanager generates inotify events.  Without these events, cached entries are
+     * never invalidated, hence the cache is not used if they are not generated.
+     */
+    public void setInotifyGenerationEnabled(boolean isEnabled) {
+        isInotifyGenerationEnabled = isEnabled;
+    }
+
+    public void setMaximumSize(long size) {
+        checkArgument(size > 0, "Size must be positive");
+        maximumSize = size;
+    }
+
+    /**
+     * The time after which entries are removed.  This bounds the effect of events lost for
+     * reasons the cache cannot detect.
+     */
+    public void setLifetime(long lifetime) {
+        checkArgument(lifetime > 0, "Lifetime must be positive");
+        this.lifetime = lifetime;
+    }
+
+    public void setLifetimeUnit(TimeUnit unit) {
+        lifetimeUnit = requireNonNull(unit);
+    }
+
+    /**
+     * The time in milliseconds after publishing a subscription until the event notifier is
+     * assumed to have received it.
+     */
+    public void setPropagationDelay(long delay) {
+        checkArgument(delay >= 0, "Delay must not be negative");
+        propagationDelay = delay;
+    }
+
+    @Required
+    public void setExecutor(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void setCuratorFramework(CuratorFramework client) {
+        curator = client;
+    }
+
+    @Override
+    public void setCellAddress(CellAddressCore address) {
+        subscriptionPath = ZKPaths.makePath(INOTIFY_PATH, address.toString());
+    }
+
+    @Override
+    public void afterStart() {
+        if (!isEnabled) {
+            return;
+        }
+        if (!isInotifyGenerationEnabled) {
+            LOGGER.warn("Not caching file attributes as the namespace does not generate "
+                  + "inotify events.");
+            isEnabled = false;
+            return;
+        }
+
+        entries = CacheBuilder.newBuilder()
+              .maximumSize(maximumSize)
+              .expireAfterWrite(lifetime, lifetimeUnit)
+              .removalListener(this::removed)
+              .build();
+
+        try {
+            curator.create().creatingParentsIfNeeded().withMode(CreateMode.PERSISTENT)
+                  .forPath(INOTIFY_PATH);
+        } catch (NodeExistsException e) {
+            // It is OK for the node to exist already.
+        } catch (Exception e) {
+            LOGGER.error("Unable to create 'inotify' node: {}", e.toString());
+        }
+
+        publisher = executor.scheduleWithFixedDelay(this::publishSubscriptions,
+              publishPeriod, publishPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void beforeStop() {
+        if (publisher != null) {
+            publisher.cancel(false);
+        }
+        CloseableUtils.closeQuietly(subscriptions);
+    }
+
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Returns the attributes of the object with the given PNFS-ID, fetching them with the fetcher
+     * if they are not cached.
+     */
+    public FileAttributes getFileAttributes(@Nullable Subject subject,
+          @Nullable Restriction restriction, PnfsId id, Set<FileAttribute> attributes,
+          Fetcher<PnfsId> fetcher) throws CacheException {
+        if (!isEnabled) {
+            return fetcher.fetch(id, attributes);
+        }
+
+        Key key = new Key(principals(subject), restriction, id, null);
+        Entry entry = entries.getIfPresent(key);
+        if (isUsable(entry, attributes)) {
+            hits.increment();
+            return entry.attributes.clone();
+        }
+
+        Set<FileAttribute> fetch = attributesToFetch(entry, attributes);
+        long fetchSequence = currentSequence();
+        long fetchedAt = System.nanoTime();
+        misses.increment();
+        FileAttributes fetched = fetcher.fetch(id, fetch);
+        if (fetched.isDefined(PNFSID) && fetched.getPnfsId().equals(id)) {
+            store(key, new Entry(fetched.clone(), fetch, fetchedAt, List.of()), fetchSequence);
+        }
+        return fetched;
+    }
+
+    /**
+     * Returns the attributes of the object with the given path, fetching them with the fetcher if
+     * they are not cached.
+     */
+    public FileAttributes getFileAttributes(@Nullable Subject subject,
+          @Nullable Restriction restriction, String path, Set<FileAttribute> attributes,
+          Fetcher<String> fetcher) throws CacheException {
+        if (!isEnabled || !path.startsWith("/")) {
+            return fetcher.fetch(path, attributes);
+        }
+
+        Key key = new Key(principals(subject), restriction, null, FsPath.create(path));
+        return lookup(key, attributes, fetcher).attributes.clone();
+    }
+
+    /**
+     * Looks up a path with a single request to PnfsManager.  The entry can only be cached if the
+     * directories leading to the path are cached, as the entry must be invalidated if any of them
+     * changes.  If they are not, they are fetched in the background, so that later lookups below
+     * these directories can be cached.
+     */
+    private Entry lookup(Key key, Set<FileAttribute> attributes, Fetcher<String> fetcher)
+          throws CacheException {
+        Entry entry = entries.getIfPresent(key);
+        if (isUsable(entry, attributes)) {
+            hits.increment();
+            return entry;
+        }
+
+        long fetchSequence = currentSequence();
+        @Nullable List<PnfsId> ancestors = cachedAncestors(key);
+        if (ancestors == null) {
+            warmUp(key.withPath(key.path.parent()), fetcher);
+        }
+        misses.increment();
+        return fetch(key, attributes, entry, ancestors, fetchSequence, fetcher);
+    }
+
+    /**
+     * Returns the PNFS-IDs of the directories leading to the path of the key, or null if these
+     * are not cached.
+     */
+    @Nullable
+    private List<PnfsId> cachedAncestors(Key key) {
+        if (key.path.isRoot()) {
+            return List.of();
+        }
+        Entry parent = entries.getIfPresent(key.withPath(key.path.parent()));
+        return isUsable(parent, REQUIRED_ATTRIBUTES) ? parent.watched : null;
+    }
+
+    /**
+     * Fetches the attributes of the path of the key.  The fetch sequence must have been taken
+     * before the ancestors were read from the cache, as the entry is otherwise stored even if one
+     * of the ancestors changed in the meantime.
+     */
+    private Entry fetch(Key key, Set<FileAttribute> attributes, @Nullable Entry cached,
+          @Nullable List<PnfsId> ancestors, long fetchSequence, Fetcher<String> fetcher)
+          throws CacheException {
+        Set<FileAttribute> fetch = attributesToFetch(cached, attributes);
+        long fetchedAt = System.nanoTime();
+        FileAttributes fetched = fetcher.fetch(key.path.toString(), fetch);
+        Entry fresh = new Entry(fetched, fetch, fetchedAt, ancestors);
+        if (fresh.watched != null) {
+            store(key, new Entry(fetched.clone(), fetch, fetchedAt, ancestors), fetchSequence);
+        }
+        return fresh;
+    }
+
+    /**
+     * Fetches a directory and the directories leading to it in the background.  At most one such
+     * warm-up runs at a time, so that it never occupies more than one thread of the executor.
+     */
+    private void warmUp(Key directory, Fetcher<String> fetcher) {
+        if (!isWarmingUp.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    warmUpNow(directory, fetcher);
+                } catch (CacheException e) {
+                    LOGGER.debug("Failed to fetch attributes of {}: {}", directory.path,
+                          e.getMessage());
+                } catch (RuntimeException e) {
+                    LOGGER.error("Bug detected while fetching attributes of {}", directory.path,
+                          e);
+                } finally {
+                    isWarmingUp.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            isWarmingUp.set(false);
+        }
+    }
+
+    private Entry warmUpNow(Key key, Fetcher<String> fetcher) throws CacheException {
+        Entry entry = entries.getIfPresent(key);
+        if (isUsable(entry, REQUIRED_ATTRIBUTES)) {
+            return entry;
+        }
+        long fetchSequence = currentSequence();
+        List<PnfsId> ancestors = key.path.isRoot()
+              ? List.of()
+              : warmUpNow(key.withPath(key.path.parent()), fetcher).watched;
+        warmUps.increment();
+        return fetch(key, REQUIRED_ATTRIBUTES, entry, ancestors, fetchSequence, fetcher);
+    }
+
+    /**
+     * Removes all cached attributes of the object with the given PNFS-ID.  Used when the object
+     * is modified through this cell, so that the modification is visible without waiting for the
+     * event.
+     */
+    public synchronized void invalidate(PnfsId id) {
+        if (isEnabled) {
+            invalidate(dependents.get(id).stream()
+                  .filter(k -> isCachedAs(k, id))
+                  .collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Removes all cached attributes of the object with the given path, and of all objects below
+     * that path.
+     */
+    public void invalidate(FsPath path) {
+        if (isEnabled) {
+            entries.asMap().keySet().removeIf(k -> k.path != null && k.path.hasPrefix(path));
+        }
+    }
+
+    public void messageArrived(NotificationMessage message) {
+        if (isEnabled) {
+            message.forEachEvent(this::accept);
+        }
+    }
+
+    private void accept(Event event) {
+        switch (event.getCategory()) {
+            case "inotify":
+                accept((InotifyEvent) event);
+                break;
+
+            case "SYSTEM":
+                overflow();
+                break;
+        }
+    }
+
+    private synchronized void accept(InotifyEvent event) {
+        PnfsId target = event.getTarget();
+        if (target == null) {
+            return;
+        }
+
+        Watch watch = watches.get(target);
+        if (watch != null) {
+            watch.lastEvent = ++sequence;
+        }
+
+        Collection<Key> affected;
+        EventType type = event.getEventType();
+        String name = event.getName();
+        if (name == null) {
+            /* Changing the permissions of a directory affects which users may see the
+             * objects below it, hence the entries below a directory are invalidated as well.
+             */
+            if (type == EventType.IN_DELETE_SELF || type == EventType.IN_MOVE_SELF
+                  || event.getFileType() == FileType.DIR) {
+                affected = new ArrayList<>(dependents.get(target));
+            } else {
+                affected = dependents.get(target).stream()
+                      .filter(k -> isCachedAs(k, target))
+                      .collect(Collectors.toList());
+            }
+        } else if (CHILD_EVENTS.contains(type)) {
+            affected = dependents.get(target).stream()
+                  .filter(k -> isChildOf(k, target, name))
+                  .collect(Collectors.toList());
+        } else {
+            return;
+        }
+
+        if (!affected.isEmpty()) {
+            invalidate(affected);
+
+            long timestamp = event.getTimestamp();
+            if (timestamp > 0) {
+                long lag = Math.max(System.currentTimeMillis() - timestamp, 0);
+                lagCount.increment();
+                lagSum.add(lag);
+                lagMax.accumulate(lag);
+            }
+        }
+    }
+
+    private synchronized void overflow() {
+        LOGGER.warn("Events were lost; invalidating cached file attributes.");
+        lastOverflow = ++sequence;
+        overflows.increment();
+        entries.invalidateAll();
+    }
+
+    private void invalidate(Collection<Key> keys) {
+        invalidations.add(keys.size());
+        entries.invalidateAll(keys);
+    }
+
+    private boolean isCachedAs(Key key, PnfsId id) {
+        Entry entry = entries.getIfPresent(key);
+        return entry != null && entry.id().equals(id);
+    }
+
+    private boolean isChildOf(Key key, PnfsId parent, String name) {
+        Entry entry = entries.getIfPresent(key);
+        return entry != null && key.path != null && !key.path.isRoot()
+              && parent.equals(entry.parent()) && key.path.name().equals(name);
+    }
+
+    private boolean isUsable(@Nullable Entry entry, Set<FileAttribute> attributes) {
+        if (entry == null || !entry.fetched.containsAll(attributes)) {
+            return false;
+        }
+        Map<PnfsId, Watch> watches = this.watches;
+        for (PnfsId id : entry.watched) {
+            Watch watch = watches.get(id);
+            if (watch == null || watch.activeSince >= entry.fetchedAt) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<FileAttribute> attributesToFetch(@Nullable Entry entry,
+          Set<FileAttribute> attributes) {
+        EnumSet<FileAttribute> fetch = EnumSet.copyOf(REQUIRED_ATTRIBUTES);
+        fetch.addAll(attributes);
+        if (entry != null) {
+            fetch.addAll(entry.fetched);
+        }
+        return fetch;
+    }
+
+    private synchronized long currentSequence() {
+        return sequence;
+    }
+
+    /**
+     * Adds an entry unless an event was received for any of the objects the entry depends on
+     * after the attributes were fetched.
+     */
+    private synchronized void store(Key key, Entry entry, long fetchSequence) {
+        if (lastOverflow > fetchSequence) {
+            return;
+        }
+        for (PnfsId id : entry.watched) {
+            Watch watch = watches.get(id);
+            if (watch != null && watch.lastEvent > fetchSequence) {
+                return;
+            }
+        }
+
+        entries.put(key, entry);
+        for (PnfsId id : entry.watched) {
+            if (dependents.put(id, key) && dependents.get(id).size() == 1) {
+                subscriptionsChanged = true;
+            }
+        }
+    }
+
+    private synchronized void removed(RemovalNotification<Key, Entry> notification) {
+        Key key = notification.getKey();
+        Entry current = entries.asMap().get(key);
+        for (PnfsId id : notification.getValue().watched) {
+            if (current == null || !current.watched.contains(id)) {
+                dependents.remove(id, key);
+                if (!dependents.containsKey(id)) {
+                    subscriptionsChanged = true;
+                }
+            }
+        }
+    }
+
+    private void publishSubscriptions() {
+        Set<PnfsId> ids;
+        synchronized (this) {
+            if (!subscriptionsChanged) {
+                return;
+            }
+            subscriptionsChanged = false;
+            ids = ImmutableSet.copyOf(dependents.keySet());
+        }
+
+        try {
+            updateSubscriptions(ids);
+        } catch (Exception e) {
+            if (failureWarnings.tryAcquire()) {
+                LOGGER.warn("Failed to subscribe to namespace events: {}", e.toString());
+            } else {
+                LOGGER.debug("Failed to subscribe to namespace events: {}", e.toString());
+            }
+            synchronized (this) {
+                subscriptionsChanged = true;
+            }
+            return;
+        }
+
+        long activeSince = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(propagationDelay);
+        synchronized (this) {
+            Map<PnfsId, Watch> updated = new HashMap<>();
+            for (PnfsId id : ids) {
+                Watch watch = watches.get(id);
+                updated.put(id, watch == null ? new Watch(activeSince) : watch);
+            }
+            watches = updated;
+        }
+    }
+
+    @VisibleForTesting
+    void updateSubscriptions(Set<PnfsId> ids) throws Exception {
+        if (ids.isEmpty()) {
+            if (subscriptions != null) {
+                subscriptions.close();
+                subscriptions = null;
+            }
+            return;
+        }
+
+        byte[] data = EventNotifier.toZkData(
+              ids.stream().collect(Collectors.toMap(id -> id, id -> SUBSCRIBED_EVENTS)));
+        if (data.length > MAXIMUM_SUBSCRIPTION_SIZE) {
+            throw new IllegalStateException("Too many cached objects (" + ids.size()
+                  + ") to subscribe to their events; reduce the cache size.");
+        }
+
+        if (subscriptions == null) {
+            subscriptions = new PersistentNode(curator, CreateMode.EPHEMERAL, false,
+                  subscriptionPath, data);
+            subscriptions.start();
+            subscriptions.waitForInitialCreate(10, TimeUnit.SECONDS);
+        } else {
+            subscriptions.setData(data);
+        }
+    }
+
+    @VisibleForTesting
+    void runPublisher() {
+        publishSubscriptions();
+    }
+
+    @Nullable
+    private static Set<Principal> principals(@Nullable Subject subject) {
+        if (subject == null) {
+            return null;
+        }
+        /* The origin of a request does not affect the permissions in the namespace,
+         * but would prevent sharing entries between the clients of a user.
+         */
+        return subject.getPrincipals().stream()
+              .filter(p -> !(p instanceof Origin))
+              .collect(ImmutableSet.toImmutableSet());
+    }
+
+    @Override
+    public void getInfo(PrintWriter pw) {
+        if (!isEnabled) {
+            pw.println("File attribute cache: disabled");
+            return;
+        }
+
+        long hitCount = hits.sum();
+        long requestCount = hitCount + misses.sum();
+        long lags = lagCount.sum();
+        int watched = watches.size();
+
+        pw.println("File attribute cache:");
+        pw.println("    Entries       : " + entries.size() + " (max " + maximumSize + ")");
+        pw.println("    Watched       : " + watched);
+        pw.printf("    Hit ratio     : %.1f%% (%d of %d)%n",
+              requestCount == 0 ? 0.0 : 100.0 * hitCount / requestCount, hitCount, requestCount);
+        pw.println("    Warm-ups      : " + warmUps.sum());
+        pw.println("    Invalidations : " + invalidations.sum());
+        pw.println("    Overflows     : " + overflows.sum());
+        if (lags > 0) {
+            pw.println("    Lag           : " + lagSum.sum() / lags + " ms average, "
+                  + lagMax.get() + " ms max");
+        }
+    }
+}
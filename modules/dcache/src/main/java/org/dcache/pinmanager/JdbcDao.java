@@ -30,6 +30,7 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -43,6 +44,7 @@ import org.dcache.pinmanager.model.Pin;
 import org.dcache.util.SqlGlob;
 import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.JdbcUpdateAffectedIncorrectNumberOfRowsException;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.support.JdbcDaoSupport;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
@@ -373,6 +375,50 @@ public class JdbcDao extends JdbcDaoSupport implements PinDao {
         return toPin(u);
     }
 
+    @Override
+    public List<Pin> create(List<PinUpdate> updates) {
+        if (updates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<JdbcUpdate> us = new ArrayList<>(updates.size());
+        for (PinUpdate update : updates) {
+            JdbcUpdate u = (JdbcUpdate) update;
+            u.set("created_at", now);
+            us.add(u);
+        }
+        String insert = us.get(0).getInsert();
+        checkArgument(us.stream().allMatch(u -> u.getInsert().equals(insert)),
+              "All pins of a batch must set the same fields.");
+
+        return getJdbcTemplate().execute((ConnectionCallback<List<Pin>>) con -> {
+            try (PreparedStatement ps = con.prepareStatement("INSERT INTO pins " + insert,
+                  Statement.RETURN_GENERATED_KEYS)) {
+                for (JdbcUpdate u : us) {
+                    int i = 1;
+                    for (Object argument : u.getArguments()) {
+                        ps.setObject(i++, argument);
+                    }
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (JdbcUpdate u : us) {
+                        if (!keys.next()) {
+                            throw new SQLException("Missing generated key for batch insert.");
+                        }
+                        u.set("id", keys.getLong("id"));
+                    }
+                }
+            }
+            List<Pin> pins = new ArrayList<>(us.size());
+            for (JdbcUpdate u : us) {
+                pins.add(toPin(u));
+            }
+            return pins;
+        });
+    }
+
     private Pin toPin(JdbcUpdate update) {
         Timestamp createdAt = (Timestamp) update.get("created_at");
         Timestamp expiresAt = (Timestamp) update.get("expires_at");
@@ -1,6 +1,7 @@
 package org.dcache.pinmanager;
 
 import diskCacheV111.util.PnfsId;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -280,6 +281,19 @@ public class LoggingDao implements PinDao {
         return inner.create(u.inner);
     }
 
+    @Override
+    public List<Pin> create(List<PinUpdate> updates) {
+        List<PinUpdate> inners = new ArrayList<>(updates.size());
+        for (PinUpdate update : updates) {
+            LoggingPinUpdate u = (LoggingPinUpdate) update;
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Creating pin in database that{}.", u.getDescription(true));
+            }
+            inners.add(u.inner);
+        }
+        return inner.create(inners);
+    }
+
     @Override
     public List<Pin> get(PinCriterion criterion) {
         LoggingPinCriterion c = (LoggingPinCriterion) criterion;
@@ -1,5 +1,7 @@
 package org.dcache.pinmanager;
 
+import static java.util.stream.Collectors.toList;
+
 import diskCacheV111.util.PnfsId;
 import java.util.Date;
 import java.util.List;
@@ -33,6 +35,16 @@ public interface PinDao {
      */
     Pin create(PinUpdate update);
 
+    /**
+     * Creates new pins with the given field values. All updates must set the same fields.
+     * <p>
+     * Implementations are encouraged to create the pins in a single round trip to the
+     * database. The pins are returned in the order of the updates.
+     */
+    default List<Pin> create(List<PinUpdate> updates) {
+        return updates.stream().map(this::create).collect(toList());
+    }
+
     /**
      * Returns the pins matching a selection criterion.
      */
@@ -0,0 +1,163 @@
+package org.dcache.pinmanager;
+
+import static java.util.Objects.requireNonNull;
+
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.Message;
+import diskCacheV111.vehicles.ProtocolInfo;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.dcache.vehicles.FileAttributes;
+
+/**
+ * Requests pins for several files at once.
+ * <p>
+ * Each entry is pinned as if it had been submitted as an individual {@link
+ * PinManagerPinMessage}, but the pins of all entries are created in a single database
+ * transaction. The message is returned once every entry has either been pinned or has failed;
+ * the outcome of each entry is recorded in the entry itself. The message as a whole only fails
+ * if the batch could not be processed at all.
+ * <p>
+ * As entries are only pinned while the message is valid, a message without a sufficient time
+ * to live fails the entries of files that have to be staged. Clients requesting pins of files
+ * that may be on tape should rather use {@link #setReplyWhenStarted}, in which case the message
+ * is returned once the pins of all entries have been created, and the files are pinned
+ * independently of the message.
+ * <p>
+ * The bulk service and the SRM still pin each file with an individual {@link
+ * PinManagerPinMessage}, as their activities are performed per file.
+ */
+public class PinManagerBulkPinMessage extends Message {
+
+    private static final long serialVersionUID = 2384730963532316154L;
+
+    /**
+     * A single file to pin and the outcome of pinning it.
+     */
+    public static class Entry implements Serializable {
+
+        private static final long serialVersionUID = -6245367785474185962L;
+
+        private final FileAttributes _fileAttributes;
+        private final String _requestId;
+        private final long _lifetime;
+        private long _pinId;
+        private String _pool;
+        private Date _expirationTime;
+        private int _returnCode;
+        private Serializable _errorObject;
+
+        public Entry(FileAttributes fileAttributes, String requestId, long lifetime) {
+            _fileAttributes = requireNonNull(fileAttributes);
+            _requestId = requestId;
+            _lifetime = lifetime;
+        }
+
+        public FileAttributes getFileAttributes() {
+            return _fileAttributes;
+        }
+
+        public PnfsId getPnfsId() {
+            return _fileAttributes.getPnfsId();
+        }
+
+        public String getRequestId() {
+            return _requestId;
+        }
+
+        public long getLifetime() {
+            return _lifetime;
+        }
+
+        public long getPinId() {
+            return _pinId;
+        }
+
+        public String getPool() {
+            return _pool;
+        }
+
+        public Date getExpirationTime() {
+            return _expirationTime;
+        }
+
+        public int getReturnCode() {
+            return _returnCode;
+        }
+
+        public Serializable getErrorObject() {
+            return _errorObject;
+        }
+
+        public boolean isSuccessful() {
+            return _returnCode == 0;
+        }
+
+        void setResult(PinManagerPinMessage message) {
+            _pinId = message.getPinId();
+            _pool = message.getPool();
+            _expirationTime = message.getExpirationTime();
+            _returnCode = message.getReturnCode();
+            _errorObject = message.getErrorObject();
+        }
+
+        void setFailed(int rc, Serializable error) {
+            _returnCode = rc;
+            _errorObject = error;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + getPnfsId() + "," + _requestId + "," + _lifetime + "]";
+        }
+    }
+
+    private final List<Entry> _entries;
+    private final ProtocolInfo _protocolInfo;
+    private boolean _denyStaging;
+    private boolean _replyWhenStarted;
+
+    public PinManagerBulkPinMessage(List<Entry> entries, ProtocolInfo protocolInfo) {
+        _entries = new ArrayList<>(entries);
+        _protocolInfo = requireNonNull(protocolInfo);
+    }
+
+    public List<Entry> getEntries() {
+        return _entries;
+    }
+
+    public ProtocolInfo getProtocolInfo() {
+        return _protocolInfo;
+    }
+
+    public void setDenyStaging(boolean value) {
+        _denyStaging = value;
+    }
+
+    public boolean isStagingDenied() {
+        return _denyStaging;
+    }
+
+    /**
+     * Choose whether to wait for the pins to be established before returning. If true, the
+     * message is returned once a pin has been created for every entry. An entry then reports the
+     * id of its pin, while its pool and expiration time are only set if it resubmits a request
+     * that had already been pinned. Failures to pin are not reported.
+     *
+     * @param value whether to reply after the pinning tasks have been started.
+     */
+    public void setReplyWhenStarted(boolean value) {
+        _replyWhenStarted = value;
+    }
+
+    public boolean isReplyWhenStarted() {
+        return _replyWhenStarted;
+    }
+
+    @Override
+    public String toString() {
+        return "PinManagerBulkPinMessage[" + _entries.size() + " files," + _protocolInfo + "]";
+    }
+}
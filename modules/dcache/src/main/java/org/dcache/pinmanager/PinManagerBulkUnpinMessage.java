@@ -0,0 +1,106 @@
+package org.dcache.pinmanager;
+
+import static java.util.Objects.requireNonNull;
+
+import diskCacheV111.util.PnfsId;
+import diskCacheV111.vehicles.Message;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Requests the removal of pins of several files at once.
+ * <p>
+ * Each entry is treated like an individual {@link PinManagerUnpinMessage}, but all entries are
+ * processed in a single database transaction. The outcome of each entry is recorded in the entry
+ * itself; an entry the requester is not authorized to unpin does not prevent the other entries
+ * from being unpinned.
+ * <p>
+ * Only the pins are put into READY_TO_UNPIN in bulk. The sticky flags are cleared by the {@link
+ * UnpinProcessor} as for individual unpin requests, with one message per pin, as pools do not
+ * accept sticky flag changes of several files at once.
+ */
+public class PinManagerBulkUnpinMessage extends Message {
+
+    private static final long serialVersionUID = -3207562018840463497L;
+
+    /**
+     * The pins of a single file to remove and the outcome of removing them.
+     */
+    public static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 4728375823316045921L;
+
+        private final PnfsId _pnfsId;
+        private Long _pinId;
+        private String _requestId;
+        private int _returnCode;
+        private Serializable _errorObject;
+
+        public Entry(PnfsId pnfsId) {
+            _pnfsId = requireNonNull(pnfsId);
+        }
+
+        public Entry(PnfsId pnfsId, long pinId) {
+            this(pnfsId);
+            _pinId = pinId;
+        }
+
+        public PnfsId getPnfsId() {
+            return _pnfsId;
+        }
+
+        public Long getPinId() {
+            return _pinId;
+        }
+
+        public void setPinId(long pinId) {
+            _pinId = pinId;
+        }
+
+        public String getRequestId() {
+            return _requestId;
+        }
+
+        public void setRequestId(String requestId) {
+            _requestId = requestId;
+        }
+
+        public int getReturnCode() {
+            return _returnCode;
+        }
+
+        public Serializable getErrorObject() {
+            return _errorObject;
+        }
+
+        public boolean isSuccessful() {
+            return _returnCode == 0;
+        }
+
+        void setFailed(int rc, Serializable error) {
+            _returnCode = rc;
+            _errorObject = error;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + _requestId + "," + _pinId + "," + _pnfsId + "]";
+        }
+    }
+
+    private final List<Entry> _entries;
+
+    public PinManagerBulkUnpinMessage(List<Entry> entries) {
+        _entries = new ArrayList<>(entries);
+    }
+
+    public List<Entry> getEntries() {
+        return _entries;
+    }
+
+    @Override
+    public String toString() {
+        return "PinManagerBulkUnpinMessage[" + _entries.size() + " files]";
+    }
+}
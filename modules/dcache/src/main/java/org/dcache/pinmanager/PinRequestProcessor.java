@@ -3,6 +3,7 @@ package org.dcache.pinmanager;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.dcache.pinmanager.model.Pin.State.PINNED;
 import static org.dcache.pinmanager.model.Pin.State.PINNING;
@@ -18,22 +19,31 @@ import diskCacheV111.vehicles.Pool;
 import diskCacheV111.vehicles.PoolMgrSelectReadPoolMsg;
 import diskCacheV111.vehicles.PoolSetStickyMessage;
 import dmg.cells.nucleus.CellAddressCore;
+import dmg.cells.nucleus.CellInfoProvider;
 import dmg.cells.nucleus.CellMessageReceiver;
 import dmg.cells.nucleus.CellPath;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.PatternSyntaxException;
 import javax.security.auth.Subject;
 import org.dcache.cells.AbstractMessageCallback;
 import org.dcache.cells.CellStub;
 import org.dcache.cells.MessageReply;
+import org.dcache.commons.stats.RequestExecutionTimeGauges;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.pinmanager.model.Pin;
 import org.dcache.poolmanager.PoolManagerStub;
@@ -61,9 +71,14 @@ import org.springframework.transaction.annotation.Transactional;
  * entry will stay in PINNING until either explicitly unpinned or it expires.
  * <p>
  * Database operations are blocking. Communication with PoolManager and pools is asynchronous.
+ * <p>
+ * Bulk pin requests create the DB entries of all files in a single transaction using a batch
+ * insert. Files that can be pinned on a pool without involving PoolManager are grouped by pool,
+ * such that the pool name of all pins on the same pool is recorded in a single transaction
+ * before the sticky flags are created.
  */
 public class PinRequestProcessor
-      implements CellMessageReceiver {
+      implements CellMessageReceiver, CellInfoProvider {
 
     private static final Logger LOGGER =
           LoggerFactory.getLogger(PinRequestProcessor.class);
@@ -84,6 +99,9 @@ public class PinRequestProcessor
      */
     private static final long CLOCK_DRIFT_MARGIN = MINUTES.toMillis(30);
 
+    private static final String BULK_CREATE = "create";
+    private static final String BULK_COMPLETE = "complete";
+
     private ScheduledExecutorService _scheduledExecutor;
     private Executor _executor;
     private PinDao _dao;
@@ -96,6 +114,14 @@ public class PinRequestProcessor
 
     private PoolMonitor _poolMonitor;
 
+    /**
+     * Latency of bulk pin requests; one sample per batch.
+     */
+    private final RequestExecutionTimeGauges<String> _bulkGauges =
+          new RequestExecutionTimeGauges<>("Bulk pin requests");
+    private final LongAdder _bulkRequests = new LongAdder();
+    private final LongAdder _bulkEntries = new LongAdder();
+
     @Required
     public void setScheduledExecutor(ScheduledExecutorService executor) {
         _scheduledExecutor = executor;
@@ -190,6 +216,93 @@ public class PinRequestProcessor
         return reply;
     }
 
+    public MessageReply<PinManagerBulkPinMessage>
+    messageArrived(PinManagerBulkPinMessage message)
+          throws CacheException {
+        MessageReply<PinManagerBulkPinMessage> reply = new MessageReply<>();
+        BulkPinRequest request = new BulkPinRequest(message, reply);
+
+        List<PinManagerPinMessage> messages = new ArrayList<>(message.getEntries().size());
+        List<MessageReply<PinManagerPinMessage>> replies =
+              new ArrayList<>(message.getEntries().size());
+        for (PinManagerBulkPinMessage.Entry entry : message.getEntries()) {
+            PinManagerPinMessage msg = new PinManagerPinMessage(entry.getFileAttributes(),
+                  message.getProtocolInfo(), entry.getRequestId(), entry.getLifetime());
+            msg.setSubject(message.getSubject());
+            msg.setDenyStaging(message.isStagingDenied());
+            msg.setReplyWhenStarted(message.isReplyWhenStarted());
+            enforceLifetimeLimit(msg);
+            messages.add(msg);
+            replies.add(request.replyFor(entry));
+        }
+
+        long start = System.nanoTime();
+        List<PinTask> tasks = createTasks(messages, replies);
+        _bulkGauges.update(BULK_CREATE, NANOSECONDS.toMillis(System.nanoTime() - start));
+        _bulkRequests.increment();
+        _bulkEntries.add(messages.size());
+
+        if (message.isReplyWhenStarted()) {
+            /* Tasks do not reply in this case, thus the entries with a new pin are answered
+             * here; resubmissions of completed pins have already been answered.
+             */
+            for (int i = 0; i < messages.size(); i++) {
+                if (!replies.get(i).isDone()) {
+                    replies.get(i).reply(messages.get(i));
+                }
+            }
+        }
+
+        Map<String, List<PinTask>> tasksByPool = new LinkedHashMap<>();
+        Map<String, CellAddressCore> addresses = new LinkedHashMap<>();
+        for (PinTask task : tasks) {
+            try {
+                if (!task.getFileAttributes()
+                      .isDefined(PoolMgrSelectReadPoolMsg.getRequiredAttributes())) {
+                    rereadNameSpaceEntry(task);
+                } else {
+                    PoolSelector poolSelector =
+                          _poolMonitor.getPoolSelector(task.getFileAttributes(),
+                                task.getProtocolInfo(),
+                                null,
+                                Collections.EMPTY_SET);
+                    try {
+                        SelectedPool pool = poolSelector.selectPinPool();
+                        tasksByPool.computeIfAbsent(pool.name(), p -> new ArrayList<>())
+                              .add(task);
+                        addresses.put(pool.name(), pool.address());
+                    } catch (FileNotOnlineCacheException e) {
+                        askPoolManager(task);
+                    }
+                }
+            } catch (CacheException e) {
+                fail(task, e.getRc(), e.getMessage());
+            } catch (RuntimeException e) {
+                fail(task, CacheException.UNEXPECTED_SYSTEM_EXCEPTION, e.toString());
+            }
+        }
+
+        tasksByPool.forEach((pool, tasksOnPool) -> {
+            List<PinTask> updated;
+            try {
+                updated = setPool(tasksOnPool, pool);
+            } catch (RuntimeException e) {
+                tasksOnPool.forEach(
+                      t -> fail(t, CacheException.UNEXPECTED_SYSTEM_EXCEPTION, e.toString()));
+                return;
+            }
+            for (PinTask task : tasksOnPool) {
+                if (updated.contains(task)) {
+                    setStickyFlag(task, pool, addresses.get(pool));
+                } else {
+                    fail(task, CacheException.DEFAULT_ERROR_CODE, "Operation was aborted");
+                }
+            }
+        });
+
+        return reply;
+    }
+
     protected EnumSet<RequestContainerV5.RequestState>
     checkStaging(PinTask task) {
         if (task.isStagingDenied()) {
@@ -505,34 +618,81 @@ public class PinRequestProcessor
     @Transactional(isolation = REPEATABLE_READ)
     protected PinTask createTask(PinManagerPinMessage message,
           MessageReply<PinManagerPinMessage> reply) {
-        PnfsId pnfsId = message.getFileAttributes().getPnfsId();
+        if (isAlreadyPinned(message, reply)) {
+            return null;
+        }
+        Pin pin = _dao.create(newPin(message));
+        return new PinTask(message, reply, pin);
+    }
+
+    /**
+     * Bulk version of createTask. The DB entries of all new pins are created with a single batch
+     * insert.
+     *
+     * @return the tasks of the pins that were created
+     */
+    @Transactional(isolation = REPEATABLE_READ)
+    protected List<PinTask> createTasks(List<PinManagerPinMessage> messages,
+          List<MessageReply<PinManagerPinMessage>> replies) {
+        List<PinManagerPinMessage> created = new ArrayList<>(messages.size());
+        List<MessageReply<PinManagerPinMessage>> createdReplies = new ArrayList<>(messages.size());
+        List<PinDao.PinUpdate> updates = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            PinManagerPinMessage message = messages.get(i);
+            MessageReply<PinManagerPinMessage> reply = replies.get(i);
+            if (!isAlreadyPinned(message, reply)) {
+                created.add(message);
+                createdReplies.add(reply);
+                updates.add(newPin(message));
+            }
+        }
 
+        List<Pin> pins = _dao.create(updates);
+
+        List<PinTask> tasks = new ArrayList<>(pins.size());
+        for (int i = 0; i < pins.size(); i++) {
+            PinManagerPinMessage message = created.get(i);
+            if (message.isReplyWhenStarted()) {
+                message.setPinId(pins.get(i).getPinId());
+            }
+            tasks.add(new PinTask(message, createdReplies.get(i), pins.get(i)));
+        }
+        return tasks;
+    }
+
+    /**
+     * Checks whether the request is a resubmission of a previous request. If the previous pin
+     * completed then the request is answered with that pin. Otherwise the previous pin is
+     * aborted so that a new one can be created.
+     *
+     * @return true if the request has been answered, false if a new pin has to be created
+     */
+    private boolean isAlreadyPinned(PinManagerPinMessage message,
+          MessageReply<PinManagerPinMessage> reply) {
         if (message.getRequestId() != null) {
+            PnfsId pnfsId = message.getFileAttributes().getPnfsId();
             Pin pin = _dao.get(_dao.where().pnfsId(pnfsId).requestId(message.getRequestId()));
             if (pin != null) {
-                /* In this case the request is a resubmission. If the
-                 * previous pin completed then use it. Otherwise abort the
-                 * previous pin and create a new one.
-                 */
                 if (pin.getState() == PINNED) {
                     message.setPin(pin);
                     reply.reply(message);
-                    return null;
+                    return true;
                 }
 
                 _dao.update(pin, _dao.set().state(READY_TO_UNPIN).requestId(null));
             }
         }
+        return false;
+    }
 
-        Pin pin = _dao.create(_dao.set()
+    private PinDao.PinUpdate newPin(PinManagerPinMessage message) {
+        return _dao.set()
               .subject(message.getSubject())
               .state(PINNING)
-              .pnfsId(pnfsId)
+              .pnfsId(message.getFileAttributes().getPnfsId())
               .requestId(message.getRequestId())
               .sticky("PinManager-" + UUID.randomUUID().toString())
-              .expirationTime(getExpirationTimeForPoolSelection()));
-
-        return new PinTask(message, reply, pin);
+              .expirationTime(getExpirationTimeForPoolSelection());
     }
 
     private void updateTask(PinTask task, PinDao.PinUpdate update) throws CacheException {
@@ -561,6 +721,26 @@ public class PinRequestProcessor
         updateTask(task, _dao.set().expirationTime(getExpirationTimeForSettingFlag()).pool(pool));
     }
 
+    /**
+     * Records the pool of several tasks in a single transaction.
+     *
+     * @return the tasks that were updated; the others are no longer in PINNING
+     */
+    @Transactional(isolation = REPEATABLE_READ)
+    protected List<PinTask> setPool(List<PinTask> tasks, String pool) {
+        Date expirationTime = getExpirationTimeForSettingFlag();
+        List<PinTask> updated = new ArrayList<>(tasks.size());
+        for (PinTask task : tasks) {
+            try {
+                updateTask(task, _dao.set().expirationTime(expirationTime).pool(pool));
+                updated.add(task);
+            } catch (CacheException e) {
+                LOGGER.debug("Not pinning {}: {}", task.getPnfsId(), e.getMessage());
+            }
+        }
+        return updated;
+    }
+
     @Transactional(isolation = REPEATABLE_READ)
     protected void setToPinned(PinTask task)
           throws CacheException {
@@ -594,4 +774,60 @@ public class PinRequestProcessor
             _dao.delete(task.getPin());
         }
     }
+
+    @Override
+    public void getInfo(PrintWriter pw) {
+        pw.println("Bulk pin requests: " + _bulkRequests.sum()
+              + " (" + _bulkEntries.sum() + " files)");
+        pw.println(_bulkGauges);
+    }
+
+    /**
+     * Tracks the completion of the entries of a bulk pin request. The request is answered once
+     * every entry has been answered.
+     */
+    private class BulkPinRequest {
+
+        private final PinManagerBulkPinMessage _message;
+        private final MessageReply<PinManagerBulkPinMessage> _reply;
+        private final AtomicInteger _remaining;
+        private final long _start = System.nanoTime();
+
+        BulkPinRequest(PinManagerBulkPinMessage message,
+              MessageReply<PinManagerBulkPinMessage> reply) {
+            _message = message;
+            _reply = reply;
+            _remaining = new AtomicInteger(message.getEntries().size());
+            if (_remaining.get() == 0) {
+                _reply.reply(_message);
+            }
+        }
+
+        MessageReply<PinManagerPinMessage> replyFor(PinManagerBulkPinMessage.Entry entry) {
+            return new MessageReply<>() {
+                @Override
+                public boolean isValidIn(long delay) {
+                    return _reply.isValidIn(delay);
+                }
+
+                @Override
+                public synchronized void reply(PinManagerPinMessage msg) {
+                    boolean isFirstReply = !isDone();
+                    super.reply(msg);
+                    if (isFirstReply) {
+                        entry.setResult(msg);
+                        entryDone();
+                    }
+                }
+            };
+        }
+
+        private void entryDone() {
+            if (_remaining.decrementAndGet() == 0) {
+                _bulkGauges.update(BULK_COMPLETE,
+                      NANOSECONDS.toMillis(System.nanoTime() - _start));
+                _reply.reply(_message);
+            }
+        }
+    }
 }
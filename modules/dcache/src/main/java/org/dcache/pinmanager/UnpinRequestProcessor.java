@@ -4,6 +4,7 @@ import diskCacheV111.util.CacheException;
 import diskCacheV111.util.PermissionDeniedCacheException;
 import diskCacheV111.util.PnfsId;
 import dmg.cells.nucleus.CellMessageReceiver;
+import javax.security.auth.Subject;
 import org.dcache.pinmanager.model.Pin;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,34 +39,70 @@ public class UnpinRequestProcessor
     @Transactional
     public PinManagerUnpinMessage messageArrived(PinManagerUnpinMessage message)
           throws CacheException {
-        PnfsId pnfsId = message.getPnfsId();
-        if (message.getPinId() != null) {
-            unpin(message, _dao.get(_dao.where().pnfsId(pnfsId).id(message.getPinId())));
-        } else if (message.getRequestId() != null) {
-            unpin(message, _dao.get(_dao.where().pnfsId(pnfsId).requestId(message.getRequestId())));
+        Pin pin = unpin(message.getSubject(), message.getPnfsId(), message.getPinId(),
+              message.getRequestId());
+        if (pin != null) {
+            message.setPinId(pin.getPinId());
+            message.setRequestId(pin.getRequestId());
+        }
+        return message;
+    }
+
+    /**
+     * Unpins all entries of the message in a single transaction. Failures are recorded per
+     * entry and do not affect the other entries.
+     */
+    @Transactional
+    public PinManagerBulkUnpinMessage messageArrived(PinManagerBulkUnpinMessage message) {
+        for (PinManagerBulkUnpinMessage.Entry entry : message.getEntries()) {
+            try {
+                Pin pin = unpin(message.getSubject(), entry.getPnfsId(), entry.getPinId(),
+                      entry.getRequestId());
+                if (pin != null) {
+                    entry.setPinId(pin.getPinId());
+                    entry.setRequestId(pin.getRequestId());
+                }
+            } catch (CacheException e) {
+                entry.setFailed(e.getRc(), e.getMessage());
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Puts the pins selected by the arguments into READY_TO_UNPIN. If neither a pin id nor a
+     * request id is given, all pins of the file the subject is authorized to remove are
+     * unpinned.
+     *
+     * @return the unpinned pin if a single pin was selected and unpinned, null otherwise
+     */
+    private Pin unpin(Subject subject, PnfsId pnfsId, Long pinId, String requestId)
+          throws CacheException {
+        if (pinId != null) {
+            return unpin(subject, _dao.get(_dao.where().pnfsId(pnfsId).id(pinId)));
+        } else if (requestId != null) {
+            return unpin(subject, _dao.get(_dao.where().pnfsId(pnfsId).requestId(requestId)));
         } else {
             for (Pin pin : _dao.get(_dao.where().pnfsId(pnfsId))) {
-                if (_pdp.canUnpin(message.getSubject(), pin)) {
+                if (_pdp.canUnpin(subject, pin)) {
                     _dao.update(pin, _dao.set().state(Pin.State.READY_TO_UNPIN));
                 }
             }
+            return null;
         }
-        return message;
     }
 
-    private void unpin(PinManagerUnpinMessage message, Pin pin)
+    private Pin unpin(Subject subject, Pin pin)
           throws CacheException {
         if (pin != null) {
-            if (!_pdp.canUnpin(message.getSubject(), pin)) {
+            if (!_pdp.canUnpin(subject, pin)) {
                 throw new PermissionDeniedCacheException("Access denied");
             }
             pin = _dao.update(pin, _dao.set().state(Pin.State.READY_TO_UNPIN));
             if (pin != null) {
-                message.setPinId(pin.getPinId());
-                message.setRequestId(pin.getRequestId());
-
                 LOGGER.info("Unpinned {} ({})", pin.getPnfsId(), pin.getPinId());
             }
         }
+        return pin;
     }
 }
@@ -40,6 +40,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Streams;
+import com.google.common.util.concurrent.RateLimiter;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FileCorruptedCacheException;
 import dmg.cells.nucleus.CellCommandListener;
@@ -64,13 +65,16 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.GuardedBy;
 import org.dcache.pool.PoolDataBeanProvider;
 import org.dcache.pool.classic.json.ChecksumModuleData;
+import org.dcache.pool.movers.ReadChecksumChannel;
 import org.dcache.pool.repository.FileStore;
+import org.dcache.pool.repository.ForwardingRepositoryChannel;
 import org.dcache.pool.repository.ModifiableReplicaDescriptor;
 import org.dcache.pool.repository.ReplicaDescriptor;
 import org.dcache.pool.repository.ReplicaRecord;
@@ -98,7 +102,7 @@ public class ChecksumModuleV1
      */
     enum PolicyFlag {
         /**
-         * Validate checksum on file read. Not implemented.
+         * Validate checksum while file is read sequentially by a client.
          */
         ON_READ,
 
@@ -142,10 +146,35 @@ public class ChecksumModuleV1
 
     private double _throughputLimit = Double.POSITIVE_INFINITY;
     private long _scrubPeriod = TimeUnit.HOURS.toMillis(24L);
+    private int _scrubWorkers = 1;
     private EnumSet<ChecksumType> _defaultChecksumType = EnumSet.of(ADLER32);
 
     private final CopyOnWriteArrayList<Runnable> listeners = new CopyOnWriteArrayList<>();
 
+    private final LongAdder _readVerifiedFiles = new LongAdder();
+    private final LongAdder _readVerifiedBytes = new LongAdder();
+    private final LongAdder _readSkipped = new LongAdder();
+    private final LongAdder _readCorrupted = new LongAdder();
+
+    private final ReadChecksumChannel.Listener _readVerificationListener =
+          new ReadChecksumChannel.Listener() {
+              @Override
+              public void verified(long bytes) {
+                  _readVerifiedFiles.increment();
+                  _readVerifiedBytes.add(bytes);
+              }
+
+              @Override
+              public void skipped() {
+                  _readSkipped.increment();
+              }
+
+              @Override
+              public void corrupted(Set<Checksum> expected, Set<Checksum> actual) {
+                  _readCorrupted.increment();
+              }
+          };
+
     public void addListener(Runnable listener) {
         listeners.add(listener);
     }
@@ -162,6 +191,10 @@ public class ChecksumModuleV1
         return _throughputLimit;
     }
 
+    public synchronized int getScrubWorkers() {
+        return _scrubWorkers;
+    }
+
     @Override
     public synchronized void printSetup(PrintWriter pw) {
         pw.println("csm set checksumtype " + defaultChecksumTypes());
@@ -169,7 +202,8 @@ public class ChecksumModuleV1
             pw.print("csm set policy -scrub=on");
             pw.print(" -limit=" +
                   (Double.isInfinite(_throughputLimit) ? "off" : BYTES.toMiB(_throughputLimit)));
-            pw.println(" -period=" + TimeUnit.MILLISECONDS.toHours(_scrubPeriod));
+            pw.print(" -period=" + TimeUnit.MILLISECONDS.toHours(_scrubPeriod));
+            pw.println(" -workers=" + _scrubWorkers);
         } else {
             pw.println("csm set policy -scrub=off");
         }
@@ -202,6 +236,15 @@ public class ChecksumModuleV1
     @Override
     public synchronized void getInfo(PrintWriter pw) {
         getDataObject().print(pw);
+        if (hasPolicy(ON_READ)) {
+            pw.println(readVerificationStatistics());
+        }
+    }
+
+    private String readVerificationStatistics() {
+        return "  Verified on read      : " + _readVerifiedFiles.sum() + " files, "
+              + _readVerifiedBytes.sum() + " bytes; " + _readSkipped.sum()
+              + " partial reads skipped, " + _readCorrupted.sum() + " corrupted";
     }
 
     @Override
@@ -235,6 +278,9 @@ public class ChecksumModuleV1
               append("    enforce crc : ").append(getPolicy(ENFORCE_CRC)).append("\n").
               append("  getcrcfromhsm : ").append(getPolicy(GET_CRC_FROM_HSM)).append("\n").
               append("          scrub : ").append(getPolicy(SCRUB)).append("\n");
+        if (hasPolicy(ON_READ)) {
+            sb.append(readVerificationStatistics()).append("\n");
+        }
         if (hasPolicy(SCRUB)) {
             if (Double.isInfinite(_throughputLimit)) {
                 sb.append("             limit  = off\n");
@@ -244,6 +290,7 @@ public class ChecksumModuleV1
             }
             sb.append("             period = ").append(TimeUnit.MILLISECONDS.toHours(_scrubPeriod))
                   .append(" hours\n");
+            sb.append("            workers = ").append(_scrubWorkers).append("\n");
         }
         return sb.toString();
     }
@@ -282,9 +329,20 @@ public class ChecksumModuleV1
               metaVar = "hours")
         Integer period;
 
+        @Option(name = "workers",
+              category = "Scrubber options",
+              usage = "Number of files the scrubber verifies concurrently. Files on different " +
+                    "devices are preferred, and fewer workers are used while clients are " +
+                    "transferring files. The throughput limit applies to all workers together.",
+              metaVar = "count")
+        Integer workers;
+
         @Option(name = "onread",
               category = "Transfer options",
-              usage = "Not implemented.",
+              usage = "Verify the checksum while a client reads the file. Only files read " +
+                    "completely and sequentially are verified; the data is digested as it is " +
+                    "sent, thus the file is not read a second time. A mismatch marks the replica " +
+                    "as broken.",
               values = {"", "on", "off"},
               valueSpec = "on|off")
         String onRead;
@@ -391,6 +449,13 @@ public class ChecksumModuleV1
                     }
                     _scrubPeriod = value;
                 }
+
+                if (workers != null) {
+                    if (workers <= 0) {
+                        throw new IllegalArgumentException("Number of scrub workers must be > 0");
+                    }
+                    _scrubWorkers = workers;
+                }
             }
             listeners.forEach(Runnable::run);
             return verbose ? getPolicies() : "";
@@ -437,6 +502,17 @@ public class ChecksumModuleV1
         return hasPolicy(SCRUB);
     }
 
+    public boolean isVerifyOnReadEnabled() {
+        return hasPolicy(ON_READ);
+    }
+
+    /**
+     * Returns the listener that accounts for checksums verified on read.
+     */
+    public ReadChecksumChannel.Listener getReadVerificationListener() {
+        return _readVerificationListener;
+    }
+
     private synchronized boolean hasPolicy(PolicyFlag flag) {
         return _policy.contains(flag);
     }
@@ -535,10 +611,30 @@ public class ChecksumModuleV1
         }
     }
 
-    public Collection<Checksum> verifyChecksumWithThroughputLimit(ReplicaDescriptor handle)
+    /**
+     * Verifies the checksums of a replica, reading it no faster than the rate limiter permits,
+     * at one permit per byte.  As the limiter may be shared, it can bound the combined throughput
+     * of several concurrent verifications.
+     */
+    public Collection<Checksum> verifyChecksum(ReplicaDescriptor handle, RateLimiter limiter)
           throws IOException, InterruptedException, CacheException {
-        try (RepositoryChannel channel = handle.createChannel()) {
-            return verifyChecksum(channel, handle.getChecksums(), getThroughputLimit());
+        try (RepositoryChannel inner = handle.createChannel()) {
+            RepositoryChannel channel = new ForwardingRepositoryChannel() {
+                @Override
+                protected RepositoryChannel delegate() {
+                    return inner;
+                }
+
+                @Override
+                public int read(ByteBuffer buffer, long position) throws IOException {
+                    int n = super.read(buffer, position);
+                    if (n > 0) {
+                        limiter.acquire(n);
+                    }
+                    return n;
+                }
+            };
+            return verifyChecksum(channel, handle.getChecksums(), Double.POSITIVE_INFINITY);
         }
     }
 
@@ -4,8 +4,14 @@ import static com.google.common.base.Strings.isNullOrEmpty;
 import static dmg.util.CommandException.checkCommand;
 import static java.util.Objects.requireNonNull;
 import static org.dcache.util.Exceptions.messageOrClassName;
-
-import com.google.common.collect.Iterables;
+import static org.dcache.util.Strings.humanReadableSize;
+import static org.dcache.util.TimeUtils.TimeUnitFormat.SHORT;
+import static org.dcache.util.TimeUtils.duration;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sun.nio.file.ExtendedOpenOption;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.FileCorruptedCacheException;
@@ -21,27 +27,51 @@ import dmg.util.command.Command;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.annotation.Nullable;
 import org.dcache.alarms.AlarmMarkerFactory;
 import org.dcache.alarms.PredefinedAlarm;
+import org.dcache.pool.repository.FileStore;
 import org.dcache.pool.repository.ReplicaDescriptor;
 import org.dcache.pool.repository.ReplicaState;
 import org.dcache.pool.repository.Repository;
 import org.dcache.pool.repository.Repository.OpenFlags;
+import org.dcache.pool.repository.SpaceRecord;
 import org.dcache.util.Checksum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,8 +86,12 @@ public class ChecksumScanner
     private final Scrubber _scrubber = new Scrubber();
     private final SingleScan _singleScan = new SingleScan();
 
+    private static final Object UNKNOWN_DEVICE = new Object();
+
     private Repository _repository;
     private ChecksumModuleV1 _csm;
+    private FileStore _fileStore;
+    private IoQueueManager _ioQueueManager;
     private String poolName;
 
     private File _scrubberStateFile;
@@ -99,6 +133,14 @@ public class ChecksumScanner
         _csm = csm;
     }
 
+    public void setFileStore(FileStore fileStore) {
+        _fileStore = fileStore;
+    }
+
+    public void setIoQueueManager(IoQueueManager ioQueueManager) {
+        _ioQueueManager = ioQueueManager;
+    }
+
     public void setScrubberStateFile(File path) {
         _scrubberStateFile = path;
     }
@@ -223,10 +265,40 @@ public class ChecksumScanner
         private final long FAILURE_RATELIMIT_DELAY =
               TimeUnit.SECONDS.toMillis(10);
 
-        private volatile int _badCount;
+        /**
+         * Maximum number of files selected from the repository with one pass over it.
+         */
+        private final int SELECTION_SIZE = 1_000_000;
+
+        /**
+         * Maximum number of files verified by the workers before they are joined.
+         */
+        private final int BATCH_SIZE = 10_000;
+
+        /**
+         * How often the load of the pool is sampled while files are verified.
+         */
+        private final long LOAD_SAMPLE_INTERVAL = TimeUnit.SECONDS.toMillis(1);
+
+        /**
+         * The smallest fraction of the throughput limit used while clients are active.
+         */
+        private final double MIN_LOAD_FACTOR = 0.1;
+
+        private final AtomicInteger _badCount = new AtomicInteger();
+        private final AtomicInteger _totalCount = new AtomicInteger();
+        private final AtomicInteger _unableCount = new AtomicInteger();
+        private final LongAdder _bytesVerified = new LongAdder();
         private volatile int _numFiles;
-        private volatile int _totalCount;
-        private volatile int _unableCount;
+        private volatile long _numBytes;
+        private volatile long _scanStart;
+
+        /**
+         * Bounds the combined throughput of all workers.
+         */
+        private final RateLimiter _limiter = RateLimiter.create(Double.POSITIVE_INFINITY);
+        private volatile double _loadFactor = 1.0;
+        private volatile int _allowedWorkers = 1;
 
         private PnfsId _lastFileChecked;
         private long _lastCheckpoint;
@@ -354,13 +426,13 @@ public class ChecksumScanner
                     }
 
                     try {
-                        PnfsId[] toScan = getFilesToVerify();
-                        _numFiles = toScan.length;
-                        _badCount = 0;
-                        _totalCount = 0;
-                        _unableCount = 0;
-                        scanFiles(toScan);
-                        if (_badCount > 0) {
+                        _badCount.set(0);
+                        _totalCount.set(0);
+                        _unableCount.set(0);
+                        _bytesVerified.reset();
+                        _scanStart = System.currentTimeMillis();
+                        scanFiles();
+                        if (_badCount.get() > 0) {
                             LOGGER.warn("Finished scrubbing. Found {} bad files of {}",
                                   _badCount, _numFiles);
                         }
@@ -386,34 +458,16 @@ public class ChecksumScanner
         }
 
         /**
-         * Return array of pnfs id's that has not yet been verified. Any files added to the pool
-         * after this array has been generated will be included the next time the array is
-         * generated.
-         *
-         * @return array of pnfs id's that needs to be verified. No check is done on in which state
-         * the files are in.
+         * Records the number of files not yet verified in this scrub and estimates their size
+         * from the space used by the pool, rather than looking up every file.
          */
-        private PnfsId[] getFilesToVerify() {
-            PnfsId[] repcopy = Iterables.toArray(_repository, PnfsId.class);
-            Arrays.sort(repcopy);
-
-            if (!isResuming()) {
-                return repcopy;
-            }
-
-            int index = Arrays.binarySearch(repcopy, _lastFileChecked);
-            if (index >= 0) {
-                /**
-                 * Found. 0 <= index <= repcopy.length - 1
-                 */
-                return Arrays.copyOfRange(repcopy, index + 1, repcopy.length);
-            } else {
-                /**
-                 * Not found. insertionPoint == -index - 1
-                 * where: 0 <= insertionPoint <= repcopy.length
-                 */
-                return Arrays.copyOfRange(repcopy, -index - 1, repcopy.length);
-            }
+        private void estimateRemaining(Selection selection) {
+            SpaceRecord space = _repository.getSpaceRecord();
+            long used = space.getTotalSpace() - space.getFreeSpace();
+            _numFiles = selection.remaining;
+            _numBytes = (selection.total == 0)
+                  ? 0
+                  : (long) (used * ((double) selection.remaining / selection.total));
         }
 
         /**
@@ -426,45 +480,330 @@ public class ChecksumScanner
             }
         }
 
-        private void scanFiles(PnfsId[] repository)
+        /**
+         * Verifies all files with a pnfs id greater than <code>_lastFileChecked</code> in order
+         * of their pnfs id, a batch at a time.  The repository is not ordered by pnfs id, hence
+         * selecting the files in order takes a pass over the whole repository.  To bound both
+         * the memory used and the number of passes, each pass selects up to
+         * <code>SELECTION_SIZE</code> files.  Files added to the pool while scrubbing are
+         * verified if their pnfs id follows the files selected so far.
+         */
+        private void scanFiles()
               throws InterruptedException, NoSuchAlgorithmException, IOException {
-            for (PnfsId id : repository) {
-                try {
-                    if (_repository.getState(id) == ReplicaState.CACHED ||
-                          _repository.getState(id) == ReplicaState.PRECIOUS) {
-                        ReplicaDescriptor handle = _repository.openEntry(id, getOpenOptions());
+            Selection selection = select(_repository, _lastFileChecked, SELECTION_SIZE);
+            estimateRemaining(selection);
+            while (selection.ids.length > 0) {
+                for (List<PnfsId> batch : Lists.partition(Arrays.asList(selection.ids),
+                      BATCH_SIZE)) {
+                    verifyBatch(new TreeSet<>(batch));
+                }
+                if (selection.remaining == selection.ids.length) {
+                    break;
+                }
+                selection = select(_repository, _lastFileChecked, SELECTION_SIZE);
+            }
+            _lastFileChecked = null;
+        }
+
+        /**
+         * Verifies a batch of files with several workers.  While the workers are busy, the
+         * number of active workers and the throughput limit are adjusted to the current load
+         * of the pool, and the position of the last file up to which all files were verified
+         * is checkpointed.
+         */
+        private void verifyBatch(NavigableSet<PnfsId> batch)
+              throws InterruptedException, IOException {
+            DeviceQueues queues = new DeviceQueues();
+            for (PnfsId id : batch) {
+                queues.add(getDevice(id), id);
+            }
+            NavigableSet<PnfsId> outstanding = new ConcurrentSkipListSet<>(batch);
+
+            int workers = _csm.getScrubWorkers();
+            adjustToLoad(workers);
+            ExecutorService executor = Executors.newFixedThreadPool(workers,
+                  new ThreadFactoryBuilder().setNameFormat("Scrubber-worker-%d").build());
+            try {
+                CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+                for (int i = 0; i < workers; i++) {
+                    int index = i;
+                    completion.submit(() -> {
+                        work(index, () -> _allowedWorkers, LOAD_SAMPLE_INTERVAL, queues, id -> {
+                            verify(id);
+                            outstanding.remove(id);
+                            _totalCount.incrementAndGet();
+                        });
+                        return null;
+                    });
+                }
+                int running = workers;
+                while (running > 0) {
+                    Future<Void> future =
+                          completion.poll(LOAD_SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (future != null) {
+                        running--;
                         try {
-                            _csm.verifyChecksumWithThroughputLimit(handle);
-                        } finally {
-                            handle.close();
+                            future.get();
+                        } catch (ExecutionException e) {
+                            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+                            Throwables.throwIfInstanceOf(e.getCause(), InterruptedException.class);
+                            Throwables.throwIfUnchecked(e.getCause());
+                            throw new RuntimeException(e.getCause());
                         }
                     }
-                } catch (FileCorruptedCacheException e) {
-                    _badCount++;
-                    invalidateCacheEntryAndSendAlarm(id, e);
-                } catch (IOException e) {
-                    _unableCount++;
-                    throw new IOException("Unable to read " + id + ": " + messageOrClassName(e), e);
-                } catch (FileNotInCacheException e) {
-                    /* It was removed before we could get it. No problem.
-                     */
-                } catch (CacheException e) {
-                    LOGGER.warn("Scrubber unable to verify {}: {}", id, e.getMessage());
-                    _unableCount++;
+                    adjustToLoad(workers);
+                    PnfsId first = outstanding.isEmpty() ? null : outstanding.first();
+                    PnfsId verified = (first == null) ? batch.last() : batch.lower(first);
+                    if (verified != null) {
+                        _lastFileChecked = verified;
+                    }
+                    checkpointIfNeeded();
                 }
-                _lastFileChecked = id;
-                _totalCount++;
-                checkpointIfNeeded();
+            } finally {
+                executor.shutdownNow();
             }
-            _lastFileChecked = null;
+        }
+
+        private void verify(PnfsId id) throws InterruptedException, IOException {
+            try {
+                if (_repository.getState(id) == ReplicaState.CACHED ||
+                      _repository.getState(id) == ReplicaState.PRECIOUS) {
+                    try (ReplicaDescriptor handle = _repository.openEntry(id, getOpenOptions())) {
+                        _csm.verifyChecksum(handle, _limiter);
+                        _bytesVerified.add(handle.getReplicaSize());
+                    }
+                }
+            } catch (FileCorruptedCacheException e) {
+                _badCount.incrementAndGet();
+                invalidateCacheEntryAndSendAlarm(id, e);
+            } catch (IOException e) {
+                _unableCount.incrementAndGet();
+                throw new IOException("Unable to read " + id + ": " + messageOrClassName(e), e);
+            } catch (FileNotInCacheException e) {
+                /* It was removed before we could get it. No problem.
+                 */
+            } catch (CacheException e) {
+                LOGGER.warn("Scrubber unable to verify {}: {}", id, e.getMessage());
+                _unableCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Scales the number of active workers and the throughput limit to the load of the
+         * pool.  While the pool has no active movers, all workers verify files at the
+         * configured throughput limit; as soon as clients are active, both are halved and
+         * reduced further as the mover queues fill up.
+         */
+        private void adjustToLoad(int workers) {
+            double load = getMoverLoad();
+            double factor = (load == 0) ? 1.0 : Math.max(MIN_LOAD_FACTOR, (1 - load) / 2);
+            _loadFactor = factor;
+            _allowedWorkers = Math.max(1, (int) Math.round(workers * factor));
+            _limiter.setRate(_csm.getThroughputLimit() * factor);
+        }
+
+        /**
+         * Returns the fraction of mover slots in use, from 0 when no movers are active to 1
+         * when all mover queues are saturated.
+         */
+        private double getMoverLoad() {
+            if (_ioQueueManager == null) {
+                return 0;
+            }
+            int active = 0;
+            int max = 0;
+            for (MoverRequestScheduler queue : _ioQueueManager.queues()) {
+                active += queue.getActiveJobs();
+                max += queue.getMaxActiveJobs();
+            }
+            if (active == 0) {
+                return 0;
+            }
+            return (max <= active) ? 1 : (double) active / max;
         }
 
         @Override
         public String toString() {
-            return super.toString() + " processed "
-                  + _totalCount + " of " + _numFiles + " files: "
-                  + _badCount + " corrupt, "
-                  + _unableCount + " unable to check";
+            StringBuilder sb = new StringBuilder();
+            sb.append(super.toString()).append(" processed ")
+                  .append(_totalCount).append(" of ").append(_numFiles).append(" files: ")
+                  .append(_badCount).append(" corrupt, ")
+                  .append(_unableCount).append(" unable to check");
+            if (isActive() && _scanStart > 0) {
+                long verified = _bytesVerified.sum();
+                long elapsed = Math.max(1, System.currentTimeMillis() - _scanStart);
+                double rate = verified * 1000.0 / elapsed;
+                sb.append("; ").append(humanReadableSize(verified)).append(" of ")
+                      .append(humanReadableSize(_numBytes)).append(" at ")
+                      .append(humanReadableSize((long) rate)).append("/s, ")
+                      .append(_allowedWorkers).append(" of ").append(_csm.getScrubWorkers())
+                      .append(" workers at ").append(Math.round(_loadFactor * 100))
+                      .append("% rate");
+                if (rate > 0 && verified < _numBytes) {
+                    long eta = (long) ((_numBytes - verified) / rate);
+                    sb.append(", ETA ").append(duration(eta, TimeUnit.SECONDS, SHORT));
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Returns the device a replica is stored on, or a common placeholder if the device
+     * cannot be determined.
+     */
+    private Object getDevice(PnfsId id) {
+        if (_fileStore != null) {
+            try {
+                URI uri = _fileStore.get(id);
+                if ("file".equals(uri.getScheme())) {
+                    return Files.getAttribute(Paths.get(uri), "unix:dev");
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Unable to determine device of {}: {}", id, e.toString());
+            }
+        }
+        return UNKNOWN_DEVICE;
+    }
+
+    /**
+     * The files selected for verification by a pass over the repository.
+     */
+    static class Selection {
+
+        /**
+         * The selected pnfs ids in ascending order.
+         */
+        final PnfsId[] ids;
+
+        /**
+         * The number of files in the repository.
+         */
+        final int total;
+
+        /**
+         * The number of files in the repository following the checkpoint, including those not
+         * selected.
+         */
+        final int remaining;
+
+        Selection(PnfsId[] ids, int total, int remaining) {
+            this.ids = ids;
+            this.total = total;
+            this.remaining = remaining;
+        }
+    }
+
+    /**
+     * Selects up to {@code size} of the smallest pnfs ids from {@code ids} that are greater than
+     * {@code after}.  If {@code after} is null, the smallest pnfs ids are selected.
+     */
+    static Selection select(Iterable<PnfsId> ids, @Nullable PnfsId after, int size) {
+        PriorityQueue<PnfsId> largestFirst = new PriorityQueue<>(Comparator.reverseOrder());
+        int total = 0;
+        int remaining = 0;
+        for (PnfsId id : ids) {
+            total++;
+            if (after == null || id.compareTo(after) > 0) {
+                remaining++;
+                if (largestFirst.size() < size) {
+                    largestFirst.add(id);
+                } else if (id.compareTo(largestFirst.peek()) < 0) {
+                    largestFirst.poll();
+                    largestFirst.add(id);
+                }
+            }
+        }
+        PnfsId[] selected = largestFirst.toArray(PnfsId[]::new);
+        Arrays.sort(selected);
+        return new Selection(selected, total, remaining);
+    }
+
+    @FunctionalInterface
+    interface Verifier {
+
+        void verify(PnfsId id) throws InterruptedException, IOException;
+    }
+
+    /**
+     * Verifies files taken from the queues until none are left.  A worker whose index is not
+     * below the number of allowed workers pauses.  It stops once no files are left to take, as
+     * the remaining files are then being verified by the other workers.
+     */
+    static void work(int index, IntSupplier allowedWorkers, long pause, DeviceQueues queues,
+          Verifier verifier) throws InterruptedException, IOException {
+        while (true) {
+            while (index >= allowedWorkers.getAsInt()) {
+                if (queues.isEmpty()) {
+                    return;
+                }
+                Thread.sleep(pause);
+            }
+            PnfsId id = queues.take();
+            if (id == null) {
+                return;
+            }
+            try {
+                verifier.verify(id);
+            } finally {
+                queues.done(id);
+            }
+        }
+    }
+
+    /**
+     * Files waiting to be verified, queued by the device they are stored on.  Files are taken
+     * from the device with the fewest verifications in progress, so that concurrent workers read
+     * from different devices where possible.  Within a device, files are taken in the order they
+     * were added.
+     */
+    static class DeviceQueues {
+
+        private final Map<Object, Deque<PnfsId>> _pending = new LinkedHashMap<>();
+        private final Map<Object, Integer> _inProgress = new HashMap<>();
+        private final Map<PnfsId, Object> _devices = new HashMap<>();
+
+        synchronized void add(Object device, PnfsId id) {
+            _pending.computeIfAbsent(device, d -> new ArrayDeque<>()).add(id);
+            _devices.put(id, device);
+        }
+
+        /**
+         * Returns whether all files have been taken.
+         */
+        synchronized boolean isEmpty() {
+            return _pending.values().stream().allMatch(Deque::isEmpty);
+        }
+
+        /**
+         * Returns the next file to verify, or null if no files are left.
+         */
+        @Nullable
+        synchronized PnfsId take() {
+            Object device = null;
+            int least = Integer.MAX_VALUE;
+            for (Map.Entry<Object, Deque<PnfsId>> e : _pending.entrySet()) {
+                int inProgress = _inProgress.getOrDefault(e.getKey(), 0);
+                if (!e.getValue().isEmpty() && inProgress < least) {
+                    device = e.getKey();
+                    least = inProgress;
+                }
+            }
+            if (device == null) {
+                return null;
+            }
+            _inProgress.merge(device, 1, Integer::sum);
+            return _pending.get(device).poll();
+        }
+
+        /**
+         * Signals that the verification of a file returned by {@link #take} has finished.
+         */
+        synchronized void done(PnfsId id) {
+            Object device = _devices.remove(id);
+            if (device != null) {
+                _inProgress.merge(device, -1, Integer::sum);
+            }
         }
     }
 
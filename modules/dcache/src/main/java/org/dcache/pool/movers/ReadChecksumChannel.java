@@ -0,0 +1,228 @@
+package org.dcache.pool.movers;
+
+import static org.dcache.util.ByteUnit.KiB;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import javax.annotation.concurrent.GuardedBy;
+import org.dcache.pool.repository.ForwardingRepositoryChannel;
+import org.dcache.pool.repository.RepositoryChannel;
+import org.dcache.util.Checksum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A wrapper for RepositoryChannel that verifies the checksums of a replica while it is read, as
+ * long as the replica is read sequentially.
+ * <p>
+ * Data is digested as it is returned to the reader, thus verification does not read the replica
+ * a second time.  Reads that overlap data already digested are accepted; a read that leaves a gap
+ * ends verification for this channel.  Transfers with {@link #transferTo} are copied through a
+ * buffer while they are sequential, and use zero-copy otherwise.
+ * <p>
+ * When the channel is closed after the whole replica was read, the digests are compared with the
+ * expected checksums and the outcome is reported to the registered listeners.
+ */
+public class ReadChecksumChannel extends ForwardingRepositoryChannel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReadChecksumChannel.class);
+
+    /**
+     * Receives the outcome of verifying a replica.
+     */
+    public interface Listener {
+
+        /**
+         * The replica was read completely and its checksums match.
+         */
+        default void verified(long bytes) {
+        }
+
+        /**
+         * The replica was not read completely or not sequentially, thus was not verified.
+         */
+        default void skipped() {
+        }
+
+        /**
+         * The replica was read completely and its checksums do not match.
+         */
+        default void corrupted(Set<Checksum> expected, Set<Checksum> actual) {
+        }
+    }
+
+    private final RepositoryChannel _channel;
+    private final Set<Checksum> _expected;
+    private final List<Listener> _listeners = new CopyOnWriteArrayList<>();
+
+    @GuardedBy("this")
+    private List<MessageDigest> _digests;
+
+    /**
+     * The offset up to which data has been digested.
+     */
+    @GuardedBy("this")
+    private long _verifiedOffset;
+
+    @GuardedBy("this")
+    private boolean _isClosed;
+
+    @GuardedBy("this")
+    private ByteBuffer _transferBuffer;
+
+    public ReadChecksumChannel(RepositoryChannel inner, Collection<Checksum> expected) {
+        _channel = inner;
+        _expected = ImmutableSet.copyOf(expected);
+        _digests = _expected.stream()
+              .map(c -> c.getType().createMessageDigest())
+              .collect(Collectors.toList());
+    }
+
+    public void addListener(Listener listener) {
+        _listeners.add(listener);
+    }
+
+    @Override
+    protected RepositoryChannel delegate() {
+        return _channel;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, long position) throws IOException {
+        ByteBuffer data = buffer.duplicate();
+        int bytes = _channel.read(buffer, position);
+        update(data, position, bytes);
+        return bytes;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        synchronized (this) {
+            long position = _channel.position();
+            ByteBuffer data = dst.duplicate();
+            int bytes = _channel.read(dst);
+            update(data, position, bytes);
+            return bytes;
+        }
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        synchronized (this) {
+            long position = _channel.position();
+            ByteBuffer[] data = new ByteBuffer[length];
+            for (int i = 0; i < length; i++) {
+                data[i] = dsts[offset + i].duplicate();
+            }
+            long bytes = _channel.read(dsts, offset, length);
+            long remaining = bytes;
+            for (ByteBuffer buffer : data) {
+                if (remaining <= 0) {
+                    break;
+                }
+                int n = (int) Math.min(buffer.remaining(), remaining);
+                update(buffer, position, n);
+                position += n;
+                remaining -= n;
+            }
+            return bytes;
+        }
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts) throws IOException {
+        return read(dsts, 0, dsts.length);
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target)
+          throws IOException {
+        synchronized (this) {
+            if (_digests == null || position != _verifiedOffset) {
+                stopVerification();
+                return _channel.transferTo(position, count, target);
+            }
+
+            if (_transferBuffer == null) {
+                _transferBuffer = ByteBuffer.allocate(KiB.toBytes(256));
+            }
+            _transferBuffer.clear();
+            _transferBuffer.limit((int) Math.min(_transferBuffer.capacity(), count));
+            int bytes = _channel.read(_transferBuffer, position);
+            if (bytes <= 0) {
+                return 0;
+            }
+            _transferBuffer.flip();
+            int written = target.write(_transferBuffer);
+            _transferBuffer.flip();
+            update(_transferBuffer, position, written);
+            return written;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!_isClosed) {
+            _isClosed = true;
+            try {
+                complete();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Failed to verify checksum on read: {}", e.toString());
+            }
+        }
+        super.close();
+    }
+
+    /**
+     * Digests the first {@code bytes} bytes of {@code data}, which were read from {@code
+     * position}.
+     */
+    private synchronized void update(ByteBuffer data, long position, int bytes) {
+        if (_digests == null || bytes <= 0) {
+            return;
+        }
+        if (position > _verifiedOffset) {
+            stopVerification();
+            return;
+        }
+        long end = position + bytes;
+        if (end <= _verifiedOffset) {
+            return;
+        }
+        data.limit(data.position() + bytes);
+        data.position(data.position() + (int) (_verifiedOffset - position));
+        _digests.forEach(d -> d.update(data.duplicate()));
+        _verifiedOffset = end;
+    }
+
+    @GuardedBy("this")
+    private void stopVerification() {
+        _digests = null;
+        _transferBuffer = null;
+    }
+
+    @GuardedBy("this")
+    private void complete() throws IOException {
+        if (_digests == null || _verifiedOffset != _channel.size()) {
+            _listeners.forEach(Listener::skipped);
+            return;
+        }
+
+        Set<Checksum> actual = _digests.stream()
+              .map(Checksum::new)
+              .collect(Collectors.toSet());
+        if (actual.equals(_expected)) {
+            _listeners.forEach(l -> l.verified(_verifiedOffset));
+        } else {
+            _listeners.forEach(l -> l.corrupted(_expected, actual));
+        }
+    }
+}
@@ -17,24 +17,29 @@
  */
 package org.dcache.pool.repository.checksums;
 
+import diskCacheV111.util.CacheException;
 import java.io.IOException;
 import java.nio.file.OpenOption;
 import java.util.HashSet;
 import java.util.Set;
+import org.dcache.pool.classic.ChecksumModuleV1;
 import org.dcache.pool.movers.ChecksumChannel;
+import org.dcache.pool.movers.ReadChecksumChannel;
 import org.dcache.pool.repository.ForwardingReplicaRecord;
 import org.dcache.pool.repository.ReplicaRecord;
 import org.dcache.pool.repository.RepositoryChannel;
+import org.dcache.util.Checksum;
 import org.dcache.util.ChecksumType;
 
 /**
  * Wrap some existing ReplicaRecord and add support for optionally wrapping a RepositoryChannel with
- * a ChecksumChannel.
+ * a ChecksumChannel or a ReadChecksumChannel.
  */
 public class ChecksumReplicaRecord extends ForwardingReplicaRecord {
 
     private final ReplicaRecord inner;
     private final Set<ChecksumType> defaultTypes;
+    private final ChecksumModuleV1 csm;
 
     public enum OpenFlags implements OpenOption {
         /**
@@ -42,12 +47,21 @@ public class ChecksumReplicaRecord extends ForwardingReplicaRecord {
          * This ChecksumChannel is available via the {@literal RepositoryChannel#optionallyAs}
          * method.
          */
-        ENABLE_CHECKSUM_CALCULATION;
+        ENABLE_CHECKSUM_CALCULATION,
+
+        /**
+         * Specifying this flag results in the ReplicaRecord being wrapped by a
+         * ReadChecksumChannel, provided that the checksum module verifies checksums on read and
+         * the replica has known checksums.
+         */
+        ENABLE_CHECKSUM_VERIFICATION;
     }
 
-    public ChecksumReplicaRecord(ReplicaRecord inner, Set<ChecksumType> defaultTypes) {
+    public ChecksumReplicaRecord(ReplicaRecord inner, Set<ChecksumType> defaultTypes,
+          ChecksumModuleV1 csm) {
         this.inner = inner;
         this.defaultTypes = defaultTypes;
+        this.csm = csm;
     }
 
     @Override
@@ -62,6 +76,25 @@ public class ChecksumReplicaRecord extends ForwardingReplicaRecord {
             Set<? extends OpenOption> innerMode = new HashSet<>(mode);
             innerMode.remove(OpenFlags.ENABLE_CHECKSUM_CALCULATION);
             return new ChecksumChannel(super.openChannel(innerMode), defaultTypes);
+        } else if (mode.contains(OpenFlags.ENABLE_CHECKSUM_VERIFICATION)) {
+            Set<? extends OpenOption> innerMode = new HashSet<>(mode);
+            innerMode.remove(OpenFlags.ENABLE_CHECKSUM_VERIFICATION);
+            RepositoryChannel channel = super.openChannel(innerMode);
+            if (!csm.isVerifyOnReadEnabled()) {
+                return channel;
+            }
+            Set<Checksum> checksums;
+            try {
+                checksums = getFileAttributes().getChecksumsIfPresent().orElse(Set.of());
+            } catch (CacheException e) {
+                checksums = Set.of();
+            }
+            if (checksums.isEmpty()) {
+                return channel;
+            }
+            ReadChecksumChannel verifying = new ReadChecksumChannel(channel, checksums);
+            verifying.addListener(csm.getReadVerificationListener());
+            return verifying;
         } else {
             return super.openChannel(mode);
         }
@@ -29,7 +29,7 @@ import org.dcache.pool.repository.ReplicaStore;
 
 /**
  * This class wraps some existing ReplicaStore and adds support for on-the-fly checksum
- * calculation.
+ * calculation and verification.
  */
 public class ChecksumReplicaStore extends ForwardingReplicaStore {
 
@@ -46,9 +46,18 @@ public class ChecksumReplicaStore extends ForwardingReplicaStore {
         return inner;
     }
 
+    @Override
+    public ReplicaRecord get(PnfsId id) throws CacheException {
+        ReplicaRecord record = super.get(id);
+        return record == null
+              ? null
+              : new ChecksumReplicaRecord(record, csm.getDefaultChecksumTypes(), csm);
+    }
+
     @Override
     public ReplicaRecord create(PnfsId id, Set<? extends OpenOption> flags)
           throws DuplicateEntryException, CacheException {
-        return new ChecksumReplicaRecord(super.create(id, flags), csm.getDefaultChecksumTypes());
+        return new ChecksumReplicaRecord(super.create(id, flags), csm.getDefaultChecksumTypes(),
+              csm);
     }
 }
@@ -14,11 +14,13 @@ import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Set;
 import org.dcache.namespace.FileAttribute;
+import org.dcache.pool.movers.ReadChecksumChannel;
 import org.dcache.pool.repository.FileStore;
 import org.dcache.pool.repository.ReplicaDescriptor;
 import org.dcache.pool.repository.ReplicaRecord;
 import org.dcache.pool.repository.ReplicaState;
 import org.dcache.pool.repository.RepositoryChannel;
+import org.dcache.pool.repository.checksums.ChecksumReplicaRecord;
 import org.dcache.pool.repository.inotify.InotifyReplicaRecord;
 import org.dcache.pool.statistics.IoStatisticsReplicaRecord;
 import org.dcache.util.Checksum;
@@ -33,9 +35,14 @@ class ReadHandleImpl implements ReplicaDescriptor {
           .add(IoStatisticsReplicaRecord.OpenFlags.ENABLE_IO_STATISTICS)
           .build();
 
-    private static final Set<OpenOption> OPEN_OPTIONS_WITH_INOTIFY = ImmutableSet.<OpenOption>builder()
+    /**
+     * Reads on behalf of clients are additionally monitored by inotify and verified against
+     * the replica's checksums.
+     */
+    private static final Set<OpenOption> CLIENT_OPEN_OPTIONS = ImmutableSet.<OpenOption>builder()
           .addAll(OPEN_OPTIONS)
           .add(InotifyReplicaRecord.OpenFlags.ENABLE_INOTIFY_MONITORING)
+          .add(ChecksumReplicaRecord.OpenFlags.ENABLE_CHECKSUM_VERIFICATION)
           .build();
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(ReadHandleImpl.class);
@@ -54,7 +61,7 @@ class ReadHandleImpl implements ReplicaDescriptor {
         _entry = requireNonNull(entry);
         _fileAttributes = requireNonNull(fileAttributes);
         _open = true;
-        _openOptions = isInternalActivity ? OPEN_OPTIONS : OPEN_OPTIONS_WITH_INOTIFY;
+        _openOptions = isInternalActivity ? OPEN_OPTIONS : CLIENT_OPEN_OPTIONS;
     }
 
     /**
@@ -92,6 +99,21 @@ class ReadHandleImpl implements ReplicaDescriptor {
             }
             throw ex;
         }
+        channel.optionallyAs(ReadChecksumChannel.class)
+              .ifPresent(c -> c.addListener(new ReadChecksumChannel.Listener() {
+                  @Override
+                  public void corrupted(Set<Checksum> expected, Set<Checksum> actual) {
+                      LOGGER.error("Checksum mismatch on read of {}: expected {}, actual {}",
+                            _entry.getPnfsId(), expected, actual);
+                      try {
+                          _entry.update("Checksum mismatch on read",
+                                r -> r.setState(ReplicaState.BROKEN));
+                      } catch (CacheException e) {
+                          LOGGER.warn("Failed to mark {} as broken: {}", _entry.getPnfsId(),
+                                e.toString());
+                      }
+                  }
+              }));
         return channel;
     }
 
@@ -0,0 +1,85 @@
+package org.dcache.poolmanager;
+
+import static java.util.Objects.requireNonNull;
+import static org.dcache.namespace.FileAttribute.LOCATIONS;
+
+import diskCacheV111.util.CacheException;
+import diskCacheV111.vehicles.Pool;
+import diskCacheV111.vehicles.ProtocolInfo;
+import dmg.cells.nucleus.CellInfoProvider;
+import java.io.PrintWriter;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import org.dcache.vehicles.FileAttributes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.remoting.RemoteAccessException;
+
+/**
+ * Selects read pools in a door using the door's copy of the pool monitor.
+ * <p>
+ * If a file is online on a pool the client may read from, pool selection only has to choose among
+ * the pools holding the file. A door with a copy of the pool monitor can make that choice itself
+ * and save the round trip to pool manager. In all other cases the selection is left to pool
+ * manager, which may decide to stage the file or to replicate it to another pool.
+ * <p>
+ * An instance is shared by the transfers of a door and counts how many read pool selections were
+ * made locally and how many were delegated to pool manager.
+ */
+public class LocalReadPoolSelector implements CellInfoProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalReadPoolSelector.class);
+
+    private final PoolMonitor poolMonitor;
+
+    private final LongAdder local = new LongAdder();
+    private final LongAdder fallback = new LongAdder();
+    private final LongAdder delegated = new LongAdder();
+
+    public LocalReadPoolSelector(PoolMonitor poolMonitor) {
+        this.poolMonitor = requireNonNull(poolMonitor);
+    }
+
+    /**
+     * Selects a pool from which the file can be read without staging or pool to pool transfer.
+     *
+     * @param attributes    the attributes of the file, including its locations
+     * @param protocolInfo  the protocol info of the transfer
+     * @param excludedHosts hosts not to select, or null
+     * @return the selected pool or empty if the selection has to be delegated to pool manager
+     */
+    public Optional<Pool> selectReadPool(FileAttributes attributes, ProtocolInfo protocolInfo,
+          Set<String> excludedHosts) {
+        if (!attributes.isDefined(LOCATIONS) || attributes.getLocations().isEmpty()) {
+            fallback.increment();
+            return Optional.empty();
+        }
+        try {
+            SelectedPool pool = poolMonitor.getPoolSelector(attributes, protocolInfo, null,
+                  excludedHosts).selectReadPool();
+            local.increment();
+            LOGGER.debug("Selected read pool {} without pool manager.", pool);
+            return Optional.of(new Pool(pool.name(), pool.address(), pool.assumption()));
+        } catch (CacheException | RemoteAccessException e) {
+            LOGGER.debug("Delegating read pool selection to pool manager: {}", e.getMessage());
+            fallback.increment();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Records that a read pool selection was delegated to pool manager.
+     */
+    public void delegated() {
+        delegated.increment();
+    }
+
+    @Override
+    public void getInfo(PrintWriter pw) {
+        pw.println("Read pool selection:");
+        pw.println("    Selected by door          : " + local.sum());
+        pw.println("    Delegated to pool manager : " + delegated.sum());
+        pw.println("      after local attempt     : " + fallback.sum());
+    }
+}
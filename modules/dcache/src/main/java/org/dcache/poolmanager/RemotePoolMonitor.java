@@ -24,6 +24,8 @@ import static org.dcache.util.MathUtils.subWithInfinity;
 
 import com.google.common.util.concurrent.MoreExecutors;
 import diskCacheV111.poolManager.CostModule;
+import diskCacheV111.poolManager.CostModuleV1;
+import diskCacheV111.poolManager.PoolMonitorDelta;
 import diskCacheV111.poolManager.PoolSelectionUnit;
 import diskCacheV111.pools.PoolCostInfo;
 import diskCacheV111.util.CacheException;
@@ -36,6 +38,7 @@ import dmg.cells.nucleus.CellInfoProvider;
 import dmg.cells.nucleus.CellLifeCycleAware;
 import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellMessageReceiver;
+import dmg.cells.nucleus.CellPath;
 import dmg.cells.nucleus.NoRouteToCellException;
 import java.io.PrintWriter;
 import java.util.Collection;
@@ -53,6 +56,11 @@ import org.springframework.remoting.RemoteProxyFailureException;
 
 /**
  * PoolMonitor that delegates to a PoolMonitor obtained from pool manager.
+ * <p>
+ * The local copy is replaced whenever a complete pool monitor is received. Cost information is
+ * kept up to date in between by applying {@link PoolMonitorDelta}s. If a delta cannot be applied
+ * because an earlier delta was missed, the complete pool monitor is fetched from the pool manager
+ * that published the delta.
  */
 public class RemotePoolMonitor
       implements PoolMonitor, CellLifeCycleAware, CellMessageReceiver, CellInfoProvider {
@@ -65,6 +73,10 @@ public class RemotePoolMonitor
     private PoolMonitor poolMonitor;
     private long refreshCount;
     private CellAddressCore previousMonitorSource;
+    private long deltaCount;
+    private long staleDeltaCount;
+    private long resyncCount;
+    private boolean isResyncing;
 
     @Required
     public void setPoolManagerStub(CellStub stub) {
@@ -79,12 +91,15 @@ public class RemotePoolMonitor
 
         }
         pw.println("refresh count = " + refreshCount);
+        pw.println("delta count = " + deltaCount);
+        pw.println("stale delta count = " + staleDeltaCount);
+        pw.println("resync count = " + resyncCount);
         pw.println("active refresh target = " + poolManagerStub);
     }
 
     @Override
     public void afterStart() {
-        fetchMonitor(0);
+        fetchMonitor(poolManagerStub.getDestinationPath(), 0);
     }
 
     @Override
@@ -140,6 +155,10 @@ public class RemotePoolMonitor
         return lastRefreshTime;
     }
 
+    public synchronized long getResyncCount() {
+        return resyncCount;
+    }
+
     public void messageArrived(CellMessage envelope, SerializablePoolMonitor monitor) {
         if (LOGGER.isDebugEnabled()) {
             if (!envelope.getSourceAddress().equals(previousMonitorSource)) {
@@ -152,17 +171,69 @@ public class RemotePoolMonitor
         acceptMonitor(monitor);
     }
 
+    /**
+     * Applies a delta to the local copy of the pool monitor.
+     * <p>
+     * Only the leading pool manager publishes deltas. If the delta cannot be applied, the
+     * complete pool monitor is fetched from the pool manager that published the delta, as another
+     * pool manager replica would answer with a copy of a different epoch.
+     */
+    public synchronized void messageArrived(CellMessage envelope, PoolMonitorDelta delta) {
+        if (poolMonitor == null || isResyncing) {
+            /* The complete pool monitor is on its way. */
+            return;
+        }
+
+        CellPath publisher = envelope.getSourcePath().revert();
+        CostModule costModule = poolMonitor.getCostModule();
+        if (!(costModule instanceof CostModuleV1)) {
+            resync(publisher);
+            return;
+        }
+
+        CostModuleV1 costModuleV1 = (CostModuleV1) costModule;
+        long version = costModuleV1.getVersion();
+        if (delta.getEpoch() != costModuleV1.getEpoch()) {
+            LOGGER.debug("Received {} from {}, but local copy is of another epoch.", delta,
+                  envelope.getSourceAddress());
+            resync(publisher);
+        } else if (version < delta.getBaseVersion()) {
+            LOGGER.debug("Received {}, but local copy is at version {}.", delta, version);
+            resync(publisher);
+        } else if (version > delta.getVersion()) {
+            staleDeltaCount++;
+        } else {
+            costModuleV1.apply(delta);
+            PoolSelectionUnit psu = poolMonitor.getPoolSelectionUnit();
+            for (String name : delta.getUpdatedPools()) {
+                PoolSelectionUnit.SelectionPool pool = psu.getPool(name);
+                if (pool != null) {
+                    pool.setActive(true);
+                }
+            }
+            lastRefreshTime = System.currentTimeMillis();
+            deltaCount++;
+        }
+    }
+
     private synchronized void acceptMonitor(SerializablePoolMonitor monitor) {
         poolMonitor = monitor;
         lastRefreshTime = System.currentTimeMillis();
         refreshCount++;
+        isResyncing = false;
         notifyAll();
     }
 
-    private synchronized void fetchMonitor(int count) {
+    private synchronized void resync(CellPath source) {
+        resyncCount++;
+        isResyncing = true;
+        fetchMonitor(source, 0);
+    }
+
+    private synchronized void fetchMonitor(CellPath source, int count) {
         if (count < MAX_FETCH_RETRIES) {
             int nextCount = count + 1;
-            CellStub.addCallback(poolManagerStub.send(new PoolManagerGetPoolMonitor(),
+            CellStub.addCallback(poolManagerStub.send(source, new PoolManagerGetPoolMonitor(),
                         CellEndpoint.SendFlag.RETRY_ON_NO_ROUTE_TO_CELL),
                   new AbstractMessageCallback<>() {
                       @Override
@@ -174,23 +245,30 @@ public class RemotePoolMonitor
                       public void timeout(String message) {
                           try {
                               Thread.sleep(TimeUnit.SECONDS.toMillis(1));
-                              fetchMonitor(nextCount);
+                              fetchMonitor(source, nextCount);
                           } catch (InterruptedException e) {
                               LOGGER.debug("Could not get Pool Monitor; sleep interrupted.");
+                              resyncFailed();
                           }
                       }
 
                       @Override
                       public void failure(int rc, Object error) {
+                          resyncFailed();
                       }
                   },
                   MoreExecutors.directExecutor());
         } else {
             LOGGER.error("Could not get Pool Monitor; max retries {} exceeded.",
                   MAX_FETCH_RETRIES);
+            isResyncing = false;
         }
     }
 
+    private synchronized void resyncFailed() {
+        isResyncing = false;
+    }
+
     private synchronized PoolMonitor getPoolMonitor() {
         try {
             if (poolMonitor == null) {
@@ -0,0 +1,423 @@
+package org.dcache.services.billing.archive;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A block of billing records stored column by column.
+ * <p>
+ * On disk a block consists of a {@link BlockHeader} followed by one compressed section per
+ * {@link Column}. Numeric columns are delta and zig-zag encoded as variable length integers,
+ * string columns are dictionary encoded. Each section is compressed individually and prefixed by
+ * its length, allowing readers to skip both blocks that cannot match a query and columns that a
+ * query does not need.
+ */
+public class ArchiveBlock {
+
+    private static final int MAGIC = 0x44434241;
+
+    private final BlockHeader header;
+    private final Map<Column, long[]> longs;
+    private final Map<Column, String[]> strings;
+
+    private ArchiveBlock(BlockHeader header, Map<Column, long[]> longs,
+          Map<Column, String[]> strings) {
+        this.header = header;
+        this.longs = longs;
+        this.strings = strings;
+    }
+
+    public BlockHeader getHeader() {
+        return header;
+    }
+
+    public int size() {
+        return header.getRowCount();
+    }
+
+    /**
+     * Returns the record at the given row. Columns that were not loaded are reported as empty.
+     */
+    public ArchiveRecord getRecord(int row) {
+        return new ArchiveRecord(getLong(Column.TIMESTAMP, row),
+              getString(Column.CELL_TYPE, row),
+              getString(Column.CELL_NAME, row),
+              getString(Column.MESSAGE_TYPE, row),
+              getString(Column.PNFSID, row),
+              getString(Column.PATH, row),
+              getLong(Column.FILE_SIZE, row),
+              getLong(Column.TRANSFERRED, row),
+              (int) getLong(Column.RESULT_CODE, row),
+              getString(Column.OWNER, row),
+              getString(Column.VO, row),
+              getString(Column.STORAGE_CLASS, row));
+    }
+
+    private long getLong(Column column, int row) {
+        long[] values = longs.get(column);
+        return values == null ? 0 : values[row];
+    }
+
+    private String getString(Column column, int row) {
+        String[] values = strings.get(column);
+        return values == null ? null : values[row];
+    }
+
+    /**
+     * Writes records as a single block.
+     */
+    public static void write(DataOutputStream out, List<ArchiveRecord> records)
+          throws IOException {
+        BlockHeader.of(records).write(out);
+        int rows = records.size();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            for (Column column : Column.values()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream data = new DataOutputStream(bytes);
+                if (column.isNumeric()) {
+                    long last = 0;
+                    for (int i = 0; i < rows; i++) {
+                        long value = column.getLong(records.get(i));
+                        writeVarLong(data, zigZag(value - last));
+                        last = value;
+                    }
+                } else {
+                    Map<String, Integer> dictionary = new HashMap<>();
+                    ByteArrayOutputStream indices = new ByteArrayOutputStream();
+                    DataOutputStream indexData = new DataOutputStream(indices);
+                    ByteArrayOutputStream entries = new ByteArrayOutputStream();
+                    DataOutputStream entryData = new DataOutputStream(entries);
+                    for (int i = 0; i < rows; i++) {
+                        String value = column.getString(records.get(i));
+                        Integer index = dictionary.get(value);
+                        if (index == null) {
+                            index = dictionary.size();
+                            dictionary.put(value, index);
+                            byte[] utf8 = value.getBytes(UTF_8);
+                            writeVarLong(entryData, utf8.length);
+                            entryData.write(utf8);
+                        }
+                        writeVarLong(indexData, index);
+                    }
+                    writeVarLong(data, dictionary.size());
+                    entries.writeTo(data);
+                    indices.writeTo(data);
+                }
+                data.flush();
+                byte[] raw = bytes.toByteArray();
+                byte[] compressed = compress(deflater, raw);
+                out.writeByte(column.ordinal());
+                out.writeInt(raw.length);
+                out.writeInt(compressed.length);
+                out.write(compressed);
+                deflater.reset();
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Reads the next block from a stream.
+     * <p>
+     * If the header of the block is rejected by the filter, the rest of the block is skipped and
+     * an empty block is returned. Only the requested columns are decompressed and decoded.
+     *
+     * @return the block, or null if the end of the stream has been reached
+     */
+    public static ArchiveBlock read(DataInputStream in, Predicate<BlockHeader> filter,
+          Set<Column> columns) throws IOException {
+        BlockHeader header = BlockHeader.read(in);
+        if (header == null) {
+            return null;
+        }
+        boolean matches = filter.test(header);
+
+        Map<Column, long[]> longs = new EnumMap<>(Column.class);
+        Map<Column, String[]> strings = new EnumMap<>(Column.class);
+        Inflater inflater = new Inflater();
+        try {
+            for (int i = 0; i < header.getColumnCount(); i++) {
+                int ordinal = in.readUnsignedByte();
+                int rawLength = in.readInt();
+                int compressedLength = in.readInt();
+                Column column = ordinal < Column.values().length ? Column.values()[ordinal] : null;
+                if (!matches || column == null || !columns.contains(column)) {
+                    skipFully(in, compressedLength);
+                    continue;
+                }
+                byte[] compressed = new byte[compressedLength];
+                in.readFully(compressed);
+                byte[] raw = decompress(inflater, compressed, rawLength);
+                inflater.reset();
+                DataInputStream data = new DataInputStream(new ByteArrayInputStream(raw));
+                int rows = header.getRowCount();
+                if (column.isNumeric()) {
+                    long[] values = new long[rows];
+                    long last = 0;
+                    for (int row = 0; row < rows; row++) {
+                        last += unZigZag(readVarLong(data));
+                        values[row] = last;
+                    }
+                    longs.put(column, values);
+                } else {
+                    String[] dictionary = new String[(int) readVarLong(data)];
+                    for (int entry = 0; entry < dictionary.length; entry++) {
+                        byte[] utf8 = new byte[(int) readVarLong(data)];
+                        data.readFully(utf8);
+                        dictionary[entry] = new String(utf8, UTF_8);
+                    }
+                    String[] values = new String[rows];
+                    for (int row = 0; row < rows; row++) {
+                        values[row] = dictionary[(int) readVarLong(data)];
+                    }
+                    strings.put(column, values);
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        return matches
+              ? new ArchiveBlock(header, longs, strings)
+              : new ArchiveBlock(header.withoutRows(), longs, strings);
+    }
+
+    private static byte[] compress(Deflater deflater, byte[] raw) {
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 16);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(Inflater inflater, byte[] compressed, int rawLength)
+          throws IOException {
+        inflater.setInput(compressed);
+        byte[] raw = new byte[rawLength];
+        try {
+            int offset = 0;
+            while (offset < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, offset, rawLength - offset);
+                if (n == 0 && inflater.needsInput()) {
+                    break;
+                }
+                offset += n;
+            }
+            if (offset != rawLength) {
+                throw new IOException("Truncated column in billing archive");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt column in billing archive: " + e.getMessage(), e);
+        }
+        return raw;
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int n = in.skipBytes(remaining);
+            if (n <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated block in billing archive");
+                }
+                n = 1;
+            }
+            remaining -= n;
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length integer in billing archive");
+    }
+
+    /**
+     * Summary of a block that allows queries to decide whether the block needs to be read.
+     * <p>
+     * Besides the number of rows and the ranges of the timestamp and file size columns, the header
+     * contains a Bloom filter of all pnfsids, paths and path prefixes in the block.
+     */
+    public static class BlockHeader {
+
+        private static final double FPP = 0.01;
+
+        private final int rowCount;
+        private final int columnCount;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+        private final long minFileSize;
+        private final long maxFileSize;
+        private final BloomFilter<CharSequence> keys;
+
+        private BlockHeader(int rowCount, int columnCount, long minTimestamp, long maxTimestamp,
+              long minFileSize, long maxFileSize, BloomFilter<CharSequence> keys) {
+            this.rowCount = rowCount;
+            this.columnCount = columnCount;
+            this.minTimestamp = minTimestamp;
+            this.maxTimestamp = maxTimestamp;
+            this.minFileSize = minFileSize;
+            this.maxFileSize = maxFileSize;
+            this.keys = keys;
+        }
+
+        private static BlockHeader of(List<ArchiveRecord> records) {
+            Set<String> keys = new HashSet<>();
+            long minTimestamp = Long.MAX_VALUE;
+            long maxTimestamp = Long.MIN_VALUE;
+            long minFileSize = Long.MAX_VALUE;
+            long maxFileSize = Long.MIN_VALUE;
+            for (ArchiveRecord record : records) {
+                minTimestamp = Math.min(minTimestamp, record.getTimestamp());
+                maxTimestamp = Math.max(maxTimestamp, record.getTimestamp());
+                minFileSize = Math.min(minFileSize, record.getFileSize());
+                maxFileSize = Math.max(maxFileSize, record.getFileSize());
+                if (!record.getPnfsId().isEmpty()) {
+                    keys.add(record.getPnfsId());
+                }
+                addAllPathPrefixes(record.getPath(), keys);
+            }
+
+            /* The filter is sized by the keys actually inserted; a path contributes one key
+             * per directory level, so the record count would underestimate it.
+             */
+            BloomFilter<CharSequence> filter =
+                  BloomFilter.create(Funnels.stringFunnel(UTF_8), Math.max(keys.size(), 1), FPP);
+            keys.forEach(filter::put);
+            return new BlockHeader(records.size(), Column.values().length, minTimestamp,
+                  maxTimestamp, minFileSize, maxFileSize, filter);
+        }
+
+        private static void addAllPathPrefixes(String path, Set<String> keys) {
+            int next;
+            while (!path.isEmpty()) {
+                keys.add(path);
+                next = path.lastIndexOf('/');
+                if (next <= 0) {
+                    break;
+                }
+                path = path.substring(0, next);
+            }
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(rowCount);
+            out.writeByte(columnCount);
+            out.writeLong(minTimestamp);
+            out.writeLong(maxTimestamp);
+            out.writeLong(minFileSize);
+            out.writeLong(maxFileSize);
+            ByteArrayOutputStream filter = new ByteArrayOutputStream();
+            keys.writeTo(filter);
+            out.writeInt(filter.size());
+            filter.writeTo(out);
+        }
+
+        private static BlockHeader read(DataInputStream in) throws IOException {
+            int magic;
+            try {
+                magic = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            if (magic != MAGIC) {
+                throw new IOException("Not a billing archive block");
+            }
+            int rowCount = in.readInt();
+            int columnCount = in.readUnsignedByte();
+            long minTimestamp = in.readLong();
+            long maxTimestamp = in.readLong();
+            long minFileSize = in.readLong();
+            long maxFileSize = in.readLong();
+            byte[] filter = new byte[in.readInt()];
+            in.readFully(filter);
+            BloomFilter<CharSequence> keys = BloomFilter.readFrom(
+                  new ByteArrayInputStream(filter), Funnels.stringFunnel(UTF_8));
+            return new BlockHeader(rowCount, columnCount, minTimestamp, maxTimestamp,
+                  minFileSize, maxFileSize, keys);
+        }
+
+        private BlockHeader withoutRows() {
+            return new BlockHeader(0, columnCount, minTimestamp, maxTimestamp, minFileSize,
+                  maxFileSize, keys);
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        int getColumnCount() {
+            return columnCount;
+        }
+
+        public long getMinTimestamp() {
+            return minTimestamp;
+        }
+
+        public long getMaxTimestamp() {
+            return maxTimestamp;
+        }
+
+        public long getMinFileSize() {
+            return minFileSize;
+        }
+
+        public long getMaxFileSize() {
+            return maxFileSize;
+        }
+
+        /**
+         * Returns whether the block may contain a record with the given pnfsid, path or path
+         * prefix.
+         */
+        public boolean mightContain(String key) {
+            return keys.mightContain(key);
+        }
+    }
+}
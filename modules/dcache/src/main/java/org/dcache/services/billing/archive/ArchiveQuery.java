@@ -0,0 +1,129 @@
+package org.dcache.services.billing.archive;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.dcache.services.billing.archive.ArchiveBlock.BlockHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A query against the billing archive.
+ * <p>
+ * A query restricts records by time, pnfsid, path prefix and message type. Block headers are
+ * consulted first so that blocks that cannot contain matching records are skipped without being
+ * decompressed, and only the columns needed to evaluate the query and produce the output are
+ * decoded.
+ */
+public class ArchiveQuery {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveQuery.class);
+
+    private static final String ROOT = "/";
+
+    private final long since;
+    private final long until;
+    private final ImmutableList<String> keys;
+    private final String messageType;
+
+    /**
+     * @param since       earliest timestamp (inclusive) in milliseconds since the epoch
+     * @param until       latest timestamp (exclusive) in milliseconds since the epoch
+     * @param keys        pnfsids or path prefixes of which any must match; empty to match all
+     * @param messageType the message type to match, or null to match all
+     */
+    public ArchiveQuery(long since, long until, Collection<String> keys, String messageType) {
+        this.since = since;
+        this.until = until;
+        this.keys = keys.stream()
+              .map(key -> key.length() > 1 && key.endsWith("/")
+                    ? key.substring(0, key.length() - 1) : key)
+              .collect(ImmutableList.toImmutableList());
+        this.messageType = messageType;
+    }
+
+    public boolean mightMatch(BlockHeader header) {
+        if (header.getMaxTimestamp() < since || header.getMinTimestamp() >= until) {
+            return false;
+        }
+        /* Block headers do not index the root, as it is a prefix of every path. */
+        return keys.isEmpty() || keys.stream()
+              .anyMatch(key -> key.equals(ROOT) || header.mightContain(key));
+    }
+
+    public boolean matches(ArchiveRecord record) {
+        if (record.getTimestamp() < since || record.getTimestamp() >= until) {
+            return false;
+        }
+        if (messageType != null && !messageType.equals(record.getMessageType())) {
+            return false;
+        }
+        return keys.isEmpty() || keys.stream().anyMatch(key -> matchesKey(record, key));
+    }
+
+    private static boolean matchesKey(ArchiveRecord record, String key) {
+        if (key.equals(record.getPnfsId())) {
+            return true;
+        }
+        String path = record.getPath();
+        if (key.equals(ROOT)) {
+            return path.startsWith(ROOT);
+        }
+        return path.startsWith(key)
+              && (path.length() == key.length() || path.charAt(key.length()) == '/');
+    }
+
+    /**
+     * Returns the columns that must be decoded to evaluate this query and to output the given
+     * columns.
+     */
+    public Set<Column> getRequiredColumns(Set<Column> output) {
+        Set<Column> columns = EnumSet.copyOf(Sets.union(output, EnumSet.of(Column.TIMESTAMP)));
+        if (!keys.isEmpty()) {
+            columns.add(Column.PNFSID);
+            columns.add(Column.PATH);
+        }
+        if (messageType != null) {
+            columns.add(Column.MESSAGE_TYPE);
+        }
+        return columns;
+    }
+
+    /**
+     * Passes all records of an archive file that match this query to a consumer.
+     *
+     * @return the number of blocks that were actually decoded
+     */
+    public int scan(Path file, Set<Column> output, Consumer<ArchiveRecord> consumer)
+          throws IOException {
+        Set<Column> columns = getRequiredColumns(output);
+        int decoded = 0;
+        try (DataInputStream in = new DataInputStream(
+              new BufferedInputStream(Files.newInputStream(file), 65536))) {
+            ArchiveBlock block;
+            while ((block = ArchiveBlock.read(in, this::mightMatch, columns)) != null) {
+                if (block.size() > 0) {
+                    decoded++;
+                }
+                for (int row = 0; row < block.size(); row++) {
+                    ArchiveRecord record = block.getRecord(row);
+                    if (matches(record)) {
+                        consumer.accept(record);
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            LOGGER.warn("Ignoring truncated block at end of {}", file);
+        }
+        return decoded;
+    }
+}
@@ -0,0 +1,170 @@
+package org.dcache.services.billing.archive;
+
+import static com.google.common.base.Strings.nullToEmpty;
+
+import diskCacheV111.vehicles.DoorRequestInfoMessage;
+import diskCacheV111.vehicles.InfoMessage;
+import diskCacheV111.vehicles.MoverInfoMessage;
+import diskCacheV111.vehicles.PnfsFileInfoMessage;
+import diskCacheV111.vehicles.StorageInfo;
+import dmg.cells.nucleus.CellAddressCore;
+import javax.security.auth.Subject;
+import org.dcache.auth.FQAN;
+import org.dcache.auth.Subjects;
+
+/**
+ * A single billing record as stored in the columnar billing archive.
+ * <p>
+ * Only the attributes that are useful for searching and aggregating billing information are
+ * retained. String attributes that are not known are represented by the empty string, numeric
+ * attributes by zero.
+ */
+public class ArchiveRecord {
+
+    private final long timestamp;
+    private final String cellType;
+    private final String cellName;
+    private final String messageType;
+    private final String pnfsId;
+    private final String path;
+    private final long fileSize;
+    private final long transferred;
+    private final int resultCode;
+    private final String owner;
+    private final String vo;
+    private final String storageClass;
+
+    public ArchiveRecord(long timestamp, String cellType, String cellName, String messageType,
+          String pnfsId, String path, long fileSize, long transferred, int resultCode,
+          String owner, String vo, String storageClass) {
+        this.timestamp = timestamp;
+        this.cellType = nullToEmpty(cellType);
+        this.cellName = nullToEmpty(cellName);
+        this.messageType = nullToEmpty(messageType);
+        this.pnfsId = nullToEmpty(pnfsId);
+        this.path = nullToEmpty(path);
+        this.fileSize = fileSize;
+        this.transferred = transferred;
+        this.resultCode = resultCode;
+        this.owner = nullToEmpty(owner);
+        this.vo = nullToEmpty(vo);
+        this.storageClass = nullToEmpty(storageClass);
+    }
+
+    /**
+     * Extracts the archived attributes from a billing message.
+     */
+    public static ArchiveRecord of(InfoMessage info) {
+        CellAddressCore address = info.getCellAddress();
+        String pnfsId = null;
+        String path = null;
+        String storageClass = null;
+        long fileSize = 0;
+        long transferred = 0;
+        String owner = null;
+
+        if (info instanceof PnfsFileInfoMessage) {
+            PnfsFileInfoMessage pnfsInfo = (PnfsFileInfoMessage) info;
+            pnfsId = pnfsInfo.getPnfsId() == null ? null : pnfsInfo.getPnfsId().toString();
+            path = pnfsInfo.getBillingPath();
+            fileSize = pnfsInfo.getFileSize();
+            StorageInfo storageInfo = pnfsInfo.getStorageInfo();
+            if (storageInfo != null) {
+                storageClass = storageInfo.getStorageClass() + "@" + storageInfo.getHsm();
+            }
+        }
+        if (info instanceof MoverInfoMessage) {
+            transferred = ((MoverInfoMessage) info).getDataTransferred();
+        }
+        if (info instanceof DoorRequestInfoMessage) {
+            owner = ((DoorRequestInfoMessage) info).getOwner();
+        }
+
+        String vo = null;
+        Subject subject = info.getSubject();
+        if (subject != null) {
+            try {
+                FQAN fqan = Subjects.getPrimaryFqan(subject);
+                if (fqan != null) {
+                    vo = toVo(fqan);
+                }
+                if (owner == null) {
+                    owner = Subjects.getDn(subject);
+                }
+            } catch (IllegalArgumentException ignored) {
+                // Ambiguous identity; leave the attributes unset
+            }
+        }
+
+        return new ArchiveRecord(info.getTimestamp(), info.getCellType(),
+              address == null ? null : address.toString(), info.getMessageType(), pnfsId, path,
+              fileSize, transferred, info.getResultCode(), owner, vo, storageClass);
+    }
+
+    /**
+     * The VO is the first element of the group of the primary FQAN.
+     */
+    private static String toVo(FQAN fqan) {
+        String group = fqan.getGroup();
+        if (group == null || group.isEmpty()) {
+            return null;
+        }
+        int end = group.indexOf('/', 1);
+        return end < 0 ? group.substring(1) : group.substring(1, end);
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getCellType() {
+        return cellType;
+    }
+
+    public String getCellName() {
+        return cellName;
+    }
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    public String getPnfsId() {
+        return pnfsId;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getTransferred() {
+        return transferred;
+    }
+
+    public int getResultCode() {
+        return resultCode;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getVo() {
+        return vo;
+    }
+
+    public String getStorageClass() {
+        return storageClass;
+    }
+
+    @Override
+    public String toString() {
+        return timestamp + " [" + cellType + ':' + cellName + ':' + messageType + "] ["
+              + pnfsId + ',' + fileSize + "] [" + path + "] " + storageClass + ' ' + transferred
+              + " [\"" + owner + "\":" + vo + "] {" + resultCode + '}';
+    }
+}
@@ -0,0 +1,325 @@
+package org.dcache.services.billing.archive;
+
+import static java.util.stream.Collectors.toList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.FormatStyle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.LogManager;
+import java.util.stream.Stream;
+import org.dcache.boot.LayoutBuilder;
+import org.dcache.util.Args;
+import org.dcache.util.configuration.ConfigurationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.bridge.SLF4JBridgeHandler;
+
+/**
+ * Command line utility for querying the columnar billing archive.
+ * <p>
+ * Archive files of the selected days are scanned in parallel. Matching records are either output
+ * in chronological file order, or aggregated by a column.
+ */
+public class ArchiveTool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveTool.class);
+
+    private static final String BILLING_ARCHIVE_DIR = "billing.archive.dir";
+
+    /**
+     * Maximum number of matching records buffered for each file scanned by find.
+     */
+    private static final int FIND_QUEUE_CAPACITY = 10_000;
+
+    /**
+     * Marks the end of the records of a file in its find queue.
+     */
+    private static final Object END_OF_FILE = new Object();
+
+    private static final DateTimeFormatter CLI_DATE_FORMAT =
+          DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM);
+    private static final DateTimeFormatter ISO8601_FORMAT =
+          DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssX");
+
+    private final Path dir;
+    private final int threads;
+
+    private ArchiveTool(Args args) throws IOException, URISyntaxException, InterruptedException {
+        if (args.hasOption("dir")) {
+            dir = new File(args.getOption("dir")).toPath();
+        } else {
+            ConfigurationProperties configuration = new LayoutBuilder().build().properties();
+            dir = new File(configuration.getValue(BILLING_ARCHIVE_DIR)).toPath();
+        }
+        threads = args.getIntOption("threads", Runtime.getRuntime().availableProcessors());
+
+        if (args.hasOption("help")) {
+            help(System.err);
+            return;
+        }
+
+        LocalDate since = args.hasOption("since")
+              ? LocalDate.parse(args.getOption("since"), CLI_DATE_FORMAT)
+              : LocalDate.ofEpochDay(0);
+        LocalDate until = args.hasOption("until")
+              ? LocalDate.parse(args.getOption("until"), CLI_DATE_FORMAT)
+              : LocalDate.now().plusDays(1);
+        ArchiveQuery query = new ArchiveQuery(toMillis(since), toMillis(until),
+              args.getArguments(), args.getOption("type"));
+        List<Path> files = listFiles(since, until);
+
+        if (args.hasOption("group")) {
+            Column groupBy = Column.fromName(args.getOption("group"));
+            Column sum = Column.fromName(args.getOption("sum", "transferred"));
+            if (groupBy.isNumeric() || !sum.isNumeric()) {
+                throw new IllegalArgumentException(
+                      "-group requires a text column and -sum a numeric column.");
+            }
+            aggregate(query, files, groupBy, sum, System.out);
+        } else {
+            find(query, files, System.out);
+        }
+    }
+
+    private List<Path> listFiles(LocalDate since, LocalDate until) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            throw new IOException("No such directory: " + dir);
+        }
+        List<Path> files = new ArrayList<>();
+        LocalDate earliest = earliest();
+        for (LocalDate date = since.isBefore(earliest) ? earliest : since;
+              date.isBefore(until); date = date.plusDays(1)) {
+            Path file = ArchiveWriter.getArchiveFile(dir, date);
+            if (Files.isRegularFile(file)) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the date of the oldest archive file, to avoid probing for files of every day since
+     * the epoch.
+     */
+    private LocalDate earliest() throws IOException {
+        try (Stream<Path> list = Files.list(dir)) {
+            return list.map(p -> p.getFileName().toString())
+                  .filter(name -> name.startsWith(ArchiveWriter.FILE_PREFIX))
+                  .map(name -> name.substring(ArchiveWriter.FILE_PREFIX.length()))
+                  .flatMap(date -> {
+                      try {
+                          return Stream.of(LocalDate.parse(date, ArchiveWriter.FILE_DATE_FORMAT));
+                      } catch (DateTimeParseException e) {
+                          return Stream.empty();
+                      }
+                  })
+                  .min(LocalDate::compareTo)
+                  .orElse(LocalDate.now());
+        }
+    }
+
+    /**
+     * Outputs all matching records. Files are scanned in parallel, but output in order. Records
+     * are passed to the output through a bounded queue per file, so scans of later files block
+     * rather than accumulate their matches while earlier files are being output.
+     */
+    private void find(ArchiveQuery query, List<Path> files, PrintStream out)
+          throws IOException, InterruptedException {
+        Set<Column> output = EnumSet.allOf(Column.class);
+        AtomicInteger decoded = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        try {
+            List<BlockingQueue<Object>> queues = new ArrayList<>(files.size());
+            List<Future<?>> futures = new ArrayList<>(files.size());
+            for (Path file : files) {
+                BlockingQueue<Object> queue = new ArrayBlockingQueue<>(FIND_QUEUE_CAPACITY);
+                queues.add(queue);
+                futures.add(executor.submit(() -> {
+                    try {
+                        decoded.addAndGet(query.scan(file, output, record -> {
+                            try {
+                                queue.put(record);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new CancellationException();
+                            }
+                        }));
+                    } finally {
+                        queue.put(END_OF_FILE);
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                BlockingQueue<Object> queue = queues.get(i);
+                Object record;
+                while ((record = queue.take()) != END_OF_FILE) {
+                    out.println(toText((ArchiveRecord) record));
+                }
+                getResult(futures.get(i));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        LOGGER.debug("Decoded {} blocks in {} files.", decoded.get(), files.size());
+    }
+
+    /**
+     * Sums a numeric column for each distinct value of another column.
+     */
+    private void aggregate(ArchiveQuery query, List<Path> files, Column groupBy, Column sum,
+          PrintStream out) throws IOException, InterruptedException {
+        Set<Column> output = EnumSet.of(groupBy, sum);
+        List<Map<String, long[]>> results = runInParallel(files, file -> {
+            Map<String, long[]> totals = new TreeMap<>();
+            query.scan(file, output, record -> {
+                long[] total = totals.computeIfAbsent(groupBy.getString(record),
+                      k -> new long[2]);
+                total[0]++;
+                total[1] += sum.getLong(record);
+            });
+            return totals;
+        });
+        Map<String, long[]> totals = new TreeMap<>();
+        for (Map<String, long[]> result : results) {
+            result.forEach((key, value) -> {
+                long[] total = totals.computeIfAbsent(key, k -> new long[2]);
+                total[0] += value[0];
+                total[1] += value[1];
+            });
+        }
+        out.format("%-40s %12s %20s\n", groupBy.getName(), "records", sum.getName());
+        totals.forEach((key, total) ->
+              out.format("%-40s %12d %20d\n", key.isEmpty() ? "<unknown>" : key, total[0],
+                    total[1]));
+    }
+
+    private <T> List<T> runInParallel(List<Path> files, FileTask<T> task)
+          throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(threads, 1));
+        try {
+            List<Future<T>> futures = files.stream()
+                  .map(file -> executor.submit(() -> task.apply(file)))
+                  .collect(toList());
+            List<T> results = new ArrayList<>(futures.size());
+            for (Future<T> future : futures) {
+                results.add(getResult(future));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> T getResult(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    private static String toText(ArchiveRecord record) {
+        return ISO8601_FORMAT.format(
+              Instant.ofEpochMilli(record.getTimestamp()).atZone(ZoneId.systemDefault()))
+              + " [" + record.getCellType() + ':' + record.getCellName() + ':'
+              + record.getMessageType() + "] [" + record.getPnfsId() + ','
+              + record.getFileSize() + "] [" + record.getPath() + "] "
+              + (record.getStorageClass().isEmpty() ? "<Unknown>" : record.getStorageClass())
+              + ' ' + record.getTransferred() + " [\"" + record.getOwner() + "\":"
+              + record.getVo() + "] {" + record.getResultCode() + '}';
+    }
+
+    private static long toMillis(LocalDate date) {
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static void help(PrintStream out) {
+        Collection<String> columns = Stream.of(Column.values())
+              .map(Column::getName).collect(toList());
+        out.println("COMMANDS:");
+        out.println(
+              "   [-dir=BASE] [-since=DATE] [-until=DATE] [-type=TYPE] [-threads=N] [SEARCHTERM]...");
+        out.println(
+              "          Output archived billing entries that match any SEARCHTERM. Valid search");
+        out.println(
+              "          terms are pnfsids, paths and path prefixes. If no search term is");
+        out.println("          provided, all entries are output.");
+        out.println(
+              "   -group=COLUMN [-sum=COLUMN] [-dir=BASE] [-since=DATE] [-until=DATE] [-type=TYPE] [SEARCHTERM]...");
+        out.println(
+              "          Output the number of matching entries and the sum of a numeric column");
+        out.println(
+              "          (default is transferred) for each value of COLUMN, e.g. -group=vo.");
+        out.println("");
+        out.println("OPTIONS:");
+        out.println("   -dir=BASE");
+        out.println("          Directory of the billing archive. Default is taken from dCache");
+        out.println("          configuration.");
+        out.println("   -type=TYPE");
+        out.println("          Only match entries of the given message type, e.g. transfer.");
+        out.println("   -threads=N");
+        out.println("          Number of archive files scanned in parallel.");
+        out.println("");
+        out.println("COLUMNS:");
+        out.println("   " + String.join(", ", columns));
+    }
+
+    public static void main(String[] arguments) {
+        LogManager.getLogManager().reset();
+        SLF4JBridgeHandler.install();
+        Thread.setDefaultUncaughtExceptionHandler((t, e) -> LOGGER.error("Uncaught exception", e));
+
+        try {
+            new ArchiveTool(new Args(arguments));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            help(System.err);
+            System.exit(1);
+        } catch (DateTimeParseException e) {
+            System.err.println(e.getMessage());
+            System.err.println();
+            System.exit(1);
+        } catch (IOException | URISyntaxException e) {
+            System.err.println(e);
+            System.exit(2);
+        } catch (InterruptedException e) {
+            System.exit(3);
+        }
+    }
+
+    @FunctionalInterface
+    private interface FileTask<T> {
+
+        T apply(Path file) throws IOException;
+    }
+}
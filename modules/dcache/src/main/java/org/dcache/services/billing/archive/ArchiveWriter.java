@@ -0,0 +1,151 @@
+package org.dcache.services.billing.archive;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * Rolls billing records into the columnar billing archive.
+ * <p>
+ * Records are buffered in memory and appended to the archive file of the day of the record as a
+ * single {@link ArchiveBlock} once the buffer reaches the configured block size, when the day
+ * changes, when the buffer exceeds its maximum age, or when the writer is closed. Each block is
+ * written with a single append, so a crash loses at most the records still in the buffer and
+ * leaves at most a truncated final block that readers ignore.
+ */
+public class ArchiveWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArchiveWriter.class);
+
+    public static final String FILE_PREFIX = "archive-";
+    public static final DateTimeFormatter FILE_DATE_FORMAT =
+          DateTimeFormatter.ofPattern("uuuu.MM.dd");
+
+    private List<ArchiveRecord> buffer = new ArrayList<>();
+    private LocalDate bufferDate;
+    private long bufferCreated;
+
+    private long records;
+    private long blocks;
+    private long bytes;
+    private long failures;
+
+    /*
+     * Injected
+     */
+    private Path dir;
+    private int blockSize;
+    private long maxAge;
+    private TimeUnit maxAgeUnit;
+
+    @Required
+    public void setDirectory(File dir) {
+        this.dir = dir.toPath();
+    }
+
+    @Required
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    @Required
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    @Required
+    public void setMaxAgeUnit(TimeUnit maxAgeUnit) {
+        this.maxAgeUnit = maxAgeUnit;
+    }
+
+    public static Path getArchiveFile(Path dir, LocalDate date) {
+        return dir.resolve(FILE_PREFIX + FILE_DATE_FORMAT.format(date));
+    }
+
+    public synchronized void add(ArchiveRecord record) {
+        LocalDate date = toDate(record.getTimestamp());
+        if (bufferDate != null && !date.equals(bufferDate)) {
+            flush();
+        }
+        if (buffer.isEmpty()) {
+            bufferDate = date;
+            bufferCreated = System.currentTimeMillis();
+        }
+        buffer.add(record);
+        if (buffer.size() >= blockSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered records if they are older than the maximum age. Called periodically.
+     */
+    public synchronized void flushIfStale() {
+        if (!buffer.isEmpty()
+              && System.currentTimeMillis() - bufferCreated >= maxAgeUnit.toMillis(maxAge)) {
+            flush();
+        }
+    }
+
+    public synchronized void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        List<ArchiveRecord> block = buffer;
+        Path file = getArchiveFile(dir, bufferDate);
+        buffer = new ArrayList<>();
+        bufferDate = null;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (DataOutputStream data = new DataOutputStream(out)) {
+                ArchiveBlock.write(data, block);
+            }
+            Files.createDirectories(dir);
+            Files.write(file, out.toByteArray(), WRITE, CREATE, APPEND);
+            blocks++;
+            records += block.size();
+            bytes += out.size();
+        } catch (IOException e) {
+            failures++;
+            LOGGER.warn("Can't write billing archive [{}] : {}", file, e.toString());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    public synchronized void getInfo(PrintWriter pw) {
+        pw.println("Archive:");
+        pw.format("%20s : %s\n", "Directory", dir);
+        pw.format("%20s : %d\n", "Buffered records", buffer.size());
+        pw.format("%20s : %d\n", "Archived records", records);
+        pw.format("%20s : %d\n", "Blocks written", blocks);
+        pw.format("%20s : %d\n", "Bytes written", bytes);
+        pw.format("%20s : %d\n", "Write failures", failures);
+    }
+
+    private static LocalDate toDate(long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
@@ -0,0 +1,62 @@
+package org.dcache.services.billing.archive;
+
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * The columns of the billing archive.
+ * <p>
+ * The ordinal of a column is part of the on-disk format. New columns must be appended at the end
+ * and existing columns must never be removed or reordered.
+ */
+public enum Column {
+    TIMESTAMP(ArchiveRecord::getTimestamp),
+    CELL_TYPE(ArchiveRecord::getCellType),
+    CELL_NAME(ArchiveRecord::getCellName),
+    MESSAGE_TYPE(ArchiveRecord::getMessageType),
+    PNFSID(ArchiveRecord::getPnfsId),
+    PATH(ArchiveRecord::getPath),
+    FILE_SIZE(ArchiveRecord::getFileSize),
+    TRANSFERRED(ArchiveRecord::getTransferred),
+    RESULT_CODE(ArchiveRecord::getResultCode),
+    OWNER(ArchiveRecord::getOwner),
+    VO(ArchiveRecord::getVo),
+    STORAGE_CLASS(ArchiveRecord::getStorageClass);
+
+    private final ToLongFunction<ArchiveRecord> longValue;
+    private final Function<ArchiveRecord, String> stringValue;
+
+    Column(ToLongFunction<ArchiveRecord> value) {
+        this.longValue = value;
+        this.stringValue = null;
+    }
+
+    Column(Function<ArchiveRecord, String> value) {
+        this.longValue = null;
+        this.stringValue = value;
+    }
+
+    public boolean isNumeric() {
+        return longValue != null;
+    }
+
+    long getLong(ArchiveRecord record) {
+        return longValue.applyAsLong(record);
+    }
+
+    String getString(ArchiveRecord record) {
+        return stringValue.apply(record);
+    }
+
+    /**
+     * Returns the column with the given name, using lower case and hyphens as separators, e.g.
+     * {@code storage-class}.
+     */
+    public static Column fromName(String name) {
+        return valueOf(name.toUpperCase().replace('-', '_'));
+    }
+
+    public String getName() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
@@ -41,12 +41,15 @@ import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
 import org.dcache.cells.CellStub;
 import org.dcache.notification.BillingMessageSerializerVisitor;
+import org.dcache.services.billing.archive.ArchiveRecord;
+import org.dcache.services.billing.archive.ArchiveWriter;
 import org.dcache.services.billing.text.StringTemplateInfoMessageVisitor;
 import org.dcache.util.Args;
 import org.dcache.util.Slf4jSTErrorListener;
 import org.dcache.vehicles.billing.BillingDataRequestMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Required;
 import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroup;
@@ -90,6 +93,7 @@ public final class BillingCell
     private boolean _enableText;
     private boolean _jsonFormat;
     private boolean _flatTextDir;
+    private ArchiveWriter _archiveWriter;
 
     public BillingCell() {
         _templateGroup.registerRenderer(Date.class, new DateRenderer());
@@ -131,6 +135,9 @@ public final class BillingCell
             pw.format("%20s : %6d / %d\n",
                   entry.getKey(), values[0], values[1]);
         }
+        if (_archiveWriter != null) {
+            _archiveWriter.getInfo(pw);
+        }
     }
 
     @PostConstruct
@@ -182,6 +189,10 @@ public final class BillingCell
                 }
             }
         }
+
+        if (_archiveWriter != null) {
+            _archiveWriter.add(ArchiveRecord.of(info));
+        }
     }
 
     public void messageArrived(BillingDataRequestMessage msg) {
@@ -221,6 +232,16 @@ public final class BillingCell
               .toArray(Object[][]::new);
     }
 
+    public static final String hh_flush_archive = "# write buffered records to the billing archive";
+
+    public String ac_flush_archive(Args args) {
+        if (_archiveWriter == null) {
+            return "Billing archive is disabled.";
+        }
+        _archiveWriter.flush();
+        return "";
+    }
+
     public static final String hh_get_pool_statistics = "[<poolName>]";
 
     public Map<String, long[]> ac_get_pool_statistics_$_0_1(Args args) {
@@ -464,4 +485,9 @@ public final class BillingCell
         _jsonFormat = jsonFormat;
     }
 
+    @Autowired(required = false)
+    public void setArchiveWriter(ArchiveWriter archiveWriter) {
+        _archiveWriter = archiveWriter;
+    }
+
 }
@@ -66,6 +66,7 @@ import java.time.Duration;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.Set;
 import java.util.concurrent.Executors;
@@ -83,6 +84,7 @@ import org.dcache.auth.attributes.Restrictions;
 import org.dcache.cells.CellStub;
 import org.dcache.namespace.FileAttribute;
 import org.dcache.namespace.FileType;
+import org.dcache.poolmanager.LocalReadPoolSelector;
 import org.dcache.poolmanager.PoolManagerStub;
 import org.dcache.vehicles.FileAttributes;
 import org.dcache.vehicles.PnfsGetFileAttributes;
@@ -122,6 +124,7 @@ public class Transfer implements Comparable<Transfer> {
     protected CellStub _poolStub;
     protected CellStub _billing;
     protected CheckStagePermission _checkStagePermission;
+    protected LocalReadPoolSelector _localReadPoolSelector;
 
     private CellAddressCore _cellAddress;
 
@@ -143,6 +146,7 @@ public class Transfer implements Comparable<Transfer> {
     private OptionalLong _maximumSize = OptionalLong.empty();
 
     private PoolMgrSelectReadPoolMsg.Context _readPoolSelectionContext;
+    private boolean _isLocalReadPoolSelectionAttempted;
     private boolean _isBillingNotified;
     protected boolean _isOverwriteAllowed;
 
@@ -272,6 +276,15 @@ public class Transfer implements Comparable<Transfer> {
         _poolManager = requireNonNull(stub, "PoolManager stub can't be null");
     }
 
+    /**
+     * Sets the selector used to select read pools without involving PoolManager. May be null, in
+     * which case all pool selections are delegated to PoolManager.
+     */
+    public synchronized void setLocalReadPoolSelector(
+          @Nullable LocalReadPoolSelector selector) {
+        _localReadPoolSelector = selector;
+    }
+
     /**
      * Sets CellStub for pools.
      */
@@ -904,6 +917,11 @@ public class Transfer implements Comparable<Transfer> {
         return _ioQueue;
     }
 
+    @Nullable
+    private synchronized LocalReadPoolSelector getLocalReadPoolSelector() {
+        return _localReadPoolSelector;
+    }
+
     /**
      * Returns the read pool selection context.
      */
@@ -920,6 +938,32 @@ public class Transfer implements Comparable<Transfer> {
         _readPoolSelectionContext = context;
     }
 
+    /**
+     * Selects a read pool without involving PoolManager.
+     * <p>
+     * This is only attempted once per transfer. Any later selection, e.g. after the selected pool
+     * failed to start a mover, is delegated to PoolManager so that it may stage the file or
+     * replicate it to another pool.
+     *
+     * @return true if a pool was selected, false if the selection has to be delegated to
+     * PoolManager
+     */
+    protected boolean selectReadPoolLocally() {
+        LocalReadPoolSelector selector;
+        synchronized (this) {
+            selector = _localReadPoolSelector;
+            if (selector == null || _isLocalReadPoolSelectionAttempted) {
+                return false;
+            }
+            _isLocalReadPoolSelectionAttempted = true;
+        }
+
+        Optional<Pool> pool = selector.selectReadPool(getFileAttributes(),
+              getProtocolInfoForPoolManager(), _tried);
+        pool.ifPresent(this::setPool);
+        return pool.isPresent();
+    }
+
     /**
      * Selects a pool suitable for the transfer.
      */
@@ -952,6 +996,15 @@ public class Transfer implements Comparable<Transfer> {
 
             reply = _poolManager.sendAsync(request, timeout);
         } else {
+            if (selectReadPoolLocally()) {
+                return immediateFuture(null);
+            }
+
+            LocalReadPoolSelector selector = getLocalReadPoolSelector();
+            if (selector != null) {
+                selector.delegated();
+            }
+
             EnumSet<RequestState> allowedStates = getAllowedRequestStates();
             try {
                 if (allowedStates.contains(RequestState.ST_STAGE) &&
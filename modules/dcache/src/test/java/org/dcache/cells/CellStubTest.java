@@ -21,6 +21,7 @@ import static dmg.cells.nucleus.CellEndpoint.SendFlag.PASS_THROUGH;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 
@@ -31,6 +32,7 @@ import dmg.cells.nucleus.CellEndpoint;
 import dmg.cells.nucleus.CellMessage;
 import dmg.cells.nucleus.CellMessageAnswerable;
 import dmg.cells.nucleus.CellPath;
+import java.util.List;
 import java.util.concurrent.Executor;
 import org.junit.Before;
 import org.junit.Test;
@@ -56,6 +58,20 @@ public class CellStubTest {
         assertThat(envelope.getValue().getMessageObject().toString(), is("test"));
     }
 
+    @Test
+    public void shouldSendEncodedNotificationsToSeveralDestinations() throws Exception {
+        stub.notify(List.of(new CellPath("topic1"), new CellPath("topic2")), "test");
+
+        ArgumentCaptor<CellMessage> envelope = ArgumentCaptor.forClass(CellMessage.class);
+        verify(endpoint, times(2)).sendMessage(envelope.capture());
+        List<CellMessage> envelopes = envelope.getAllValues();
+        assertThat(envelopes.get(0).getDestinationPath(), is(new CellPath("topic1")));
+        assertThat(envelopes.get(1).getDestinationPath(), is(new CellPath("topic2")));
+        assertThat(envelopes.get(0).getUOID(), is(not(envelopes.get(1).getUOID())));
+        assertThat(envelopes.get(0).decode().getMessageObject(), is("test"));
+        assertThat(envelopes.get(1).decode().getMessageObject(), is("test"));
+    }
+
 
     @Test
     public void shouldTranslateSuccessForMessageCallback() {
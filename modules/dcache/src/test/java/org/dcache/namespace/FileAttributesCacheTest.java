@@ -0,0 +1,338 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2026 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.namespace;
+
+import static org.dcache.namespace.FileAttribute.SIZE;
+import static org.dcache.namespace.FileAttribute.TYPE;
+import static org.dcache.namespace.FileType.DIR;
+import static org.dcache.namespace.FileType.REGULAR;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import diskCacheV111.util.FileNotFoundCacheException;
+import diskCacheV111.util.PnfsId;
+import dmg.cells.nucleus.CellAddressCore;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.security.auth.Subject;
+import org.apache.curator.framework.CuratorFramework;
+import org.dcache.auth.Subjects;
+import org.dcache.events.NotificationMessage;
+import org.dcache.events.SystemEvent;
+import org.dcache.namespace.events.EventType;
+import org.dcache.namespace.events.InotifyEvent;
+import org.dcache.vehicles.FileAttributes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileAttributesCacheTest {
+
+    private static final Set<FileAttribute> STAT = EnumSet.of(SIZE, TYPE);
+
+    private static final PnfsId ROOT = new PnfsId("000000000000000000000000000000000001");
+    private static final PnfsId DIRECTORY = new PnfsId("000000000000000000000000000000000002");
+    private static final PnfsId FILE = new PnfsId("000000000000000000000000000000000003");
+    private static final PnfsId OTHER_FILE = new PnfsId("000000000000000000000000000000000004");
+    private static final PnfsId SUBDIRECTORY = new PnfsId("000000000000000000000000000000000005");
+
+    private final Map<String, FileAttributes> namespace = new HashMap<>();
+    private final Map<String, Runnable> duringFetch = new HashMap<>();
+    private Set<PnfsId> subscribed = Set.of();
+    private int fetches;
+
+    private final ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+
+    private FileAttributesCache cache;
+    private Subject user;
+
+    @Before
+    public void setUp() {
+        namespace.put("/", attributes(ROOT, DIR, 512));
+        namespace.put("/data", attributes(DIRECTORY, DIR, 512));
+        namespace.put("/data/file", attributes(FILE, REGULAR, 1000));
+
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(any());
+
+        cache = new FileAttributesCache() {
+            @Override
+            void updateSubscriptions(Set<PnfsId> ids) {
+                subscribed = ids;
+            }
+        };
+        cache.setEnabled(true);
+        cache.setPropagationDelay(0);
+        cache.setExecutor(executor);
+        cache.setCuratorFramework(mock(CuratorFramework.class, RETURNS_DEEP_STUBS));
+        cache.setCellAddress(new CellAddressCore("door@domain"));
+        cache.afterStart();
+
+        user = Subjects.of(1000, 1000, new int[0]);
+    }
+
+    @After
+    public void tearDown() {
+        cache.beforeStop();
+    }
+
+    @Test
+    public void shouldNotCacheUntilSubscribed() throws Exception {
+        stat(user, "/data/file");
+        stat(user, "/data/file");
+
+        assertThat(fetches, is(6)); // Includes warming up the parent directories
+    }
+
+    @Test
+    public void shouldFetchOnlyRequestedPathWhenDirectoriesAreNotCached() throws Exception {
+        cache.setExecutor(mock(ScheduledExecutorService.class));
+
+        FileAttributes attributes = stat(user, "/data/file");
+
+        assertThat(fetches, is(1));
+        assertThat(attributes.getSize(), is(1000L));
+    }
+
+    @Test
+    public void shouldFetchOnlyRequestedPathWhenDirectoriesAreCached() throws Exception {
+        givenCached(user, "/data/file");
+        namespace.put("/data/other", attributes(OTHER_FILE, REGULAR, 3000));
+
+        stat(user, "/data/other");
+
+        assertThat(fetches, is(1));
+    }
+
+    @Test
+    public void shouldCacheWithCachedDirectories() throws Exception {
+        givenCached(user, "/data/file");
+        namespace.put("/data/other", attributes(OTHER_FILE, REGULAR, 3000));
+        stat(user, "/data/other");
+        cache.runPublisher();
+        stat(user, "/data/other");
+        fetches = 0;
+
+        FileAttributes attributes = stat(user, "/data/other");
+
+        assertThat(fetches, is(0));
+        assertThat(attributes.getSize(), is(3000L));
+    }
+
+    @Test
+    public void shouldServeFromCacheOnceSubscribed() throws Exception {
+        givenCached(user, "/data/file");
+
+        FileAttributes attributes = stat(user, "/data/file");
+
+        assertThat(fetches, is(0));
+        assertThat(attributes.getSize(), is(1000L));
+    }
+
+    @Test
+    public void shouldCachePerUser() throws Exception {
+        givenCached(user, "/data/file");
+
+        stat(Subjects.of(2000, 2000, new int[0]), "/data/file");
+
+        assertThat(fetches, is(3));
+    }
+
+    @Test
+    public void shouldFetchAdditionalAttributes() throws Exception {
+        givenCached(user, "/data/file");
+
+        cache.getFileAttributes(user, null, "/data/file", EnumSet.of(FileAttribute.MODE),
+              this::fetch);
+
+        assertThat(fetches, is(1));
+    }
+
+    @Test
+    public void shouldCacheByPnfsId() throws Exception {
+        cache.getFileAttributes(user, null, FILE, STAT, this::fetch);
+        cache.runPublisher();
+        cache.getFileAttributes(user, null, FILE, STAT, this::fetch);
+        fetches = 0;
+
+        cache.getFileAttributes(user, null, FILE, STAT, this::fetch);
+
+        assertThat(fetches, is(0));
+    }
+
+    @Test
+    public void shouldInvalidateWhenAttributesChange() throws Exception {
+        givenCached(user, "/data/file");
+        namespace.get("/data/file").setSize(2000);
+
+        event(EventType.IN_ATTRIB, FILE, null, REGULAR);
+        FileAttributes attributes = stat(user, "/data/file");
+
+        assertThat(fetches, is(1));
+        assertThat(attributes.getSize(), is(2000L));
+    }
+
+    @Test
+    public void shouldInvalidateWhenParentDirectoryIsRenamed() throws Exception {
+        givenCached(user, "/data/file");
+
+        event(EventType.IN_MOVE_SELF, DIRECTORY, null, DIR);
+        stat(user, "/data/file");
+
+        assertThat(fetches, is(2));
+    }
+
+    @Test
+    public void shouldInvalidateWhenFileIsReplaced() throws Exception {
+        givenCached(user, "/data/file");
+        namespace.put("/data/file", attributes(OTHER_FILE, REGULAR, 3000));
+
+        event(EventType.IN_MOVED_TO, DIRECTORY, "file", REGULAR);
+        FileAttributes attributes = stat(user, "/data/file");
+
+        assertThat(fetches, is(1));
+        assertThat(attributes.getPnfsId(), is(equalTo(OTHER_FILE)));
+    }
+
+    @Test
+    public void shouldNotInvalidateSiblings() throws Exception {
+        givenCached(user, "/data/file");
+
+        event(EventType.IN_CREATE, DIRECTORY, "other", REGULAR);
+        stat(user, "/data/file");
+
+        assertThat(fetches, is(0));
+    }
+
+    @Test
+    public void shouldInvalidateEverythingOnOverflow() throws Exception {
+        givenCached(user, "/data/file");
+
+        cache.messageArrived(new NotificationMessage(new SystemEvent(SystemEvent.Type.OVERFLOW)));
+        stat(user, "/data/file");
+
+        assertThat(fetches, is(3));
+    }
+
+    @Test
+    public void shouldInvalidateLocalModifications() throws Exception {
+        givenCached(user, "/data/file");
+
+        cache.invalidate(FILE);
+        stat(user, "/data/file");
+
+        assertThat(fetches, is(1));
+    }
+
+    @Test
+    public void shouldNotCacheBelowDirectoryChangedWhileWarmingUp() throws Exception {
+        givenCached(user, "/data/file");
+        namespace.put("/data/sub", attributes(SUBDIRECTORY, DIR, 512));
+        namespace.put("/data/sub/file", attributes(OTHER_FILE, REGULAR, 3000));
+        event(EventType.IN_ATTRIB, DIRECTORY, null, DIR);
+        duringFetch.put("/data", () -> event(EventType.IN_ATTRIB, DIRECTORY, null, DIR));
+
+        stat(user, "/data/sub/file");
+        cache.runPublisher();
+
+        assertThat(subscribed, not(hasItem(SUBDIRECTORY)));
+    }
+
+    @Test
+    public void shouldNotCacheWithoutInotifyGeneration() throws Exception {
+        cache.beforeStop();
+        cache.setEnabled(true);
+        cache.setInotifyGenerationEnabled(false);
+        cache.afterStart();
+
+        for (int i = 0; i < 5; i++) {
+            stat(user, "/data/file");
+            cache.runPublisher();
+        }
+
+        assertThat(cache.isEnabled(), is(false));
+        assertThat(fetches, is(5));
+    }
+
+    @Test(expected = FileNotFoundCacheException.class)
+    public void shouldPropagateErrors() throws Exception {
+        stat(user, "/data/missing");
+    }
+
+    /**
+     * Repeats the lookup until it is served from the cache: the directories are cached first,
+     * then the entry itself, and each only after its subscription is in effect.
+     */
+    private void givenCached(Subject subject, String path) throws Exception {
+        for (int i = 0; i < 4; i++) {
+            stat(subject, path);
+            cache.runPublisher();
+        }
+        fetches = 0;
+        stat(subject, path);
+        assertThat(fetches, is(0));
+    }
+
+    private FileAttributes stat(Subject subject, String path) throws Exception {
+        return cache.getFileAttributes(subject, null, path, STAT, this::fetch);
+    }
+
+    private void event(EventType type, PnfsId target, String name, FileType fileType) {
+        cache.messageArrived(
+              new NotificationMessage(new InotifyEvent(type, target, name, null, fileType)));
+    }
+
+    private FileAttributes fetch(String path, Set<FileAttribute> attributes)
+          throws FileNotFoundCacheException {
+        fetches++;
+        Runnable action = duringFetch.remove(path);
+        if (action != null) {
+            action.run();
+        }
+        FileAttributes stored = namespace.get(path);
+        if (stored == null) {
+            throw new FileNotFoundCacheException(path);
+        }
+        return stored.clone();
+    }
+
+    private FileAttributes fetch(PnfsId id, Set<FileAttribute> attributes)
+          throws FileNotFoundCacheException {
+        return fetch(namespace.entrySet().stream()
+              .filter(e -> e.getValue().getPnfsId().equals(id))
+              .map(Map.Entry::getKey)
+              .findAny().orElse("/missing"), attributes);
+    }
+
+    private static FileAttributes attributes(PnfsId id, FileType type, long size) {
+        return FileAttributes.of().pnfsId(id).fileType(type).size(size).build();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2026 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.pinmanager;
+
+import static org.dcache.pinmanager.model.Pin.State.PINNING;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import diskCacheV111.util.PnfsId;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.dcache.auth.Subjects;
+import org.dcache.pinmanager.model.Pin;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+public class JdbcDaoTest {
+
+    private static final Date EXPIRATION_TIME = new Date(System.currentTimeMillis() + 60_000);
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcDao dao;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new SingleConnectionDataSource(
+              "jdbc:hsqldb:mem:pins-" + UUID.randomUUID(), "sa", "", true);
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance()
+                  .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            new Liquibase("org/dcache/pinmanager/model/db.changelog-master.xml",
+                  new ClassLoaderResourceAccessor(), database).update("");
+        }
+        dao = new JdbcDao();
+        dao.setDataSource(dataSource);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement().execute("SHUTDOWN");
+        }
+        dataSource.destroy();
+    }
+
+    @Test
+    public void shouldCreateBatchOfPinsWithGeneratedIds() {
+        List<PinDao.PinUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            updates.add(newPin(pnfsId(i), "request-" + i));
+        }
+
+        List<Pin> pins = dao.create(updates);
+
+        assertThat(pins, hasSize(3));
+        assertThat(pins.get(0).getPinId(), is(not(equalTo(pins.get(1).getPinId()))));
+        assertThat(pins.get(1).getPinId(), is(not(equalTo(pins.get(2).getPinId()))));
+        for (int i = 0; i < 3; i++) {
+            Pin pin = pins.get(i);
+            Pin stored = dao.get(dao.where().id(pin.getPinId()));
+            assertThat(stored.getPnfsId(), is(equalTo(pnfsId(i))));
+            assertThat(stored.getRequestId(), is(equalTo("request-" + i)));
+            assertThat(stored.getState(), is(PINNING));
+            assertThat(stored.getCreationTime(), is(equalTo(pin.getCreationTime())));
+            assertThat(pin.getPnfsId(), is(equalTo(pnfsId(i))));
+        }
+    }
+
+    @Test
+    public void shouldCreatePinsOfBatchLikeIndividualPins() {
+        Pin single = dao.create(newPin(pnfsId(0), "request-0"));
+        List<Pin> batch = dao.create(List.of(newPin(pnfsId(1), "request-1")));
+
+        assertThat(batch.get(0).getPinId(), is(not(equalTo(single.getPinId()))));
+        assertThat(dao.get(dao.where().state(PINNING)), hasSize(2));
+    }
+
+    @Test
+    public void shouldCreateNothingForEmptyBatch() {
+        assertThat(dao.create(Collections.emptyList()), is(empty()));
+        assertThat(dao.get(dao.where().state(PINNING)), is(empty()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectBatchOfPinsWithDifferentFields() {
+        dao.create(List.of(newPin(pnfsId(0), "request-0"),
+              newPin(pnfsId(1), "request-1").pool("pool")));
+    }
+
+    private PinDao.PinUpdate newPin(PnfsId pnfsId, String requestId) {
+        return dao.set()
+              .subject(Subjects.ROOT)
+              .state(PINNING)
+              .pnfsId(pnfsId)
+              .requestId(requestId)
+              .sticky("PinManager-" + UUID.randomUUID())
+              .expirationTime(EXPIRATION_TIME);
+    }
+
+    private static PnfsId pnfsId(int i) {
+        return new PnfsId(String.format("0000%032X", i));
+    }
+}
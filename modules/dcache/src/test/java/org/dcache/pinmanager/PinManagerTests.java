@@ -3,6 +3,7 @@ package org.dcache.pinmanager;
 import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
 import static org.dcache.pinmanager.model.Pin.State.PINNED;
+import static org.dcache.pinmanager.model.Pin.State.PINNING;
 import static org.dcache.pinmanager.model.Pin.State.READY_TO_UNPIN;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -15,11 +16,13 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import diskCacheV111.poolManager.Pool;
 import diskCacheV111.poolManager.PoolMonitorV5;
 import diskCacheV111.pools.PoolCostInfo;
 import diskCacheV111.util.CacheException;
 import diskCacheV111.util.CheckStagePermission;
+import diskCacheV111.util.FileNotOnlineCacheException;
 import diskCacheV111.util.PnfsId;
 import diskCacheV111.vehicles.DCapProtocolInfo;
 import diskCacheV111.vehicles.GenericStorageInfo;
@@ -58,6 +61,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -87,7 +91,11 @@ public class PinManagerTests {
 
     final static PnfsId PNFS_ID1 = new PnfsId("0000D4CF1C3302B44095969C8216CE1E9175");
 
+    final static PnfsId PNFS_ID2 = new PnfsId("0000D4CF1C3302B44095969C8216CE1E9176");
+    final static PnfsId PNFS_ID3 = new PnfsId("0000D4CF1C3302B44095969C8216CE1E9177");
+
     final static String REQUEST_ID1 = "request1";
+    final static String REQUEST_ID2 = "request2";
 
     final static diskCacheV111.vehicles.Pool POOL1 = new diskCacheV111.vehicles.Pool("pool1",
           new CellAddressCore("pool1"), Assumptions.none());
@@ -290,6 +298,173 @@ public class PinManagerTests {
         assertEquals(pin.getSticky(), newPin.getSticky());
     }
 
+    @Test
+    public void testBulkPinning() throws Exception {
+        TestDao dao = new TestDao();
+        Pin existing = dao.create(dao.set()
+              .subject(Subjects.ROOT)
+              .requestId(REQUEST_ID1)
+              .expirationTime(new Date(now() + 30))
+              .pnfsId(PNFS_ID1)
+              .pool(POOL1.getName())
+              .sticky(STICKY1)
+              .state(PINNED));
+
+        AtomicInteger stickyFlags = new AtomicInteger();
+        PinRequestProcessor processor = new PinRequestProcessor();
+        processor.setScheduledExecutor(new TestExecutor());
+        processor.setExecutor(MoreExecutors.directExecutor());
+        processor.setDao(dao);
+        processor.setPoolStub(new TestStub(new CellAddressCore("PinManager")) {
+            public PoolSetStickyMessage messageArrived(PoolSetStickyMessage msg) {
+                stickyFlags.incrementAndGet();
+                return msg;
+            }
+        });
+        processor.setPoolManagerStub(new TestPoolManagerStub(new CellAddressCore("PinManager")) {
+            public PoolMgrSelectReadPoolMsg messageArrived(PoolMgrSelectReadPoolMsg msg) {
+                msg.setPool(POOL1);
+                return msg;
+            }
+        });
+        processor.setMaxLifetime(-1);
+        processor.setStagePermission(new CheckStagePermission(null));
+        processor.setPoolMonitor(new PoolMonitorV5() {
+            @Override
+            public PoolSelector getPoolSelector(FileAttributes fileAttributes,
+                  ProtocolInfo protocolInfo,
+                  String linkGroup,
+                  Set<String> excludes) {
+                return new PoolMonitorV5.PnfsFileLocation(fileAttributes, protocolInfo, linkGroup,
+                      excludes) {
+                    @Override
+                    public SelectedPool selectPinPool() {
+                        return new SelectedPool(new PoolInfo(POOL1.getAddress(),
+                              new PoolCostInfo(POOL1.getName(), IoQueueManager.DEFAULT_QUEUE),
+                              ImmutableMap.of()));
+                    }
+                };
+            }
+        });
+
+        PinManagerBulkPinMessage message = new PinManagerBulkPinMessage(asList(
+              new PinManagerBulkPinMessage.Entry(getAttributes(PNFS_ID1), REQUEST_ID1, 30),
+              new PinManagerBulkPinMessage.Entry(getAttributes(PNFS_ID2), REQUEST_ID2, 30),
+              new PinManagerBulkPinMessage.Entry(getAttributes(PNFS_ID3), null, 30)),
+              PROTOCOL_INFO);
+        message = processor.messageArrived(message).get();
+
+        assertEquals(0, message.getReturnCode());
+        assertEquals(2, stickyFlags.get());
+
+        PinManagerBulkPinMessage.Entry resubmitted = message.getEntries().get(0);
+        assertTrue(resubmitted.isSuccessful());
+        assertEquals(existing.getPinId(), resubmitted.getPinId());
+
+        for (PinManagerBulkPinMessage.Entry entry : message.getEntries().subList(1, 3)) {
+            assertTrue(entry.isSuccessful());
+            Pin pin = dao.get(dao.where().id(entry.getPinId()));
+            assertEquals(entry.getPnfsId(), pin.getPnfsId());
+            assertEquals(entry.getRequestId(), pin.getRequestId());
+            assertEquals(entry.getExpirationTime(), pin.getExpirationTime());
+            assertEquals(POOL1.getName(), entry.getPool());
+            assertEquals(POOL1.getName(), pin.getPool());
+            assertEquals(PINNED, pin.getState());
+            assertValidSticky(pin.getSticky());
+        }
+    }
+
+    @Test
+    public void testBulkPinningReplyWhenStarted() throws Exception {
+        TestDao dao = new TestDao();
+        PinRequestProcessor processor = new PinRequestProcessor();
+        processor.setScheduledExecutor(new TestExecutor());
+        processor.setExecutor(MoreExecutors.directExecutor());
+        processor.setDao(dao);
+        processor.setPoolStub(new TestStub(new CellAddressCore("PinManager")));
+        processor.setPoolManagerStub(new TestPoolManagerStub(new CellAddressCore("PinManager")) {
+            @Override
+            public <T extends PoolManagerMessage> ListenableFuture<T> sendAsync(T msg) {
+                /* The file is being staged. */
+                return SettableFuture.create();
+            }
+        });
+        processor.setMaxLifetime(-1);
+        processor.setStagePermission(new CheckStagePermission(null));
+        processor.setPoolMonitor(new PoolMonitorV5() {
+            @Override
+            public PoolSelector getPoolSelector(FileAttributes fileAttributes,
+                  ProtocolInfo protocolInfo,
+                  String linkGroup,
+                  Set<String> excludes) {
+                return new PoolMonitorV5.PnfsFileLocation(fileAttributes, protocolInfo, linkGroup,
+                      excludes) {
+                    @Override
+                    public SelectedPool selectPinPool() throws CacheException {
+                        throw new FileNotOnlineCacheException("File is on tape");
+                    }
+                };
+            }
+        });
+
+        PinManagerBulkPinMessage message = new PinManagerBulkPinMessage(asList(
+              new PinManagerBulkPinMessage.Entry(getAttributes(PNFS_ID1), REQUEST_ID1, 30),
+              new PinManagerBulkPinMessage.Entry(getAttributes(PNFS_ID2), REQUEST_ID2, 30)),
+              PROTOCOL_INFO);
+        message.setReplyWhenStarted(true);
+        message = processor.messageArrived(message).get();
+
+        assertEquals(0, message.getReturnCode());
+        for (PinManagerBulkPinMessage.Entry entry : message.getEntries()) {
+            assertTrue(entry.isSuccessful());
+            Pin pin = dao.get(dao.where().id(entry.getPinId()));
+            assertEquals(entry.getPnfsId(), pin.getPnfsId());
+            assertEquals(PINNING, pin.getState());
+        }
+    }
+
+    @Test
+    public void testBulkUnpinning() throws Exception {
+        TestDao dao = new TestDao();
+        Pin pin1 = dao.create(dao.set()
+              .subject(Subjects.ROOT)
+              .requestId(REQUEST_ID1)
+              .expirationTime(new Date(now() + 30))
+              .pnfsId(PNFS_ID1)
+              .pool(POOL1.getName())
+              .sticky(STICKY1)
+              .state(PINNED));
+        Pin pin2 = dao.create(dao.set()
+              .subject(Subjects.ROOT)
+              .requestId(REQUEST_ID2)
+              .expirationTime(new Date(now() + 30))
+              .pnfsId(PNFS_ID2)
+              .pool(POOL1.getName())
+              .sticky(STICKY1)
+              .state(PINNED));
+
+        UnpinRequestProcessor processor = new UnpinRequestProcessor();
+        processor.setDao(dao);
+        processor.setAuthorizationPolicy(new DefaultAuthorizationPolicy());
+
+        PinManagerBulkUnpinMessage.Entry byRequestId =
+              new PinManagerBulkUnpinMessage.Entry(PNFS_ID2);
+        byRequestId.setRequestId(REQUEST_ID2);
+        PinManagerBulkUnpinMessage message = new PinManagerBulkUnpinMessage(asList(
+              new PinManagerBulkUnpinMessage.Entry(PNFS_ID1, pin1.getPinId()),
+              byRequestId));
+        message.setSubject(Subjects.ROOT);
+        message = processor.messageArrived(message);
+
+        assertEquals(0, message.getReturnCode());
+        assertTrue(message.getEntries().stream()
+              .allMatch(PinManagerBulkUnpinMessage.Entry::isSuccessful));
+        assertEquals(REQUEST_ID1, message.getEntries().get(0).getRequestId());
+        assertEquals(pin2.getPinId(), (long) message.getEntries().get(1).getPinId());
+        assertEquals(READY_TO_UNPIN, dao.get(dao.where().id(pin1.getPinId())).getState());
+        assertEquals(READY_TO_UNPIN, dao.get(dao.where().id(pin2.getPinId())).getState());
+    }
+
     <T extends Comparable<T>> void assertBetween(T lower, T upper, T actual) {
         String message =
               String.format("Expected between <%s> and <%s> but was <%s>",
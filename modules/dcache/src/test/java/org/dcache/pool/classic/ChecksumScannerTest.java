@@ -0,0 +1,123 @@
+package org.dcache.pool.classic;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import diskCacheV111.util.PnfsId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class ChecksumScannerTest {
+
+    private static final PnfsId ID1 = new PnfsId("000000000000000000000000000000000001");
+    private static final PnfsId ID2 = new PnfsId("000000000000000000000000000000000002");
+    private static final PnfsId ID3 = new PnfsId("000000000000000000000000000000000003");
+    private static final PnfsId ID4 = new PnfsId("000000000000000000000000000000000004");
+
+    private final List<PnfsId> repository = List.of(ID3, ID1, ID4, ID2);
+
+    @Test
+    public void shouldSelectSmallestIdsFirst() {
+        assertThat(selected(ChecksumScanner.select(repository, null, 2)), contains(ID1, ID2));
+    }
+
+    @Test
+    public void shouldSelectIdsAfterCheckpoint() {
+        assertThat(selected(ChecksumScanner.select(repository, ID2, 10)), contains(ID3, ID4));
+    }
+
+    @Test
+    public void shouldReturnEmptySelectionWhenDone() {
+        assertThat(selected(ChecksumScanner.select(repository, ID4, 10)), empty());
+    }
+
+    @Test
+    public void shouldCountFilesNotSelected() {
+        ChecksumScanner.Selection selection = ChecksumScanner.select(repository, ID1, 2);
+
+        assertThat(selected(selection), contains(ID2, ID3));
+        assertThat(selection.total, equalTo(4));
+        assertThat(selection.remaining, equalTo(3));
+    }
+
+    @Test
+    public void shouldSpreadWorkersAcrossDevices() {
+        ChecksumScanner.DeviceQueues queues = new ChecksumScanner.DeviceQueues();
+        queues.add("sda", ID1);
+        queues.add("sda", ID2);
+        queues.add("sdb", ID3);
+
+        PnfsId first = queues.take();
+        PnfsId second = queues.take();
+
+        assertThat(first, equalTo(ID1));
+        assertThat(second, equalTo(ID3));
+    }
+
+    @Test
+    public void shouldReuseDeviceWhenVerificationDone() {
+        ChecksumScanner.DeviceQueues queues = new ChecksumScanner.DeviceQueues();
+        queues.add("sda", ID1);
+        queues.add("sda", ID2);
+        queues.add("sdb", ID3);
+        queues.add("sdb", ID4);
+
+        queues.done(queues.take());
+        PnfsId next = queues.take();
+        queues.done(next);
+
+        assertThat(next, equalTo(ID2));
+        assertThat(queues.take(), equalTo(ID3));
+        assertThat(queues.take(), equalTo(ID4));
+        assertThat(queues.take(), nullValue());
+    }
+
+    @Test
+    public void shouldCompleteWhenWorkersAreThrottled() throws Exception {
+        ChecksumScanner.DeviceQueues queues = new ChecksumScanner.DeviceQueues();
+        for (PnfsId id : repository) {
+            queues.add("sda", id);
+        }
+        AtomicInteger allowed = new AtomicInteger(4);
+        Set<PnfsId> verified = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                int index = i;
+                workers.add(executor.submit(() -> {
+                    ChecksumScanner.work(index, allowed::get, 10, queues, id -> {
+                        allowed.set(1);
+                        verified.add(id);
+                    });
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : workers) {
+                worker.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(verified, containsInAnyOrder(ID1, ID2, ID3, ID4));
+    }
+
+    private static List<PnfsId> selected(ChecksumScanner.Selection selection) {
+        return Arrays.asList(selection.ids);
+    }
+}
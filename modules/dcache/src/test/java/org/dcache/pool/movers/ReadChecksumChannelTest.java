@@ -0,0 +1,148 @@
+package org.dcache.pool.movers;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import org.dcache.pool.repository.FileRepositoryChannel;
+import org.dcache.pool.repository.FileStore;
+import org.dcache.util.Checksum;
+import org.dcache.util.ChecksumType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReadChecksumChannelTest {
+
+    private final byte[] data = "Just a short test string to verify checksumming on read\n"
+          .getBytes(StandardCharsets.ISO_8859_1);
+    private final Checksum expectedChecksum = ChecksumType.ADLER32.calculate(data);
+
+    private Path testFile;
+    private ReadChecksumChannel channel;
+    private ReadChecksumChannel.Listener listener;
+
+    @Before
+    public void setUp() throws IOException {
+        testFile = Files.createTempFile("ReadChecksumChannelTest", ".tmp");
+        Files.write(testFile, data);
+        listener = mock(ReadChecksumChannel.Listener.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(testFile);
+    }
+
+    private void open(Checksum checksum) throws IOException {
+        channel = new ReadChecksumChannel(new FileRepositoryChannel(testFile, FileStore.O_READ),
+              Set.of(checksum));
+        channel.addListener(listener);
+    }
+
+    private void readFrom(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                break;
+            }
+            position += n;
+        }
+    }
+
+    @Test
+    public void shouldVerifySequentialRead() throws IOException {
+        open(expectedChecksum);
+
+        readFrom(0, 10);
+        readFrom(10, data.length - 10);
+        channel.close();
+
+        verify(listener).verified(data.length);
+    }
+
+    @Test
+    public void shouldVerifyOverlappingReads() throws IOException {
+        open(expectedChecksum);
+
+        readFrom(0, 20);
+        readFrom(10, 20);
+        readFrom(30, data.length - 30);
+        channel.close();
+
+        verify(listener).verified(data.length);
+    }
+
+    @Test
+    public void shouldVerifyStreamedRead() throws IOException {
+        open(expectedChecksum);
+
+        ByteBuffer buffer = ByteBuffer.allocate(7);
+        while (channel.read(buffer) >= 0) {
+            buffer.clear();
+        }
+        channel.close();
+
+        verify(listener).verified(data.length);
+    }
+
+    @Test
+    public void shouldVerifyTransferTo() throws IOException {
+        open(expectedChecksum);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long position = 0;
+        while (position < data.length) {
+            position += channel.transferTo(position, data.length - position,
+                  Channels.newChannel(out));
+        }
+        channel.close();
+
+        verify(listener).verified(data.length);
+    }
+
+    @Test
+    public void shouldSkipPartialRead() throws IOException {
+        open(expectedChecksum);
+
+        readFrom(0, 10);
+        channel.close();
+
+        verify(listener).skipped();
+        verify(listener, never()).verified(anyLong());
+    }
+
+    @Test
+    public void shouldSkipRandomAccessRead() throws IOException {
+        open(expectedChecksum);
+
+        readFrom(20, data.length - 20);
+        readFrom(0, 20);
+        channel.close();
+
+        verify(listener).skipped();
+        verify(listener, never()).verified(anyLong());
+    }
+
+    @Test
+    public void shouldDetectCorruption() throws IOException {
+        open(ChecksumType.ADLER32.calculate("something else".getBytes(StandardCharsets.UTF_8)));
+
+        readFrom(0, data.length);
+        channel.close();
+
+        verify(listener).corrupted(any(), any());
+        verify(listener, never()).verified(anyLong());
+    }
+}
@@ -0,0 +1,97 @@
+package org.dcache.poolmanager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import diskCacheV111.pools.PoolCostInfo;
+import diskCacheV111.util.FileNotInCacheException;
+import diskCacheV111.vehicles.Pool;
+import diskCacheV111.vehicles.ProtocolInfo;
+import dmg.cells.nucleus.CellAddressCore;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Optional;
+import org.dcache.pool.classic.IoQueueManager;
+import org.dcache.vehicles.FileAttributes;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LocalReadPoolSelectorTest {
+
+    private PoolMonitor poolMonitor;
+    private PoolSelector poolSelector;
+    private ProtocolInfo protocolInfo;
+    private LocalReadPoolSelector selector;
+
+    @Before
+    public void setUp() {
+        poolMonitor = mock(PoolMonitor.class);
+        poolSelector = mock(PoolSelector.class);
+        protocolInfo = mock(ProtocolInfo.class);
+        when(poolMonitor.getPoolSelector(any(), any(), isNull(), any())).thenReturn(poolSelector);
+        selector = new LocalReadPoolSelector(poolMonitor);
+    }
+
+    @Test
+    public void shouldSelectPoolHoldingOnlineFile() throws Exception {
+        when(poolSelector.selectReadPool()).thenReturn(selectedPool("pool1"));
+
+        Optional<Pool> pool = selector.selectReadPool(fileOn("pool1"), protocolInfo, null);
+
+        assertThat(pool.map(Pool::getName), is(Optional.of("pool1")));
+        assertThat(info(), containsString("Selected by door          : 1"));
+    }
+
+    @Test
+    public void shouldNotAskPoolMonitorForOfflineFile() {
+        Optional<Pool> pool = selector.selectReadPool(fileOn(), protocolInfo, null);
+
+        assertThat(pool.isPresent(), is(false));
+        verify(poolMonitor, never()).getPoolSelector(any(), any(), any(), any());
+        assertThat(info(), containsString("after local attempt     : 1"));
+    }
+
+    @Test
+    public void shouldFallBackIfSelectionFails() throws Exception {
+        when(poolSelector.selectReadPool()).thenThrow(new FileNotInCacheException("not online"));
+
+        Optional<Pool> pool = selector.selectReadPool(fileOn("pool1"), protocolInfo, null);
+
+        assertThat(pool.isPresent(), is(false));
+        assertThat(info(), containsString("after local attempt     : 1"));
+    }
+
+    @Test
+    public void shouldCountDelegatedSelections() {
+        selector.delegated();
+        selector.delegated();
+
+        assertThat(info(), containsString("Delegated to pool manager : 2"));
+    }
+
+    private static FileAttributes fileOn(String... pools) {
+        FileAttributes attributes = new FileAttributes();
+        attributes.setLocations(List.of(pools));
+        return attributes;
+    }
+
+    private static SelectedPool selectedPool(String name) {
+        return new SelectedPool(new PoolInfo(new CellAddressCore(name),
+              new PoolCostInfo(name, IoQueueManager.DEFAULT_QUEUE), ImmutableMap.of()));
+    }
+
+    private String info() {
+        StringWriter sw = new StringWriter();
+        selector.getInfo(new PrintWriter(sw));
+        return sw.toString();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2026 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.poolmanager;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.Futures;
+import diskCacheV111.poolManager.CostModuleV1;
+import diskCacheV111.poolManager.PoolMonitorDelta;
+import diskCacheV111.poolManager.PoolMonitorV5;
+import diskCacheV111.poolManager.PoolSelectionUnitV2;
+import diskCacheV111.pools.PoolCostInfo;
+import diskCacheV111.pools.PoolV2Mode;
+import diskCacheV111.vehicles.PoolManagerGetPoolMonitor;
+import diskCacheV111.vehicles.PoolManagerPoolUpMessage;
+import dmg.cells.nucleus.CellAddressCore;
+import dmg.cells.nucleus.CellMessage;
+import dmg.cells.nucleus.CellPath;
+import java.io.Serializable;
+import org.dcache.cells.CellStub;
+import org.dcache.pool.classic.IoQueueManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.SerializationUtils;
+
+/**
+ * Tests a door that follows two pool manager replicas, of which only the leader publishes deltas.
+ */
+public class RemotePoolMonitorTest {
+
+    private static final CellPath POOL_MANAGER = new CellPath("PoolManager");
+    private static final CellAddressCore REPLICA_A =
+          new CellAddressCore("PoolManager", "poolmanagerA");
+    private static final CellAddressCore REPLICA_B =
+          new CellAddressCore("PoolManager", "poolmanagerB");
+    private static final CellAddressCore POOL = new CellAddressCore("pool", "poolDomain");
+
+    private PoolManager replicaA;
+    private PoolManager replicaB;
+    private CellStub poolManagerStub;
+    private RemotePoolMonitor monitor;
+
+    @Before
+    public void setUp() {
+        replicaA = new PoolManager();
+        replicaB = new PoolManager();
+
+        poolManagerStub = mock(CellStub.class);
+        when(poolManagerStub.getDestinationPath()).thenReturn(POOL_MANAGER);
+        when(poolManagerStub.send(any(CellPath.class), any(PoolManagerGetPoolMonitor.class),
+              any())).thenAnswer(invocation -> {
+                    CellPath destination = invocation.getArgument(0);
+                    PoolManagerGetPoolMonitor reply = invocation.getArgument(1);
+                    /* Requests not addressed to a particular replica may reach any replica. */
+                    if (destination.equals(new CellPath(REPLICA_A))) {
+                        reply.setPoolMonitor(replicaA.snapshot());
+                    } else {
+                        reply.setPoolMonitor(replicaB.snapshot());
+                    }
+                    reply.setSucceeded();
+                    return Futures.immediateFuture(reply);
+                });
+
+        monitor = new RemotePoolMonitor();
+        monitor.setPoolManagerStub(poolManagerStub);
+    }
+
+    @Test
+    public void shouldResyncOnceWhenFetchedFromFollower() {
+        poolUp(1);
+        monitor.afterStart();
+
+        for (int i = 2; i < 100; i++) {
+            poolUp(i);
+            monitor.messageArrived(envelope(REPLICA_A), replicaA.publishDelta());
+        }
+
+        assertThat(monitor.getResyncCount(), is(1L));
+        assertThat(freeSpace(), is(99L));
+    }
+
+    @Test
+    public void shouldFollowNewLeaderWithoutResync() {
+        poolUp(1);
+        monitor.afterStart();
+        poolUp(2);
+        monitor.messageArrived(envelope(REPLICA_A), replicaA.publishDelta());
+
+        /* Leadership moves to B, which first publishes its complete pool monitor. */
+        monitor.messageArrived(envelope(REPLICA_B), replicaB.publishMonitor());
+        for (int i = 3; i < 100; i++) {
+            poolUp(i);
+            monitor.messageArrived(envelope(REPLICA_B), replicaB.publishDelta());
+        }
+
+        assertThat(monitor.getResyncCount(), is(1L));
+        assertThat(freeSpace(), is(99L));
+    }
+
+    @Test
+    public void shouldResyncFromPublisherOnMissedDelta() {
+        poolUp(1);
+        monitor.afterStart();
+        monitor.messageArrived(envelope(REPLICA_B), replicaB.publishMonitor());
+
+        poolUp(2);
+        replicaB.publishDelta();
+        poolUp(3);
+        monitor.messageArrived(envelope(REPLICA_B), replicaB.publishDelta());
+
+        assertThat(monitor.getResyncCount(), is(1L));
+        assertThat(freeSpace(), is(3L));
+    }
+
+    /**
+     * Pools report to every pool manager replica.
+     */
+    private void poolUp(long freeSpace) {
+        replicaA.poolUp(freeSpace);
+        replicaB.poolUp(freeSpace);
+    }
+
+    private long freeSpace() {
+        return monitor.getCostModule().getPoolCostInfo(POOL.getCellName()).getSpaceInfo()
+              .getFreeSpace();
+    }
+
+    private static CellMessage envelope(CellAddressCore source) {
+        CellMessage envelope = new CellMessage(new CellAddressCore("door"), null);
+        envelope.addSourceAddress(source);
+        return envelope;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Serializable> T copy(T object) {
+        return (T) SerializationUtils.deserialize(SerializationUtils.serialize(object));
+    }
+
+    /**
+     * The publishing side of a pool manager replica.
+     */
+    private static class PoolManager {
+
+        private final CostModuleV1 costModule = new CostModuleV1();
+        private final PoolMonitorV5 poolMonitor = new PoolMonitorV5();
+        private long publishedVersion;
+
+        PoolManager() {
+            poolMonitor.setPoolSelectionUnit(new PoolSelectionUnitV2());
+            poolMonitor.setCostModule(costModule);
+            poolMonitor.setPartitionManager(new PartitionManager());
+        }
+
+        void poolUp(long freeSpace) {
+            PoolCostInfo cost = new PoolCostInfo(POOL.getCellName(), IoQueueManager.DEFAULT_QUEUE);
+            cost.setSpaceUsage(100, freeSpace, 0, 0);
+            CellMessage envelope = new CellMessage(new CellAddressCore("PoolManager"), null);
+            envelope.addSourceAddress(POOL);
+            costModule.messageArrived(envelope, new PoolManagerPoolUpMessage(POOL.getCellName(),
+                  0, new PoolV2Mode(PoolV2Mode.ENABLED), cost));
+        }
+
+        SerializablePoolMonitor snapshot() {
+            return copy(poolMonitor);
+        }
+
+        SerializablePoolMonitor publishMonitor() {
+            publishedVersion = costModule.getVersion();
+            return snapshot();
+        }
+
+        PoolMonitorDelta publishDelta() {
+            PoolMonitorDelta delta = costModule.getChangesSince(publishedVersion);
+            publishedVersion = delta.getVersion();
+            return copy(delta);
+        }
+    }
+}
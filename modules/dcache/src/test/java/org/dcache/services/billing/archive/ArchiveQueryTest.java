@@ -0,0 +1,233 @@
+package org.dcache.services.billing.archive;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArchiveQueryTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+    private static final long START =
+          DAY.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    private Path dir;
+    private ArchiveWriter writer;
+
+    @Before
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("billing-archive");
+        writer = new ArchiveWriter();
+        writer.setDirectory(dir.toFile());
+        writer.setBlockSize(100);
+        writer.setMaxAge(1);
+        writer.setMaxAgeUnit(TimeUnit.HOURS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Collections.reverseOrder())
+                  .collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void shouldFindRecordByPnfsId() throws Exception {
+        givenRecords(1000);
+
+        List<ArchiveRecord> records = query(new ArchiveQuery(START, START + 1_000_000,
+              ImmutableList.of(pnfsid(517)), null), EnumSet.allOf(Column.class));
+
+        assertThat(records.size(), is(1));
+        ArchiveRecord record = records.get(0);
+        assertThat(record.getPnfsId(), is(equalTo(pnfsid(517))));
+        assertThat(record.getPath(), is(equalTo(path(517))));
+        assertThat(record.getTimestamp(), is(START + 517));
+        assertThat(record.getTransferred(), is(517L * 1000));
+        assertThat(record.getVo(), is(equalTo("vo1")));
+        assertThat(record.getResultCode(), is(0));
+    }
+
+    @Test
+    public void shouldFindRecordsByPathPrefix() throws Exception {
+        givenRecords(1000);
+
+        List<ArchiveRecord> records = query(new ArchiveQuery(START, START + 1_000_000,
+              ImmutableList.of("/data/dir7/"), null), EnumSet.of(Column.PATH));
+
+        assertThat(records.size(), is(100));
+        assertThat(records.stream().allMatch(r -> r.getPath().startsWith("/data/dir7/")),
+              is(true));
+    }
+
+    @Test
+    public void shouldNotMatchPartialPathElement() throws Exception {
+        givenRecords(10);
+
+        List<ArchiveRecord> records = query(new ArchiveQuery(START, START + 1_000_000,
+              ImmutableList.of("/data/di"), null), EnumSet.of(Column.PATH));
+
+        assertThat(records, is(empty()));
+    }
+
+    @Test
+    public void shouldMatchAllPathsByRootPrefix() throws Exception {
+        givenRecords(1000);
+
+        List<ArchiveRecord> records = query(new ArchiveQuery(START, START + 1_000_000,
+              ImmutableList.of("/"), null), EnumSet.of(Column.PATH));
+
+        assertThat(records.size(), is(1000));
+    }
+
+    @Test
+    public void shouldRestrictByTime() throws Exception {
+        givenRecords(1000);
+
+        List<ArchiveRecord> records = query(new ArchiveQuery(START + 250, START + 253,
+              ImmutableList.of(), null), EnumSet.of(Column.PNFSID));
+
+        assertThat(records.stream().map(ArchiveRecord::getPnfsId).collect(Collectors.toList()),
+              contains(pnfsid(250), pnfsid(251), pnfsid(252)));
+    }
+
+    @Test
+    public void shouldSkipNonMatchingBlocks() throws Exception {
+        givenRecords(1000);
+
+        ArchiveQuery query = new ArchiveQuery(START + 250, START + 253, ImmutableList.of(),
+              null);
+        int decoded = query.scan(ArchiveWriter.getArchiveFile(dir, DAY),
+              EnumSet.of(Column.PNFSID), r -> {
+              });
+
+        assertThat(decoded, is(1));
+    }
+
+    @Test
+    public void shouldOnlyDecodeRequestedColumns() throws Exception {
+        givenRecords(10);
+
+        List<ArchiveRecord> records = query(new ArchiveQuery(START, START + 1_000_000,
+              ImmutableList.of(), null), EnumSet.of(Column.VO));
+
+        assertThat(records.size(), is(10));
+        assertThat(records.get(3).getVo(), is(equalTo("vo1")));
+        assertThat(records.get(3).getPath(), is(equalTo("")));
+        assertThat(records.get(3).getTransferred(), is(0L));
+    }
+
+    @Test
+    public void shouldFilterByMessageType() throws Exception {
+        givenRecords(10);
+
+        List<ArchiveRecord> records = query(new ArchiveQuery(START, START + 1_000_000,
+              ImmutableList.of(), "remove"), EnumSet.of(Column.PNFSID));
+
+        assertThat(records.size(), is(2));
+    }
+
+    @Test
+    public void shouldIgnoreTruncatedBlock() throws Exception {
+        givenRecords(150);
+        Path file = ArchiveWriter.getArchiveFile(dir, DAY);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 10));
+
+        List<ArchiveRecord> records = query(new ArchiveQuery(START, START + 1_000_000,
+              ImmutableList.of(), null), EnumSet.of(Column.PNFSID));
+
+        assertThat(records.size(), is(100));
+    }
+
+    @Test
+    public void shouldNotCountRecordsOfFailedWriteAsArchived() throws Exception {
+        Files.createDirectory(ArchiveWriter.getArchiveFile(dir, DAY));
+
+        givenRecords(150);
+
+        StringWriter info = new StringWriter();
+        writer.getInfo(new PrintWriter(info));
+        assertThat(info.toString(), containsString("Archived records : 0\n"));
+        assertThat(info.toString(), containsString("Write failures : 2\n"));
+    }
+
+    @Test
+    public void shouldSizeBloomFilterForAllPathPrefixes() throws Exception {
+        List<ArchiveRecord> block = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            block.add(new ArchiveRecord(START + i, "pool", "pool@dCacheDomain", "transfer",
+                  pnfsid(i), "/data/a" + i + "/b/c/d/e/f/g/h/file", i, 0, 0, "", "", ""));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            ArchiveBlock.write(data, block);
+        }
+        AtomicReference<ArchiveBlock.BlockHeader> header = new AtomicReference<>();
+        ArchiveBlock.read(new DataInputStream(new ByteArrayInputStream(out.toByteArray())),
+              h -> {
+                  header.set(h);
+                  return false;
+              }, EnumSet.noneOf(Column.class));
+
+        long falsePositives = IntStream.range(0, 10_000)
+              .filter(i -> header.get().mightContain("/other/a" + i + "/b/c"))
+              .count();
+        assertThat(falsePositives < 300, is(true));
+    }
+
+    private void givenRecords(int count) {
+        for (int i = 0; i < count; i++) {
+            writer.add(new ArchiveRecord(START + i, "pool", "pool" + (i % 3) + "@dCacheDomain",
+                  i % 5 == 4 ? "remove" : "transfer", pnfsid(i), path(i), i, i * 1000L, 0,
+                  "/DC=org/CN=user" + (i % 2), "vo" + (i % 2), "test:disk@osm"));
+        }
+        writer.flush();
+    }
+
+    private List<ArchiveRecord> query(ArchiveQuery query, EnumSet<Column> columns)
+          throws IOException {
+        List<ArchiveRecord> records = new ArrayList<>();
+        query.scan(ArchiveWriter.getArchiveFile(dir, DAY), columns, records::add);
+        return records;
+    }
+
+    private static String pnfsid(int i) {
+        return String.format("0000%032X", i);
+    }
+
+    private static String path(int i) {
+        return "/data/dir" + (i % 10) + "/file" + i;
+    }
+}
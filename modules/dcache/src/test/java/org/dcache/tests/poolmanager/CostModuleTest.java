@@ -1,21 +1,28 @@
 package org.dcache.tests.poolmanager;
 
 import static org.dcache.util.ByteUnit.GiB;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import diskCacheV111.poolManager.CostModuleV1;
+import diskCacheV111.poolManager.PoolMonitorDelta;
 import diskCacheV111.pools.PoolCostInfo;
 import diskCacheV111.pools.PoolV2Mode;
 import diskCacheV111.vehicles.PoolManagerPoolUpMessage;
 import dmg.cells.nucleus.CellAddressCore;
 import dmg.cells.nucleus.CellMessage;
+import java.io.Serializable;
 import java.util.Arrays;
 import org.dcache.pool.classic.IoQueueManager;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.util.SerializationUtils;
 
 public class CostModuleTest {
 
@@ -247,11 +254,86 @@ public class CostModuleTest {
         assertPercentileCost(FRACTION_JUST_BELOW_ONE, perfCost[2]);
     }
 
+    @Test
+    public void testDeltaContainsUpdatedPools() {
+        _costModule.messageArrived(buildEnvelope(POOL_ADDRESS),
+              buildPoolUpMessageWithCost(POOL_NAME, 100, 20, 30, 50));
+        long version = _costModule.getVersion();
+        _costModule.messageArrived(buildEnvelope(POOL_ADDRESS_2),
+              buildPoolUpMessageWithCost(POOL_NAME_2, 100, 20, 30, 50));
+
+        PoolMonitorDelta delta = _costModule.getChangesSince(version);
+
+        assertEquals(version, delta.getBaseVersion());
+        assertEquals(_costModule.getVersion(), delta.getVersion());
+        assertThat(delta.getUpdatedPools(), contains(POOL_NAME_2));
+        assertThat(delta.getRemovedPools(), is(empty()));
+    }
+
+    @Test
+    public void testDeltaContainsRemovedPools() {
+        _costModule.messageArrived(buildEnvelope(POOL_ADDRESS),
+              buildPoolUpMessageWithCost(POOL_NAME, 100, 20, 30, 50));
+        long version = _costModule.getVersion();
+        _costModule.messageArrived(buildEnvelope(POOL_ADDRESS),
+              buildEmptyPoolUpMessage(POOL_NAME, PoolV2Mode.DISABLED_STRICT));
+
+        PoolMonitorDelta delta = _costModule.getChangesSince(version);
+
+        assertThat(delta.getUpdatedPools(), is(empty()));
+        assertThat(delta.getRemovedPools(), contains(POOL_NAME));
+    }
+
+    @Test
+    public void testDeltaIsEmptyWithoutChanges() {
+        _costModule.messageArrived(buildEnvelope(POOL_ADDRESS),
+              buildPoolUpMessageWithCost(POOL_NAME, 100, 20, 30, 50));
+
+        assertTrue(_costModule.getChangesSince(_costModule.getVersion()).isEmpty());
+    }
+
+    @Test
+    public void testDeltaAppliesToSerializedCopy() {
+        _costModule.messageArrived(buildEnvelope(POOL_ADDRESS),
+              buildPoolUpMessageWithCost(POOL_NAME, 100, 20, 30, 50));
+        _costModule.messageArrived(buildEnvelope(POOL_ADDRESS_2),
+              buildPoolUpMessageWithCost(POOL_NAME_2, 100, 20, 30, 50));
+        CostModuleV1 copy = copy(_costModule);
+        long version = copy.getVersion();
+
+        _costModule.messageArrived(buildEnvelope(POOL_ADDRESS),
+              buildEmptyPoolUpMessage(POOL_NAME, PoolV2Mode.DISABLED_STRICT));
+        _costModule.messageArrived(buildEnvelope(POOL_ADDRESS_3),
+              buildPoolUpMessageWithCost(POOL_NAME_3, 200, 20, 30, 50));
+        copy.apply(copy(_costModule.getChangesSince(version)));
+
+        assertEquals(_costModule.getEpoch(), copy.getEpoch());
+        assertEquals(_costModule.getVersion(), copy.getVersion());
+        assertNull(copy.getPoolCostInfo(POOL_NAME));
+        assertNotNull(copy.getPoolCostInfo(POOL_NAME_2));
+        assertEquals(GiB.toBytes(200L),
+              copy.getPoolCostInfo(POOL_NAME_3).getSpaceInfo().getTotalSpace());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeltaOfOtherCostModuleIsRejected() {
+        CostModuleV1 other = new CostModuleV1();
+        other.messageArrived(buildEnvelope(POOL_ADDRESS),
+              buildPoolUpMessageWithCost(POOL_NAME, 100, 20, 30, 50));
+
+        _costModule.apply(other.getChangesSince(0));
+    }
+
     /*
      *  SUPPORT METHODS FOR BUILDING MESSAGES AND ASSERTING
      */
 
 
+    @SuppressWarnings("unchecked")
+    private static <T extends Serializable> T copy(T object) {
+        return (T) SerializationUtils.deserialize(SerializationUtils.serialize(object));
+    }
+
     private static CellMessage buildEnvelope(CellAddressCore source) {
         CellMessage envelope = new CellMessage(new CellAddressCore("irrelevant"), null);
         envelope.addSourceAddress(source);
@@ -22,16 +22,24 @@ package org.dcache.gplazma.plugins;
 import static org.dcache.gplazma.util.Preconditions.checkAuthentication;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sun.security.auth.UserPrincipal;
 import com.sun.security.auth.module.LdapLoginModule;
+import java.io.PrintWriter;
+import java.net.SocketTimeoutException;
 import java.security.Principal;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import javax.naming.Context;
@@ -56,6 +64,7 @@ import org.dcache.auth.attributes.HomeDirectory;
 import org.dcache.auth.attributes.RootDirectory;
 import org.dcache.gplazma.AuthenticationException;
 import org.dcache.gplazma.NoSuchPrincipalException;
+import org.dcache.gplazma.monitor.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -83,6 +92,9 @@ import org.slf4j.LoggerFactory;
  *    gplazma.ldap.root-dir = "%homeDirectory%" evaluates to the users home directory
  *    gplazma.ldap.group-member = "memberUid" or "uniqueMember"
  * </pre>
+ * <p>
+ * Results of the map, identity and session lookups are cached, see {@link LdapCache}.
+ * Authentication is never cached.
  *
  * @since 2.3
  */
@@ -123,6 +135,16 @@ public class Ldap implements GPlazmaIdentityPlugin, GPlazmaSessionPlugin, GPlazm
     public static final String LDAP_GROUP_TREE = "gplazma.ldap.tree.groups";
     public static final String LDAP_USER_FILTER = "gplazma.ldap.userfilter";
 
+    public static final String LDAP_CONNECT_TIMEOUT = "gplazma.ldap.timeout.connect";
+    public static final String LDAP_READ_TIMEOUT = "gplazma.ldap.timeout.read";
+    public static final String LDAP_TIMEOUT_UNIT = "gplazma.ldap.timeout.unit";
+
+    public static final String LDAP_CACHE_SIZE = "gplazma.ldap.cache.size";
+    public static final String LDAP_CACHE_REFRESH = "gplazma.ldap.cache.refresh";
+    public static final String LDAP_CACHE_EXPIRE = "gplazma.ldap.cache.expire";
+    public static final String LDAP_CACHE_NEGATIVE_EXPIRE = "gplazma.ldap.cache.negative-expire";
+    public static final String LDAP_CACHE_UNIT = "gplazma.ldap.cache.unit";
+
     /**
      * Search control to retrieve uidNumber attribute.
      */
@@ -303,6 +325,39 @@ public class Ldap implements GPlazmaIdentityPlugin, GPlazmaSessionPlugin, GPlazm
      */
     private final boolean tryUidMapping;
 
+    /**
+     * Refreshes cached lookups in the background.
+     */
+    private final ExecutorService refreshExecutor;
+
+    /**
+     * User records by username or uid, as used by the map phase.
+     */
+    private final LdapCache<Principal, User> users;
+
+    /**
+     * Home and root directories by username, as used by the session phase.
+     */
+    private final LdapCache<String, Directories> directories;
+
+    /**
+     * Results of {@link #map(Principal)}.
+     */
+    private final LdapCache<Principal, Principal> mappings;
+
+    /**
+     * Results of {@link #reverseMap(Principal)}.
+     */
+    private final LdapCache<Principal, Set<Principal>> reverseMappings;
+
+    /**
+     * Latency of lookups against the LDAP server.
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
     /**
      * Create a Ldap identity plugin.
      *
@@ -361,6 +416,15 @@ public class Ldap implements GPlazmaIdentityPlugin, GPlazmaSessionPlugin, GPlazm
             ldapConnectionProperties.put("com.sun.jndi.ldap.connect.pool.protocol", "plain ssl");
         }
 
+        /*
+         * Bound the time a login waits for an unresponsive LDAP server.
+         */
+        TimeUnit timeoutUnit = TimeUnit.valueOf(properties.getProperty(LDAP_TIMEOUT_UNIT));
+        ldapConnectionProperties.put("com.sun.jndi.ldap.connect.timeout", String.valueOf(
+              timeoutUnit.toMillis(Long.parseLong(properties.getProperty(LDAP_CONNECT_TIMEOUT)))));
+        ldapConnectionProperties.put("com.sun.jndi.ldap.read.timeout", String.valueOf(
+              timeoutUnit.toMillis(Long.parseLong(properties.getProperty(LDAP_READ_TIMEOUT)))));
+
         if ("simple".equals(properties.getProperty(LDAP_AUTH))) {
             ldapConnectionProperties.put(Context.SECURITY_AUTHENTICATION, "simple");
             ldapConnectionProperties.put(Context.SECURITY_PRINCIPAL,
@@ -375,6 +439,40 @@ public class Ldap implements GPlazmaIdentityPlugin, GPlazmaSessionPlugin, GPlazm
               "userFilter", String.format(userFilter, "{USERNAME}"),
               "useFirstPass", "true"
         );
+
+        refreshExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+              .setNameFormat("ldap-refresh-%d").setDaemon(true).build());
+        long cacheSize = Long.parseLong(properties.getProperty(LDAP_CACHE_SIZE));
+        long refresh = Long.parseLong(properties.getProperty(LDAP_CACHE_REFRESH));
+        long expire = Long.parseLong(properties.getProperty(LDAP_CACHE_EXPIRE));
+        long negativeExpire = Long.parseLong(properties.getProperty(LDAP_CACHE_NEGATIVE_EXPIRE));
+        TimeUnit cacheUnit = TimeUnit.valueOf(properties.getProperty(LDAP_CACHE_UNIT));
+        users = new LdapCache<>("users", timed(this::lookupUser), refreshExecutor,
+              cacheSize, refresh, expire, negativeExpire, cacheUnit);
+        directories = new LdapCache<>("directories", timed(this::lookupDirectories),
+              refreshExecutor, cacheSize, refresh, expire, negativeExpire, cacheUnit);
+        mappings = new LdapCache<>("mappings", timed(this::lookupMapping), refreshExecutor,
+              cacheSize, refresh, expire, negativeExpire, cacheUnit);
+        reverseMappings = new LdapCache<>("reverse mappings", timed(this::lookupReverseMapping),
+              refreshExecutor, cacheSize, refresh, expire, negativeExpire, cacheUnit);
+    }
+
+    @Override
+    public void stop() {
+        refreshExecutor.shutdown();
+    }
+
+    @Override
+    public void getInfo(PrintWriter pw) {
+        pw.println("Server   : " + ldapUrl);
+        pw.println("Failures : " + failures.sum() + " (" + timeouts.sum() + " timed out)");
+        pw.println("Lookups  : " + LatencyHistogram.header());
+        pw.println("           " + latency);
+        pw.println(LdapCache.header());
+        pw.println(users);
+        pw.println(directories);
+        pw.println(mappings);
+        pw.println(reverseMappings);
     }
 
     @Override
@@ -419,11 +517,8 @@ public class Ldap implements GPlazmaIdentityPlugin, GPlazmaSessionPlugin, GPlazm
     @Override
     public void map(Set<Principal> principals) throws AuthenticationException {
 
-        // always try to use gplazma configured filter first
-        String filter = userFilter;
-        boolean isUsernameMissing = false;
-
         Optional<Principal> principal = findFirst(principals, UserNamePrincipal.class::isInstance);
+        boolean isUsernameMissing = false;
 
         if (principal.isEmpty()) {
             checkAuthentication(tryUidMapping, "no username");
@@ -431,7 +526,6 @@ public class Ldap implements GPlazmaIdentityPlugin, GPlazmaSessionPlugin, GPlazm
             principal = findFirst(principals, UidPrincipal.class::isInstance);
             checkAuthentication(principal.isPresent(), "no username or uid");
 
-            filter = "(uidNumber=%s)";
             isUsernameMissing = true;
         }
 
@@ -443,43 +537,171 @@ public class Ldap implements GPlazmaIdentityPlugin, GPlazmaSessionPlugin, GPlazm
               .map(GidPrincipal.class::cast)
               .anyMatch(GidPrincipal::isPrimaryGroup);
 
+        try {
+            User user = users.get(principal.get());
+            if (isUsernameMissing) {
+                principals.add(new UserNamePrincipal(user.name));
+            } else {
+                principals.add(new UidPrincipal(user.uid));
+            }
+            principals.add(new GidPrincipal(user.gid, !hasPrimaryGid));
+            principals.addAll(user.groups);
+        } catch (NoSuchElementException e) {
+            throw new AuthenticationException("unknown " + (isUsernameMissing ? "uid" : "username"));
+        } catch (NamingException e) {
+            LOGGER.warn("Failed to get mapping: {}", e.toString());
+            throw new AuthenticationException("problem with LDAP server");
+        }
+    }
+
+    @Override
+    public Principal map(Principal principal) throws NoSuchPrincipalException {
+        if (!(principal instanceof UserNamePrincipal)
+              && !(principal instanceof GroupNamePrincipal)) {
+            throw new NoSuchPrincipalException(principal);
+        }
+
+        try {
+            return mappings.get(principal);
+        } catch (NoSuchElementException e) {
+            throw new NoSuchPrincipalException(principal);
+        } catch (NamingException e) {
+            LOGGER.warn("Failed to get mapping: {}", e.toString());
+        }
+        throw new NoSuchPrincipalException(principal);
+    }
+
+    @Override
+    public Set<Principal> reverseMap(Principal principal) throws NoSuchPrincipalException {
+        if (!(principal instanceof GidPrincipal) && !(principal instanceof UidPrincipal)) {
+            throw new NoSuchPrincipalException(principal);
+        }
+
+        try {
+            return new HashSet<>(reverseMappings.get(principal));
+        } catch (NoSuchElementException e) {
+            throw new NoSuchPrincipalException(principal);
+        } catch (NamingException e) {
+            LOGGER.warn("Failed to get reverse mapping: {}", e.toString());
+        }
+        throw new NoSuchPrincipalException(principal);
+    }
+
+    @Override
+    public void session(Set<Principal> authorizedPrincipals, Set<Object> attrib)
+          throws AuthenticationException {
+        Optional<Principal> principal = findFirst(authorizedPrincipals,
+              UserNamePrincipal.class::isInstance);
+        if (principal.isPresent()) {
+            // shortcut: no path transitions are required. Use provided values.
+            if (userHomeTransformation == RETURN_ORIGINAL_STRING
+                  && userRootTransformation == RETURN_ORIGINAL_STRING) {
+                attrib.add(new HomeDirectory(userHome));
+                attrib.add(new RootDirectory(userRoot));
+                return;
+            }
+
+            try {
+                Directories dirs = directories.get(principal.get().getName());
+                attrib.add(new HomeDirectory(dirs.home));
+                attrib.add(new RootDirectory(dirs.root));
+            } catch (NoSuchElementException e) {
+                throw new AuthenticationException("no mapping for " + principal.get());
+            } catch (NamingException e) {
+                throw new AuthenticationException("no mapping: "
+                      + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Wraps a lookup to record its latency and failures.
+     */
+    private <K, V> LdapCache.Lookup<K, V> timed(LdapCache.Lookup<K, V> lookup) {
+        return key -> {
+            long start = System.nanoTime();
+            try {
+                return lookup.lookup(key);
+            } catch (NamingException e) {
+                failures.increment();
+                if (isTimeout(e)) {
+                    timeouts.increment();
+                }
+                throw e;
+            } finally {
+                latency.record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    private static boolean isTimeout(NamingException e) {
+        /* The JNDI provider reports a read timeout as a plain NamingException. */
+        return e.getRootCause() instanceof SocketTimeoutException
+              || String.valueOf(e.getMessage()).contains("timed out");
+    }
+
+    /**
+     * Fetch the user record and group memberships of the user identified by a username or uid.
+     */
+    private User lookupUser(Principal principal) throws NamingException {
+        boolean isUsernameMissing = principal instanceof UidPrincipal;
+        // always try to use gplazma configured filter first
+        String filter = isUsernameMissing ? "(uidNumber=%s)" : userFilter;
+
         try (AutoCloseableLdapContext ctx = new AutoCloseableLdapContext()) {
             NamingEnumeration<SearchResult> sResult = ctx.search(peopleOU,
-                  String.format(filter, principal.get().getName()),
+                  String.format(filter, principal.getName()),
                   SC_UID_GID_NUMBER);
 
             try {
-                checkAuthentication(sResult.hasMore(), "unknown %s",
-                      isUsernameMissing ? "uid" : "username");
+                if (!sResult.hasMore()) {
+                    throw new NoSuchElementException();
+                }
 
                 Attributes userAttr = sResult.next().getAttributes();
 
-                Principal usernamePrincipal;
-                if (isUsernameMissing) {
-                    usernamePrincipal = new UserNamePrincipal(
-                          (String) userAttr.get(USER_ID_ATTRIBUTE).get());
-                    principals.add(usernamePrincipal);
-                } else {
-                    usernamePrincipal = principal.get();
-                    principals.add(
-                          new UidPrincipal((String) userAttr.get(UID_NUMBER_ATTRIBUTE).get()));
+                Principal usernamePrincipal = isUsernameMissing
+                      ? new UserNamePrincipal((String) userAttr.get(USER_ID_ATTRIBUTE).get())
+                      : principal;
+
+                Set<GidPrincipal> groups;
+                try {
+                    groups = getGroupsByUid.searchGroup(ctx, usernamePrincipal, peopleOU,
+                          groupOU);
+                } catch (NoSuchElementException e) {
+                    groups = Collections.emptySet();
                 }
 
-                principals.add(new GidPrincipal((String) userAttr.get(GID_NUMBER_ATTRIBUTE).get(),
-                      !hasPrimaryGid));
-                principals.addAll(
-                      getGroupsByUid.searchGroup(ctx, usernamePrincipal, peopleOU, groupOU));
+                return new User(usernamePrincipal.getName(),
+                      (String) userAttr.get(UID_NUMBER_ATTRIBUTE).get(),
+                      (String) userAttr.get(GID_NUMBER_ATTRIBUTE).get(),
+                      groups);
             } finally {
                 sResult.close();
             }
-        } catch (NamingException e) {
-            LOGGER.warn("Failed to get mapping: {}", e.toString());
-            throw new AuthenticationException("problem with LDAP server");
         }
     }
 
-    @Override
-    public Principal map(Principal principal) throws NoSuchPrincipalException {
+    private Directories lookupDirectories(String username) throws NamingException {
+        try (AutoCloseableLdapContext ctx = new AutoCloseableLdapContext()) {
+            NamingEnumeration<SearchResult> sResult = ctx.search(peopleOU,
+                  String.format(userFilter, username),
+                  SC_ALL);
+
+            try {
+                if (!sResult.hasMore()) {
+                    throw new NoSuchElementException();
+                }
+                Attributes attrs = sResult.next().getAttributes();
+                return new Directories(userHomeTransformation.transform(userHome, attrs),
+                      userRootTransformation.transform(userRoot, attrs));
+            } finally {
+                sResult.close();
+            }
+        }
+    }
+
+    private Principal lookupMapping(Principal principal) throws NamingException {
 
         OneToOnePrincipalMapper mapper;
 
@@ -495,7 +717,7 @@ public class Ldap implements GPlazmaIdentityPlugin, GPlazmaSessionPlugin, GPlazm
                     sre.close();
                 }
             };
-        } else if (principal instanceof GroupNamePrincipal) {
+        } else {
             mapper = (c, p) -> {
                 NamingEnumeration<SearchResult> sre = c.search(groupOU,
                       String.format("(%s=%s)", COMMON_NAME_ATTRIBUTE, p.getName()),
@@ -506,22 +728,14 @@ public class Ldap implements GPlazmaIdentityPlugin, GPlazmaSessionPlugin, GPlazm
                     sre.close();
                 }
             };
-        } else {
-            throw new NoSuchPrincipalException(principal);
         }
 
         try (AutoCloseableLdapContext ctx = new AutoCloseableLdapContext()) {
             return mapper.apply(ctx, principal);
-        } catch (NoSuchElementException e) {
-            throw new NoSuchPrincipalException(principal);
-        } catch (NamingException e) {
-            LOGGER.warn("Failed to get mapping: {}", e.toString());
         }
-        throw new NoSuchPrincipalException(principal);
     }
 
-    @Override
-    public Set<Principal> reverseMap(Principal principal) throws NoSuchPrincipalException {
+    private Set<Principal> lookupReverseMapping(Principal principal) throws NamingException {
 
         OneToManyPrincipalMapper mapper;
         if (principal instanceof GidPrincipal) {
@@ -532,64 +746,17 @@ public class Ldap implements GPlazmaIdentityPlugin, GPlazmaSessionPlugin, GPlazm
                 return extractAttributes(ne, COMMON_NAME_ATTRIBUTE, GroupNamePrincipal::new);
 
             };
-        } else if (principal instanceof UidPrincipal) {
+        } else {
             mapper = (c, p) -> {
                 NamingEnumeration<SearchResult> ne = c.search(peopleOU,
                       new BasicAttributes(UID_NUMBER_ATTRIBUTE, p.getName()));
 
                 return extractAttributes(ne, USER_ID_ATTRIBUTE, UserNamePrincipal::new);
             };
-        } else {
-            throw new NoSuchPrincipalException(principal);
         }
 
         try (AutoCloseableLdapContext ctx = new AutoCloseableLdapContext()) {
             return mapper.apply(ctx, principal);
-        } catch (NoSuchElementException e) {
-            throw new NoSuchPrincipalException(principal);
-        } catch (NamingException e) {
-            LOGGER.warn("Failed to get reverse mapping: {}", e.toString());
-        }
-        throw new NoSuchPrincipalException(principal);
-    }
-
-    @Override
-    public void session(Set<Principal> authorizedPrincipals, Set<Object> attrib)
-          throws AuthenticationException {
-        Optional<Principal> principal = findFirst(authorizedPrincipals,
-              UserNamePrincipal.class::isInstance);
-        if (principal.isPresent()) {
-            // shortcut: no path transitions are required. Use provided values.
-            if (userHomeTransformation == RETURN_ORIGINAL_STRING
-                  && userRootTransformation == RETURN_ORIGINAL_STRING) {
-                attrib.add(new HomeDirectory(userHome));
-                attrib.add(new RootDirectory(userRoot));
-                return;
-            }
-
-            try (AutoCloseableLdapContext ctx = new AutoCloseableLdapContext()) {
-                NamingEnumeration<SearchResult> sResult = ctx.search(peopleOU,
-                      String.format(userFilter, principal.get().getName()),
-                      SC_ALL);
-
-                try {
-                    if (sResult.hasMore()) {
-                        SearchResult rs = sResult.next();
-                        Attributes attrs = rs.getAttributes();
-                        attrib.add(
-                              new HomeDirectory(userHomeTransformation.transform(userHome, attrs)));
-                        attrib.add(
-                              new RootDirectory(userRootTransformation.transform(userRoot, attrs)));
-                    } else {
-                        throw new AuthenticationException("no mapping for " + principal.get());
-                    }
-                } finally {
-                    sResult.close();
-                }
-            } catch (NamingException e) {
-                throw new AuthenticationException("no mapping: "
-                      + e.getMessage(), e);
-            }
         }
     }
 
@@ -600,6 +767,38 @@ public class Ldap implements GPlazmaIdentityPlugin, GPlazmaSessionPlugin, GPlazm
         return constraints;
     }
 
+    /**
+     * The attributes of a user relevant to the map phase.
+     */
+    private static class User {
+
+        private final String name;
+        private final String uid;
+        private final String gid;
+        private final Set<GidPrincipal> groups;
+
+        User(String name, String uid, String gid, Set<GidPrincipal> groups) {
+            this.name = name;
+            this.uid = uid;
+            this.gid = gid;
+            this.groups = groups;
+        }
+    }
+
+    /**
+     * The home and root directory of a user.
+     */
+    private static class Directories {
+
+        private final String home;
+        private final String root;
+
+        Directories(String home, String root) {
+            this.home = home;
+            this.root = root;
+        }
+    }
+
     /**
      * A {@link InitialLdapContext} which can be used in try-with-resource block.
      */
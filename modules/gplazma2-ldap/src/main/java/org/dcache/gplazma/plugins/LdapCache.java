@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2024 Deutsches Elektronen-Synchroton,
+ * Member of the Helmholtz Association, (DESY), HAMBURG, GERMANY
+ *
+ * This library is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Library General Public License as
+ * published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Library General Public License for more details.
+ *
+ * You should have received a copy of the GNU Library General Public
+ * License along with this program (see the file COPYING.LIB for more
+ * details); if not, write to the Free Software Foundation, Inc.,
+ * 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+package org.dcache.gplazma.plugins;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.naming.NamingException;
+
+/**
+ * A cache of LDAP lookup results.
+ * <p>
+ * Successful lookups are kept until they expire, and are refreshed in the background once they
+ * are older than the refresh period; while a refresh is in progress, or if it fails, the cached
+ * result is used.  Lookups that found no matching entry are remembered separately, usually for a
+ * shorter time, so that repeated requests for unknown users do not all reach the LDAP server.
+ * Lookups that failed for any other reason are not cached.
+ */
+class LdapCache<K, V> {
+
+    /**
+     * A lookup against the LDAP server.
+     */
+    @FunctionalInterface
+    interface Lookup<K, V> {
+
+        /**
+         * Look up the value for the key.
+         *
+         * @throws NoSuchElementException if the LDAP server has no matching entry.
+         * @throws NamingException        if the lookup failed.
+         */
+        V lookup(K key) throws NamingException;
+    }
+
+    private final String name;
+    private final LoadingCache<K, V> found;
+    private final Cache<K, Boolean> notFound;
+    private final LongAdder notFoundHits = new LongAdder();
+
+    LdapCache(String name, Lookup<K, V> lookup, Executor executor, long size,
+          long refresh, long expire, long negativeExpire, TimeUnit unit) {
+        this.name = name;
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+              .maximumSize(size)
+              .expireAfterWrite(expire, unit)
+              .recordStats();
+        if (refresh > 0 && refresh < expire) {
+            builder.refreshAfterWrite(refresh, unit);
+        }
+        found = builder.build(new CacheLoader<K, V>() {
+            @Override
+            public V load(K key) throws NamingException {
+                return lookup.lookup(key);
+            }
+
+            @Override
+            public ListenableFuture<V> reload(K key, V oldValue) {
+                ListenableFutureTask<V> task =
+                      ListenableFutureTask.create(() -> lookup.lookup(key));
+                executor.execute(task);
+                return task;
+            }
+        });
+        notFound = CacheBuilder.newBuilder()
+              .maximumSize(size)
+              .expireAfterWrite(negativeExpire, unit)
+              .build();
+    }
+
+    /**
+     * Returns the value for the key, looking it up if it is not cached.
+     *
+     * @throws NoSuchElementException if the LDAP server has no matching entry.
+     * @throws NamingException        if the lookup failed.
+     */
+    V get(K key) throws NamingException {
+        if (notFound.getIfPresent(key) != null) {
+            notFoundHits.increment();
+            throw new NoSuchElementException();
+        }
+        try {
+            return found.get(key);
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), NamingException.class);
+            throw new RuntimeException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof NoSuchElementException) {
+                notFound.put(key, Boolean.TRUE);
+            }
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    static String header() {
+        return String.format("%-16s %10s %10s %10s %10s %10s", "cache", "entries", "hits",
+              "misses", "negative", "neg. hits");
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = found.stats();
+        return String.format("%-16s %10d %10d %10d %10d %10d", name, found.size(),
+              stats.hitCount(), stats.missCount(), notFound.size(), notFoundHits.sum());
+    }
+}
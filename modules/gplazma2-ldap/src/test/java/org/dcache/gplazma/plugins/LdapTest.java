@@ -22,26 +22,39 @@ package org.dcache.gplazma.plugins;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_AUTH;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_BINDDN;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_BINDPW;
+import static org.dcache.gplazma.plugins.Ldap.LDAP_CACHE_EXPIRE;
+import static org.dcache.gplazma.plugins.Ldap.LDAP_CACHE_NEGATIVE_EXPIRE;
+import static org.dcache.gplazma.plugins.Ldap.LDAP_CACHE_REFRESH;
+import static org.dcache.gplazma.plugins.Ldap.LDAP_CACHE_SIZE;
+import static org.dcache.gplazma.plugins.Ldap.LDAP_CACHE_UNIT;
+import static org.dcache.gplazma.plugins.Ldap.LDAP_CONNECT_TIMEOUT;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_GROUP_MEMBER;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_GROUP_TREE;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_ORG;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_PEOPLE_TREE;
+import static org.dcache.gplazma.plugins.Ldap.LDAP_READ_TIMEOUT;
+import static org.dcache.gplazma.plugins.Ldap.LDAP_TIMEOUT_UNIT;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_TRY_UID_MAPPING;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_URL;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_USER_FILTER;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_USER_HOME;
 import static org.dcache.gplazma.plugins.Ldap.LDAP_USER_ROOT;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
 import com.google.common.collect.Sets;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintWriter;
 import java.io.Serializable;
+import java.io.StringWriter;
 import java.security.Principal;
 import java.util.Collections;
 import java.util.HashSet;
@@ -106,6 +119,14 @@ public class LdapTest {
         properties.put(LDAP_USER_ROOT, "/");
         properties.put(LDAP_GROUP_MEMBER, "uniqueMember");
         properties.put(LDAP_TRY_UID_MAPPING, "true");
+        properties.put(LDAP_CONNECT_TIMEOUT, "5");
+        properties.put(LDAP_READ_TIMEOUT, "5");
+        properties.put(LDAP_TIMEOUT_UNIT, "SECONDS");
+        properties.put(LDAP_CACHE_SIZE, "100");
+        properties.put(LDAP_CACHE_REFRESH, "5");
+        properties.put(LDAP_CACHE_EXPIRE, "10");
+        properties.put(LDAP_CACHE_NEGATIVE_EXPIRE, "1");
+        properties.put(LDAP_CACHE_UNIT, "MINUTES");
 
         properties.put(LDAP_AUTH, "simple");
         properties.put(LDAP_BINDDN, "uid=kermit,ou=people,o=dcache,c=org");
@@ -259,8 +280,50 @@ public class LdapTest {
         assertFalse("Thread leak detected", threadsAfter.size() > threadsBefore.size() + 4);
     }
 
+    @Test
+    public void shouldUseCachedMappingWhenServerIsDown() throws AuthenticationException {
+        plugin.map(Sets.newHashSet(KERMIT_PRINCIPAL));
+        ldapServer.stop();
+
+        Set<Principal> principals = Sets.newHashSet(KERMIT_PRINCIPAL);
+        plugin.map(principals);
+
+        assertThat("expected UID not found", principals, hasItem(KERMIT_UID_PRINCIPAL));
+        assertThat("expected GID not found", principals, hasItem(ACTOR_GID_PRINCIPAL));
+    }
+
+    @Test
+    public void shouldRememberUnknownUser() {
+        try {
+            plugin.map(Sets.newHashSet(NON_EXISTING_PRINCIPAL));
+            fail("mapping of unknown user succeeded");
+        } catch (AuthenticationException expected) {
+        }
+        ldapServer.stop();
+
+        try {
+            plugin.map(Sets.newHashSet(NON_EXISTING_PRINCIPAL));
+            fail("mapping of unknown user succeeded");
+        } catch (AuthenticationException e) {
+            assertThat(e.getMessage(), containsString("unknown username"));
+        }
+    }
+
+    @Test
+    public void shouldReportLookups() throws AuthenticationException {
+        plugin.map(Sets.newHashSet(KERMIT_PRINCIPAL));
+        plugin.map(Sets.newHashSet(KERMIT_PRINCIPAL));
+
+        StringWriter info = new StringWriter();
+        plugin.getInfo(new PrintWriter(info));
+
+        assertThat(info.toString(), containsString("Failures : 0 (0 timed out)"));
+        assertThat(info.toString(), matchesPattern("(?s).*users +1 +1 +1 .*"));
+    }
+
     @After
     public void tearDown() {
+        plugin.stop();
         ldapServer.stop();
     }
 }
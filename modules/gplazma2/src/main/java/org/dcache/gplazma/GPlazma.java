@@ -1,20 +1,32 @@
 package org.dcache.gplazma;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.removeIf;
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.Service;
 import com.google.common.util.concurrent.ServiceManager;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.reflect.Modifier;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import javax.security.auth.Subject;
 import org.dcache.auth.attributes.Restriction;
 import org.dcache.gplazma.configuration.Configuration;
@@ -28,6 +40,7 @@ import org.dcache.gplazma.loader.PluginLoader;
 import org.dcache.gplazma.loader.PluginLoadingException;
 import org.dcache.gplazma.loader.XmlResourcePluginLoader;
 import org.dcache.gplazma.monitor.CombinedLoginMonitor;
+import org.dcache.gplazma.monitor.LatencyHistogram;
 import org.dcache.gplazma.monitor.LoggingLoginMonitor;
 import org.dcache.gplazma.monitor.LoginMonitor;
 import org.dcache.gplazma.monitor.LoginMonitor.Result;
@@ -61,18 +74,35 @@ public class GPlazma {
     private static final LoginMonitor LOGGING_LOGIN_MONITOR =
           new LoggingLoginMonitor();
 
+    /**
+     * How often logins check whether the configuration has changed.
+     */
+    private static final long CONFIGURATION_CHECK_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
     private Properties _globalProperties;
     private boolean _globalPropertiesHaveUpdated;
 
     private final PluginFactory _customPluginFactory;
 
-    private GPlazmaInternalException _lastLoadPluginsProblem;
+    private volatile GPlazmaInternalException _lastLoadPluginsProblem;
 
     private final ConfigurationLoadingStrategy configurationLoadingStrategy;
 
-    private ValidationStrategy validationStrategy;
+    private volatile ValidationStrategy validationStrategy;
+
+    /**
+     * The current setup. Logins use the setup without holding a lock; a reload replaces it.
+     */
+    private volatile Setup setup;
 
-    private Setup setup;
+    /**
+     * Serialises configuration checks and reloads.
+     */
+    private final ReentrantLock configurationLock = new ReentrantLock();
+
+    private volatile long nextConfigurationCheck = System.nanoTime();
+
+    private volatile ExecutorService authenticationExecutor;
 
     private final List<LoginObserver> loginObservers = new CopyOnWriteArrayList();
     private final List<ReloadObserver> reloadObservers = new CopyOnWriteArrayList();
@@ -111,6 +141,57 @@ public class GPlazma {
         if (setup != null) {
             setup.stop();
         }
+        ExecutorService executor = authenticationExecutor;
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Sets the number of threads used to call consecutive optional and sufficient auth plugins
+     * concurrently. If zero, all auth plugins are called one after another.
+     */
+    public void setAuthenticationThreads(int threads) {
+        checkArgument(threads >= 0, "Number of threads must not be negative");
+        ExecutorService executor = null;
+        if (threads > 0) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                  60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                  new ThreadFactoryBuilder().setNameFormat("gplazma-auth-%d").setDaemon(true)
+                        .build());
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        configurationLock.lock();
+        try {
+            ExecutorService old = authenticationExecutor;
+            authenticationExecutor = executor;
+            Setup setup = this.setup;
+            if (setup != null) {
+                setup.authStrategy.setExecutor(executor);
+            }
+            if (old != null) {
+                old.shutdown();
+            }
+        } finally {
+            configurationLock.unlock();
+        }
+    }
+
+    /**
+     * Prints the latency of the plugins of the current setup. The latencies are recorded since the
+     * configuration was last loaded.
+     */
+    public void printPluginLatencies(PrintWriter pw) {
+        Setup setup = this.setup;
+        if (setup == null) {
+            return;
+        }
+        pw.println("Plugin latencies since last reload:");
+        pw.println(String.format("    %-8s %-24s %s", "phase", "plugin",
+              LatencyHistogram.header()));
+        setup.printLatencies(pw);
+        setup.printPluginInfo(pw);
     }
 
     public void setObservers(Iterable<Object> observers) {
@@ -166,15 +247,10 @@ public class GPlazma {
         requireNonNull(subject, "subject is null");
 
         Setup setup;
-
-        synchronized (configurationLoadingStrategy) {
-            try {
-                checkPluginConfig();
-            } catch (GPlazmaInternalException e) {
-                throw new AuthenticationException("internal gPlazma error: " + e.getMessage());
-            }
-
-            setup = this.setup;
+        try {
+            setup = currentSetup();
+        } catch (GPlazmaInternalException e) {
+            throw new AuthenticationException("internal gPlazma error: " + e.getMessage());
         }
 
         Set<Principal> principals = new HashSet<>();
@@ -244,10 +320,31 @@ public class GPlazma {
     }
 
     private IdentityStrategy getIdentityStrategy() throws GPlazmaInternalException {
-        synchronized (configurationLoadingStrategy) {
-            checkPluginConfig();
-            return setup.identityStrategy;
+        return currentSetup().identityStrategy;
+    }
+
+    /**
+     * Returns the current setup. At most once per {@link #CONFIGURATION_CHECK_INTERVAL}, one
+     * caller checks whether the configuration has changed and reloads it if necessary; all other
+     * callers use the current setup without waiting.
+     */
+    private Setup currentSetup() throws GPlazmaInternalException {
+        if (System.nanoTime() - nextConfigurationCheck >= 0 && configurationLock.tryLock()) {
+            try {
+                if (System.nanoTime() - nextConfigurationCheck >= 0) {
+                    checkPluginConfig();
+                }
+            } finally {
+                nextConfigurationCheck = System.nanoTime() + CONFIGURATION_CHECK_INTERVAL;
+                configurationLock.unlock();
+            }
+        }
+
+        GPlazmaInternalException problem = _lastLoadPluginsProblem;
+        if (problem != null) {
+            throw problem;
         }
+        return setup;
     }
 
     private void reload() throws GPlazmaInternalException {
@@ -263,12 +360,13 @@ public class GPlazma {
                 newSetup.stop();
                 throw e;
             }
+            newSetup.authStrategy.setExecutor(authenticationExecutor);
 
             Setup oldSetup = this.setup;
+            this.setup = newSetup;
             if (oldSetup != null) {
                 oldSetup.stop();
             }
-            this.setup = newSetup;
 
             if (isPreviousLoadPluginsProblematic()) {
                 /* FIXME: this should be logged at info level but we want it to
@@ -318,15 +416,15 @@ public class GPlazma {
         return setup.build();
     }
 
-    private void checkPluginConfig() throws GPlazmaInternalException {
+    private void checkPluginConfig() {
         if (_globalPropertiesHaveUpdated || configurationLoadingStrategy.hasUpdated()) {
             _globalPropertiesHaveUpdated = false;
-            reload();
-            reloadObservers.forEach(ReloadObserver::configReloaded);
-        }
-
-        if (isPreviousLoadPluginsProblematic()) {
-            throw _lastLoadPluginsProblem;
+            try {
+                reload();
+                reloadObservers.forEach(ReloadObserver::configReloaded);
+            } catch (GPlazmaInternalException e) {
+                // recorded as _lastLoadPluginsProblem
+            }
         }
     }
 
@@ -402,7 +500,10 @@ public class GPlazma {
         private final SessionStrategy sessionStrategy;
         private final IdentityStrategy identityStrategy;
 
+        private final List<GPlazmaPluginService<?>> plugins;
         private final ServiceManager manager;
+        private final Map<String, List<? extends GPlazmaPluginService<?>>> phases =
+              new LinkedHashMap<>();
         private Throwable failure;
 
         Setup(Plugins<GPlazmaAuthenticationPlugin> authenticationPlugins,
@@ -422,10 +523,33 @@ public class GPlazma {
             accountStrategy.setPlugins(accountPlugins);
             sessionStrategy.setPlugins(sessionPlugins);
             identityStrategy.setPlugins(identityPlugins);
-            manager = new ServiceManager(
+            plugins = ImmutableList.copyOf(
                   concat(authenticationPlugins, mappingPlugins, accountPlugins, sessionPlugins,
                         identityPlugins));
+            manager = new ServiceManager(plugins);
             manager.addListener(this, MoreExecutors.directExecutor());
+            phases.put("auth", authenticationPlugins);
+            phases.put("map", mappingPlugins);
+            phases.put("account", accountPlugins);
+            phases.put("session", sessionPlugins);
+        }
+
+        void printLatencies(PrintWriter pw) {
+            phases.forEach((phase, plugins) -> plugins.forEach(p ->
+                  pw.println(String.format("    %-8s %-24s %s", phase, p.getName(),
+                        p.getLatency()))));
+        }
+
+        void printPluginInfo(PrintWriter pw) {
+            for (GPlazmaPluginService<?> plugin : plugins) {
+                StringWriter info = new StringWriter();
+                plugin.getPlugin().getInfo(new PrintWriter(info));
+                if (info.getBuffer().length() > 0) {
+                    pw.println();
+                    pw.println("Plugin " + plugin.getName() + ":");
+                    info.toString().lines().forEach(l -> pw.println("    " + l));
+                }
+            }
         }
 
         @Override
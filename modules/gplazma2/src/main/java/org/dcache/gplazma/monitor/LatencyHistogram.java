@@ -0,0 +1,106 @@
+package org.dcache.gplazma.monitor;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies with buckets of exponentially growing width.
+ * <p>
+ * Bucket {@code i} counts latencies below 2^i microseconds that do not fall into a lower bucket.
+ * Percentiles are reported as the upper bound of the bucket they fall into, which is an
+ * overestimate by at most a factor of two. Recording a latency does not take a lock, thus the
+ * histogram may be updated by many threads concurrently.
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 36;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(NANOSECONDS.toMicros(nanos), 0);
+        int bucket = Math.min(Long.SIZE - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        buckets[bucket].increment();
+        count.increment();
+        total.add(micros);
+        max.accumulate(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean latency in microseconds, or zero if nothing was recorded.
+     */
+    public long getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : total.sum() / n;
+    }
+
+    /**
+     * @return the largest recorded latency in microseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns an upper bound of the given percentile of recorded latencies.
+     *
+     * @param percentile a value between 0 and 100
+     * @return the percentile in microseconds, or zero if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            n += counts[i];
+        }
+        long rank = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(1L << i, getMax());
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,10d %10s %10s %10s %10s %10s", getCount(),
+              format(getMean()), format(getPercentile(50)), format(getPercentile(95)),
+              format(getPercentile(99)), format(getMax()));
+    }
+
+    /**
+     * Returns a header for the output of {@link #toString}.
+     */
+    public static String header() {
+        return String.format("%10s %10s %10s %10s %10s %10s", "count", "mean", "p50", "p95",
+              "p99", "max");
+    }
+
+    private static String format(long micros) {
+        return String.format("%.1f ms", micros / 1000.0);
+    }
+}
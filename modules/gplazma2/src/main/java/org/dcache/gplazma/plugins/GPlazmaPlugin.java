@@ -1,5 +1,7 @@
 package org.dcache.gplazma.plugins;
 
+import java.io.PrintWriter;
+
 public interface GPlazmaPlugin {
 
     default void start() throws Exception {
@@ -7,4 +9,11 @@ public interface GPlazmaPlugin {
 
     default void stop() throws Exception {
     }
+
+    /**
+     * Provides information about the plugin, such as the state of its caches, for the info
+     * output of the gPlazma service.
+     */
+    default void getInfo(PrintWriter pw) {
+    }
 }
@@ -2,6 +2,7 @@ package org.dcache.gplazma.strategies;
 
 import java.security.Principal;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import org.dcache.auth.attributes.Restriction;
 import org.dcache.gplazma.AuthenticationException;
 import org.dcache.gplazma.monitor.LoginMonitor;
@@ -19,4 +20,11 @@ public interface AuthenticationStrategy
           Set<Principal> identifiedPrincipals,
           Set<Restriction> restrictionStore)
           throws AuthenticationException;
+
+    /**
+     * Sets the executor used to call independent plugins concurrently. If not set, plugins are
+     * called one after another.
+     */
+    default void setExecutor(Executor executor) {
+    }
 }
@@ -0,0 +1,38 @@
+package org.dcache.gplazma.strategies;
+
+import org.dcache.gplazma.AuthenticationException;
+import org.dcache.gplazma.plugins.GPlazmaPlugin;
+
+/**
+ * A PluginCaller that can also call plugins independently of each other, allowing {@link
+ * PAMStyleStrategy} to call them concurrently.
+ */
+public interface ConcurrentPluginCaller<T extends GPlazmaPlugin> extends PluginCaller<T> {
+
+    /**
+     * Prepares a call of the plugin that neither depends on nor modifies state shared with the
+     * calls of other plugins.
+     */
+    IndependentCall fork(GPlazmaPluginService<T> plugin);
+
+    /**
+     * A call of a single plugin.
+     */
+    interface IndependentCall {
+
+        /**
+         * Calls the plugin. This may happen on any thread.
+         */
+        void call() throws AuthenticationException;
+
+        /**
+         * Applies the outcome of the call to the shared state. This happens on the thread that
+         * called {@link PAMStyleStrategy#callPlugins}, in the order the plugins are configured,
+         * and only for those plugins that would have been called had they been called one after
+         * another.
+         *
+         * @param failure why the call failed, or null if it succeeded
+         */
+        void complete(AuthenticationException failure);
+    }
+}
@@ -1,8 +1,10 @@
 package org.dcache.gplazma.strategies;
 
 import java.security.Principal;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import org.dcache.auth.attributes.Restriction;
 import org.dcache.gplazma.AuthenticationException;
 import org.dcache.gplazma.SessionID;
@@ -25,11 +27,18 @@ public class DefaultAuthenticationStrategy implements AuthenticationStrategy {
 
     private volatile PAMStyleStrategy<GPlazmaAuthenticationPlugin> pamStyleAuthentiationStrategy;
 
+    private volatile Executor executor;
+
     @Override
     public void setPlugins(List<GPlazmaPluginService<GPlazmaAuthenticationPlugin>> plugins) {
         pamStyleAuthentiationStrategy = new PAMStyleStrategy<>(plugins);
     }
 
+    @Override
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
     /**
      * Devegates execution of the {@link GPlazmaAuthenticationPlugin#authenticate(SessionID,
      * Set<Object>,Set<Object>, Set<Principal>) GPlazmaAuthenticationPlugin.authenticate} methods of
@@ -48,7 +57,7 @@ public class DefaultAuthenticationStrategy implements AuthenticationStrategy {
           final Set<Principal> identifiedPrincipals,
           final Set<Restriction> restrictionStore)
           throws AuthenticationException {
-        pamStyleAuthentiationStrategy.callPlugins(service -> {
+        PluginCaller<GPlazmaAuthenticationPlugin> caller = service -> {
             monitor.authPluginBegins(service.getName(), service.getControl(),
                   publicCredential, privateCredential,
                   identifiedPrincipals);
@@ -69,6 +78,51 @@ public class DefaultAuthenticationStrategy implements AuthenticationStrategy {
                       result, error, publicCredential, privateCredential,
                       identifiedPrincipals);
             }
-        });
+        };
+
+        Executor executor = this.executor;
+        if (executor == null) {
+            pamStyleAuthentiationStrategy.callPlugins(caller);
+            return;
+        }
+
+        pamStyleAuthentiationStrategy.callPlugins(new ConcurrentPluginCaller<>() {
+            @Override
+            public void call(GPlazmaPluginService<GPlazmaAuthenticationPlugin> service)
+                  throws AuthenticationException {
+                caller.call(service);
+            }
+
+            /* Each concurrent call works on its own copy of the principals and restrictions.
+             * The credentials are shared, as authentication plugins only read them.
+             */
+            @Override
+            public IndependentCall fork(
+                  GPlazmaPluginService<GPlazmaAuthenticationPlugin> service) {
+                Set<Principal> principals = new HashSet<>(identifiedPrincipals);
+                Set<Restriction> restrictions = new HashSet<>();
+                return new IndependentCall() {
+                    @Override
+                    public void call() throws AuthenticationException {
+                        service.getPlugin().authenticate(publicCredential, privateCredential,
+                              principals, restrictions);
+                    }
+
+                    @Override
+                    public void complete(AuthenticationException failure) {
+                        monitor.authPluginBegins(service.getName(), service.getControl(),
+                              publicCredential, privateCredential, identifiedPrincipals);
+                        if (failure == null) {
+                            identifiedPrincipals.addAll(principals);
+                            restrictionStore.addAll(restrictions);
+                        }
+                        monitor.authPluginEnds(service.getName(), service.getControl(),
+                              failure == null ? Result.SUCCESS : Result.FAIL,
+                              failure == null ? null : failure.getMessage(),
+                              publicCredential, privateCredential, identifiedPrincipals);
+                    }
+                };
+            }
+        }, executor);
     }
 }
@@ -4,6 +4,7 @@ import static java.util.Objects.requireNonNull;
 
 import com.google.common.util.concurrent.AbstractService;
 import org.dcache.gplazma.configuration.ConfigurationItemControl;
+import org.dcache.gplazma.monitor.LatencyHistogram;
 import org.dcache.gplazma.plugins.GPlazmaPlugin;
 
 /**
@@ -14,6 +15,7 @@ public class GPlazmaPluginService<T extends GPlazmaPlugin> extends AbstractServi
     private final T _plugin;
     private final ConfigurationItemControl _control;
     private final String _name;
+    private final LatencyHistogram _latency = new LatencyHistogram();
 
     public GPlazmaPluginService(T plugin, String name, ConfigurationItemControl control) {
         requireNonNull(plugin, "plugin is null");
@@ -66,6 +68,13 @@ public class GPlazmaPluginService<T extends GPlazmaPlugin> extends AbstractServi
         return _control;
     }
 
+    /**
+     * @return the latencies of calls to the plugin.
+     */
+    public LatencyHistogram getLatency() {
+        return _latency;
+    }
+
     @Override
     public String toString() {
         return "GPlazmaPluginElement[" + _plugin + "," + _control + "]";
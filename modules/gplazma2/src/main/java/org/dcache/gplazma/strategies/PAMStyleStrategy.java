@@ -1,15 +1,22 @@
 package org.dcache.gplazma.strategies;
 
+import static org.dcache.gplazma.configuration.ConfigurationItemControl.OPTIONAL;
 import static org.dcache.gplazma.configuration.ConfigurationItemControl.SUFFICIENT;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import org.dcache.gplazma.AuthenticationException;
 import org.dcache.gplazma.configuration.ConfigurationItemControl;
 import org.dcache.gplazma.plugins.GPlazmaPlugin;
+import org.dcache.gplazma.strategies.ConcurrentPluginCaller.IndependentCall;
 import org.dcache.util.NDC;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 /**
  * This class provides a common mechanism to iterate through a list of plugins that have been
@@ -79,20 +86,60 @@ public class PAMStyleStrategy<T extends GPlazmaPlugin> {
      */
     public void callPlugins(PluginCaller<T> caller)
           throws AuthenticationException {
+        callPlugins(caller, null, null);
+    }
+
+    /**
+     * Like {@link #callPlugins(PluginCaller)}, except that consecutive OPTIONAL and SUFFICIENT
+     * plugins are called concurrently. Their outcome is applied in the order the plugins are
+     * configured, thus the result is the same as if the plugins were called one after another,
+     * provided none of them depends on the outcome of another.
+     * <p>
+     * The first plugin of such a group is called on the calling thread, the others using the
+     * executor.
+     */
+    public void callPlugins(ConcurrentPluginCaller<T> caller, Executor executor)
+          throws AuthenticationException {
+        callPlugins(caller, caller, executor);
+    }
+
+    private void callPlugins(PluginCaller<T> caller, ConcurrentPluginCaller<T> concurrentCaller,
+          Executor executor) throws AuthenticationException {
         AuthenticationException firstRequiredPluginException = null;
-        for (GPlazmaPluginService<T> pluginElement : pluginElements) {
+        int size = pluginElements.size();
+        int i = 0;
+        while (i < size) {
+            int end = i + 1;
+            if (executor != null && isIndependent(pluginElements.get(i))) {
+                while (end < size && isIndependent(pluginElements.get(end))) {
+                    end++;
+                }
+            }
+
+            if (end - i > 1) {
+                if (callConcurrently(pluginElements.subList(i, end), concurrentCaller, executor)) {
+                    return;
+                }
+                i = end;
+                continue;
+            }
+
+            GPlazmaPluginService<T> pluginElement = pluginElements.get(i++);
             ConfigurationItemControl control = pluginElement.getControl();
             NDC ndc = NDC.cloneNdc();
 
             try {
                 NDC.push(pluginElement.getName());
 
+                long start = System.nanoTime();
                 try {
                     caller.call(pluginElement);
                 } catch (RuntimeException e) {
                     logger.error("Bug in plugin: ", e);
                     throw new AuthenticationException("bug in plugin " +
                           pluginElement.getName() + ": " + e.getMessage());
+                } finally {
+                    pluginElement.getLatency().record(System.nanoTime() - start);
                 }
 
                 logger.debug("{} plugin completed", control.name());
@@ -136,4 +183,90 @@ public class PAMStyleStrategy<T extends GPlazmaPlugin> {
             throw firstRequiredPluginException;
         }
     }
+
+    private static boolean isIndependent(GPlazmaPluginService<?> pluginElement) {
+        ConfigurationItemControl control = pluginElement.getControl();
+        return control == OPTIONAL || control == SUFFICIENT;
+    }
+
+    /**
+     * Calls a group of OPTIONAL and SUFFICIENT plugins concurrently.
+     *
+     * @return true if a SUFFICIENT plugin succeeded, false otherwise.
+     */
+    private boolean callConcurrently(List<GPlazmaPluginService<T>> elements,
+          ConcurrentPluginCaller<T> caller, Executor executor) {
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        List<IndependentCall> calls = new ArrayList<>(elements.size());
+        List<CompletableFuture<AuthenticationException>> results = new ArrayList<>(
+              elements.size());
+        for (GPlazmaPluginService<T> element : elements) {
+            calls.add(caller.fork(element));
+        }
+        try {
+            for (int i = 1; i < elements.size(); i++) {
+                GPlazmaPluginService<T> element = elements.get(i);
+                IndependentCall call = calls.get(i);
+                results.add(CompletableFuture.supplyAsync(() -> call(element, call, mdc),
+                      executor));
+            }
+            results.add(0, CompletableFuture.completedFuture(
+                  call(elements.get(0), calls.get(0), mdc)));
+
+            for (int i = 0; i < elements.size(); i++) {
+                GPlazmaPluginService<T> element = elements.get(i);
+                ConfigurationItemControl control = element.getControl();
+                AuthenticationException failure = results.get(i).join();
+
+                NDC ndc = NDC.cloneNdc();
+                try {
+                    NDC.push(element.getName());
+                    calls.get(i).complete(failure);
+                    if (failure == null) {
+                        logger.debug("{} plugin completed", control.name());
+                        if (control == SUFFICIENT) {
+                            return true;
+                        }
+                    } else {
+                        logger.debug("{} plugin failed: {}", control.name(),
+                              failure.getMessage());
+                    }
+                } finally {
+                    NDC.set(ndc);
+                }
+            }
+            return false;
+        } finally {
+            results.forEach(f -> f.cancel(false));
+        }
+    }
+
+    private static AuthenticationException call(GPlazmaPluginService<?> element,
+          IndependentCall call, Map<String, String> mdc) {
+        Map<String, String> previous = MDC.getCopyOfContextMap();
+        setMdc(mdc);
+        NDC.push(element.getName());
+        long start = System.nanoTime();
+        try {
+            call.call();
+            return null;
+        } catch (AuthenticationException e) {
+            return e;
+        } catch (RuntimeException e) {
+            logger.error("Bug in plugin: ", e);
+            return new AuthenticationException("bug in plugin " +
+                  element.getName() + ": " + e.getMessage());
+        } finally {
+            element.getLatency().record(System.nanoTime() - start);
+            setMdc(previous);
+        }
+    }
+
+    private static void setMdc(Map<String, String> mdc) {
+        if (mdc == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(mdc);
+        }
+    }
 }
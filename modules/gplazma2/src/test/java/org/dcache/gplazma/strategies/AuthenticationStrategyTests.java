@@ -4,6 +4,7 @@ import static org.dcache.gplazma.configuration.ConfigurationItemControl.OPTIONAL
 import static org.dcache.gplazma.configuration.ConfigurationItemControl.REQUIRED;
 import static org.dcache.gplazma.configuration.ConfigurationItemControl.REQUISITE;
 import static org.dcache.gplazma.configuration.ConfigurationItemControl.SUFFICIENT;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import com.google.common.collect.ImmutableList;
@@ -12,6 +13,8 @@ import com.google.common.collect.Sets;
 import java.security.Principal;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.dcache.auth.attributes.Restriction;
 import org.dcache.gplazma.AuthenticationException;
 import org.dcache.gplazma.configuration.parser.FactoryConfigurationException;
@@ -310,6 +313,71 @@ public class AuthenticationStrategyTests {
               privateCredential, identifiedPrincipals, restrictions);
     }
 
+    @Test
+    public void testConcurrentOptionalPlugins() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            AuthenticationStrategy strategy =
+                  strategyFactory.newAuthenticationStrategy();
+            strategy.setPlugins(successOptionalPlugins);
+            strategy.setExecutor(executor);
+            Set<Principal> identifiedPrincipals = Sets.newHashSet();
+            strategy.authenticate(IGNORING_LOGIN_MONITOR, Sets.newHashSet(),
+                  Sets.newHashSet(), identifiedPrincipals, Sets.newHashSet());
+            assertEquals(1, identifiedPrincipals.size());
+            for (GPlazmaPluginService<?> plugin : successOptionalPlugins) {
+                assertEquals(1, plugin.getLatency().getCount());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentSufficientPluginSkipsRemainingPlugins() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            AuthenticationStrategy strategy =
+                  strategyFactory.newAuthenticationStrategy();
+            strategy.setPlugins(ImmutableList.of(
+                  new GPlazmaPluginService<GPlazmaAuthenticationPlugin>(
+                        new ThrowAuthenticationExceptionStrategy(), "throw-auth", SUFFICIENT),
+                  new GPlazmaPluginService<GPlazmaAuthenticationPlugin>(
+                        new AlwaysAuthenticateStrategy(), "always", SUFFICIENT),
+                  new GPlazmaPluginService<GPlazmaAuthenticationPlugin>(
+                        new ThrowRuntimeExceptionStrategy(), "throw-run", REQUIRED)));
+            strategy.setExecutor(executor);
+            Set<Principal> identifiedPrincipals = Sets.newHashSet();
+            strategy.authenticate(IGNORING_LOGIN_MONITOR, Sets.newHashSet(),
+                  Sets.newHashSet(), identifiedPrincipals, Sets.newHashSet());
+            assertEquals(1, identifiedPrincipals.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = TestAuthenticationException.class)
+    public void testConcurrentOptionalPluginsFollowedByRequisite() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            AuthenticationStrategy strategy =
+                  strategyFactory.newAuthenticationStrategy();
+            strategy.setPlugins(ImmutableList.of(
+                  new GPlazmaPluginService<GPlazmaAuthenticationPlugin>(
+                        new ThrowRuntimeExceptionStrategy(), "throw-run", OPTIONAL),
+                  new GPlazmaPluginService<GPlazmaAuthenticationPlugin>(
+                        new AlwaysAuthenticateStrategy(), "always", OPTIONAL),
+                  new GPlazmaPluginService<GPlazmaAuthenticationPlugin>(
+                        new ThrowTestAuthenticationExceptionStrategy(), "throw-test-auth",
+                        REQUISITE)));
+            strategy.setExecutor(executor);
+            strategy.authenticate(IGNORING_LOGIN_MONITOR, Sets.newHashSet(),
+                  Sets.newHashSet(), Sets.newHashSet(), Sets.newHashSet());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     private static final class DoNotingStrategy
           implements GPlazmaAuthenticationPlugin {
 
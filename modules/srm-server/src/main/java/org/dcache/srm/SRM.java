@@ -352,6 +352,10 @@ public class SRM implements CellLifeCycleAware {
         return schedulers.getInfo();
     }
 
+    public CharSequence getJobStorageInfo() {
+        return databaseFactory.getInfo();
+    }
+
     public CharSequence getGetSchedulerInfo() {
         return schedulers.getDetailedInfo(GetFileRequest.class);
     }
@@ -72,9 +72,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -105,6 +110,13 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
     protected final TransactionTemplate transactionTemplate;
     private final boolean logHistory;
 
+    /**
+     * Prepared statements reused by the current thread while it is building JDBC batches, indexed
+     * by their SQL; null when not building batches.
+     */
+    private final ThreadLocal<Map<String, PreparedStatement>> batchStatements =
+          new ThreadLocal<>();
+
     public DatabaseJobStorage(Configuration.DatabaseParameters configuration,
           ScheduledExecutorService executor)
           throws DataAccessException {
@@ -190,17 +202,24 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
 
     private void saveHistory(Connection connection, Job job,
           List<Job.JobHistory> history) throws SQLException {
+        saveHistory(connection, Collections.singletonMap(job, history));
+    }
+
+    private void saveHistory(Connection connection,
+          Map<? extends Job, List<Job.JobHistory>> histories) throws SQLException {
         PreparedStatement stmt =
               connection.prepareStatement(
                     "INSERT INTO " + getHistoryTableName() + " VALUES (?,?,?,?,?)");
         try {
-            for (Job.JobHistory element : history) {
-                stmt.setLong(1, element.getId());
-                stmt.setLong(2, job.getId());
-                stmt.setInt(3, element.getState().getStateId());
-                stmt.setLong(4, element.getTransitionTime());
-                stmt.setString(5, element.getDescription());
-                stmt.addBatch();
+            for (Map.Entry<? extends Job, List<Job.JobHistory>> entry : histories.entrySet()) {
+                for (Job.JobHistory element : entry.getValue()) {
+                    stmt.setLong(1, element.getId());
+                    stmt.setLong(2, entry.getKey().getId());
+                    stmt.setInt(3, element.getState().getStateId());
+                    stmt.setLong(4, element.getTransitionTime());
+                    stmt.setString(5, element.getDescription());
+                    stmt.addBatch();
+                }
             }
             stmt.executeBatch();
         } finally {
@@ -259,6 +278,86 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
         markHistoryAsSaved(savedHistory);
     }
 
+    /**
+     * Saves several jobs in a single transaction. The updates of all jobs are sent to the
+     * database as a single JDBC batch per table, followed by a batch of inserts for those jobs
+     * that were not yet in the database.
+     */
+    @Override
+    public void saveJobs(Collection<J> jobs, boolean force) throws TransactionException {
+        Map<J, List<Job.JobHistory>> savedHistory =
+              transactionTemplate.execute(status -> jdbcTemplate.execute((Connection con) -> {
+                  Map<J, List<Job.JobHistory>> histories = new LinkedHashMap<>();
+                  Map<PreparedStatement, List<J>> updates = new IdentityHashMap<>();
+                  Map<PreparedStatement, List<J>> creates = new IdentityHashMap<>();
+                  List<PreparedStatement> batchCreates = new ArrayList<>();
+                  batchStatements.set(new HashMap<>());
+                  try {
+                      for (J job : jobs) {
+                          job.rlock();
+                          try {
+                              List<Job.JobHistory> history = getJobHistoriesToSave(job);
+                              if (!history.isEmpty()) {
+                                  histories.put(job, history);
+                              }
+                              addBatch(updates, getUpdateStatement(con, job), job);
+                          } finally {
+                              job.runlock();
+                          }
+                      }
+
+                      List<J> missing = new ArrayList<>();
+                      for (Map.Entry<PreparedStatement, List<J>> update : updates.entrySet()) {
+                          int[] rowCounts = update.getKey().executeBatch();
+                          List<J> batch = update.getValue();
+                          for (int i = 0; i < rowCounts.length; i++) {
+                              if (rowCounts[i] == 0) {
+                                  missing.add(batch.get(i));
+                              }
+                          }
+                      }
+
+                      for (J job : missing) {
+                          job.rlock();
+                          try {
+                              addBatch(creates, getCreateStatement(con, job), job);
+                              PreparedStatement batchCreate = getBatchCreateStatement(con, job);
+                              if (batchCreate != null) {
+                                  batchCreates.add(batchCreate);
+                              }
+                          } finally {
+                              job.runlock();
+                          }
+                      }
+                      for (PreparedStatement create : creates.keySet()) {
+                          create.executeBatch();
+                      }
+                      for (PreparedStatement batchCreate : batchCreates) {
+                          batchCreate.executeBatch();
+                      }
+
+                      if (!histories.isEmpty()) {
+                          saveHistory(con, histories);
+                      }
+                  } finally {
+                      Map<String, PreparedStatement> statements = batchStatements.get();
+                      batchStatements.remove();
+                      statements.values().forEach(SqlHelper::tryToClose);
+                      updates.keySet().forEach(SqlHelper::tryToClose);
+                      creates.keySet().forEach(SqlHelper::tryToClose);
+                      batchCreates.forEach(SqlHelper::tryToClose);
+                  }
+                  return histories;
+              }));
+        savedHistory.values().forEach(this::markHistoryAsSaved);
+    }
+
+    private static <J> void addBatch(Map<PreparedStatement, List<J>> batches,
+          PreparedStatement statement, J job) throws SQLException {
+        statement.addBatch();
+        batches.computeIfAbsent(statement, s -> new ArrayList<>()).add(job);
+    }
+
     protected PreparedStatement getBatchCreateStatement(Connection connection, Job job)
           throws SQLException {
         return null;
@@ -375,7 +474,19 @@ public abstract class DatabaseJobStorage<J extends Job> implements JobStorage<J>
           String query,
           Object... args)
           throws SQLException {
-        PreparedStatement stmt = connection.prepareStatement(query);
+        PreparedStatement stmt;
+        Map<String, PreparedStatement> statements = batchStatements.get();
+        if (statements == null) {
+            stmt = connection.prepareStatement(query);
+        } else {
+            stmt = statements.get(query);
+            if (stmt == null) {
+                stmt = connection.prepareStatement(query);
+                statements.put(query, stmt);
+            } else {
+                stmt.clearParameters();
+            }
+        }
         for (int i = 0; i < args.length; i++) {
             stmt.setObject(i + 1, args[i]);
         }
@@ -53,8 +53,12 @@ public class DatabaseJobStorageFactory extends JobStorageFactory {
           Collections.unmodifiableMap(jobStorageMap);
     private final Map<Class<? extends Job>, DatabaseParameters> configurations =
           new HashMap<>();
+    private final Map<Class<? extends Job>, AsynchronousSaveJobStorage<?>> saveQueues =
+          new LinkedHashMap<>();
     private final ExecutorService executor;
     private final ScheduledExecutorService scheduledExecutor;
+    private final int maxBatchSize;
+    private final int maxQueueLength;
 
     private <J extends Job> void add(DatabaseParameters config, Class<J> entityClass,
           Supplier<JobStorage<J>> storageFactory)
@@ -67,7 +71,10 @@ public class DatabaseJobStorageFactory extends JobStorageFactory {
         JobStorage<J> js;
         if (config.isDatabaseEnabled()) {
             js = storageFactory.get();
-            js = new AsynchronousSaveJobStorage<>(js, executor);
+            AsynchronousSaveJobStorage<J> saveQueue =
+                  new AsynchronousSaveJobStorage<>(js, executor, maxBatchSize, maxQueueLength);
+            saveQueues.put(entityClass, saveQueue);
+            js = saveQueue;
             if (config.getStoreCompletedRequestsOnly()) {
                 js = new ForceOnlyJobStorageDecorator<>(js);
             }
@@ -85,6 +92,8 @@ public class DatabaseJobStorageFactory extends JobStorageFactory {
           throws DataAccessException, IOException {
         requireNonNull(srmId);
         requireNonNull(manager);
+        maxBatchSize = config.getMaxJdbcBatchSize();
+        maxQueueLength = config.getMaxQueuedJdbcTasksNum();
         executor = new ThreadPoolExecutor(
               config.getJdbcExecutionThreadNum(), config.getJdbcExecutionThreadNum(),
               0L, TimeUnit.MILLISECONDS,
@@ -179,6 +188,16 @@ public class DatabaseJobStorageFactory extends JobStorageFactory {
         }
     }
 
+    public CharSequence getInfo() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Class<? extends Job>, AsynchronousSaveJobStorage<?>> entry :
+              saveQueues.entrySet()) {
+            sb.append(entry.getKey().getSimpleName()).append(" persistence:\n");
+            entry.getValue().getInfo(sb);
+        }
+        return sb;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <J extends Job> JobStorage<J> getJobStorage(J job) {
@@ -2,11 +2,22 @@ package org.dcache.srm.scheduler;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import org.dcache.srm.request.Job;
 import org.dcache.srm.util.JDC;
 import org.slf4j.Logger;
@@ -14,21 +25,56 @@ import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
 import org.springframework.transaction.TransactionException;
 
+/**
+ * Write-behind decorator for a JobStorage.
+ * <p>
+ * Saved jobs are queued and persisted by a task submitted to an executor. Repeated saves of a job
+ * that has not yet been persisted are coalesced into a single save. The queue is drained in
+ * batches of up to {@code maxBatchSize} jobs, each of which is passed to {@link
+ * JobStorage#saveJobs}, thus allowing the underlying storage to persist the batch in a single
+ * transaction. At most one drain task per storage is active at any time.
+ * <p>
+ * If the queue is full, forced saves are executed synchronously, thus creating back pressure,
+ * while other saves are skipped.
+ */
 public class AsynchronousSaveJobStorage<J extends Job> implements JobStorage<J> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AsynchronousSaveJobStorage.class);
 
+    private static final int DEFAULT_MAX_BATCH_SIZE = 1;
+    private static final int DEFAULT_MAX_QUEUE_LENGTH = Integer.MAX_VALUE;
+
     private final JobStorage<J> storage;
     private final ConcurrentMap<Long, UpdateState> states = new ConcurrentHashMap<>();
+    private final Queue<J> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueLength = new AtomicInteger();
+    private final AtomicBoolean isFlushScheduled = new AtomicBoolean();
     private final Executor executor;
+    private final int maxBatchSize;
+    private final int maxQueueLength;
+
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedJobs = new LongAdder();
+    private final LongAdder flushTime = new LongAdder();
+    private final AtomicLong maxFlushTime = new AtomicLong();
 
     private enum UpdateState {
         QUEUED_FORCED, QUEUED_NOT_FORCED, PROCESSING
     }
 
     public AsynchronousSaveJobStorage(JobStorage<J> storage, Executor executor) {
+        this(storage, executor, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_QUEUE_LENGTH);
+    }
+
+    public AsynchronousSaveJobStorage(JobStorage<J> storage, Executor executor, int maxBatchSize,
+          int maxQueueLength) {
         this.storage = storage;
         this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxQueueLength = maxQueueLength;
     }
 
     @Override
@@ -48,6 +94,8 @@ public class AsynchronousSaveJobStorage<J extends Job> implements JobStorage<J>
 
     @Override
     public void saveJob(final J job, final boolean force) {
+        saves.increment();
+
         UpdateState existingState;
         if (force) {
             existingState = states.put(job.getId(), UpdateState.QUEUED_FORCED);
@@ -60,49 +108,142 @@ public class AsynchronousSaveJobStorage<J extends Job> implements JobStorage<J>
             }
         }
 
-        if (existingState == null) {
-            boolean success = false;
-            Runnable task =
-                  new Runnable() {
-                      @Override
-                      public void run() {
-                          try (JDC ignored = job.applyJdc()) {
-                              UpdateState state = states.put(job.getId(), UpdateState.PROCESSING);
-                              try {
-                                  storage.saveJob(job, state == UpdateState.QUEUED_FORCED);
-                              } catch (TransactionException e) {
-                                  LOGGER.error("SQL statement failed: {}", e.getMessage());
-                              } catch (Throwable e) {
-                                  Thread.currentThread().getUncaughtExceptionHandler()
-                                        .uncaughtException(Thread.currentThread(), e);
-                              } finally {
-                                  if (!states.remove(job.getId(), UpdateState.PROCESSING)) {
-                                      executor.execute(this);
-                                  }
-                              }
-                          }
-                      }
-                  };
+        if (existingState != null) {
+            /* Either already queued or the job will be requeued once it has been saved. */
+            coalesced.increment();
+        } else if (queueLength.incrementAndGet() <= maxQueueLength) {
+            queue.add(job);
+            scheduleFlush(force);
+        } else {
+            queueLength.decrementAndGet();
+            if (force || !states.remove(job.getId(), UpdateState.QUEUED_NOT_FORCED)) {
+                // Execute forced save synchronously, thus creating back pressure.
+                save(Collections.singletonList(job));
+            } else {
+                skipped.increment();
+                LOGGER.warn("Persistence of request {} skipped, queue is too long.",
+                      job.getId());
+            }
+        }
+    }
+
+    private void scheduleFlush(boolean force) {
+        if (isFlushScheduled.compareAndSet(false, true)) {
             try {
-                executor.execute(task);
-                success = true;
+                executor.execute(this::flush);
             } catch (RejectedExecutionException e) {
                 if (force) {
                     // Execute forced save synchronously, thus creating back pressure.
-                    task.run();
-                    success = true;
+                    flush();
                 } else {
-                    LOGGER.warn("Persistence of request {} skipped, queue is too long.",
-                          job.getId());
+                    isFlushScheduled.set(false);
+                    LOGGER.warn("Persistence of requests deferred, executor queue is too long.");
+                }
+            }
+        }
+    }
+
+    private void flush() {
+        do {
+            List<J> batch = new ArrayList<>();
+            J job;
+            while ((job = queue.poll()) != null) {
+                queueLength.decrementAndGet();
+                batch.add(job);
+                if (batch.size() >= maxBatchSize) {
+                    save(batch);
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                save(batch);
+            }
+            isFlushScheduled.set(false);
+        } while (!queue.isEmpty() && isFlushScheduled.compareAndSet(false, true));
+    }
+
+    private void save(List<J> jobs) {
+        List<J> forced = new ArrayList<>();
+        List<J> notForced = new ArrayList<>();
+        for (J job : jobs) {
+            UpdateState state = states.put(job.getId(), UpdateState.PROCESSING);
+            (state == UpdateState.QUEUED_FORCED ? forced : notForced).add(job);
+        }
+
+        long start = System.nanoTime();
+        try {
+            save(forced, true);
+            save(notForced, false);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            batches.increment();
+            batchedJobs.add(jobs.size());
+            flushTime.add(elapsed);
+            maxFlushTime.accumulateAndGet(elapsed, Math::max);
+
+            for (J job : jobs) {
+                if (!states.remove(job.getId(), UpdateState.PROCESSING)) {
+                    queueLength.incrementAndGet();
+                    queue.add(job);
+                    scheduleFlush(states.get(job.getId()) == UpdateState.QUEUED_FORCED);
                 }
-            } finally {
-                if (!success) {
-                    states.remove(job.getId());
+            }
+        }
+    }
+
+    private void save(List<J> jobs, boolean force) {
+        if (jobs.size() == 1) {
+            J job = jobs.get(0);
+            try (JDC ignored = job.applyJdc()) {
+                tryToSave(() -> storage.saveJob(job, force));
+            }
+        } else if (!jobs.isEmpty()) {
+            if (!tryToSave(() -> storage.saveJobs(jobs, force))) {
+                /* Retry individually so a single bad request doesn't fail the whole batch. */
+                for (J job : jobs) {
+                    try (JDC ignored = job.applyJdc()) {
+                        tryToSave(() -> storage.saveJob(job, force));
+                    }
                 }
             }
         }
     }
 
+    private static boolean tryToSave(Runnable save) {
+        try {
+            save.run();
+            return true;
+        } catch (TransactionException e) {
+            LOGGER.error("SQL statement failed: {}", e.getMessage());
+        } catch (Throwable e) {
+            Thread.currentThread().getUncaughtExceptionHandler()
+                  .uncaughtException(Thread.currentThread(), e);
+        }
+        return false;
+    }
+
+    public int getQueueLength() {
+        return queueLength.get();
+    }
+
+    public void getInfo(Appendable appendable) {
+        Formatter formatter = new Formatter(appendable);
+        long batchCount = batches.sum();
+        formatter.format("    Queued saves                    : %d (max %d)\n",
+              getQueueLength(), maxQueueLength);
+        formatter.format("    Saves (coalesced/skipped)       : %d (%d/%d)\n",
+              saves.sum(), coalesced.sum(), skipped.sum());
+        formatter.format("    Batches (max size)              : %d (%d)\n",
+              batchCount, maxBatchSize);
+        if (batchCount > 0) {
+            formatter.format("    Mean batch size                 : %.1f\n",
+                  (double) batchedJobs.sum() / batchCount);
+            formatter.format("    Flush latency (mean/max)        : %d/%d ms\n",
+                  TimeUnit.NANOSECONDS.toMillis(flushTime.sum() / batchCount),
+                  TimeUnit.NANOSECONDS.toMillis(maxFlushTime.get()));
+        }
+    }
+
     @Override
     public Set<Long> getLatestCompletedJobIds(int maxNum) throws DataAccessException {
         return storage.getLatestCompletedJobIds(maxNum);
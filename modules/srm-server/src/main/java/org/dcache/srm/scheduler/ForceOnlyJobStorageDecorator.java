@@ -2,6 +2,7 @@ package org.dcache.srm.scheduler;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Set;
 import org.dcache.srm.request.Job;
 import org.springframework.dao.DataAccessException;
@@ -40,6 +41,13 @@ public class ForceOnlyJobStorageDecorator<J extends Job> implements JobStorage<J
         }
     }
 
+    @Override
+    public void saveJobs(Collection<J> jobs, boolean force) throws TransactionException {
+        if (force) {
+            jobStorage.saveJobs(jobs, force);
+        }
+    }
+
     @Override
     public Set<Long> getLatestCompletedJobIds(int maxNum) throws DataAccessException {
         return jobStorage.getLatestCompletedJobIds(maxNum);
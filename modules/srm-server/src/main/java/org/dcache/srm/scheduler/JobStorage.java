@@ -74,6 +74,7 @@ package org.dcache.srm.scheduler;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Set;
 import org.dcache.srm.request.Job;
 import org.springframework.dao.DataAccessException;
@@ -100,6 +101,21 @@ public interface JobStorage<J extends Job> {
     void saveJob(J job, boolean force)
           throws TransactionException;
 
+    /**
+     * Saves several jobs. Storages that are able to persist several jobs more efficiently than
+     * one at a time should override this method.
+     *
+     * @param jobs  Jobs to save
+     * @param force as for {@link #saveJob}
+     * @throws TransactionException if there was a problem
+     */
+    default void saveJobs(Collection<J> jobs, boolean force)
+          throws TransactionException {
+        for (J job : jobs) {
+            saveJob(job, force);
+        }
+    }
+
     Set<Long> getLatestCompletedJobIds(int maxNum) throws DataAccessException;
 
     Set<Long> getLatestFailedJobIds(int maxNum) throws DataAccessException;
@@ -73,18 +73,23 @@ import static com.google.common.base.Strings.repeat;
 import static java.util.Objects.requireNonNull;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.MultimapBuilder;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.Formatter;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.dcache.srm.SRMAuthorizationException;
 import org.dcache.srm.SRMException;
 import org.dcache.srm.SRMInternalErrorException;
@@ -102,25 +107,40 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.dao.DataAccessException;
 
+/**
+ * Schedules jobs of a particular type.
+ * <p>
+ * Jobs are queued according to a scheduling strategy and moved to the INPROGRESS state by a
+ * single work supply thread, subject to the maximum number of jobs in progress. Jobs are run on a
+ * bounded thread pool.
+ * <p>
+ * Queuing a job, running a job and the state change notifications of jobs do not take any
+ * scheduler-wide lock: the jobs in each state are tracked in concurrent sets and the limits are
+ * volatile. Consequently the counts reported by the scheduler are not updated atomically with
+ * respect to each other.
+ */
 public class Scheduler<T extends Job> implements JobStateChangeAware {
 
     private static final Logger LOGGER =
           LoggerFactory.getLogger(Scheduler.class);
+
+    private static final int DEFAULT_MAX_THREADS = 100;
+
     private final Class<T> type;
 
-    private int maxRequests;
+    private volatile int maxRequests;
 
     // thread pool related variables
-    private final ExecutorService pooledExecutor;
+    private final ThreadPoolExecutor pooledExecutor;
 
     private final ScheduledExecutorService scheduler
           = Executors.newSingleThreadScheduledExecutor();
 
     // ready state related variables
-    private int maxReadyJobs;
+    private volatile int maxReadyJobs;
 
     // async wait state related variables
-    private int maxInProgress;
+    private volatile int maxInProgress;
 
     private final String id;
     private volatile boolean running;
@@ -143,8 +163,13 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
     private String schedulingStrategyName;
     private String transferStrategyName;
 
-    private Multimap<State, Long> jobs = MultimapBuilder.enumKeys(State.class).hashSetValues()
-          .build();
+    /**
+     * IDs of the jobs in each non-final state. The map itself is never modified after
+     * construction.
+     */
+    private final Map<State, Set<Long>> jobs = new EnumMap<>(State.class);
+
+    private final AtomicInteger totalRequests = new AtomicInteger();
 
     public static Scheduler<?> getScheduler(String id) {
         return schedulers.get(id);
@@ -162,9 +187,18 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
         this.id = requireNonNull(id);
         checkArgument(!id.isEmpty(), "need non-empty string as an id");
 
+        for (State state : State.values()) {
+            if (!state.isFinal()) {
+                jobs.put(state, ConcurrentHashMap.newKeySet());
+            }
+        }
+
         workSupplyService = new WorkSupplyService();
         retryTimer = new Timer();
-        pooledExecutor = Executors.newCachedThreadPool();
+        pooledExecutor = new ThreadPoolExecutor(DEFAULT_MAX_THREADS, DEFAULT_MAX_THREADS,
+              60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+              new ThreadFactoryBuilder().setNameFormat("srm-" + id + "-%d").build());
+        pooledExecutor.allowCoreThreadTimeOut(true);
 
         addScheduler(id, this);
     }
@@ -302,7 +336,7 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
         pooledExecutor.execute(new JobWrapper(job));
     }
 
-    public synchronized int getTotalQueued() {
+    public int getTotalQueued() {
         return jobs.get(State.QUEUED).size();
     }
 
@@ -310,11 +344,11 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
         return jobs.get(State.INPROGRESS).size();
     }
 
-    public synchronized int getTotalRQueued() {
+    public int getTotalRQueued() {
         return jobs.get(State.RQUEUED).size();
     }
 
-    public synchronized int getTotalReady() {
+    public int getTotalReady() {
         return jobs.get(State.READY).size();
     }
 
@@ -338,8 +372,8 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
         return false;
     }
 
-    private synchronized int getTotalRequests() {
-        return jobs.size();
+    private int getTotalRequests() {
+        return totalRequests.get();
     }
 
     public double getLoad() {
@@ -356,21 +390,25 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
      */
     private class WorkSupplyService extends AbstractExecutionThreadService {
 
-        private boolean hasBeenNotified;
+        /**
+         * Whether work was added since the work supply thread last looked for work. Only the
+         * thread setting the flag needs to enter the monitor to wake up the work supply thread.
+         */
+        private final AtomicBoolean hasBeenNotified = new AtomicBoolean();
 
         @Override
         public void run() {
             try {
                 while (isRunning()) {
                     try {
+                        hasBeenNotified.set(false);
+
                         updateThreadQueue();
 
                         synchronized (this) {
-                            if (!hasBeenNotified) {
-                                // logger.debug("Scheduler(id={}"getId()+").run() waiting for events...");
+                            if (!hasBeenNotified.get()) {
                                 wait(queuesUpdateMaxWait);
                             }
-                            hasBeenNotified = false;
                         }
                     } catch (SRMInvalidRequestException e) {
                         LOGGER.error("Scheduler(id={}) detected an SRM error: {}", getId(),
@@ -393,9 +431,12 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
             distributeWork();
         }
 
-        public synchronized void distributeWork() {
-            hasBeenNotified = true;
-            notify();
+        public void distributeWork() {
+            if (hasBeenNotified.compareAndSet(false, true)) {
+                synchronized (this) {
+                    notify();
+                }
+            }
         }
 
         @Override
@@ -499,11 +540,13 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
     public void jobStateChanged(Job job, State oldState, String description) {
         State newState = job.getState();
 
-        synchronized (this) {
-            jobs.remove(oldState, job.getId());
-            if (!newState.isFinal()) {
-                jobs.put(newState, job.getId());
-            }
+        Set<Long> oldJobs = jobs.get(oldState);
+        if (oldJobs != null && oldJobs.remove(job.getId())) {
+            totalRequests.decrementAndGet();
+        }
+        Set<Long> newJobs = jobs.get(newState);
+        if (newJobs != null && newJobs.add(job.getId())) {
+            totalRequests.incrementAndGet();
         }
 
         LOGGER.debug("state changed for job id {} from {} to {}", job.getId(), oldState, newState);
@@ -527,7 +570,7 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
      *
      * @return Value of property maxReadyJobs.
      */
-    public synchronized int getMaxReadyJobs() {
+    public int getMaxReadyJobs() {
         return maxReadyJobs;
     }
 
@@ -536,7 +579,7 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
      *
      * @param maxReadyJobs New value of property maxReadyJobs.
      */
-    public synchronized void setMaxReadyJobs(int maxReadyJobs) {
+    public void setMaxReadyJobs(int maxReadyJobs) {
         this.maxReadyJobs = maxReadyJobs;
     }
 
@@ -545,22 +588,43 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
      *
      * @return Value of property maxThreadQueueSize.
      */
-    public synchronized int getMaxRequests() {
+    public int getMaxRequests() {
         return maxRequests;
     }
 
-    public synchronized void setMaxRequests(int maxRequests) {
+    public void setMaxRequests(int maxRequests) {
         this.maxRequests = maxRequests;
     }
 
-    public synchronized int getMaxInProgress() {
+    public int getMaxInProgress() {
         return maxInProgress;
     }
 
-    public synchronized void setMaxInprogress(int maxAsyncWaitJobs) {
+    public void setMaxInprogress(int maxAsyncWaitJobs) {
         this.maxInProgress = maxAsyncWaitJobs;
     }
 
+    /**
+     * Sets the maximum number of threads running jobs of this scheduler. Jobs are queued while
+     * all threads are busy.
+     */
+    public void setMaxThreads(int maxThreads) {
+        checkArgument(maxThreads > 0, "need at least one thread");
+        synchronized (pooledExecutor) {
+            if (maxThreads > pooledExecutor.getMaximumPoolSize()) {
+                pooledExecutor.setMaximumPoolSize(maxThreads);
+                pooledExecutor.setCorePoolSize(maxThreads);
+            } else {
+                pooledExecutor.setCorePoolSize(maxThreads);
+                pooledExecutor.setMaximumPoolSize(maxThreads);
+            }
+        }
+    }
+
+    public int getMaxThreads() {
+        return pooledExecutor.getMaximumPoolSize();
+    }
+
     public String toString() {
         StringBuilder sb = new StringBuilder();
         getInfo(sb);
@@ -608,7 +672,7 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
         }
     }
 
-    public synchronized void getInfo(Appendable appendable) {
+    public void getInfo(Appendable appendable) {
         int fieldWidth = Math.max(3, String.valueOf(getMaxRequests()).length());
         InfoFormatter formatter =
               new InfoFormatter(appendable, fieldWidth,
@@ -628,6 +692,10 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
         formatter.format("    Scheduling strategy             : %s\n", schedulingStrategyName);
         formatter.format("    Transfer strategy               : %s\n", transferStrategyName);
         formatter.format("    Scheduler ID                    : %s\n", id);
+        formatter.format("    Threads (active/max)            : %d/%d\n",
+              pooledExecutor.getActiveCount(), pooledExecutor.getMaximumPoolSize());
+        formatter.format("    Jobs waiting for a thread       : %d\n",
+              pooledExecutor.getQueue().size());
     }
 
     private static void printQueue(StringBuilder sb, Collection<Long> queue) {
@@ -643,12 +711,12 @@ public class Scheduler<T extends Job> implements JobStateChangeAware {
         }
     }
 
-    public synchronized void printThreadQueue(StringBuilder sb) {
+    public void printThreadQueue(StringBuilder sb) {
         sb.append("ThreadQueue :\n");
         printQueue(sb, jobs.get(State.QUEUED));
     }
 
-    public synchronized void printReadyQueue(StringBuilder sb) {
+    public void printReadyQueue(StringBuilder sb) {
         sb.append("ReadyQueue :\n");
         printQueue(sb, jobs.get(State.RQUEUED));
     }
@@ -17,27 +17,36 @@
  */
 package org.dcache.srm.scheduler.strategy;
 
-import java.util.ArrayDeque;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.dcache.srm.request.Job;
 import org.dcache.srm.scheduler.spi.SchedulingStrategy;
 
 public class FifoSchedulingStrategy implements SchedulingStrategy {
 
-    private final Queue<Long> queue = new ArrayDeque<>();
+    private final Queue<Long> queue = new ConcurrentLinkedQueue<>();
+
+    /* ConcurrentLinkedQueue#size is linear in the size of the queue. */
+    private final AtomicInteger size = new AtomicInteger();
 
     @Override
-    public synchronized void add(Job job) {
+    public void add(Job job) {
         queue.add(job.getId());
+        size.incrementAndGet();
     }
 
     @Override
-    public synchronized Long remove() {
-        return queue.poll();
+    public Long remove() {
+        Long id = queue.poll();
+        if (id != null) {
+            size.decrementAndGet();
+        }
+        return id;
     }
 
     @Override
-    public synchronized int size() {
-        return queue.size();
+    public int size() {
+        return size.get();
     }
 }
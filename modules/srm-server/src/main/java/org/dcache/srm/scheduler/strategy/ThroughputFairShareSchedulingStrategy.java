@@ -17,70 +17,149 @@
  */
 package org.dcache.srm.scheduler.strategy;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.dcache.srm.request.Job;
 import org.dcache.srm.scheduler.spi.SchedulingStrategy;
 
+/**
+ * Scheduling strategy that serves the queues of all discriminating values in a round-robin
+ * fashion.
+ * <p>
+ * Adding a job does not block: each discriminating value has its own concurrent queue. Removing
+ * jobs is serialised, but does not block threads adding jobs.
+ */
 public class ThroughputFairShareSchedulingStrategy extends
       DiscriminatingSchedulingStrategy implements SchedulingStrategy {
 
-    private final Map<String, Queue<Long>> jobs = new HashMap<>();
-    private List<String> keys = new ArrayList<>();
+    private final ConcurrentMap<String, KeyQueue> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Queues created since the last call to remove.
+     */
+    private final Queue<KeyQueue> created = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    /* Only accessed by threads removing jobs. */
+    private List<KeyQueue> keys = new ArrayList<>();
     private int position;
-    private int size;
 
     public ThroughputFairShareSchedulingStrategy(String discriminator) {
         super(discriminator);
     }
 
     @Override
-    protected synchronized void add(String key, Job job) {
-        Queue<Long> queue =
-              jobs.computeIfAbsent(key, k -> {
-                  keys.add(k);
-                  return new ArrayDeque<>();
-              });
-        queue.add(job.getId());
-        size++;
+    protected void add(String key, Job job) {
+        while (true) {
+            KeyQueue queue = jobs.computeIfAbsent(key, k -> {
+                KeyQueue q = new KeyQueue(k);
+                created.add(q);
+                return q;
+            });
+            if (queue.add(job.getId())) {
+                size.incrementAndGet();
+                return;
+            }
+            /* The queue was retired concurrently and is about to be removed from jobs. */
+            Thread.yield();
+        }
     }
 
     @Override
     public synchronized Long remove() {
-        if (size == 0) {
+        if (size.get() == 0) {
             return null;
         }
-        Queue<Long> queue;
-        do {
-            queue = jobs.get(keys.get(position));
-            position = position + 1;
+        while (true) {
             if (position >= keys.size()) {
                 compact();
                 position = 0;
+                if (keys.isEmpty()) {
+                    /* Should not happen, as the size is only incremented after adding a job. */
+                    return null;
+                }
             }
-        } while (queue.isEmpty());
-        size--;
-        return queue.remove();
+            Long id = keys.get(position++).ids.poll();
+            if (id != null) {
+                size.decrementAndGet();
+                return id;
+            }
+        }
     }
 
     @Override
-    public synchronized int size() {
-        return size;
+    public int size() {
+        return size.get();
     }
 
+    /**
+     * Drops the queues of discriminating values without jobs and picks up newly created queues.
+     */
     private void compact() {
-        ArrayList<String> newKeys = new ArrayList<>(keys.size());
-        for (String key : keys) {
-            if (jobs.get(key).isEmpty()) {
-                jobs.remove(key);
+        List<KeyQueue> newKeys = new ArrayList<>(keys.size());
+        for (KeyQueue queue : keys) {
+            if (queue.tryRetire()) {
+                jobs.remove(queue.key, queue);
             } else {
-                newKeys.add(key);
+                newKeys.add(queue);
             }
         }
+        KeyQueue queue;
+        while ((queue = created.poll()) != null) {
+            newKeys.add(queue);
+        }
         keys = newKeys;
     }
+
+    /**
+     * The jobs of a single discriminating value.  A queue may only be retired while no job is
+     * being added, after which no further jobs are accepted.
+     */
+    private static class KeyQueue {
+
+        private static final int RETIRED = -1;
+
+        final String key;
+        final Queue<Long> ids = new ConcurrentLinkedQueue<>();
+
+        /* Number of threads currently adding jobs, or RETIRED. */
+        private final AtomicInteger adders = new AtomicInteger();
+
+        KeyQueue(String key) {
+            this.key = key;
+        }
+
+        boolean add(long id) {
+            int n;
+            do {
+                n = adders.get();
+                if (n == RETIRED) {
+                    return false;
+                }
+            } while (!adders.compareAndSet(n, n + 1));
+            try {
+                ids.add(id);
+            } finally {
+                adders.decrementAndGet();
+            }
+            return true;
+        }
+
+        boolean tryRetire() {
+            if (!ids.isEmpty() || !adders.compareAndSet(0, RETIRED)) {
+                return false;
+            }
+            if (!ids.isEmpty()) {
+                adders.set(0);
+                return false;
+            }
+            return true;
+        }
+    }
 }
@@ -150,6 +150,7 @@ public class Configuration {
     protected String qosConfigFile = null;
     private Integer maxQueuedJdbcTasksNum; //null by default
     private Integer jdbcExecutionThreadNum;//null by default
+    private int maxJdbcBatchSize = 1;
     private String credentialsDirectory = "/opt/d-cache/credentials";
     private boolean overwrite = false;
     private boolean overwrite_by_default = false;
@@ -778,6 +779,14 @@ public class Configuration {
         this.maxQueuedJdbcTasksNum = maxQueuedJdbcTasksNum;
     }
 
+    public int getMaxJdbcBatchSize() {
+        return maxJdbcBatchSize;
+    }
+
+    public void setMaxJdbcBatchSize(int maxJdbcBatchSize) {
+        this.maxJdbcBatchSize = maxJdbcBatchSize;
+    }
+
     public String getCredentialsDirectory() {
         return credentialsDirectory;
     }
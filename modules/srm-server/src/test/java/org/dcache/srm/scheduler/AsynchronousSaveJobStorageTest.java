@@ -3,15 +3,19 @@ package org.dcache.srm.scheduler;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
 import org.dcache.srm.request.Job;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.transaction.CannotCreateTransactionException;
 
 public class AsynchronousSaveJobStorageTest {
 
@@ -75,9 +79,87 @@ public class AsynchronousSaveJobStorageTest {
         verify(storage).saveJob(job, true);
     }
 
+    @Test
+    public void whenSavingSeveralJobsThenTheyAreSavedAsBatch() throws Exception {
+        asyncStorage = new AsynchronousSaveJobStorage<>(storage, new ListExecutor(tasks), 10, 100);
+        Job job2 = givenJob(2);
+        Job job3 = givenJob(3);
+        asyncStorage.saveJob(job, false);
+        asyncStorage.saveJob(job2, false);
+        asyncStorage.saveJob(job3, false);
+        asyncStorage.saveJob(job2, false);
+        runTasks();
+        verify(storage).saveJobs(Arrays.asList(job, job2, job3), false);
+    }
+
+    @Test
+    public void whenSavingSeveralJobsThenBatchesAreSeparatedByForce() throws Exception {
+        asyncStorage = new AsynchronousSaveJobStorage<>(storage, new ListExecutor(tasks), 10, 100);
+        Job job2 = givenJob(2);
+        Job job3 = givenJob(3);
+        asyncStorage.saveJob(job, true);
+        asyncStorage.saveJob(job2, false);
+        asyncStorage.saveJob(job3, true);
+        runTasks();
+        verify(storage).saveJobs(Arrays.asList(job, job3), true);
+        verify(storage).saveJob(job2, false);
+    }
+
+    @Test
+    public void whenSavingMoreJobsThanBatchSizeThenSeveralBatchesAreSaved() throws Exception {
+        asyncStorage = new AsynchronousSaveJobStorage<>(storage, new ListExecutor(tasks), 2, 100);
+        Job job2 = givenJob(2);
+        Job job3 = givenJob(3);
+        asyncStorage.saveJob(job, false);
+        asyncStorage.saveJob(job2, false);
+        asyncStorage.saveJob(job3, false);
+        runTasks();
+        verify(storage).saveJobs(Arrays.asList(job, job2), false);
+        verify(storage).saveJob(job3, false);
+    }
+
+    @Test
+    public void whenBatchFailsThenJobsAreSavedIndividually() throws Exception {
+        asyncStorage = new AsynchronousSaveJobStorage<>(storage, new ListExecutor(tasks), 10, 100);
+        Job job2 = givenJob(2);
+        doThrow(new CannotCreateTransactionException("test")).when(storage)
+              .saveJobs(Arrays.asList(job, job2), true);
+        asyncStorage.saveJob(job, true);
+        asyncStorage.saveJob(job2, true);
+        runTasks();
+        verify(storage).saveJob(job, true);
+        verify(storage).saveJob(job2, true);
+    }
+
+    @Test
+    public void whenQueueIsFullThenUnforcedSaveIsSkipped() throws Exception {
+        asyncStorage = new AsynchronousSaveJobStorage<>(storage, new ListExecutor(tasks), 10, 1);
+        Job job2 = givenJob(2);
+        asyncStorage.saveJob(job, false);
+        asyncStorage.saveJob(job2, false);
+        runTasks();
+        verify(storage).saveJob(job, false);
+        verify(storage, never()).saveJob(job2, false);
+    }
+
+    @Test
+    public void whenQueueIsFullThenForcedSaveIsExecutedImmediately() throws Exception {
+        asyncStorage = new AsynchronousSaveJobStorage<>(storage, new ListExecutor(tasks), 10, 1);
+        Job job2 = givenJob(2);
+        asyncStorage.saveJob(job, false);
+        asyncStorage.saveJob(job2, true);
+        verify(storage).saveJob(job2, true);
+    }
+
+    private static Job givenJob(long id) {
+        Job job = mock(Job.class);
+        when(job.getId()).thenReturn(id);
+        return job;
+    }
+
     private void runTasks() {
-        for (Runnable task : tasks) {
-            task.run();
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).run();
         }
     }
 
@@ -0,0 +1,165 @@
+/* dCache - http://www.dcache.org/
+ *
+ * Copyright (C) 2024 Deutsches Elektronen-Synchrotron
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.dcache.srm.scheduler;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nonnull;
+import org.dcache.srm.request.Job;
+import org.dcache.srm.scheduler.spi.JobDiscriminator;
+import org.dcache.srm.scheduler.spi.SchedulingStrategy;
+import org.dcache.srm.scheduler.strategy.FifoSchedulingStrategy;
+import org.dcache.srm.scheduler.strategy.ThroughputFairShareSchedulingStrategy;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThroughputFairShareSchedulingStrategyTests {
+
+    /**
+     * Discriminates jobs by their ID modulo 10.
+     */
+    private static final JobDiscriminator BY_LAST_DIGIT = new JobDiscriminator() {
+        @Nonnull
+        @Override
+        public String getDiscriminatingValue(Job job) {
+            return String.valueOf(job.getId() % 10);
+        }
+
+        @Nonnull
+        @Override
+        public String getKey() {
+            return "last-digit";
+        }
+    };
+
+    private ThroughputFairShareSchedulingStrategy strategy;
+
+    @Before
+    public void setup() {
+        strategy = new ThroughputFairShareSchedulingStrategy("last-digit") {
+            @Override
+            protected JobDiscriminator getDiscriminator(String key) {
+                return BY_LAST_DIGIT;
+            }
+        };
+    }
+
+    @Test
+    public void shouldReturnNullWhenEmpty() {
+        assertThat(strategy.remove(), is(nullValue()));
+        assertThat(strategy.size(), is(0));
+    }
+
+    @Test
+    public void shouldServeDiscriminatingValuesInTurn() {
+        strategy.add(job(11));
+        strategy.add(job(21));
+        strategy.add(job(31));
+        strategy.add(job(12));
+        strategy.add(job(13));
+
+        assertThat(strategy.size(), is(5));
+        assertThat(drain(strategy), contains(11L, 12L, 13L, 21L, 31L));
+        assertThat(strategy.size(), is(0));
+    }
+
+    @Test
+    public void shouldServeValuesAddedAfterQueueWasEmptied() {
+        strategy.add(job(11));
+        assertThat(drain(strategy), contains(11L));
+        assertThat(strategy.remove(), is(nullValue()));
+
+        strategy.add(job(21));
+        strategy.add(job(12));
+
+        assertThat(drain(strategy), contains(21L, 12L));
+    }
+
+    @Test
+    public void shouldNotLoseJobsAddedConcurrently() throws Exception {
+        assertNoJobsLost(strategy);
+    }
+
+    @Test
+    public void shouldNotLoseJobsAddedConcurrentlyToFifo() throws Exception {
+        assertNoJobsLost(new FifoSchedulingStrategy());
+    }
+
+    private static void assertNoJobsLost(SchedulingStrategy strategy) throws Exception {
+        int threads = 4;
+        int perThread = 10_000;
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < threads * perThread; i++) {
+            jobs.add(job(i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            List<Future<?>> adders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                List<Job> slice = jobs.subList(t * perThread, (t + 1) * perThread);
+                adders.add(executor.submit(() -> slice.forEach(strategy::add)));
+            }
+            Future<Set<Long>> remover = executor.submit(() -> {
+                Set<Long> removed = new HashSet<>();
+                while (removed.size() < threads * perThread) {
+                    Long id = strategy.remove();
+                    if (id != null) {
+                        removed.add(id);
+                    }
+                }
+                return removed;
+            });
+            for (Future<?> adder : adders) {
+                adder.get();
+            }
+            assertThat(remover.get().size(), is(equalTo(threads * perThread)));
+            assertThat(strategy.size(), is(0));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static List<Long> drain(SchedulingStrategy strategy) {
+        List<Long> ids = new ArrayList<>();
+        Long id;
+        while ((id = strategy.remove()) != null) {
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private static Job job(long id) {
+        Job job = mock(Job.class);
+        given(job.getId()).willReturn(id);
+        return job;
+    }
+}
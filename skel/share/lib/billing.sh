@@ -27,3 +27,15 @@ billing_find()
 {
     billing_indexer -find "$@"
 }
+
+# Query the columnar billing archive
+billing_archive_query()
+{
+    CLASSPATH="$(printLimitedClassPath slf4j-api logback-classic logback-core logback-console-config \
+        jul-to-slf4j guava dcache-common common-cli cells dcache-core dcache-vehicles \
+        curator-client)" \
+        quickJava \
+          "-Ddcache.home=${DCACHE_HOME}" \
+          "-Ddcache.paths.defaults=${DCACHE_DEFAULTS}" \
+          org.dcache.services.billing.archive.ArchiveTool "$@"
+}